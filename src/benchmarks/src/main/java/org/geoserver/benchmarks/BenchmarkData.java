@@ -0,0 +1,212 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ProjectionPolicy;
+import org.geoserver.catalog.SLDHandler;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.impl.GeoServerImpl;
+import org.geoserver.config.impl.GeoServerInfoImpl;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.wfs.WFSInfoImpl;
+import org.geoserver.wms.WMSInfoImpl;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.springframework.context.support.StaticApplicationContext;
+
+/**
+ * Synthetic, in-memory fixtures shared by the benchmarks. Everything is generated with fixed random
+ * seeds, so that subsequent runs (and releases) work against the very same data.
+ */
+public class BenchmarkData {
+
+    public static final String STYLE_NAME = "line";
+
+    static final String SLD =
+            "<StyledLayerDescriptor version=\"1.0.0\" xmlns=\"http://www.opengis.net/sld\""
+                    + " xmlns:ogc=\"http://www.opengis.net/ogc\">"
+                    + "<NamedLayer><Name>line</Name><UserStyle><FeatureTypeStyle><Rule>"
+                    + "<LineSymbolizer><Stroke>"
+                    + "<CssParameter name=\"stroke\">#0000FF</CssParameter>"
+                    + "</Stroke></LineSymbolizer>"
+                    + "</Rule></FeatureTypeStyle></UserStyle></NamedLayer>"
+                    + "</StyledLayerDescriptor>";
+
+    public static final ReferencedEnvelope WORLD =
+            new ReferencedEnvelope(-180, 180, -90, 90, DefaultGeographicCRS.WGS84);
+
+    static boolean initialized;
+
+    /**
+     * Sets up a minimal application context, providing the extensions looked up by the code under
+     * test (e.g., the style handlers)
+     */
+    public static synchronized void initApplicationContext() {
+        if (initialized) {
+            return;
+        }
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("sldHandler", new SLDHandler());
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+        initialized = true;
+    }
+
+    /** Creates a resource loader on a temporary directory, containing the benchmark style */
+    public static GeoServerResourceLoader createResourceLoader() throws IOException {
+        File directory = Files.createTempDirectory("gs-benchmarks").toFile();
+        directory.deleteOnExit();
+        GeoServerResourceLoader loader = new GeoServerResourceLoader(directory);
+        Resource style = loader.get("styles/" + STYLE_NAME + ".sld");
+        try (OutputStream out = style.out()) {
+            out.write(SLD.getBytes(StandardCharsets.UTF_8));
+        }
+        return loader;
+    }
+
+    /**
+     * Creates a catalog with the given number of workspaces, each one with its own namespace, a
+     * store, and the given number of feature types and layers
+     */
+    public static CatalogImpl createCatalog(int workspaces, int layersPerWorkspace)
+            throws IOException {
+        initApplicationContext();
+        CatalogImpl catalog = new CatalogImpl();
+        catalog.setResourceLoader(createResourceLoader());
+        catalog.setExtendedValidation(false);
+        CatalogFactory factory = catalog.getFactory();
+
+        StyleInfo style = factory.createStyle();
+        style.setName(STYLE_NAME);
+        style.setFilename(STYLE_NAME + ".sld");
+        catalog.add(style);
+
+        for (int w = 0; w < workspaces; w++) {
+            String name = "ws" + w;
+            WorkspaceInfo ws = factory.createWorkspace();
+            ws.setName(name);
+            catalog.add(ws);
+
+            NamespaceInfo ns = factory.createNamespace();
+            ns.setPrefix(name);
+            ns.setURI("http://geoserver.org/benchmarks/" + name);
+            catalog.add(ns);
+
+            DataStoreInfo ds = factory.createDataStore();
+            ds.setName("store");
+            ds.setWorkspace(ws);
+            ds.setEnabled(true);
+            ds.setType("Memory");
+            catalog.add(ds);
+
+            for (int l = 0; l < layersPerWorkspace; l++) {
+                FeatureTypeInfo ft = factory.createFeatureType();
+                ft.setName("layer" + l);
+                ft.setNativeName("layer" + l);
+                ft.setTitle("Layer " + l + " in workspace " + name);
+                ft.setNamespace(ns);
+                ft.setStore(ds);
+                ft.setEnabled(true);
+                ft.setSRS("EPSG:4326");
+                ft.setNativeCRS(DefaultGeographicCRS.WGS84);
+                ft.setNativeBoundingBox(WORLD);
+                ft.setLatLonBoundingBox(WORLD);
+                ft.setProjectionPolicy(ProjectionPolicy.FORCE_DECLARED);
+                catalog.add(ft);
+
+                LayerInfo layer = factory.createLayer();
+                layer.setResource(ft);
+                layer.setDefaultStyle(style);
+                layer.setEnabled(true);
+                catalog.add(layer);
+            }
+        }
+        catalog.setExtendedValidation(true);
+        return catalog;
+    }
+
+    /** Creates a GeoServer around the catalog, configuring the WMS and WFS services */
+    public static GeoServerImpl createGeoServer(CatalogImpl catalog) {
+        GeoServerImpl geoServer = new GeoServerImpl();
+        geoServer.setCatalog(catalog);
+        geoServer.setGlobal(new GeoServerInfoImpl(geoServer));
+
+        WMSInfoImpl wms = new WMSInfoImpl();
+        wms.setName("WMS");
+        wms.setEnabled(true);
+        geoServer.add(wms);
+
+        WFSInfoImpl wfs = new WFSInfoImpl();
+        wfs.setName("WFS");
+        wfs.setEnabled(true);
+        geoServer.add(wfs);
+        return geoServer;
+    }
+
+    /** The feature type used by {@link #createFeatures(int, int)} */
+    public static SimpleFeatureType createFeatureType() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("lines");
+        tb.setCRS(DefaultGeographicCRS.WGS84);
+        tb.add("geom", LineString.class);
+        tb.add("name", String.class);
+        tb.add("value", Double.class);
+        tb.add("count", Integer.class);
+        tb.add("date", Date.class);
+        return tb.buildFeatureType();
+    }
+
+    /** Creates random lines with the given number of vertices, scattered over the world */
+    public static ListFeatureCollection createFeatures(int count, int vertices) {
+        SimpleFeatureType type = createFeatureType();
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        GeometryFactory gf = new GeometryFactory();
+        Random random = new Random(0);
+        List<SimpleFeature> features = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Coordinate[] coordinates = new Coordinate[vertices];
+            double x = random.nextDouble() * 350 - 175;
+            double y = random.nextDouble() * 170 - 85;
+            for (int j = 0; j < vertices; j++) {
+                x = Math.max(-180, Math.min(180, x + random.nextDouble() - 0.5));
+                y = Math.max(-90, Math.min(90, y + random.nextDouble() - 0.5));
+                coordinates[j] = new Coordinate(x, y);
+            }
+            fb.add(gf.createLineString(coordinates));
+            fb.add("feature " + i);
+            fb.add(random.nextDouble() * 1000);
+            fb.add(random.nextInt(1000));
+            fb.add(new Date(1_600_000_000_000L + random.nextInt(1_000_000) * 1000L));
+            features.add(fb.buildFeature("lines." + i));
+        }
+        return new ListFeatureCollection(type, features);
+    }
+}
@@ -0,0 +1,116 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.catalog.CloseableIterator;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.Predicates;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.opengis.filter.Filter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Lookups against the {@link CatalogImpl}, by name, by id, and by filter */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogLookupBenchmark {
+
+    @Param({"10", "100"})
+    int workspaces;
+
+    @Param({"100"})
+    int layersPerWorkspace;
+
+    CatalogImpl catalog;
+
+    List<String> layerNames;
+
+    String[] layerIds;
+
+    Random random;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        catalog = BenchmarkData.createCatalog(workspaces, layersPerWorkspace);
+        List<LayerInfo> layers = catalog.getLayers();
+        layerNames = new ArrayList<>();
+        layerIds = new String[layers.size()];
+        for (int i = 0; i < layers.size(); i++) {
+            layerNames.add(layers.get(i).prefixedName());
+            layerIds[i] = layers.get(i).getId();
+        }
+        random = new Random(0);
+    }
+
+    private String randomWorkspace() {
+        return "ws" + random.nextInt(workspaces);
+    }
+
+    @Benchmark
+    public LayerInfo layerByPrefixedName() {
+        return catalog.getLayerByName(layerNames.get(random.nextInt(layerNames.size())));
+    }
+
+    @Benchmark
+    public LayerInfo layerById() {
+        return catalog.getLayer(layerIds[random.nextInt(layerIds.length)]);
+    }
+
+    @Benchmark
+    public ResourceInfo resourceByName() {
+        return catalog.getResourceByName(
+                randomWorkspace(),
+                "layer" + random.nextInt(layersPerWorkspace),
+                ResourceInfo.class);
+    }
+
+    @Benchmark
+    public List<StoreInfo> storesByWorkspace() {
+        WorkspaceInfo ws = catalog.getWorkspaceByName(randomWorkspace());
+        return catalog.getStoresByWorkspace(ws, StoreInfo.class);
+    }
+
+    @Benchmark
+    public List<LayerInfo> allLayers() {
+        return catalog.getLayers();
+    }
+
+    @Benchmark
+    public void listLayersInWorkspace(Blackhole bh) {
+        Filter filter = Predicates.equal("resource.store.workspace.name", randomWorkspace());
+        try (CloseableIterator<LayerInfo> it = catalog.list(LayerInfo.class, filter)) {
+            while (it.hasNext()) {
+                bh.consume(it.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public int countLayers() {
+        return catalog.count(LayerInfo.class, Predicates.acceptAll());
+    }
+}
@@ -0,0 +1,86 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.sf.json.util.JSONUtils;
+import org.geoserver.wfs.json.DoubleFormatter;
+import org.geoserver.wfs.json.RoundingUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the GeoJSON ordinate formatting through {@link RoundingUtil} and the JSON number
+ * conversion, as done by {@link net.sf.json.util.JSONBuilder#value(double)}, with {@link
+ * DoubleFormatter}. Run with {@code -prof gc} to compare the allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoordinateFormattingBenchmark {
+
+    static final int ORDINATES = 10000;
+
+    @Param({"4", "8"})
+    int numDecimals;
+
+    /** Geographic (lon/lat) or projected (web mercator) ordinates */
+    @Param({"geographic", "projected"})
+    String range;
+
+    double[] ordinates;
+
+    DoubleFormatter formatter;
+
+    char[] buffer = new char[DoubleFormatter.MAX_LENGTH];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        double extent = "geographic".equals(range) ? 180 : 2e7;
+        Random random = new Random(0);
+        ordinates = new double[ORDINATES];
+        for (int i = 0; i < ORDINATES; i++) {
+            ordinates[i] = (random.nextDouble() * 2 - 1) * extent;
+        }
+        formatter = new DoubleFormatter(numDecimals);
+    }
+
+    @Benchmark
+    public long roundingUtil() {
+        long length = 0;
+        for (double ordinate : ordinates) {
+            length += JSONUtils.numberToString(RoundingUtil.round(ordinate, numDecimals)).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long doubleFormatter() {
+        long length = 0;
+        for (double ordinate : ordinates) {
+            int end = formatter.format(ordinate, buffer, 0);
+            if (end < 0) {
+                // what GeoJSONBuilder does for the values the formatter cannot handle
+                end = JSONUtils.numberToString(RoundingUtil.round(ordinate, numDecimals)).length();
+            }
+            length += end;
+        }
+        return length;
+    }
+}
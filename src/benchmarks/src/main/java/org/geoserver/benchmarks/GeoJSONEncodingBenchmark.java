@@ -0,0 +1,121 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.GeoServer;
+import org.geoserver.wfs.json.GeoJSONBuilder;
+import org.geoserver.wfs.json.GeoJSONGetFeatureResponse;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.FeatureCollection;
+import org.locationtech.jts.geom.Geometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding of in-memory features with {@link GeoJSONGetFeatureResponse}, and of their geometries
+ * alone with {@link GeoJSONBuilder}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeoJSONEncodingBenchmark {
+
+    /** Discards the output, counting the characters, so that only the encoding is measured */
+    static class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    @Param({"1000", "10000"})
+    int features;
+
+    @Param({"5", "100"})
+    int vertices;
+
+    GeoJSONGetFeatureResponse response;
+
+    List<FeatureCollection> collections;
+
+    Geometry[] geometries;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        CatalogImpl catalog = BenchmarkData.createCatalog(1, 1);
+        GeoServer geoServer = BenchmarkData.createGeoServer(catalog);
+        response = new GeoJSONGetFeatureResponse(geoServer, "application/json");
+
+        ListFeatureCollection fc = BenchmarkData.createFeatures(features, vertices);
+        collections = Collections.singletonList(fc);
+        geometries = new Geometry[features];
+        try (SimpleFeatureIterator it = fc.features()) {
+            for (int i = 0; it.hasNext(); i++) {
+                geometries[i] = (Geometry) it.next().getDefaultGeometry();
+            }
+        }
+    }
+
+    private GeoJSONBuilder newBuilder(Writer writer) {
+        GeoJSONBuilder builder = new GeoJSONBuilder(writer);
+        builder.setNumberOfDecimals(8);
+        return builder;
+    }
+
+    @Benchmark
+    public long encodeFeatures() {
+        CountingWriter writer = new CountingWriter();
+        GeoJSONBuilder builder = newBuilder(writer);
+        builder.object().key("type").value("FeatureCollection");
+        builder.key("features").array();
+        response.writeFeatures(collections, null, false, builder);
+        builder.endArray().endObject();
+        return writer.count;
+    }
+
+    @Benchmark
+    public long encodeGeometries() {
+        CountingWriter writer = new CountingWriter();
+        GeoJSONBuilder builder = newBuilder(writer);
+        builder.array();
+        for (Geometry geometry : geometries) {
+            builder.writeGeom(geometry);
+        }
+        builder.endArray();
+        return writer.count;
+    }
+}
@@ -0,0 +1,87 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.ows.util.KvpMap;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.WMS;
+import org.geoserver.wms.map.GetMapKvpRequestReader;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of GetMap requests by {@link GetMapKvpRequestReader}. The KVP map is provided already
+ * parsed, the way the dispatcher would hand it over, so only the reader itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GetMapKvpRequestReaderBenchmark {
+
+    @Param({"1", "10"})
+    int layersPerRequest;
+
+    GetMapKvpRequestReader reader;
+
+    Map<String, Object> rawKvp;
+
+    Map<String, Object> kvp;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        CatalogImpl catalog = BenchmarkData.createCatalog(10, 100);
+        WMS wms = new WMS(BenchmarkData.createGeoServer(catalog));
+        reader = new GetMapKvpRequestReader(wms);
+
+        StringBuilder layers = new StringBuilder();
+        for (int i = 0; i < layersPerRequest; i++) {
+            if (i > 0) {
+                layers.append(",");
+            }
+            layers.append("ws").append(i % 10).append(":layer").append(i);
+        }
+
+        rawKvp = new KvpMap<>();
+        rawKvp.put("SERVICE", "WMS");
+        rawKvp.put("VERSION", "1.1.1");
+        rawKvp.put("REQUEST", "GetMap");
+        rawKvp.put("LAYERS", layers.toString());
+        rawKvp.put("STYLES", "");
+        rawKvp.put("SRS", "EPSG:4326");
+        rawKvp.put("BBOX", "-180,-90,180,90");
+        rawKvp.put("WIDTH", "512");
+        rawKvp.put("HEIGHT", "256");
+        rawKvp.put("FORMAT", "image/png");
+
+        kvp = new KvpMap<>(rawKvp);
+        kvp.put("BBOX", new ReferencedEnvelope(-180, 180, -90, 90, DefaultGeographicCRS.WGS84));
+        kvp.put("WIDTH", 512);
+        kvp.put("HEIGHT", 256);
+    }
+
+    @Benchmark
+    public GetMapRequest read() throws Exception {
+        // work on copies, so that each invocation starts from the same state
+        return reader.read(reader.createRequest(), new KvpMap<>(kvp), new KvpMap<>(rawKvp));
+    }
+}
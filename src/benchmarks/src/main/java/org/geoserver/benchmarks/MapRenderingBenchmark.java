@@ -0,0 +1,112 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.WMS;
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.map.RenderedImageMap;
+import org.geoserver.wms.map.RenderedImageMapOutputFormat;
+import org.geoserver.wms.map.png.PNGJWriter;
+import org.geotools.map.FeatureLayer;
+import org.geotools.styling.Style;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of in-memory vector data with {@link RenderedImageMapOutputFormat}, and encoding of the
+ * results with {@link PNGJWriter}, both separately and together
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapRenderingBenchmark {
+
+    @Param({"1000", "10000"})
+    int features;
+
+    @Param({"256", "768"})
+    int size;
+
+    RenderedImageMapOutputFormat outputFormat;
+
+    WMSMapContent mapContent;
+
+    RenderedImage image;
+
+    PNGJWriter writer = new PNGJWriter();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        CatalogImpl catalog = BenchmarkData.createCatalog(1, 1);
+        WMS wms = new WMS(BenchmarkData.createGeoServer(catalog));
+        outputFormat = new RenderedImageMapOutputFormat("image/png", wms);
+
+        GetMapRequest request = new GetMapRequest();
+        request.setFormat("image/png");
+        request.setWidth(size);
+        request.setHeight(size);
+        request.setTransparent(true);
+        mapContent = new WMSMapContent(request);
+        mapContent.setMapWidth(size);
+        mapContent.setMapHeight(size);
+        mapContent.setTransparent(true);
+        mapContent.getViewport().setBounds(BenchmarkData.WORLD);
+        Style style = catalog.getStyleByName(BenchmarkData.STYLE_NAME).getStyle();
+        mapContent.addLayer(new FeatureLayer(BenchmarkData.createFeatures(features, 20), style));
+
+        // a pre-rendered image for the encoding only benchmark
+        image = render();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mapContent.dispose();
+    }
+
+    private RenderedImage render() {
+        RenderedImageMap map = outputFormat.produceMap(mapContent);
+        return map.getImage();
+    }
+
+    private byte[] encode(RenderedImage image) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writer.writePNG(image, bos, 0.25f, mapContent);
+        return bos.toByteArray();
+    }
+
+    @Benchmark
+    public RenderedImage renderMap() {
+        return render();
+    }
+
+    @Benchmark
+    public byte[] encodePNG() {
+        return encode(image);
+    }
+
+    @Benchmark
+    public byte[] renderAndEncodePNG() {
+        return encode(render());
+    }
+}
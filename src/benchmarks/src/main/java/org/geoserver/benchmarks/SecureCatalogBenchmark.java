@@ -0,0 +1,117 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.catalog.CloseableIterator;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.Predicates;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.security.AbstractResourceAccessManager;
+import org.geoserver.security.CatalogMode;
+import org.geoserver.security.DataAccessLimits;
+import org.geoserver.security.SecureCatalogImpl;
+import org.geoserver.security.WorkspaceAccessLimits;
+import org.opengis.filter.Filter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Filtering of the catalog contents by {@link SecureCatalogImpl}, with an access manager hiding
+ * every other workspace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecureCatalogBenchmark {
+
+    /** Hides the workspaces with an odd index, and all their contents */
+    static class HalfHiddenAccessManager extends AbstractResourceAccessManager {
+
+        static boolean isHidden(WorkspaceInfo ws) {
+            String name = ws.getName();
+            return (name.charAt(name.length() - 1) - '0') % 2 == 1;
+        }
+
+        @Override
+        public WorkspaceAccessLimits getAccessLimits(Authentication user, WorkspaceInfo ws) {
+            return isHidden(ws) ? new WorkspaceAccessLimits(CatalogMode.HIDE, false, false) : null;
+        }
+
+        @Override
+        public DataAccessLimits getAccessLimits(Authentication user, LayerInfo layer) {
+            return getAccessLimits(user, layer.getResource());
+        }
+
+        @Override
+        public DataAccessLimits getAccessLimits(Authentication user, ResourceInfo resource) {
+            return isHidden(resource.getStore().getWorkspace())
+                    ? new DataAccessLimits(CatalogMode.HIDE, Filter.EXCLUDE)
+                    : null;
+        }
+    }
+
+    @Param({"10", "100"})
+    int workspaces;
+
+    @Param({"100"})
+    int layersPerWorkspace;
+
+    SecureCatalogImpl catalog;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        CatalogImpl raw = BenchmarkData.createCatalog(workspaces, layersPerWorkspace);
+        catalog = new SecureCatalogImpl(raw, new HalfHiddenAccessManager());
+    }
+
+    @Benchmark
+    public List<LayerInfo> allLayers() {
+        return catalog.getLayers();
+    }
+
+    @Benchmark
+    public List<WorkspaceInfo> allWorkspaces() {
+        return catalog.getWorkspaces();
+    }
+
+    @Benchmark
+    public LayerInfo visibleLayerByName() {
+        return catalog.getLayerByName("ws0:layer0");
+    }
+
+    @Benchmark
+    public LayerInfo hiddenLayerByName() {
+        return catalog.getLayerByName("ws1:layer0");
+    }
+
+    @Benchmark
+    public void listLayers(Blackhole bh) {
+        try (CloseableIterator<LayerInfo> it =
+                catalog.list(LayerInfo.class, Predicates.acceptAll())) {
+            while (it.hasNext()) {
+                bh.consume(it.next());
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Encoding and decoding of catalog objects with {@link XStreamPersister} */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XStreamPersisterBenchmark {
+
+    @Param({"xml", "binary"})
+    String format;
+
+    XStreamPersister persister;
+
+    FeatureTypeInfo featureType;
+
+    LayerInfo layer;
+
+    byte[] featureTypeContents;
+
+    byte[] layerContents;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        CatalogImpl catalog = BenchmarkData.createCatalog(1, 1);
+        XStreamPersisterFactory factory = new XStreamPersisterFactory();
+        persister =
+                "binary".equals(format)
+                        ? factory.createBinaryPersister()
+                        : factory.createXMLPersister();
+        persister.setCatalog(catalog);
+
+        layer = catalog.getLayers().get(0);
+        featureType = (FeatureTypeInfo) layer.getResource();
+        featureTypeContents = save(featureType);
+        layerContents = save(layer);
+    }
+
+    private byte[] save(Object info) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        persister.save(info, bos);
+        return bos.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] saveFeatureType() throws IOException {
+        return save(featureType);
+    }
+
+    @Benchmark
+    public byte[] saveLayer() throws IOException {
+        return save(layer);
+    }
+
+    @Benchmark
+    public FeatureTypeInfo loadFeatureType() throws IOException {
+        return persister.load(new ByteArrayInputStream(featureTypeContents), FeatureTypeInfo.class);
+    }
+
+    @Benchmark
+    public LayerInfo loadLayer() throws IOException {
+        return persister.load(new ByteArrayInputStream(layerContents), LayerInfo.class);
+    }
+}
@@ -0,0 +1,457 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.arrow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.json.JSONObject;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateMilliVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.FixedSizeListVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.referencing.CRS;
+import org.geotools.util.Converters;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKBWriter;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Encodes simple features as an Apache Arrow IPC stream. Features are accumulated column by column
+ * in record batches of a configurable size, each batch is written out as soon as it's full, so that
+ * the memory usage does not depend on the number of features, and clients can start processing the
+ * first batch while the following ones are still being read.
+ *
+ * <p>Geometries are encoded following the GeoArrow conventions, either as WKB, or as native
+ * coordinate buffers (interleaved xy) for point, linestring and polygon columns. The encoding is
+ * declared in the {@code ARROW:extension:name} field metadata, the CRS in the {@code
+ * ARROW:extension:metadata} one.
+ */
+class ArrowFeatureWriter {
+
+    static final String EXTENSION_NAME = "ARROW:extension:name";
+
+    static final String EXTENSION_METADATA = "ARROW:extension:metadata";
+
+    /** How geometries are encoded */
+    enum GeometryEncoding {
+        /** All geometries as WKB */
+        WKB,
+        /** Points, lines and polygons as coordinate buffers, other geometry types as WKB */
+        NATIVE
+    }
+
+    static final ArrowType DOUBLE = new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+
+    private final BufferAllocator allocator;
+
+    private final GeometryEncoding encoding;
+
+    private final int batchSize;
+
+    ArrowFeatureWriter(BufferAllocator allocator, GeometryEncoding encoding, int batchSize) {
+        this.allocator = allocator;
+        this.encoding = encoding;
+        this.batchSize = batchSize;
+    }
+
+    /** Writes the features as a stream of record batches */
+    void write(SimpleFeatureCollection features, OutputStream output) throws IOException {
+        SimpleFeatureType type = features.getSchema();
+        Schema schema = getSchema(type);
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+            List<Column> columns = new ArrayList<>();
+            for (int i = 0; i < type.getAttributeCount(); i++) {
+                columns.add(getColumn(type.getDescriptor(i), root.getVector(i)));
+            }
+
+            // the writer is not closed, as that would close the output stream too
+            ArrowStreamWriter writer = new ArrowStreamWriter(root, null, output);
+            writer.start();
+            root.allocateNew();
+            int row = 0;
+            boolean written = false;
+            try (SimpleFeatureIterator it = features.features()) {
+                while (it.hasNext()) {
+                    SimpleFeature feature = it.next();
+                    for (int i = 0; i < columns.size(); i++) {
+                        columns.get(i).set(row, feature.getAttribute(i));
+                    }
+                    if (++row == batchSize) {
+                        root.setRowCount(row);
+                        writer.writeBatch();
+                        root.allocateNew();
+                        row = 0;
+                        written = true;
+                    }
+                }
+            }
+            // an empty batch still tells readers there are no features
+            if (row > 0 || !written) {
+                root.setRowCount(row);
+                writer.writeBatch();
+            }
+            writer.end();
+        }
+    }
+
+    /** Builds the Arrow schema for the feature type */
+    Schema getSchema(SimpleFeatureType type) {
+        List<Field> fields = new ArrayList<>();
+        for (AttributeDescriptor descriptor : type.getAttributeDescriptors()) {
+            fields.add(getField(descriptor));
+        }
+        return new Schema(fields);
+    }
+
+    private Field getField(AttributeDescriptor descriptor) {
+        String name = descriptor.getLocalName();
+        Class<?> binding = descriptor.getType().getBinding();
+        if (descriptor instanceof GeometryDescriptor) {
+            Map<String, String> metadata = new HashMap<>();
+            metadata.put(EXTENSION_METADATA, getCRSMetadata((GeometryDescriptor) descriptor));
+            Field xy = new Field("xy", FieldType.notNullable(DOUBLE), null);
+            Field vertices =
+                    new Field(
+                            "vertices",
+                            FieldType.notNullable(new ArrowType.FixedSizeList(2)),
+                            Collections.singletonList(xy));
+            if (isNative(binding, Point.class)) {
+                metadata.put(EXTENSION_NAME, "geoarrow.point");
+                return new Field(
+                        name,
+                        new FieldType(true, new ArrowType.FixedSizeList(2), null, metadata),
+                        Collections.singletonList(xy));
+            } else if (isNative(binding, LineString.class)) {
+                metadata.put(EXTENSION_NAME, "geoarrow.linestring");
+                return new Field(
+                        name,
+                        new FieldType(true, ArrowType.List.INSTANCE, null, metadata),
+                        Collections.singletonList(vertices));
+            } else if (isNative(binding, Polygon.class)) {
+                metadata.put(EXTENSION_NAME, "geoarrow.polygon");
+                Field rings =
+                        new Field(
+                                "rings",
+                                FieldType.notNullable(ArrowType.List.INSTANCE),
+                                Collections.singletonList(vertices));
+                return new Field(
+                        name,
+                        new FieldType(true, ArrowType.List.INSTANCE, null, metadata),
+                        Collections.singletonList(rings));
+            }
+            metadata.put(EXTENSION_NAME, "geoarrow.wkb");
+            return new Field(
+                    name, new FieldType(true, ArrowType.Binary.INSTANCE, null, metadata), null);
+        }
+        return new Field(name, FieldType.nullable(getType(binding)), null);
+    }
+
+    private boolean isNative(Class<?> binding, Class<? extends Geometry> geometryClass) {
+        // LinearRing is a LineString too, but cannot be told apart by its binding
+        return encoding == GeometryEncoding.NATIVE && geometryClass.equals(binding);
+    }
+
+    private ArrowType getType(Class<?> binding) {
+        if (Long.class.equals(binding)) {
+            return new ArrowType.Int(64, true);
+        } else if (Integer.class.equals(binding)) {
+            return new ArrowType.Int(32, true);
+        } else if (Short.class.equals(binding)) {
+            return new ArrowType.Int(16, true);
+        } else if (Byte.class.equals(binding)) {
+            return new ArrowType.Int(8, true);
+        } else if (Float.class.equals(binding)) {
+            return new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+        } else if (Number.class.isAssignableFrom(binding)) {
+            // doubles, but also big decimals and integers, that are not exact anyways in most
+            // analytics tools
+            return DOUBLE;
+        } else if (Boolean.class.equals(binding)) {
+            return ArrowType.Bool.INSTANCE;
+        } else if (java.sql.Date.class.equals(binding)) {
+            return new ArrowType.Date(DateUnit.MILLISECOND);
+        } else if (Date.class.equals(binding) || java.sql.Timestamp.class.equals(binding)) {
+            return new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC");
+        }
+        return ArrowType.Utf8.INSTANCE;
+    }
+
+    private String getCRSMetadata(GeometryDescriptor descriptor) {
+        JSONObject json = new JSONObject();
+        CoordinateReferenceSystem crs = descriptor.getCoordinateReferenceSystem();
+        if (crs != null) {
+            String identifier = null;
+            try {
+                identifier = CRS.lookupIdentifier(crs, false);
+            } catch (FactoryException e) {
+                // fall back on the WKT
+            }
+            json.put("crs", identifier != null ? identifier : crs.toWKT());
+        }
+        return json.toString();
+    }
+
+    private Column getColumn(AttributeDescriptor descriptor, FieldVector vector) {
+        if (vector instanceof BigIntVector) {
+            BigIntVector v = (BigIntVector) vector;
+            return new Column(vector, (row, value) -> v.setSafe(row, toNumber(value).longValue()));
+        } else if (vector instanceof IntVector) {
+            IntVector v = (IntVector) vector;
+            return new Column(vector, (row, value) -> v.setSafe(row, toNumber(value).intValue()));
+        } else if (vector instanceof SmallIntVector) {
+            SmallIntVector v = (SmallIntVector) vector;
+            return new Column(vector, (row, value) -> v.setSafe(row, toNumber(value).shortValue()));
+        } else if (vector instanceof TinyIntVector) {
+            TinyIntVector v = (TinyIntVector) vector;
+            return new Column(vector, (row, value) -> v.setSafe(row, toNumber(value).byteValue()));
+        } else if (vector instanceof Float4Vector) {
+            Float4Vector v = (Float4Vector) vector;
+            return new Column(vector, (row, value) -> v.setSafe(row, toNumber(value).floatValue()));
+        } else if (vector instanceof Float8Vector) {
+            Float8Vector v = (Float8Vector) vector;
+            return new Column(
+                    vector, (row, value) -> v.setSafe(row, toNumber(value).doubleValue()));
+        } else if (vector instanceof BitVector) {
+            BitVector v = (BitVector) vector;
+            return new Column(
+                    vector,
+                    (row, value) -> v.setSafe(row, Boolean.TRUE.equals(toBoolean(value)) ? 1 : 0));
+        } else if (vector instanceof DateMilliVector) {
+            DateMilliVector v = (DateMilliVector) vector;
+            return new Column(vector, (row, value) -> v.setSafe(row, toDate(value).getTime()));
+        } else if (vector instanceof TimeStampMilliTZVector) {
+            TimeStampMilliTZVector v = (TimeStampMilliTZVector) vector;
+            return new Column(vector, (row, value) -> v.setSafe(row, toDate(value).getTime()));
+        } else if (vector instanceof VarBinaryVector) {
+            VarBinaryVector v = (VarBinaryVector) vector;
+            WKBWriter wkb = new WKBWriter();
+            return new Column(vector, (row, value) -> v.setSafe(row, wkb.write((Geometry) value)));
+        } else if (vector instanceof FixedSizeListVector) {
+            return new PointColumn((FixedSizeListVector) vector);
+        } else if (vector instanceof ListVector) {
+            Class<?> binding = descriptor.getType().getBinding();
+            return Polygon.class.equals(binding)
+                    ? new PolygonColumn((ListVector) vector)
+                    : new LineStringColumn((ListVector) vector);
+        }
+        VarCharVector v = (VarCharVector) vector;
+        return new Column(
+                vector,
+                (row, value) -> v.setSafe(row, toText(value).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        Number converted = Converters.convert(value, Double.class);
+        if (converted == null) {
+            throw new IllegalArgumentException("Cannot convert " + value + " to a number");
+        }
+        return converted;
+    }
+
+    private static Boolean toBoolean(Object value) {
+        return value instanceof Boolean
+                ? (Boolean) value
+                : Converters.convert(value, Boolean.class);
+    }
+
+    private static Date toDate(Object value) {
+        if (value instanceof Date) {
+            return (Date) value;
+        }
+        Date converted = Converters.convert(value, Date.class);
+        if (converted == null) {
+            throw new IllegalArgumentException("Cannot convert " + value + " to a date");
+        }
+        return converted;
+    }
+
+    private static String toText(Object value) {
+        String text = Converters.convert(value, String.class);
+        return text != null ? text : value.toString();
+    }
+
+    /** Sets a non null value in a vector */
+    interface Setter {
+        void set(int row, Object value);
+    }
+
+    /** Writes the values of an attribute in its vector */
+    static class Column {
+
+        final FieldVector vector;
+
+        final Setter setter;
+
+        Column(FieldVector vector, Setter setter) {
+            this.vector = vector;
+            this.setter = setter;
+        }
+
+        void set(int row, Object value) {
+            if (value == null) {
+                setNull(row);
+            } else {
+                setter.set(row, value);
+            }
+        }
+
+        void setNull(int row) {
+            // all the vectors used for attributes are fixed or variable width ones
+            if (vector instanceof BaseFixedWidthVector) {
+                ((BaseFixedWidthVector) vector).setNull(row);
+            } else {
+                ((BaseVariableWidthVector) vector).setNull(row);
+            }
+        }
+    }
+
+    /** Points as a fixed size list of two doubles */
+    static class PointColumn extends Column {
+
+        PointColumn(FixedSizeListVector points) {
+            super(
+                    points,
+                    (row, value) -> {
+                        CoordinateSequence cs = ((Point) value).getCoordinateSequence();
+                        if (cs.size() == 0) {
+                            setEmpty(points, row);
+                        } else {
+                            int idx = points.startNewValue(row);
+                            Float8Vector xy = (Float8Vector) points.getDataVector();
+                            xy.setSafe(idx, cs.getX(0));
+                            xy.setSafe(idx + 1, cs.getY(0));
+                        }
+                    });
+        }
+
+        @Override
+        void setNull(int row) {
+            FixedSizeListVector points = (FixedSizeListVector) vector;
+            setEmpty(points, row);
+            points.setNull(row);
+        }
+
+        /** Fills the coordinate slots, that are there even if the point is null */
+        private static void setEmpty(FixedSizeListVector points, int row) {
+            int idx = points.startNewValue(row);
+            Float8Vector xy = (Float8Vector) points.getDataVector();
+            xy.setSafe(idx, Double.NaN);
+            xy.setSafe(idx + 1, Double.NaN);
+        }
+    }
+
+    /** Lines as a list of vertices */
+    static class LineStringColumn extends Column {
+
+        LineStringColumn(ListVector lines) {
+            super(
+                    lines,
+                    (row, value) -> {
+                        CoordinateSequence cs = ((LineString) value).getCoordinateSequence();
+                        int start = lines.startNewValue(row);
+                        writeVertices((FixedSizeListVector) lines.getDataVector(), start, cs);
+                        lines.endValue(row, cs.size());
+                    });
+        }
+
+        @Override
+        void setNull(int row) {
+            ((ListVector) vector).setNull(row);
+        }
+    }
+
+    /** Polygons as a list of rings, each one a list of vertices */
+    static class PolygonColumn extends Column {
+
+        PolygonColumn(ListVector polygons) {
+            super(
+                    polygons,
+                    (row, value) -> {
+                        Polygon polygon = (Polygon) value;
+                        ListVector rings = (ListVector) polygons.getDataVector();
+                        FixedSizeListVector vertices = (FixedSizeListVector) rings.getDataVector();
+                        List<LineString> polygonRings = new ArrayList<>();
+                        if (!polygon.isEmpty()) {
+                            polygonRings.add(polygon.getExteriorRing());
+                            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                                polygonRings.add(polygon.getInteriorRingN(i));
+                            }
+                        }
+                        int start = polygons.startNewValue(row);
+                        for (int i = 0; i < polygonRings.size(); i++) {
+                            CoordinateSequence cs = polygonRings.get(i).getCoordinateSequence();
+                            int vertexStart = rings.startNewValue(start + i);
+                            writeVertices(vertices, vertexStart, cs);
+                            rings.endValue(start + i, cs.size());
+                        }
+                        polygons.endValue(row, polygonRings.size());
+                    });
+        }
+
+        @Override
+        void setNull(int row) {
+            ((ListVector) vector).setNull(row);
+        }
+    }
+
+    private static void writeVertices(
+            FixedSizeListVector vertices, int start, CoordinateSequence cs) {
+        Float8Vector xy = (Float8Vector) vertices.getDataVector();
+        for (int i = 0; i < cs.size(); i++) {
+            int idx = vertices.startNewValue(start + i);
+            xy.setSafe(idx, cs.getX(i));
+            xy.setSafe(idx + 1, cs.getY(i));
+        }
+    }
+
+    /** Returns the geometry encodings, for error messages */
+    static String getEncodings() {
+        return Arrays.toString(GeometryEncoding.values());
+    }
+}
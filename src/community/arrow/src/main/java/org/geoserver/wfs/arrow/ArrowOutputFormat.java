@@ -0,0 +1,185 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.arrow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.OutOfMemoryException;
+import org.apache.arrow.memory.RootAllocator;
+import org.geoserver.config.GeoServer;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.ServiceException;
+import org.geoserver.wfs.WFSGetFeatureOutputFormat;
+import org.geoserver.wfs.arrow.ArrowFeatureWriter.GeometryEncoding;
+import org.geoserver.wfs.request.FeatureCollectionResponse;
+import org.geoserver.wfs.request.GetFeatureRequest;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Produces an Apache Arrow IPC stream, with GeoArrow geometries, out of a GetFeature request. Being
+ * a WFS output format, it's also available as a media type of the OGC API Features items.
+ *
+ * <p>Two format options are supported:
+ *
+ * <ul>
+ *   <li>{@code geometry_encoding}: {@code wkb} (default) or {@code native}, the latter encodes
+ *       point, linestring and polygon columns as coordinate buffers
+ *   <li>{@code batch_size}: the number of features per record batch, {@link #DEFAULT_BATCH_SIZE} by
+ *       default, at most {@link #MAX_BATCH_SIZE}
+ * </ul>
+ *
+ * <p>The memory used by the record batch of each request is limited to {@link #MAX_MEMORY} bytes,
+ * requests going beyond it fail, suggesting a smaller batch size.
+ */
+public class ArrowOutputFormat extends WFSGetFeatureOutputFormat implements DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(ArrowOutputFormat.class);
+
+    public static final String MIME_TYPE = "application/vnd.apache.arrow.stream";
+
+    static final String GEOMETRY_ENCODING = "GEOMETRY_ENCODING";
+
+    static final String BATCH_SIZE = "BATCH_SIZE";
+
+    static final int DEFAULT_BATCH_SIZE = 10000;
+
+    /** Max number of features per record batch a client can ask for */
+    static final int MAX_BATCH_SIZE = Integer.getInteger("arrow.maxBatchSize", 100000);
+
+    /** Max number of bytes allocated for the record batch of a single request */
+    static final long MAX_MEMORY = Long.getLong("arrow.maxMemory", 256 * 1024 * 1024);
+
+    private final BufferAllocator allocator = new RootAllocator();
+
+    public ArrowOutputFormat(GeoServer gs) {
+        super(gs, MIME_TYPE);
+    }
+
+    /** capabilities output format string. */
+    @Override
+    public String getCapabilitiesElementName() {
+        return "GeoArrow";
+    }
+
+    @Override
+    public String getMimeType(Object value, Operation operation) throws ServiceException {
+        return MIME_TYPE;
+    }
+
+    @Override
+    protected String getExtension(FeatureCollectionResponse response) {
+        return "arrows";
+    }
+
+    @Override
+    public String getPreferredDisposition(Object value, Operation operation) {
+        return DISPOSITION_ATTACH;
+    }
+
+    @Override
+    protected void write(
+            FeatureCollectionResponse featureCollection, OutputStream output, Operation operation)
+            throws IOException {
+        // a stream has a single schema
+        if (featureCollection.getFeatures().size() != 1) {
+            throw new ServiceException(
+                    "The GeoArrow output format supports a single feature type per request",
+                    ServiceException.INVALID_PARAMETER_VALUE,
+                    "typeNames");
+        }
+        FeatureCollection fc = featureCollection.getFeatures().get(0);
+        if (!(fc.getSchema() instanceof SimpleFeatureType)) {
+            throw new ServiceException(
+                    "The GeoArrow output format does not support complex features",
+                    ServiceException.INVALID_PARAMETER_VALUE,
+                    "outputFormat");
+        }
+
+        Map<String, ?> options = getFormatOptions(operation);
+        GeometryEncoding encoding = getGeometryEncoding(options);
+        int batchSize = getBatchSize(options);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(
+                    "Encoding GeoArrow with "
+                            + encoding
+                            + " geometries, "
+                            + batchSize
+                            + " features per batch");
+        }
+
+        // each request gets its own allocator, to track and release its memory independently
+        try (BufferAllocator requestAllocator =
+                allocator.newChildAllocator("wfs-arrow", 0, MAX_MEMORY)) {
+            new ArrowFeatureWriter(requestAllocator, encoding, batchSize)
+                    .write((SimpleFeatureCollection) fc, output);
+        } catch (OutOfMemoryException e) {
+            throw new ServiceException(
+                    "The GeoArrow record batch exceeded the "
+                            + MAX_MEMORY
+                            + " bytes memory limit, try with a smaller batch_size",
+                    e,
+                    ServiceException.NO_APPLICABLE_CODE,
+                    "format_options");
+        }
+    }
+
+    private Map<String, ?> getFormatOptions(Operation operation) {
+        GetFeatureRequest request = GetFeatureRequest.adapt(operation.getParameters()[0]);
+        return request != null ? request.getFormatOptions() : null;
+    }
+
+    private GeometryEncoding getGeometryEncoding(Map<String, ?> options) {
+        Object value = options != null ? options.get(GEOMETRY_ENCODING) : null;
+        if (value == null) {
+            return GeometryEncoding.WKB;
+        }
+        try {
+            return GeometryEncoding.valueOf(value.toString().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException(
+                    "Invalid geometry encoding "
+                            + value
+                            + ", supported values are "
+                            + ArrowFeatureWriter.getEncodings(),
+                    ServiceException.INVALID_PARAMETER_VALUE,
+                    "format_options");
+        }
+    }
+
+    private int getBatchSize(Map<String, ?> options) {
+        Object value = options != null ? options.get(BATCH_SIZE) : null;
+        if (value == null) {
+            return DEFAULT_BATCH_SIZE;
+        }
+        try {
+            int batchSize = Integer.parseInt(value.toString());
+            if (batchSize > 0 && batchSize <= MAX_BATCH_SIZE) {
+                return batchSize;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new ServiceException(
+                "Invalid batch size "
+                        + value
+                        + ", it should be a positive integer not greater than "
+                        + MAX_BATCH_SIZE,
+                ServiceException.INVALID_PARAMETER_VALUE,
+                "format_options");
+    }
+
+    @Override
+    public void destroy() {
+        allocator.close();
+    }
+}
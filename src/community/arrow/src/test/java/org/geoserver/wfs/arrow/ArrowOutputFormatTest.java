@@ -0,0 +1,231 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.arrow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.FixedSizeListVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.geoserver.wfs.WFSTestSupport;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.io.WKBReader;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.w3c.dom.Document;
+
+public class ArrowOutputFormatTest extends WFSTestSupport {
+
+    static final String GET_FEATURE =
+            "wfs?service=WFS&version=1.0.0&request=GetFeature&outputFormat="
+                    + ArrowOutputFormat.MIME_TYPE;
+
+    @Test
+    public void testWKB() throws Exception {
+        MockHttpServletResponse response =
+                getAsServletResponse(GET_FEATURE + "&typeName=cite:Buildings");
+        assertEquals(ArrowOutputFormat.MIME_TYPE, response.getContentType());
+
+        try (BufferAllocator allocator = new RootAllocator();
+                ArrowStreamReader reader =
+                        new ArrowStreamReader(
+                                new ByteArrayInputStream(response.getContentAsByteArray()),
+                                allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            Field geometry = root.getSchema().findField("the_geom");
+            assertEquals(
+                    "geoarrow.wkb", geometry.getMetadata().get(ArrowFeatureWriter.EXTENSION_NAME));
+            assertTrue(
+                    geometry.getMetadata()
+                            .get(ArrowFeatureWriter.EXTENSION_METADATA)
+                            .contains("EPSG:4326"));
+
+            List<String> addresses = new ArrayList<>();
+            while (reader.loadNextBatch()) {
+                VarBinaryVector geometries = (VarBinaryVector) root.getVector("the_geom");
+                VarCharVector address = (VarCharVector) root.getVector("ADDRESS");
+                for (int i = 0; i < root.getRowCount(); i++) {
+                    Geometry g = new WKBReader().read(geometries.get(i));
+                    assertTrue(g instanceof MultiPolygon);
+                    addresses.add(address.getObject(i).toString());
+                }
+            }
+            assertEquals(2, addresses.size());
+            assertTrue(addresses.contains("123 Main Street"));
+            assertTrue(addresses.contains("215 Main Street"));
+        }
+    }
+
+    @Test
+    public void testNativePoints() throws Exception {
+        MockHttpServletResponse response =
+                getAsServletResponse(
+                        GET_FEATURE
+                                + "&typeName=cgf:Points"
+                                + "&format_options=geometry_encoding:native;batch_size:1");
+
+        try (BufferAllocator allocator = new RootAllocator();
+                ArrowStreamReader reader =
+                        new ArrowStreamReader(
+                                new ByteArrayInputStream(response.getContentAsByteArray()),
+                                allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            assertTrue(reader.loadNextBatch());
+            assertEquals(1, root.getRowCount());
+
+            FixedSizeListVector points = (FixedSizeListVector) root.getVector("pointProperty");
+            assertEquals(
+                    "geoarrow.point",
+                    points.getField().getMetadata().get(ArrowFeatureWriter.EXTENSION_NAME));
+            Float8Vector xy = (Float8Vector) points.getDataVector();
+            assertEquals(500050, xy.get(0), 0d);
+            assertEquals(500050, xy.get(1), 0d);
+            assertEquals(500, ((IntVector) root.getVector("altitude")).get(0));
+
+            assertFalse(reader.loadNextBatch());
+        }
+    }
+
+    @Test
+    public void testNativeLines() throws Exception {
+        try (BufferAllocator allocator = new RootAllocator();
+                ArrowStreamReader reader =
+                        read(allocator, "cgf:Lines", "geometry_encoding:native")) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            assertTrue(reader.loadNextBatch());
+            assertEquals(1, root.getRowCount());
+
+            ListVector lines = (ListVector) root.getVector("lineStringProperty");
+            assertEquals(
+                    "geoarrow.linestring",
+                    lines.getField().getMetadata().get(ArrowFeatureWriter.EXTENSION_NAME));
+            assertEquals(
+                    Arrays.asList(vertex(500125, 500025), vertex(500175, 500075)),
+                    lines.getObject(0));
+        }
+    }
+
+    @Test
+    public void testNativePolygons() throws Exception {
+        try (BufferAllocator allocator = new RootAllocator();
+                ArrowStreamReader reader =
+                        read(allocator, "cgf:Polygons", "geometry_encoding:native")) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            assertTrue(reader.loadNextBatch());
+            assertEquals(1, root.getRowCount());
+
+            ListVector polygons = (ListVector) root.getVector("polygonProperty");
+            assertEquals(
+                    "geoarrow.polygon",
+                    polygons.getField().getMetadata().get(ArrowFeatureWriter.EXTENSION_NAME));
+            List<?> rings = polygons.getObject(0);
+            assertEquals(1, rings.size());
+            assertEquals(
+                    Arrays.asList(
+                            vertex(500225, 500025),
+                            vertex(500225, 500075),
+                            vertex(500275, 500050),
+                            vertex(500275, 500025),
+                            vertex(500225, 500025)),
+                    rings.get(0));
+        }
+    }
+
+    @Test
+    public void testNulls() throws Exception {
+        try (BufferAllocator allocator = new RootAllocator();
+                ArrowStreamReader reader =
+                        read(allocator, "sf:PrimitiveGeoFeature", "geometry_encoding:native")) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            int checked = 0;
+            while (reader.loadNextBatch()) {
+                FixedSizeListVector points = (FixedSizeListVector) root.getVector("pointProperty");
+                ListVector curves = (ListVector) root.getVector("curveProperty");
+                ListVector surfaces = (ListVector) root.getVector("surfaceProperty");
+                VarCharVector names = (VarCharVector) root.getVector("name");
+                BitVector booleans = (BitVector) root.getVector("booleanProperty");
+                IntVector ints = (IntVector) root.getVector("intProperty");
+                for (int i = 0; i < root.getRowCount(); i++) {
+                    if (ints.get(i) == 180) {
+                        // f003, a line only
+                        assertTrue(points.isNull(i));
+                        assertTrue(surfaces.isNull(i));
+                        assertEquals(3, curves.getObject(i).size());
+                        assertEquals("name-f003", names.getObject(i).toString());
+                        checked++;
+                    } else if (ints.get(i) == 300) {
+                        // f008, a polygon only
+                        assertTrue(points.isNull(i));
+                        assertTrue(curves.isNull(i));
+                        List<?> rings = surfaces.getObject(i);
+                        assertEquals(1, rings.size());
+                        assertEquals(4, ((List<?>) rings.get(0)).size());
+                        checked++;
+                    } else if (ints.get(i) == -900) {
+                        // f015, a point and null attributes
+                        assertFalse(points.isNull(i));
+                        assertTrue(curves.isNull(i));
+                        assertTrue(surfaces.isNull(i));
+                        assertTrue(names.isNull(i));
+                        assertTrue(booleans.isNull(i));
+                        checked++;
+                    }
+                }
+            }
+            assertEquals(3, checked);
+        }
+    }
+
+    @Test
+    public void testBatchSizeTooLarge() throws Exception {
+        Document dom =
+                getAsDOM(
+                        GET_FEATURE
+                                + "&typeName=cgf:Points"
+                                + "&format_options=batch_size:"
+                                + (ArrowOutputFormat.MAX_BATCH_SIZE + 1));
+        assertEquals("ServiceExceptionReport", dom.getDocumentElement().getNodeName());
+    }
+
+    @Test
+    public void testInvalidEncoding() throws Exception {
+        Document dom =
+                getAsDOM(
+                        GET_FEATURE
+                                + "&typeName=cgf:Points"
+                                + "&format_options=geometry_encoding:foo");
+        assertEquals("ServiceExceptionReport", dom.getDocumentElement().getNodeName());
+    }
+
+    private ArrowStreamReader read(BufferAllocator allocator, String typeName, String options)
+            throws Exception {
+        MockHttpServletResponse response =
+                getAsServletResponse(
+                        GET_FEATURE + "&typeName=" + typeName + "&format_options=" + options);
+        assertEquals(ArrowOutputFormat.MIME_TYPE, response.getContentType());
+        return new ArrowStreamReader(
+                new ByteArrayInputStream(response.getContentAsByteArray()), allocator);
+    }
+
+    private static List<Double> vertex(double x, double y) {
+        return Arrays.asList(x, y);
+    }
+}
@@ -22,7 +22,6 @@
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.mbtiles.MBTilesFile;
 import org.geotools.mbtiles.MBTilesMetadata;
-import org.geotools.mbtiles.MBTilesTile;
 import org.geotools.referencing.CRS;
 import org.geowebcache.grid.GridSubset;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -53,9 +52,11 @@ private static class MbTilesFileWrapper implements TilesFile {
 
         MBTilesFile mbTiles;
 
+        MBTilesTileWriter writer;
+
         public MbTilesFileWrapper() throws IOException {
             mbTiles = new MBTilesFile();
-            mbTiles.init();
+            MBTilesTileWriter.createSchema(mbTiles.getFile());
         }
 
         public MbTilesFileWrapper(MBTilesFile file) throws IOException {
@@ -108,9 +109,19 @@ public void setMetadata(
 
         @Override
         public void addTile(int zoom, int x, int y, byte[] data) throws IOException {
-            MBTilesTile tile = new MBTilesTile(zoom, x, y);
-            tile.setData(data);
-            mbTiles.saveTile(tile);
+            if (writer == null) {
+                writer = new MBTilesTileWriter(mbTiles.getFile());
+            }
+            writer.addTile(zoom, x, y, data);
+        }
+
+        /** Waits for the queued tiles to be written */
+        void flush() throws IOException {
+            if (writer != null) {
+                MBTilesTileWriter w = writer;
+                writer = null;
+                w.close();
+            }
         }
 
         @Override
@@ -120,7 +131,19 @@ public File getFile() {
 
         @Override
         public void close() {
-            mbTiles.close();
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new ServiceException(e);
+            } finally {
+                mbTiles.close();
+            }
+            try {
+                // only possible once the connections of the MBTilesFile are closed
+                MBTilesTileWriter.leaveWal(mbTiles.getFile());
+            } catch (IOException e) {
+                throw new ServiceException(e);
+            }
         }
     }
 
@@ -165,10 +188,42 @@ protected String getSRS(GetMapRequest req) {
         return "EPSG:900913";
     }
 
-    /** Add tiles to an existing MBtile file */
+    /**
+     * Creates the tables of a new MBTiles file, storing the identical tiles added by {@link
+     * #addTiles(MBTilesFile, GetMapRequest, String, ProgressListener)} only once
+     */
+    public static void createSchema(File file) throws IOException {
+        MBTilesTileWriter.createSchema(file);
+    }
+
+    /**
+     * Switches a file written by {@link #addTiles(MBTilesFile, GetMapRequest, String,
+     * ProgressListener)} back from the WAL journal mode, to be called once the {@link MBTilesFile}
+     * is closed
+     */
+    public static void leaveWal(File file) throws IOException {
+        MBTilesTileWriter.leaveWal(file);
+    }
+
+    /**
+     * Add tiles to an existing MBtile file. The file is left in WAL mode, see {@link
+     * #leaveWal(File)}
+     */
     public void addTiles(
             MBTilesFile mbtiles, GetMapRequest req, String name, ProgressListener listener)
             throws IOException {
-        addTiles(new MbTilesFileWrapper(mbtiles), req, name, listener);
+        MbTilesFileWrapper tiles = new MbTilesFileWrapper(mbtiles);
+        try {
+            addTiles(tiles, req, name, listener);
+        } catch (Throwable t) {
+            // stop the writer anyways, without hiding the rendering error
+            try {
+                tiles.flush();
+            } catch (IOException e) {
+                t.addSuppressed(e);
+            }
+            throw t;
+        }
+        tiles.flush();
     }
 }
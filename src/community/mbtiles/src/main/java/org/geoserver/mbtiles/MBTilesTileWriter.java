@@ -0,0 +1,330 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.mbtiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotools.util.logging.Logging;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Writes tiles to a MBTiles file on a dedicated thread, so that the tiles are stored while the next
+ * ones are rendered.
+ *
+ * <p>The tiles are inserted with prepared statements, in transactions of {@link #BATCH_SIZE} tiles,
+ * with the database in WAL mode. The writer thread takes the tiles from a queue holding at most
+ * {@link #QUEUE_SIZE} tiles, when full the producer waits for the writer to catch up.
+ *
+ * <p>Files created with {@link #createSchema(File)} store each distinct tile payload once, the
+ * {@code tiles} view joining the {@code map} of tile positions to the {@code images} identified by
+ * their content hash. This saves space and time when many tiles are the same, e.g. empty sea tiles.
+ * Files having a plain {@code tiles} table get a row per tile. When tiles are added to a file
+ * already holding some, the images no longer referenced by the map are deleted at the end.
+ *
+ * <p>The file is left in WAL mode, call {@link #leaveWal(File)} once all the other connections to
+ * it, such as the ones of a {@code MBTilesFile} used to save the metadata, are closed.
+ */
+class MBTilesTileWriter {
+
+    static final Logger LOGGER = Logging.getLogger(MBTilesTileWriter.class);
+
+    /** Number of tiles inserted in a single transaction */
+    static final int BATCH_SIZE = Integer.getInteger("mbtiles.writer.batchSize", 1000);
+
+    /** Max number of tiles waiting to be written */
+    static final int QUEUE_SIZE = Integer.getInteger("mbtiles.writer.queueSize", 100);
+
+    /** Number of recent tile hashes remembered, to avoid sending their payload again */
+    static final int HASH_CACHE_SIZE = 10000;
+
+    private static final Tile END = new Tile(0, 0, 0, null);
+
+    private final File file;
+
+    private final int batchSize;
+
+    private final BlockingQueue<Tile> queue;
+
+    private final Thread thread;
+
+    private volatile Exception failure;
+
+    private long tiles;
+
+    private long images;
+
+    MBTilesTileWriter(File file) {
+        this(file, BATCH_SIZE, QUEUE_SIZE);
+    }
+
+    MBTilesTileWriter(File file, int batchSize, int queueSize) {
+        this.file = file;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.thread = new Thread(this::run, "mbtiles-writer-" + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates the MBTiles tables, storing the distinct tile payloads once, unless the file already
+     * has a {@code tiles} table or view
+     */
+    static void createSchema(File file) throws IOException {
+        try (Connection cx = connect(file, new SQLiteConfig());
+                Statement st = cx.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS metadata (name TEXT, value TEXT)");
+            st.execute("CREATE UNIQUE INDEX IF NOT EXISTS name ON metadata (name)");
+            if (hasTilesTable(cx) != null) {
+                return;
+            }
+            st.execute(
+                    "CREATE TABLE map (zoom_level INTEGER, tile_column INTEGER, "
+                            + "tile_row INTEGER, tile_id TEXT)");
+            st.execute("CREATE UNIQUE INDEX map_index ON map (zoom_level, tile_column, tile_row)");
+            st.execute("CREATE TABLE images (tile_data BLOB, tile_id TEXT)");
+            st.execute("CREATE UNIQUE INDEX images_id ON images (tile_id)");
+            st.execute(
+                    "CREATE VIEW tiles AS SELECT map.zoom_level AS zoom_level, "
+                            + "map.tile_column AS tile_column, map.tile_row AS tile_row, "
+                            + "images.tile_data AS tile_data "
+                            + "FROM map JOIN images ON images.tile_id = map.tile_id");
+        } catch (SQLException e) {
+            throw new IOException("Failed to create the MBTiles schema in " + file, e);
+        }
+    }
+
+    /** Returns true if tiles is a table, false if it is a view, null if it does not exist */
+    private static Boolean hasTilesTable(Connection cx) throws SQLException {
+        try (Statement st = cx.createStatement();
+                ResultSet rs =
+                        st.executeQuery("SELECT type FROM sqlite_master WHERE name = 'tiles'")) {
+            return rs.next() ? "table".equalsIgnoreCase(rs.getString(1)) : null;
+        }
+    }
+
+    private static Connection connect(File file, SQLiteConfig config) throws SQLException {
+        return DriverManager.getConnection(
+                "jdbc:sqlite:" + file.getAbsolutePath(), config.toProperties());
+    }
+
+    /**
+     * Queues a tile for writing, waiting if the queue is full
+     *
+     * @throws IOException if the writer failed to write the previous tiles
+     */
+    void addTile(int zoom, int x, int y, byte[] data) throws IOException {
+        Tile tile = new Tile(zoom, x, y, data);
+        try {
+            while (!queue.offer(tile, 1, TimeUnit.SECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queuing the tile", e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Waits for all the queued tiles to be written and committed, and stops the writer thread
+     *
+     * @throws IOException if the writer failed to write some tile
+     */
+    void close() throws IOException {
+        try {
+            while (thread.isAlive() && !queue.offer(END, 1, TimeUnit.SECONDS)) {
+                checkFailure();
+            }
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the tiles", e);
+        }
+        checkFailure();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Wrote " + tiles + " tiles, " + images + " distinct ones, to " + file);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Failed to write the tiles to " + file, failure);
+        }
+    }
+
+    private void run() {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        try (Connection cx = connect(file, config)) {
+            cx.setAutoCommit(false);
+            if (Boolean.FALSE.equals(hasTilesTable(cx))) {
+                writeDeduplicated(cx);
+            } else {
+                writePlain(cx);
+            }
+            cx.commit();
+        } catch (Exception e) {
+            failure = e;
+            queue.clear();
+        }
+    }
+
+    /**
+     * Switches the database back to a rollback journal, so that it is a self contained file again.
+     * SQLite keeps the WAL mode, without complaining, if another connection has the file open: in
+     * that case the WAL content is checkpointed into the database file, failing if that is not
+     * possible either.
+     */
+    static void leaveWal(File file) throws IOException {
+        try (Connection cx = connect(file, new SQLiteConfig());
+                Statement st = cx.createStatement()) {
+            String mode;
+            try (ResultSet rs = st.executeQuery("PRAGMA journal_mode=DELETE")) {
+                mode = rs.next() ? rs.getString(1) : null;
+            }
+            if ("delete".equalsIgnoreCase(mode)) {
+                return;
+            }
+            try (ResultSet rs = st.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)")) {
+                // the first column is 1 if the checkpoint could not complete
+                if (!rs.next() || rs.getInt(1) != 0) {
+                    throw new IOException(
+                            "Could not leave the "
+                                    + mode
+                                    + " journal mode of "
+                                    + file
+                                    + ", nor checkpoint");
+                }
+            }
+            LOGGER.warning(
+                    file + " is still in " + mode + " journal mode, the tiles are checkpointed");
+        } catch (SQLException e) {
+            throw new IOException("Failed to leave the WAL mode of " + file, e);
+        }
+    }
+
+    private void writePlain(Connection cx) throws Exception {
+        try (PreparedStatement ps =
+                cx.prepareStatement(
+                        "INSERT OR REPLACE INTO tiles (zoom_level, tile_column, tile_row, "
+                                + "tile_data) VALUES (?, ?, ?, ?)")) {
+            for (Tile tile = queue.take(); tile != END; tile = queue.take()) {
+                ps.setInt(1, tile.zoom);
+                ps.setInt(2, tile.x);
+                ps.setInt(3, tile.y);
+                ps.setBytes(4, tile.data);
+                ps.executeUpdate();
+                images++;
+                written(cx);
+            }
+        }
+    }
+
+    private void writeDeduplicated(Connection cx) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        Set<String> recent =
+                Collections.newSetFromMap(
+                        new LinkedHashMap<String, Boolean>() {
+                            @Override
+                            protected boolean removeEldestEntry(Map.Entry<String, Boolean> e) {
+                                return size() > HASH_CACHE_SIZE;
+                            }
+                        });
+        try (PreparedStatement image =
+                        cx.prepareStatement(
+                                "INSERT OR IGNORE INTO images (tile_data, tile_id) VALUES (?, ?)");
+                PreparedStatement map =
+                        cx.prepareStatement(
+                                "INSERT OR REPLACE INTO map (zoom_level, tile_column, tile_row, "
+                                        + "tile_id) VALUES (?, ?, ?, ?)")) {
+            boolean replacing = hasRows(cx, "map");
+            for (Tile tile = queue.take(); tile != END; tile = queue.take()) {
+                String id = toHex(digest.digest(tile.data));
+                // the images table ignores duplicates anyways, just avoid binding large payloads
+                if (recent.add(id)) {
+                    image.setBytes(1, tile.data);
+                    image.setString(2, id);
+                    images += image.executeUpdate();
+                }
+                map.setInt(1, tile.zoom);
+                map.setInt(2, tile.x);
+                map.setInt(3, tile.y);
+                map.setString(4, id);
+                map.executeUpdate();
+                written(cx);
+            }
+        }
+        if (replacing) {
+            // replaced tiles may have left images nobody points to anymore
+            try (Statement st = cx.createStatement()) {
+                int orphans =
+                        st.executeUpdate(
+                                "DELETE FROM images WHERE tile_id NOT IN "
+                                        + "(SELECT tile_id FROM map)");
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Deleted " + orphans + " unreferenced images from " + file);
+                }
+            }
+        }
+    }
+
+    private static boolean hasRows(Connection cx, String table) throws SQLException {
+        try (Statement st = cx.createStatement();
+                ResultSet rs = st.executeQuery("SELECT EXISTS (SELECT 1 FROM " + table + ")")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private void written(Connection cx) throws SQLException {
+        if (++tiles % batchSize == 0) {
+            cx.commit();
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static class Tile {
+
+        final int zoom;
+
+        final int x;
+
+        final int y;
+
+        final byte[] data;
+
+        Tile(int zoom, int x, int y, byte[] data) {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+            this.data = data;
+        }
+    }
+}
@@ -174,8 +174,8 @@ public URL execute(
         MBTilesFile mbtile = new MBTilesFile(file, true);
         try {
             // Initialize the MBTile file in order to avoid exceptions when accessing the geoPackage
-            // file
-            mbtile.init();
+            // file, storing the duplicate tiles once
+            MBTilesGetMapOutputFormat.createSchema(file);
 
             // Create the GetMap request to use
             GetMapRequest request = new GetMapRequest();
@@ -320,6 +320,12 @@ public URL execute(
                 }
             }
         }
+        try {
+            // the tiles file is closed, no other connection prevents leaving the WAL mode
+            MBTilesGetMapOutputFormat.leaveWal(file);
+        } catch (IOException e) {
+            throw new ProcessException(e);
+        }
 
         return new URL(resources.getOutputResourceUrl(outputResourceName, "application/x-mbtiles"));
     }
@@ -0,0 +1,139 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.mbtiles;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import org.geotools.mbtiles.MBTilesFile;
+import org.geotools.mbtiles.MBTilesMetadata;
+import org.geotools.mbtiles.MBTilesTile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MBTilesTileWriterTest {
+
+    static final byte[] EMPTY = {1, 2, 3};
+
+    static final byte[] LAND = {4, 5, 6, 7};
+
+    @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testDeduplicated() throws Exception {
+        File file = temp.newFile("dedup.mbtiles");
+        MBTilesTileWriter.createSchema(file);
+
+        writeTiles(file);
+
+        assertTiles(file);
+        // the empty tile is stored once, the database is not left in WAL mode
+        assertEquals(2, count(file, "SELECT count(*) FROM images"));
+        assertEquals("delete", query(file, "PRAGMA journal_mode"));
+        assertFalse(new File(file.getPath() + "-wal").exists());
+    }
+
+    @Test
+    public void testReplacedImagesDeleted() throws Exception {
+        File file = temp.newFile("replace.mbtiles");
+        MBTilesTileWriter.createSchema(file);
+        writeTiles(file);
+
+        // the only land tile turns into sea, its image is not referenced anymore
+        MBTilesTileWriter writer = new MBTilesTileWriter(file, 2, 1);
+        writer.addTile(1, 1, 0, EMPTY);
+        writer.close();
+        MBTilesTileWriter.leaveWal(file);
+
+        assertEquals(3, count(file, "SELECT count(*) FROM map"));
+        assertEquals(1, count(file, "SELECT count(*) FROM images"));
+        assertEquals("delete", query(file, "PRAGMA journal_mode"));
+    }
+
+    @Test
+    public void testMetadataConnectionOpen() throws Exception {
+        File file = temp.newFile("metadata.mbtiles");
+        MBTilesTileWriter.createSchema(file);
+        // as in the output format, the metadata is saved first, its connection stays pooled
+        MBTilesFile mbtiles = new MBTilesFile(file);
+        MBTilesMetadata metadata = new MBTilesMetadata();
+        metadata.setName("test");
+        mbtiles.saveMetaData(metadata);
+        MBTilesTileWriter writer = new MBTilesTileWriter(file, 2, 1);
+        writer.addTile(1, 0, 0, EMPTY);
+        writer.addTile(1, 1, 0, LAND);
+        writer.addTile(1, 0, 1, EMPTY);
+        writer.close();
+        mbtiles.close();
+
+        MBTilesTileWriter.leaveWal(file);
+
+        assertTiles(file);
+        assertEquals("test", query(file, "SELECT value FROM metadata WHERE name = 'name'"));
+        assertEquals("delete", query(file, "PRAGMA journal_mode"));
+        assertFalse(new File(file.getPath() + "-wal").exists());
+    }
+
+    @Test
+    public void testPlainTable() throws Exception {
+        File file = temp.newFile("plain.mbtiles");
+        MBTilesFile mbtiles = new MBTilesFile(file);
+        mbtiles.init();
+        mbtiles.close();
+
+        writeTiles(file);
+
+        assertTiles(file);
+    }
+
+    private void writeTiles(File file) throws Exception {
+        // small batches, to get multiple transactions
+        MBTilesTileWriter writer = new MBTilesTileWriter(file, 2, 1);
+        writer.addTile(1, 0, 0, EMPTY);
+        writer.addTile(1, 1, 0, LAND);
+        writer.addTile(1, 0, 1, EMPTY);
+        writer.close();
+        MBTilesTileWriter.leaveWal(file);
+    }
+
+    private void assertTiles(File file) throws Exception {
+        MBTilesFile mbtiles = new MBTilesFile(file);
+        try {
+            assertEquals(3, mbtiles.numberOfTiles());
+            MBTilesFile.TileIterator tiles = mbtiles.tiles();
+            int count = 0;
+            while (tiles.hasNext()) {
+                MBTilesTile tile = tiles.next();
+                byte[] expected = tile.getTileColumn() == 1 ? LAND : EMPTY;
+                assertArrayEquals(expected, tile.getData());
+                count++;
+            }
+            tiles.close();
+            assertEquals(3, count);
+        } finally {
+            mbtiles.close();
+        }
+    }
+
+    private long count(File file, String sql) throws Exception {
+        return Long.parseLong(query(file, sql));
+    }
+
+    private String query(File file, String sql) throws Exception {
+        try (Connection cx = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+                Statement st = cx.createStatement();
+                ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
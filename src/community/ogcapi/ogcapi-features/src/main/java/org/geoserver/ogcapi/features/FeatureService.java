@@ -66,6 +66,7 @@
 import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.expression.Literal;
 import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -296,6 +297,8 @@ public FeaturesResponse item(
                 null,
                 null,
                 null,
+                null,
+                null,
                 itemId);
     }
 
@@ -314,6 +317,8 @@ public FeaturesResponse items(
             @RequestParam(name = "filter-lang", required = false) String filterLanguage,
             @RequestParam(name = "filter-crs", required = false) String filterCRS,
             @RequestParam(name = "crs", required = false) String crs,
+            @RequestParam(name = "sortby", required = false) SortBy[] sortBy,
+            @RequestParam(name = "cursor", required = false) String cursor,
             String itemId)
             throws Exception {
         // build the request in a way core WFS machinery can understand it
@@ -347,6 +352,9 @@ public FeaturesResponse items(
         } else {
             query.setSrsName(new URI("EPSG:4326"));
         }
+        if (sortBy != null) {
+            query.getSortBy().addAll(Arrays.asList(sortBy));
+        }
         request.setStartIndex(startIndex);
         request.setMaxFeatures(limit);
         request.setBaseUrl(APIRequestInfo.get().getBaseURL());
@@ -354,6 +362,7 @@ public FeaturesResponse items(
 
         // run it
         FeaturesGetFeature gf = new FeaturesGetFeature(getService(), getCatalog());
+        gf.setCursor(cursor);
         gf.setFilterFactory(FF);
         gf.setStoredQueryProvider(getStoredQueryProvider());
         FeatureCollectionResponse response = gf.run(request);
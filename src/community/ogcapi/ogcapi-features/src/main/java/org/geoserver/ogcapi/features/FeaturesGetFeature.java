@@ -15,6 +15,7 @@
 import org.geoserver.ogcapi.APIRequestInfo;
 import org.geoserver.ows.URLMangler.URLType;
 import org.geoserver.ows.util.ResponseUtils;
+import org.geoserver.wfs.PagingCursor;
 import org.geoserver.wfs.WFSInfo;
 import org.geoserver.wfs.request.FeatureCollectionResponse;
 import org.geoserver.wfs.request.GetFeatureRequest;
@@ -26,10 +27,22 @@ public class FeaturesGetFeature extends org.geoserver.wfs.GetFeature {
 
     static final Logger LOGGER = Logging.getLogger(FeaturesGetFeature.class);
 
+    private String cursor;
+
     public FeaturesGetFeature(WFSInfo wfs, Catalog catalog) {
         super(wfs, catalog);
     }
 
+    /** Sets the paging cursor provided by the client, if any */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    protected String getCursorToken(GetFeatureRequest request) {
+        return cursor;
+    }
+
     @Override
     protected void buildPrevNextLinks(
             GetFeatureRequest request,
@@ -38,30 +51,10 @@ protected void buildPrevNextLinks(
             int count,
             FeatureCollectionResponse result,
             Map<String, String> kvp) {
-        // can we build the links?
-        List<Query> queries = request.getQueries();
-        if (queries == null
-                || queries.size() != 1
-                || queries.get(0).getTypeNames() == null
-                || queries.get(0).getTypeNames().size() != 1) {
-            LOGGER.log(
-                    Level.INFO,
-                    "Cannot build prev/next links, the the target typename is not known (or multiple type names available)");
+        String itemsPath = getItemsPath(request);
+        if (itemsPath == null) {
             return;
         }
-        QName typeName = queries.get(0).getTypeNames().get(0);
-        FeatureTypeInfo typeInfo =
-                getCatalog()
-                        .getFeatureTypeByName(typeName.getNamespaceURI(), typeName.getLocalPart());
-        if (typeInfo == null) {
-            LOGGER.log(
-                    Level.INFO,
-                    "Cannot build prev/next links, the the target typename was not found: "
-                            + typeName);
-            return;
-        }
-        String collectionName = typeInfo.prefixedName();
-        String itemsPath = getItemsPath(collectionName);
 
         // in OGC API params are normally lowercase (and are case sensitive)...
         // TODO: we might need a list of parameters and their "normalized case" for Features, we'll
@@ -86,6 +79,51 @@ protected void buildPrevNextLinks(
         }
     }
 
+    @Override
+    protected void buildCursorLinks(
+            GetFeatureRequest request,
+            int maxFeatures,
+            PagingCursor next,
+            FeatureCollectionResponse result,
+            Map<String, String> kvp) {
+        String itemsPath = getItemsPath(request);
+        if (itemsPath == null) {
+            return;
+        }
+        kvp = APIRequestInfo.get().getSimpleQueryMap();
+        kvp.remove("startIndex");
+        kvp.put("cursor", next.encode());
+        kvp.put("limit", String.valueOf(maxFeatures));
+        result.setNext(buildURL(itemsPath, kvp));
+    }
+
+    /** Returns the items path of the requested collection, or null if it cannot be determined */
+    private String getItemsPath(GetFeatureRequest request) {
+        // can we build the links?
+        List<Query> queries = request.getQueries();
+        if (queries == null
+                || queries.size() != 1
+                || queries.get(0).getTypeNames() == null
+                || queries.get(0).getTypeNames().size() != 1) {
+            LOGGER.log(
+                    Level.INFO,
+                    "Cannot build prev/next links, the the target typename is not known (or multiple type names available)");
+            return null;
+        }
+        QName typeName = queries.get(0).getTypeNames().get(0);
+        FeatureTypeInfo typeInfo =
+                getCatalog()
+                        .getFeatureTypeByName(typeName.getNamespaceURI(), typeName.getLocalPart());
+        if (typeInfo == null) {
+            LOGGER.log(
+                    Level.INFO,
+                    "Cannot build prev/next links, the the target typename was not found: "
+                            + typeName);
+            return null;
+        }
+        return getItemsPath(typeInfo.prefixedName());
+    }
+
     protected String getItemsPath(String collectionName) {
         return "ogc/features/collections/" + ResponseUtils.urlEncode(collectionName) + "/items";
     }
@@ -14,12 +14,16 @@
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import com.jayway.jsonpath.DocumentContext;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import net.minidev.json.JSONArray;
@@ -27,6 +31,7 @@
 import org.geoserver.data.test.MockData;
 import org.geoserver.ows.util.KvpUtils;
 import org.geoserver.ows.util.ResponseUtils;
+import org.geoserver.wfs.GetFeature;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
@@ -514,6 +519,46 @@ public void testLastPage() throws Exception {
         assertThat(json.read("$.links[?(@.rel=='next')].href"), Matchers.empty());
     }
 
+    @Test
+    public void testCursorPaging() throws Exception {
+        boolean keysetPaging = GetFeature.isKeysetPaging();
+        GetFeature.setKeysetPaging(true);
+        try {
+            String roadSegments = getLayerId(MockData.ROAD_SEGMENTS);
+            String request =
+                    "ogc/features/collections/" + roadSegments + "/items?limit=2&sortby=-NAME";
+            List<String> fids = new ArrayList<>();
+            while (request != null) {
+                DocumentContext json = getAsJSONPath(request, 200);
+                List<String> pageFids = json.read("features[*].properties.FID");
+                fids.addAll(pageFids);
+                JSONArray next = json.read("$.links[?(@.rel=='next')].href", JSONArray.class);
+                if (next.isEmpty()) {
+                    request = null;
+                } else {
+                    String href = (String) next.get(0);
+                    assertTrue(href, href.contains("cursor="));
+                    assertTrue(href, href.contains("sortby=-NAME"));
+                    assertFalse(href, href.contains("startIndex"));
+                    request = href.substring(href.indexOf("ogc/features"));
+                }
+                assertTrue("Too many pages: " + fids, fids.size() <= 5);
+            }
+            assertEquals(Arrays.asList("102", "103", "104", "105", "106"), fids);
+
+            // invalid cursors are reported
+            DocumentContext json =
+                    getAsJSONPath(
+                            "ogc/features/collections/"
+                                    + roadSegments
+                                    + "/items?limit=2&sortby=NAME&cursor=abcd",
+                            400);
+            assertEquals("InvalidParameterValue", json.read("code"));
+        } finally {
+            GetFeature.setKeysetPaging(keysetPaging);
+        }
+    }
+
     @Test
     public void testErrorHandling() throws Exception {
         String roadSegments = getLayerId(MockData.ROAD_SEGMENTS);
@@ -4,12 +4,66 @@
  */
 package org.geoserver.flow;
 
+import java.util.List;
+import java.util.Optional;
+import org.geoserver.flow.controller.AdaptiveThreadBlocker;
+import org.geoserver.flow.controller.SingleQueueFlowController;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ModuleStatusImpl;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 
-// TODO Auto-generated constructor stub
+/** Module status for control-flow, reports the live limits of the adaptive queues, if any */
+public class ControlModuleStatus extends ModuleStatusImpl implements ApplicationContextAware {
+
+    ApplicationContext applicationContext;
 
-public class ControlModuleStatus extends ModuleStatusImpl {
     public ControlModuleStatus() {
         super("gs-control-flow", "Flow of Control Extension");
     }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public Optional<String> getMessage() {
+        ControlFlowCallback callback =
+                GeoServerExtensions.bean(ControlFlowCallback.class, applicationContext);
+        if (callback == null || !(callback.provider instanceof DefaultFlowControllerProvider)) {
+            return super.getMessage();
+        }
+
+        List<FlowController> controllers =
+                ((DefaultFlowControllerProvider) callback.provider).controllers;
+        StringBuilder sb = new StringBuilder();
+        sb.append("Running requests: ")
+                .append(callback.getRunningRequests())
+                .append(", blocked requests: ")
+                .append(callback.getBlockedRequests());
+        for (FlowController controller : controllers) {
+            if (controller instanceof SingleQueueFlowController) {
+                SingleQueueFlowController queue = (SingleQueueFlowController) controller;
+                if (queue.getBlocker() instanceof AdaptiveThreadBlocker) {
+                    AdaptiveThreadBlocker blocker = (AdaptiveThreadBlocker) queue.getBlocker();
+                    sb.append("\n")
+                            .append(queue.getMatcher())
+                            .append(": ")
+                            .append(blocker.getLimit())
+                            .append(" concurrent requests allowed (")
+                            .append(blocker.getMinLimit())
+                            .append(" to ")
+                            .append(blocker.getMaxLimit())
+                            .append("), ")
+                            .append(blocker.getRunningRequestsCount())
+                            .append(" running, ")
+                            .append(String.format("%.1f", blocker.getRecentLatency()))
+                            .append("ms average latency");
+                }
+            }
+        }
+        return Optional.of(sb.toString());
+    }
 }
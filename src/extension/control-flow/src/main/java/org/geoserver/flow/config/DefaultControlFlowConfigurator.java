@@ -18,6 +18,7 @@
 import org.geoserver.config.GeoServerPluginConfigurator;
 import org.geoserver.flow.ControlFlowConfigurator;
 import org.geoserver.flow.FlowController;
+import org.geoserver.flow.controller.AdaptiveThreadBlocker;
 import org.geoserver.flow.controller.BasicOWSController;
 import org.geoserver.flow.controller.CookieKeyGenerator;
 import org.geoserver.flow.controller.GlobalFlowController;
@@ -50,7 +51,11 @@
  */
 public class DefaultControlFlowConfigurator
         implements ControlFlowConfigurator, GeoServerPluginConfigurator {
-    static final Pattern RATE_PATTERN = Pattern.compile("(\\d+)/([smhd])(;(\\d+)s)?");
+    static final Pattern RATE_PATTERN =
+            Pattern.compile("(\\d+)/([smhd])(;(\\d+)s)?(;burst=(\\d+))?");
+
+    /** Suffix of OWS queue rules whose concurrency limit adapts to the observed latency */
+    static final String ADAPTIVE_SUFFIX = ";adaptive";
 
     static final Logger LOGGER = Logging.getLogger(DefaultControlFlowConfigurator.class);
     static final String PROPERTYFILENAME = "controlflow.properties";
@@ -65,7 +70,8 @@ public FlowController build(String[] keys, String value) {
             Matcher matcher = RATE_PATTERN.matcher(value);
             if (!matcher.matches()) {
                 LOGGER.severe(
-                        "Rate limiting rule values should be expressed as <rate</<unit>[;<delay>s], "
+                        "Rate limiting rule values should be expressed as "
+                                + "<rate</<unit>[;<delay>s][;burst=<burst>], "
                                 + "where unit can be s, m, h or d. This one is invalid: "
                                 + value);
                 return null;
@@ -77,13 +83,25 @@ public FlowController build(String[] keys, String value) {
             if (userDelay != null) {
                 delay = Integer.parseInt(userDelay) * 1000;
             }
+            int burst = rate;
+            String userBurst = matcher.group(6);
+            if (userBurst != null) {
+                burst = Integer.parseInt(userBurst);
+            }
+            if (rate <= 0 || burst <= 0) {
+                LOGGER.severe(
+                        "Rate limiting rule rate and burst should be positive. This one is invalid: "
+                                + value);
+                return null;
+            }
 
             String service = keys.length >= 3 ? keys[2] : null;
             String request = keys.length >= 4 ? keys[3] : null;
             String format = keys.length >= 5 ? keys[4] : null;
             OWSRequestMatcher requestMatcher = new OWSRequestMatcher(service, request, format);
             KeyGenerator keyGenerator = buildKeyGenerator(keys, value);
-            return new RateFlowController(requestMatcher, rate, interval, delay, keyGenerator);
+            return new RateFlowController(
+                    requestMatcher, rate, interval, delay, burst, keyGenerator);
         }
 
         protected abstract KeyGenerator buildKeyGenerator(String[] keys, String value);
@@ -119,8 +137,18 @@ public List<FlowController> buildFlowControllers() throws Exception {
 
             String[] keys = key.split("\\s*\\.\\s*");
 
+            // OWS queues can have an adaptive limit, using the queue size as the maximum
+            boolean adaptive = false;
+            String queueValue = value;
+            String trimmed = value.trim();
+            if ("ows".equals(keys[0]) && trimmed.endsWith(ADAPTIVE_SUFFIX)) {
+                adaptive = true;
+                int end = trimmed.length() - ADAPTIVE_SUFFIX.length();
+                queueValue = trimmed.substring(0, end).trim();
+            }
+
             int queueSize = 0;
-            StringTokenizer tokenizer = new StringTokenizer(value, ",");
+            StringTokenizer tokenizer = new StringTokenizer(queueValue, ",");
             try {
                 // some properties are not integers
                 if ("ip.blacklist".equals(key)
@@ -130,7 +158,7 @@ public List<FlowController> buildFlowControllers() throws Exception {
                 } else {
                     if (!key.startsWith("user.ows") && !key.startsWith("ip.ows")) {
                         if (tokenizer.countTokens() == 1) {
-                            queueSize = Integer.parseInt(value);
+                            queueSize = Integer.parseInt(queueValue);
                         } else {
                             queueSize = Integer.parseInt(tokenizer.nextToken());
                         }
@@ -153,10 +181,10 @@ public List<FlowController> buildFlowControllers() throws Exception {
             if ("ows.global".equalsIgnoreCase(key)) {
                 controller =
                         new GlobalFlowController(
-                                queueSize, buildBlocker(queueSize, priorityProvider));
+                                queueSize, buildBlocker(queueSize, priorityProvider, adaptive));
             } else if ("ows".equals(keys[0])) {
                 // todo: check, if possible, if the service, method and output format actually exist
-                ThreadBlocker threadBlocker = buildBlocker(queueSize, priorityProvider);
+                ThreadBlocker threadBlocker = buildBlocker(queueSize, priorityProvider, adaptive);
                 if (keys.length >= 4) {
                     controller =
                             new BasicOWSController(
@@ -256,10 +284,20 @@ private PriorityProvider getPriorityProvider(Properties p) {
      * @param queueSize The count of concurrent requests allowed to run
      * @param priorityProvider The priority provider (if not null, a {@link
      *     org.geoserver.flow.controller.PriorityThreadBlocker} will be built
+     * @param adaptive If true, an {@link AdaptiveThreadBlocker} will be built, using the queue size
+     *     as the maximum limit
      * @return a {@link ThreadBlocker}
      */
-    private ThreadBlocker buildBlocker(int queueSize, PriorityProvider priorityProvider) {
-        if (priorityProvider != null) {
+    private ThreadBlocker buildBlocker(
+            int queueSize, PriorityProvider priorityProvider, boolean adaptive) {
+        if (adaptive) {
+            if (priorityProvider != null) {
+                LOGGER.warning(
+                        "Adaptive queues do not support priorities, "
+                                + "requests will be executed in arrival order");
+            }
+            return new AdaptiveThreadBlocker(1, queueSize);
+        } else if (priorityProvider != null) {
             return new PriorityThreadBlocker(queueSize, priorityProvider);
         } else {
             return new SimpleThreadBlocker(queueSize);
@@ -0,0 +1,217 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.ows.Request;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A blocker whose concurrency limit is not fixed, but adapts to the observed request latency, using
+ * a gradient algorithm similar to TCP Vegas congestion control: the limit is scaled by the ratio
+ * between the long term (baseline) latency and the short term one, so that it grows as long as the
+ * requests complete as fast as usual, and shrinks as soon as they start queuing up in the JVM,
+ * e.g., during a GetMap spike. Requests timing out while waiting cause a multiplicative decrease of
+ * the limit as well.
+ *
+ * <p>The limit is kept between {@code minLimit} and {@code maxLimit}, the latter being the queue
+ * size configured for the rule. Like the {@link SimpleThreadBlocker}, waiting requests are released
+ * in arrival order.
+ */
+public class AdaptiveThreadBlocker implements ThreadBlocker {
+
+    static final Logger LOGGER = Logging.getLogger(AdaptiveThreadBlocker.class);
+
+    /** Smoothing of the short term latency average, follows the last few tens of requests */
+    static final double SHORT_SMOOTHING = 0.1;
+
+    /** Smoothing of the long term latency average, follows the last few hundreds of requests */
+    static final double LONG_SMOOTHING = 0.01;
+
+    /** How fast the limit moves towards the newly estimated one */
+    static final double LIMIT_SMOOTHING = 0.2;
+
+    /** Multiplicative decrease applied when a request times out waiting for execution */
+    static final double BACKOFF_RATIO = 0.9;
+
+    /** Start time (nanoseconds) of the requests that made it through the blocker */
+    Map<Request, Long> running = new ConcurrentHashMap<>();
+
+    final int minLimit;
+
+    final int maxLimit;
+
+    /** The current limit, guarded by this */
+    double limit;
+
+    /** Short term average latency in nanoseconds, guarded by this */
+    double shortRtt;
+
+    /** Long term average latency in nanoseconds, guarded by this */
+    double longRtt;
+
+    /** Number of requests that passed the blocker and did not complete yet, guarded by this */
+    int inFlight;
+
+    /** The tickets of the waiting requests, in arrival order, guarded by this */
+    final Deque<Object> waiting = new ArrayDeque<>();
+
+    public AdaptiveThreadBlocker(int minLimit, int maxLimit) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException(
+                    "Invalid limits, expected 0 < minLimit <= maxLimit, but got "
+                            + minLimit
+                            + " and "
+                            + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        // start in the middle, the limit will quickly converge to the sustainable one
+        this.limit = Math.max(minLimit, (maxLimit + 1) / 2);
+    }
+
+    @Override
+    public boolean requestIncoming(Request request, long timeout) throws InterruptedException {
+        synchronized (this) {
+            if (waiting.isEmpty() && inFlight < getLimit()) {
+                inFlight++;
+            } else if (!await(timeout)) {
+                return false;
+            }
+        }
+        running.put(request, System.nanoTime());
+        return true;
+    }
+
+    /**
+     * Queues up the current request, waiting for it to be the first in line with a free slot.
+     * Returns false if the timeout expired before.
+     */
+    private boolean await(long timeout) throws InterruptedException {
+        assert Thread.holdsLock(this);
+
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : -1;
+        Object ticket = new Object();
+        waiting.add(ticket);
+        try {
+            while (waiting.peek() != ticket || inFlight >= getLimit()) {
+                if (deadline < 0) {
+                    wait();
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        backoff();
+                        return false;
+                    }
+                    wait(remaining);
+                }
+            }
+            inFlight++;
+            return true;
+        } finally {
+            waiting.remove(ticket);
+            // the next one in line might be able to go as well
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void requestComplete(Request request) {
+        // only requests that actually passed the blocker are tracked, timed out ones
+        // will get a requestComplete call anyways
+        Long start = running.remove(request);
+        if (start == null) {
+            return;
+        }
+        long rtt = System.nanoTime() - start;
+        synchronized (this) {
+            inFlight--;
+            update(rtt);
+            // only the first in line can go, and any of them could be waiting
+            notifyAll();
+        }
+    }
+
+    /** Updates the latency averages and the limit with a new latency sample */
+    void update(long rtt) {
+        assert Thread.holdsLock(this);
+
+        // ignore zero sample durations, they would make the gradient explode
+        rtt = Math.max(rtt, 1);
+        if (longRtt == 0) {
+            shortRtt = longRtt = rtt;
+            return;
+        }
+        shortRtt = shortRtt * (1 - SHORT_SMOOTHING) + rtt * SHORT_SMOOTHING;
+        longRtt = longRtt * (1 - LONG_SMOOTHING) + rtt * LONG_SMOOTHING;
+
+        // under sustained overload the baseline drifts up, pull it back to recover faster
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+        double queueAllowance = Math.sqrt(limit);
+        double estimate = limit * gradient + queueAllowance;
+        // do not grow the limit if it's not being used, there would be no evidence it's safe
+        if (estimate > limit && inFlight < limit / 2) {
+            return;
+        }
+        limit = limit * (1 - LIMIT_SMOOTHING) + estimate * LIMIT_SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, limit));
+        if (LOGGER.isLoggable(Level.FINER)) {
+            LOGGER.log(Level.FINER, this + " updated after request taking " + rtt + "ns");
+        }
+    }
+
+    void backoff() {
+        assert Thread.holdsLock(this);
+
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, this + " backed off after a request timeout");
+        }
+    }
+
+    /** Returns the current concurrency limit */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /** Returns the long term average request latency, in milliseconds */
+    public synchronized double getBaselineLatency() {
+        return longRtt / 1e6;
+    }
+
+    /** Returns the short term average request latency, in milliseconds */
+    public synchronized double getRecentLatency() {
+        return shortRtt / 1e6;
+    }
+
+    @Override
+    public synchronized int getRunningRequestsCount() {
+        return inFlight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(
+                "AdaptiveThreadBlocker(limit=%d [%d, %d], running=%d, latency=%.1fms, baseline=%.1fms)",
+                getLimit(), minLimit, maxLimit, inFlight, shortRtt / 1e6, longRtt / 1e6);
+    }
+}
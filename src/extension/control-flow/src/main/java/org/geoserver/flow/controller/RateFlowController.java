@@ -5,9 +5,11 @@
 package org.geoserver.flow.controller;
 
 import com.google.common.base.Predicate;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletResponse;
@@ -15,12 +17,22 @@
 import org.geoserver.flow.FlowController;
 import org.geoserver.ows.HttpErrorCodeException;
 import org.geoserver.ows.Request;
-import org.geotools.util.CanonicalSet;
 import org.geotools.util.logging.Logging;
 
 /**
  * Limits the rate of requests, and slows them down after the number of requests per unit of time is
- * filled, or throws a HTTP 429 if no delay if configured
+ * filled, or throws a HTTP 429 if no delay if configured.
+ *
+ * <p>The limiting is performed using the generic cell rate algorithm (GCRA), a token bucket variant
+ * that only needs to keep a single timestamp per user, the theoretical arrival time of the next
+ * request, updated with a compare and swap. Each user can perform up to {@code burst} requests at
+ * once, after which requests are allowed again at the sustained rate of {@code maxRequests} per
+ * {@code timeInterval}. Delayed requests are served as well, so they consume a token like the
+ * allowed ones, the debt they accumulate being capped to another full burst. Times are kept in
+ * nanoseconds, so that rates above one request per millisecond, or not dividing the time interval
+ * evenly, are enforced accurately. Buckets that have been completely refilled are indistinguishable
+ * from new ones, and are expired using a hashed timing wheel, instead of sweeping all the buckets
+ * periodically.
  *
  * @author Andrea Aime - GeoSolutions
  */
@@ -40,37 +52,53 @@ public class RateFlowController implements FlowController {
 
     static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
 
-    /** The minimum number of counters we have need to have around before a cleanup is initiated */
-    static int COUNTERS_CLEANUP_THRESHOLD =
-            Integer.parseInt(
-                    System.getProperty("org.geoserver.flow.countersCleanupThreshold", "200"));
+    /** The duration of a timing wheel tick, in milliseconds */
+    static long WHEEL_TICK =
+            Long.parseLong(System.getProperty("org.geoserver.flow.rateWheelTick", "1000"));
 
-    /** The cleanup interval before a cleanup is initiated */
-    static int COUNTERS_CLEANUP_INTERVAL =
-            Integer.parseInt(
-                    System.getProperty("org.geoserver.flow.countersCleanupInterval", "10000"));
+    /** The number of slots in the timing wheel */
+    static final int WHEEL_SIZE = 64;
 
-    final class Counter {
-        volatile long timePeriodId;
+    /** Marks a bucket that has been expired and removed from the active ones */
+    static final long EXPIRED = Long.MIN_VALUE;
 
-        AtomicInteger requests = new AtomicInteger(0);
+    /** The GCRA state for a single user */
+    static final class Bucket {
+        final String key;
 
-        public int addRequest(long currPeriodId) {
-            if (currPeriodId != timePeriodId) {
-                synchronized (this) {
-                    if (currPeriodId != timePeriodId) {
-                        timePeriodId = currPeriodId;
-                        requests.set(0);
-                    }
-                }
-            }
+        /**
+         * The theoretical arrival time of the next request, in nanoseconds, or {@link
+         * RateFlowController#EXPIRED}
+         */
+        final AtomicLong tat;
 
-            // increment and return if we have gone above the limit
-            return requests.incrementAndGet();
+        Bucket(String key, long now) {
+            this.key = key;
+            this.tat = new AtomicLong(now);
         }
+    }
 
-        public synchronized long getTimePeriodId() {
-            return timePeriodId;
+    /**
+     * A timing wheel slot. Buckets are added and drained under the slot lock, so that a bucket
+     * added while the slot is being drained ends up either in the drained list, or in the new one,
+     * and is never lost
+     */
+    static final class Slot {
+        private List<Bucket> buckets = new ArrayList<>();
+
+        synchronized void add(Bucket bucket) {
+            buckets.add(bucket);
+        }
+
+        /** Returns the buckets in the slot, leaving it empty */
+        synchronized List<Bucket> drain() {
+            List<Bucket> result = buckets;
+            buckets = new ArrayList<>();
+            return result;
+        }
+
+        synchronized int size() {
+            return buckets.size();
         }
     }
 
@@ -80,11 +108,14 @@ public synchronized long getTimePeriodId() {
     /** Generates a unique key identifying the user making the request */
     KeyGenerator keyGenerator;
 
-    /** Contains all active counters */
-    Map<String, Counter> counters = new ConcurrentHashMap<>();
+    /** Contains all active buckets */
+    ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /** The timing wheel slots, each one holding the buckets that might expire during its tick */
+    Slot[] wheel = new Slot[WHEEL_SIZE];
 
-    /** Used to make user keys unique before using them as synchronization locks */
-    CanonicalSet<String> canonicalizer = CanonicalSet.newInstance(String.class);
+    /** The last timing wheel tick that has been processed */
+    AtomicLong lastTick = new AtomicLong(System.currentTimeMillis() / WHEEL_TICK);
 
     /** Checks if we should apply this request rate limit to the request */
     Predicate<Request> matcher;
@@ -95,26 +126,64 @@ public synchronized long getTimePeriodId() {
 
     long delay;
 
+    int burst;
+
+    /** The time between two requests at the sustained rate, in nanoseconds */
+    long emissionInterval;
+
+    /**
+     * The time a bucket needs to refill completely, that is, burst * emissionInterval, in
+     * nanoseconds
+     */
+    long burstInterval;
+
     String action;
 
-    /** Last time we've performed a queue cleanup */
-    volatile long lastCleanup = System.currentTimeMillis();
+    /** Builds a RateFlowController allowing bursts of up to maxRequests */
+    public RateFlowController(
+            Predicate<Request> matcher,
+            int maxRequests,
+            long timeInterval,
+            long delay,
+            KeyGenerator keyGenerator) {
+        this(matcher, maxRequests, timeInterval, delay, maxRequests, keyGenerator);
+    }
 
     /**
-     * Builds a UserFlowController that will trigger stale queue expiration once 100 queues have
-     * been accumulated and
+     * Builds a RateFlowController allowing maxRequests per timeInterval, with bursts of up to the
+     * specified number of requests
      */
     public RateFlowController(
             Predicate<Request> matcher,
             int maxRequests,
             long timeInterval,
             long delay,
+            int burst,
             KeyGenerator keyGenerator) {
+        if (maxRequests <= 0) {
+            throw new IllegalArgumentException("The max requests must be positive: " + maxRequests);
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("The burst must be positive: " + burst);
+        }
         this.matcher = matcher;
         this.maxRequests = maxRequests;
         this.timeInterval = timeInterval;
         this.delay = delay;
+        this.burst = burst;
         this.keyGenerator = keyGenerator;
+        // clamp very long intervals (e.g., "forever") so that the time computations cannot overflow
+        long maxEmissionInterval = Long.MAX_VALUE / 8 / burst;
+        this.emissionInterval =
+                Math.max(
+                        1,
+                        Math.min(
+                                TimeUnit.MILLISECONDS.toNanos(timeInterval) / maxRequests,
+                                maxEmissionInterval));
+        this.burstInterval = emissionInterval * burst;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Slot();
+        }
 
         if (delay > 0) {
             this.action = "Delay excess requests " + delay + "ms";
@@ -134,40 +203,54 @@ public boolean requestIncoming(Request request, long timeout) {
             return true;
         }
 
-        boolean retval = true;
-        long now = System.currentTimeMillis();
-        long currPeriodId = now / timeInterval;
+        long now = currentTime();
         String userKey = keyGenerator.getUserKey(request);
 
-        // grab/generate the counter
-        Counter counter = counters.get(userKey);
-        if (counter == null) {
-            userKey = canonicalizer.unique(userKey);
-            synchronized (userKey) {
-                counter = counters.get(userKey);
-                if (counter == null) {
-                    counter = new Counter();
-                    counters.put(userKey, counter);
-                }
+        // GCRA, a request is allowed if the theoretical arrival time is not too far in the future,
+        // the delayed ones are going to be served too, and consume a token as well
+        boolean delayed = delay > 0 && delay <= timeout;
+        boolean allowed;
+        long tat;
+        long newTat;
+        while (true) {
+            Bucket bucket = getBucket(userKey, now);
+            tat = bucket.tat.get();
+            if (tat == EXPIRED) {
+                // raced with the expiration, make sure a new bucket is going to be used
+                buckets.remove(userKey, bucket);
+                continue;
+            }
+            allowed = tat - now <= burstInterval - emissionInterval;
+            newTat = Math.max(tat, now) + emissionInterval;
+            if (!allowed) {
+                // bound the debt, or a client delayed for a while would be locked out for long
+                newTat = Math.min(newTat, now + 2 * burstInterval);
+            }
+            if ((!allowed && !delayed) || bucket.tat.compareAndSet(tat, newTat)) {
+                break;
             }
         }
-
-        // update the counters
-        int requests = counter.addRequest(currPeriodId);
-        int residual = maxRequests - requests;
+        int residual =
+                allowed
+                        ? (int) Math.min((burstInterval - (newTat - now)) / emissionInterval, burst)
+                        : -1;
 
         // set the headers
         HttpServletResponse response = request.getHttpResponse();
         response.addHeader(X_RATE_LIMIT_CONTEXT, matcher.toString());
         response.addIntHeader(X_RATE_LIMIT_LIMIT, maxRequests);
         response.addIntHeader(X_RATE_LIMIT_REMAINING, Math.max(residual, 0));
-        response.addDateHeader(X_RATE_LIMIT_RESET, ((currPeriodId + 1) * timeInterval));
+        response.addDateHeader(
+                X_RATE_LIMIT_RESET, TimeUnit.NANOSECONDS.toMillis(allowed ? newTat : tat));
         response.addHeader("X-Rate-Limit-Action", action);
-        // counter cleanup handling
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine(this + ", residual in current time period " + residual);
         }
-        if (residual < 0) {
+
+        // expire the buckets that have been refilled, if a wheel tick elapsed
+        advanceWheel(now);
+
+        if (!allowed) {
             if (delay <= 0) {
                 throw new HttpErrorCodeException(
                         429,
@@ -187,28 +270,70 @@ public boolean requestIncoming(Request request, long timeout) {
             }
         }
 
-        // cleanup stale counters if necessary
-        long elapsed = now - lastCleanup;
-        if (counters.size() > COUNTERS_CLEANUP_THRESHOLD
-                && (elapsed > (timeInterval) || (elapsed > 10000))) {
-            int cleanupCount = 0;
-            synchronized (this) {
-                for (Map.Entry<String, Counter> entry : counters.entrySet()) {
-                    Counter c = entry.getValue();
-                    long timePeriodId = c.getTimePeriodId();
-                    long age = (currPeriodId - timePeriodId) * timeInterval;
-                    if (age > COUNTERS_CLEANUP_THRESHOLD) {
-                        counters.remove(entry.getKey());
-                    }
-                }
-                lastCleanup = now;
-                if (LOGGER.isLoggable(Level.FINE)) {
-                    LOGGER.fine(this + ", purged " + cleanupCount + " stale counters");
-                }
+        return true;
+    }
+
+    /** The current time, in nanoseconds since the epoch */
+    static long currentTime() {
+        return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the bucket for the given user, creating and scheduling it for expiration if needed
+     */
+    Bucket getBucket(String userKey, long now) {
+        Bucket bucket = buckets.get(userKey);
+        if (bucket == null) {
+            Bucket created = new Bucket(userKey, now);
+            bucket = buckets.putIfAbsent(userKey, created);
+            if (bucket == null) {
+                bucket = created;
+                schedule(bucket, now, now);
             }
         }
+        return bucket;
+    }
+
+    /**
+     * Places the bucket in the wheel slot of the tick during which it will be refilled, or in the
+     * next one, as the current tick might have been processed already
+     */
+    void schedule(Bucket bucket, long tat, long now) {
+        long wheelTick = TimeUnit.MILLISECONDS.toNanos(WHEEL_TICK);
+        long tick = Math.max(tat, now + wheelTick) / wheelTick;
+        int slot = (int) (tick % WHEEL_SIZE);
+        wheel[slot].add(bucket);
+    }
+
+    /**
+     * Moves the timing wheel forward to the current tick, only one thread does so for each tick,
+     * the others just move on. The buckets found in the elapsed slots are either expired, if
+     * refilled, or rescheduled to the slot of their current theoretical arrival time.
+     */
+    void advanceWheel(long now) {
+        long tick = now / TimeUnit.MILLISECONDS.toNanos(WHEEL_TICK);
+        long last = lastTick.get();
+        if (tick <= last || !lastTick.compareAndSet(last, tick)) {
+            return;
+        }
 
-        return retval;
+        int expired = 0;
+        long first = Math.max(last + 1, tick - WHEEL_SIZE + 1);
+        for (long t = first; t <= tick; t++) {
+            int slot = (int) (t % WHEEL_SIZE);
+            for (Bucket bucket : wheel[slot].drain()) {
+                long tat = bucket.tat.get();
+                if (tat <= now && bucket.tat.compareAndSet(tat, EXPIRED)) {
+                    buckets.remove(bucket.key, bucket);
+                    expired++;
+                } else if (tat != EXPIRED) {
+                    schedule(bucket, tat, now);
+                }
+            }
+        }
+        if (expired > 0 && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(this + ", expired " + expired + " refilled buckets");
+        }
     }
 
     public KeyGenerator getKeyGenerator() {
@@ -231,6 +356,11 @@ public long getDelay() {
         return delay;
     }
 
+    /** The maximum number of requests that can be performed at once, before limiting kicks in */
+    public int getBurst() {
+        return burst;
+    }
+
     @Override
     public int getPriority() {
         // higher priority, we want to go thought the rate limiters before going through
@@ -17,6 +17,7 @@
 import java.util.Properties;
 import org.geoserver.flow.ControllerPriorityComparator;
 import org.geoserver.flow.FlowController;
+import org.geoserver.flow.controller.AdaptiveThreadBlocker;
 import org.geoserver.flow.controller.BasicOWSController;
 import org.geoserver.flow.controller.GlobalFlowController;
 import org.geoserver.flow.controller.HttpHeaderPriorityProvider;
@@ -24,6 +25,7 @@
 import org.geoserver.flow.controller.IpRequestMatcher;
 import org.geoserver.flow.controller.PriorityThreadBlocker;
 import org.geoserver.flow.controller.RateFlowController;
+import org.geoserver.flow.controller.SimpleThreadBlocker;
 import org.geoserver.flow.controller.SingleIpFlowController;
 import org.geoserver.flow.controller.ThreadBlocker;
 import org.geoserver.flow.controller.UserConcurrentFlowController;
@@ -73,6 +75,8 @@ public void testParsing() throws Exception {
         assertEquals(100, rfc.getMaxRequests());
         assertEquals(Intervals.m.getDuration(), rfc.getTimeInterval());
         assertEquals(3000, rfc.getDelay());
+        // burst defaults to the rate
+        assertEquals(100, rfc.getBurst());
 
         assertTrue(controllers.get(1) instanceof RateFlowController);
         rfc = (RateFlowController) controllers.get(1);
@@ -184,6 +188,63 @@ private void checkPriorityParsing(Properties p) throws Exception {
         assertPriorityThreadBlocker(blocker, "gs-priority", 3);
     }
 
+    @Test
+    public void testParsingRateBurst() throws Exception {
+        Properties p = new Properties();
+        p.put("user.ows.wms", "300/m;3s;burst=20");
+        p.put("ip.ows.wfs", "10/s;burst=50");
+        p.put("ip.ows.wcs", "10/s;burst=0");
+
+        DefaultControlFlowConfigurator configurator =
+                new DefaultControlFlowConfigurator(new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        Collections.sort(controllers, new ControllerPriorityComparator());
+        // the zero burst one is invalid
+        assertEquals(2, controllers.size());
+
+        RateFlowController rfc = (RateFlowController) controllers.get(0);
+        assertEquals("wms", rfc.getMatcher().toString());
+        assertEquals(300, rfc.getMaxRequests());
+        assertEquals(Intervals.m.getDuration(), rfc.getTimeInterval());
+        assertEquals(3000, rfc.getDelay());
+        assertEquals(20, rfc.getBurst());
+
+        rfc = (RateFlowController) controllers.get(1);
+        assertEquals("wfs", rfc.getMatcher().toString());
+        assertEquals(10, rfc.getMaxRequests());
+        assertEquals(Intervals.s.getDuration(), rfc.getTimeInterval());
+        assertEquals(0, rfc.getDelay());
+        assertEquals(50, rfc.getBurst());
+    }
+
+    @Test
+    public void testParsingAdaptive() throws Exception {
+        Properties p = new Properties();
+        p.put("ows.global", "100;adaptive");
+        p.put("ows.wms.getmap", "16 ;adaptive");
+        p.put("ows.wfs", "8");
+
+        DefaultControlFlowConfigurator configurator =
+                new DefaultControlFlowConfigurator(new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        Collections.sort(controllers, new ControllerPriorityComparator());
+        assertEquals(3, controllers.size());
+
+        BasicOWSController wfs = (BasicOWSController) controllers.get(0);
+        assertThat(wfs.getBlocker(), CoreMatchers.instanceOf(SimpleThreadBlocker.class));
+
+        BasicOWSController getMap = (BasicOWSController) controllers.get(1);
+        assertEquals("wms.getmap", getMap.getMatcher().toString());
+        assertEquals(16, getMap.getPriority());
+        AdaptiveThreadBlocker blocker = (AdaptiveThreadBlocker) getMap.getBlocker();
+        assertEquals(1, blocker.getMinLimit());
+        assertEquals(16, blocker.getMaxLimit());
+
+        GlobalFlowController global = (GlobalFlowController) controllers.get(2);
+        blocker = (AdaptiveThreadBlocker) global.getBlocker();
+        assertEquals(100, blocker.getMaxLimit());
+    }
+
     public void assertPriorityThreadBlocker(
             ThreadBlocker blocker, String headerName, int defaultPriority) {
         assertThat(blocker, CoreMatchers.instanceOf(PriorityThreadBlocker.class));
@@ -0,0 +1,164 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.flow.controller.FlowControllerTestingThread.ThreadState;
+import org.geoserver.ows.Request;
+import org.junit.Test;
+
+public class AdaptiveThreadBlockerTest extends AbstractFlowControllerTest {
+
+    static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testInitialLimit() {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(1, 20);
+        assertEquals(10, blocker.getLimit());
+        assertEquals(1, blocker.getMinLimit());
+        assertEquals(20, blocker.getMaxLimit());
+    }
+
+    @Test
+    public void testGrowsWithStableLatency() {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(1, 20);
+        synchronized (blocker) {
+            // fully used, and stable latency
+            blocker.inFlight = 20;
+            for (int i = 0; i < 100; i++) {
+                blocker.update(10 * MS);
+            }
+        }
+        assertEquals(20, blocker.getLimit());
+    }
+
+    @Test
+    public void testDoesNotGrowIfUnused() {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(1, 20);
+        synchronized (blocker) {
+            blocker.inFlight = 1;
+            for (int i = 0; i < 100; i++) {
+                blocker.update(10 * MS);
+            }
+        }
+        assertEquals(10, blocker.getLimit());
+    }
+
+    @Test
+    public void testShrinksWithGrowingLatency() {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(1, 20);
+        synchronized (blocker) {
+            blocker.inFlight = 20;
+            for (int i = 0; i < 100; i++) {
+                blocker.update(10 * MS);
+            }
+            // latency spike, requests are now taking ten times longer
+            for (int i = 0; i < 50; i++) {
+                blocker.update(100 * MS);
+            }
+        }
+        assertTrue("Limit did not shrink: " + blocker, blocker.getLimit() < 10);
+    }
+
+    @Test
+    public void testBackoffOnTimeout() throws Exception {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(1, 4);
+        assertEquals(2, blocker.getLimit());
+        Request r1 = new Request();
+        Request r2 = new Request();
+        assertTrue(blocker.requestIncoming(r1, 100));
+        assertTrue(blocker.requestIncoming(r2, 100));
+        assertEquals(2, blocker.getRunningRequestsCount());
+
+        // the third one times out, and the limit is reduced
+        Request r3 = new Request();
+        assertFalse(blocker.requestIncoming(r3, 50));
+        assertEquals(1, blocker.getLimit());
+
+        // completing a timed out request does not affect the count
+        blocker.requestComplete(r3);
+        assertEquals(2, blocker.getRunningRequestsCount());
+        blocker.requestComplete(r1);
+        blocker.requestComplete(r2);
+        assertEquals(0, blocker.getRunningRequestsCount());
+    }
+
+    @Test
+    public void testArrivalOrder() throws Exception {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(1, 1);
+        Request first = new Request();
+        assertTrue(blocker.requestIncoming(first, 0));
+
+        // queue up requests one after the other
+        List<Integer> released = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int id = i;
+            Request request = new Request();
+            Thread t =
+                    new Thread(
+                            () -> {
+                                try {
+                                    if (blocker.requestIncoming(request, 0)) {
+                                        released.add(id);
+                                        blocker.requestComplete(request);
+                                    }
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            });
+            t.start();
+            waitBlocked(t, MAX_WAIT);
+            threads.add(t);
+        }
+
+        // they go through in the same order
+        blocker.requestComplete(first);
+        for (Thread t : threads) {
+            waitTerminated(t, MAX_WAIT);
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), released);
+    }
+
+    @Test
+    public void testBlockAndRelease() throws Exception {
+        GlobalFlowController controller =
+                new GlobalFlowController(2, new AdaptiveThreadBlocker(1, 2));
+
+        FlowControllerTestingThread t1 =
+                new FlowControllerTestingThread(new Request(), 0, Long.MAX_VALUE, controller);
+        FlowControllerTestingThread t2 =
+                new FlowControllerTestingThread(new Request(), 0, Long.MAX_VALUE, controller);
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+            waitBlocked(t2, MAX_WAIT);
+
+            assertEquals(ThreadState.PROCESSING, t1.state);
+            assertEquals(ThreadState.STARTED, t2.state);
+
+            // let t1 go and wait until its termination, this should allow t2 to go
+            t1.interrupt();
+            waitTerminated(t1, MAX_WAIT);
+            assertEquals(ThreadState.COMPLETE, t1.state);
+            waitState(ThreadState.PROCESSING, t2, MAX_WAIT);
+            t2.interrupt();
+            waitTerminated(t2, MAX_WAIT);
+            assertEquals(0, controller.getRequestsInQueue());
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            waitAndKill(t2, MAX_WAIT);
+        }
+    }
+}
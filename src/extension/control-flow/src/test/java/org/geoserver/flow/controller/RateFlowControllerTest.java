@@ -7,7 +7,14 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.http.Cookie;
 import org.geoserver.ows.HttpErrorCodeException;
 import org.geoserver.ows.Request;
@@ -126,4 +133,156 @@ public void testIp429() {
             assertEquals(429, e.getErrorCode());
         }
     }
+
+    @Test
+    public void testIpBurst() {
+        RateFlowController controller =
+                new RateFlowController(
+                        new OWSRequestMatcher(), 1, Long.MAX_VALUE, 0, 3, new IpKeyGenerator());
+
+        // the whole burst goes through
+        for (int remaining = 2; remaining >= 0; remaining--) {
+            Request request = buildIpRequest("127.0.0.1", "");
+            assertTrue(controller.requestIncoming(request, Integer.MAX_VALUE));
+            checkHeaders(request, "Any OGC request", 1, remaining);
+        }
+
+        // this one should fail with a 429
+        Request request = buildIpRequest("127.0.0.1", "");
+        try {
+            controller.requestIncoming(request, Integer.MAX_VALUE);
+            fail("Should have failed with a 429");
+        } catch (HttpErrorCodeException e) {
+            assertEquals(429, e.getErrorCode());
+        }
+        checkHeaders(request, "Any OGC request", 1, 0);
+
+        // other users are not affected
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.2", ""), 0));
+    }
+
+    @Test
+    public void testIpSustainedRate() throws Exception {
+        // 10 requests a second, one every 100ms, no bursts
+        RateFlowController controller =
+                new RateFlowController(
+                        new OWSRequestMatcher(), 10, 1000, 0, 1, new IpKeyGenerator());
+
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0));
+        try {
+            controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0);
+            fail("Should have failed with a 429");
+        } catch (HttpErrorCodeException e) {
+            assertEquals(429, e.getErrorCode());
+        }
+
+        // wait for the bucket to refill
+        Thread.sleep(150);
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0));
+    }
+
+    @Test
+    public void testSubMillisecondInterval() {
+        // 7 requests a second do not divide it evenly, 2000 a second go below the millisecond
+        RateFlowController seven =
+                new RateFlowController(
+                        new OWSRequestMatcher(), 7, 1000, 0, 1, new IpKeyGenerator());
+        assertEquals(TimeUnit.SECONDS.toNanos(1) / 7, seven.emissionInterval);
+        RateFlowController fast =
+                new RateFlowController(
+                        new OWSRequestMatcher(), 2000, 1000, 0, 1, new IpKeyGenerator());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500), fast.emissionInterval);
+    }
+
+    @Test
+    public void testDelayedConsumesToken() throws Exception {
+        // 5 requests a second, one every 200ms, no bursts
+        RateFlowController controller =
+                new RateFlowController(
+                        new OWSRequestMatcher(), 5, 1000, 50, 1, new IpKeyGenerator());
+
+        long start = System.currentTimeMillis();
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 1000));
+        // delayed, but served, so the next slot is taken too
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 1000));
+
+        // past the first slot, still in the one taken by the delayed request
+        Thread.sleep(Math.max(0, start + 250 - System.currentTimeMillis()));
+        assertFalse(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        long tick = RateFlowController.WHEEL_TICK;
+        RateFlowController.WHEEL_TICK = 10;
+        try {
+            RateFlowController controller =
+                    new RateFlowController(
+                            new OWSRequestMatcher(), 10, 1000, 0, 1, new IpKeyGenerator());
+
+            assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0));
+            assertEquals(1, controller.buckets.size());
+
+            // once refilled, the bucket of the first user is expired by the next wheel advance
+            Thread.sleep(250);
+            assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.2", ""), 0));
+            assertEquals(1, controller.buckets.size());
+
+            // and the first user starts over with a new bucket
+            assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0));
+            assertEquals(2, controller.buckets.size());
+        } finally {
+            RateFlowController.WHEEL_TICK = tick;
+        }
+    }
+
+    @Test
+    public void testNoBucketLostWhileAdvancing() throws Exception {
+        long tick = RateFlowController.WHEEL_TICK;
+        RateFlowController.WHEEL_TICK = 1;
+        try {
+            // buckets refilling after one millisecond
+            RateFlowController controller =
+                    new RateFlowController(
+                            new OWSRequestMatcher(), 1000, 1000, 0, 1, new IpKeyGenerator());
+
+            // create buckets while other threads keep on advancing the wheel
+            int threads = 4;
+            int bucketsPerThread = 5000;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    int thread = i;
+                    futures.add(
+                            executor.submit(
+                                    () -> {
+                                        for (int j = 0; j < bucketsPerThread; j++) {
+                                            long now = RateFlowController.currentTime();
+                                            controller.getBucket(thread + "-" + j, now);
+                                            controller.advanceWheel(now);
+                                        }
+                                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            // a full turn of the wheel later, every bucket has been refilled and expired
+            long end = System.currentTimeMillis() + 3 * RateFlowController.WHEEL_SIZE;
+            while (System.currentTimeMillis() < end) {
+                controller.advanceWheel(RateFlowController.currentTime());
+                Thread.sleep(1);
+            }
+            assertEquals(0, controller.buckets.size());
+            for (RateFlowController.Slot slot : controller.wheel) {
+                assertEquals(0, slot.size());
+            }
+        } finally {
+            RateFlowController.WHEEL_TICK = tick;
+        }
+    }
 }
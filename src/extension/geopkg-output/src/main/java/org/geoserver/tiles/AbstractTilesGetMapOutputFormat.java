@@ -167,7 +167,17 @@ public MapProducerCapabilities getCapabilities(String format) {
     @Override
     public WebMap produceMap(WMSMapContent map) throws ServiceException, IOException {
         TilesFile tiles = createTilesFile();
-        addTiles(tiles, map, getListener(map));
+        try {
+            addTiles(tiles, map, getListener(map));
+        } catch (Throwable t) {
+            // release the file anyways, without hiding the rendering error
+            try {
+                tiles.close();
+            } catch (RuntimeException e) {
+                t.addSuppressed(e);
+            }
+            throw t;
+        }
         tiles.close();
 
         final File dbFile = tiles.getFile();
@@ -6,25 +6,60 @@
 package org.geoserver.monitor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.geoserver.monitor.Query.Comparison;
 import org.geoserver.monitor.Query.SortOrder;
+import org.geoserver.monitor.RequestData.Status;
 import org.geoserver.ows.util.OwsUtils;
 
+/**
+ * Keeps the running requests, and a fixed number of the most recent completed ones, in memory.
+ *
+ * <p>Completed requests are stored in a ring buffer, along with a columnar copy of the most
+ * commonly queried fields (id, service, operation, status, start time, duration and resources), so
+ * that queries on them do not need to use reflection. Per minute activity aggregates are also
+ * maintained, for a longer period than the history itself, and used to draw the activity charts.
+ *
+ * <p>The history size and the number of days of activity aggregates can be configured in {@code
+ * monitor.properties}, using the {@code memory.historySize} and {@code memory.activityDays} keys.
+ */
 public class MemoryMonitorDAO implements MonitorDAO {
 
     public static final String NAME = "memory";
 
-    Queue<RequestData> live = new ConcurrentLinkedQueue<>();
-    Queue<RequestData> history = new ConcurrentLinkedQueue<>();
+    /** The default number of completed requests kept in memory */
+    public static final int DEFAULT_HISTORY_SIZE = 100;
+
+    /** The default number of days of per minute activity aggregates kept in memory */
+    public static final int DEFAULT_ACTIVITY_DAYS = 31;
+
+    /** Pseudo property matching the layers in {@link RequestData#getResources()} */
+    static final String RESOURCE = "resource";
+
+    static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    /** Running requests, sorted by id */
+    Map<Long, RequestData> live = new ConcurrentSkipListMap<>();
+
+    /** Completed requests, guarded by lock */
+    History history = new History(DEFAULT_HISTORY_SIZE);
+
+    /** Per minute activity, guarded by lock */
+    Activity activity = new Activity(DEFAULT_ACTIVITY_DAYS * 24 * 60);
+
+    ReadWriteLock lock = new ReentrantReadWriteLock();
 
     AtomicLong REQUEST_ID_GEN = new AtomicLong(1);
 
@@ -34,7 +69,21 @@ public String getName() {
     }
 
     @Override
-    public void init(MonitorConfig config) {}
+    public void init(MonitorConfig config) {
+        Integer historySize = config.getProperty(NAME, "historySize", Integer.class);
+        Integer activityDays = config.getProperty(NAME, "activityDays", Integer.class);
+        lock.writeLock().lock();
+        try {
+            if (historySize != null && historySize > 0) {
+                history = new History(historySize);
+            }
+            if (activityDays != null && activityDays > 0) {
+                activity = new Activity(activityDays * 24 * 60);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
     @Override
     public RequestData init(RequestData data) {
@@ -44,80 +93,108 @@ public RequestData init(RequestData data) {
 
     @Override
     public void add(RequestData data) {
-        live.add(data);
+        live.put(data.getId(), data);
     }
 
     @Override
-    public void update(RequestData data) {}
+    public void update(RequestData data) {
+        // the live requests are kept by reference, while the history columns need a refresh
+        lock.writeLock().lock();
+        try {
+            history.update(data);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
     @Override
     public void save(RequestData data) {
-        live.remove(data);
-        history.add(data);
-
-        if (history.size() > 100) {
-            history.poll();
+        live.remove(data.getId());
+        lock.writeLock().lock();
+        try {
+            if (!history.update(data)) {
+                history.add(data);
+                activity.add(data);
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public RequestData getRequest(long id) {
-        for (RequestData r : getRequests()) {
-            if (r.getId() == id) {
-                return r;
-            }
+        RequestData data = live.get(id);
+        if (data != null) {
+            return data;
+        }
+        lock.readLock().lock();
+        try {
+            return history.get(id);
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     @Override
     public List<RequestData> getRequests() {
-        List<RequestData> requests = new LinkedList<>();
-        requests.addAll(live);
-        requests.addAll(history);
+        List<RequestData> requests = new ArrayList<>(live.values());
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < history.size; i++) {
+                requests.add(history.records[history.slot(i)]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
         return requests;
     }
 
     @Override
     public List<RequestData> getRequests(Query q) {
-        List<RequestData> requests = getRequests();
-
-        List<Predicate> predicates = new ArrayList<>();
-        if (q.getFilter() != null) {
-            Filter f = q.getFilter();
-            predicates.add(new PropertyCompare(f.getLeft(), f.getType(), f.getRight()));
+        Predicate predicate = toPredicate(q);
+        boolean sorted = q.getSortBy() != null || q.getFromDate() != null || q.getToDate() != null;
+        long offset = q.getOffset() != null ? q.getOffset() : 0;
+        // if not sorting, there is no need to collect more than the requested page
+        long max = Long.MAX_VALUE;
+        if (!sorted && q.getCount() != null) {
+            max = offset + q.getCount();
         }
-        if (q.getFromDate() != null || q.getToDate() != null) {
-            predicates.add(new DateRange(q.getFromDate(), q.getToDate()));
-        }
-
-        int i = 1, count = 0;
 
-        O:
-        for (Iterator<RequestData> it = requests.iterator(); it.hasNext(); ) {
-            RequestData r = it.next();
-            for (Predicate p : predicates) {
-                if (!p.matches(r)) {
-                    it.remove();
-                    continue O;
-                }
+        List<RequestData> requests = new ArrayList<>();
+        for (RequestData r : live.values()) {
+            if (requests.size() >= max) {
+                break;
             }
-
-            if (q.getOffset() != null && q.getOffset() >= i++) {
-                it.remove();
-                continue;
+            if (predicate.matches(r)) {
+                requests.add(r);
             }
-            if (q.getCount() != null && q.getCount() <= count) {
-                it.remove();
-                continue;
+        }
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < history.size && requests.size() < max; i++) {
+                int slot = history.slot(i);
+                if (predicate.matches(history, slot)) {
+                    requests.add(history.records[slot]);
+                }
             }
-            count++;
+        } finally {
+            lock.readLock().unlock();
         }
 
         if (q.getSortBy() != null) {
-            Collections.sort(requests, new Sorter(q.getSortBy(), q.getSortOrder()));
+            requests = new Sorter(q.getSortBy(), q.getSortOrder()).sort(requests);
         } else if (q.getFromDate() != null || q.getToDate() != null) {
-            Collections.sort(requests, new Sorter("startTime", SortOrder.DESC));
+            requests = new Sorter("startTime", SortOrder.DESC).sort(requests);
+        }
+
+        // paging
+        int from = (int) Math.min(offset, requests.size());
+        int to = requests.size();
+        if (q.getCount() != null) {
+            to = (int) Math.min(to, from + q.getCount());
+        }
+        if (from > 0 || to < requests.size()) {
+            requests = new ArrayList<>(requests.subList(from, to));
         }
         return requests;
     }
@@ -131,7 +208,24 @@ public void getRequests(Query query, RequestDataVisitor visitor) {
 
     @Override
     public long getCount(Query query) {
-        return getRequests(query).size();
+        if (query.getOffset() != null || query.getCount() != null) {
+            return getRequests(query).size();
+        }
+
+        // no need to collect and sort, just count
+        Predicate predicate = toPredicate(query);
+        long count = live.values().stream().filter(predicate::matches).count();
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < history.size; i++) {
+                if (predicate.matches(history, history.slot(i))) {
+                    count++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return count;
     }
 
     @Override
@@ -139,6 +233,47 @@ public Iterator<RequestData> getIterator(Query query) {
         return getRequests(query).iterator();
     }
 
+    /**
+     * Returns the per minute activity between the two dates (both optional), for both the running
+     * requests and the completed ones, including those no longer in the history, sorted by time.
+     * Minutes without any request are not reported.
+     */
+    public List<ActivityStats> getActivity(Date from, Date to) {
+        long fromMinute = from == null ? Long.MIN_VALUE : Math.floorDiv(from.getTime(), MINUTE);
+        long toMinute = to == null ? Long.MAX_VALUE : Math.floorDiv(to.getTime(), MINUTE);
+
+        Map<Long, ActivityStats> stats = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < activity.minutes.length; i++) {
+                long minute = activity.minutes[i];
+                if (activity.counts[i] > 0 && minute >= fromMinute && minute <= toMinute) {
+                    stats.put(
+                            minute,
+                            new ActivityStats(
+                                    minute,
+                                    activity.counts[i],
+                                    activity.failures[i],
+                                    activity.totalTimes[i]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (RequestData r : live.values()) {
+            if (r.getStartTime() != null) {
+                long minute = Math.floorDiv(r.getStartTime().getTime(), MINUTE);
+                if (minute >= fromMinute && minute <= toMinute) {
+                    stats.computeIfAbsent(minute, m -> new ActivityStats(m, 0, 0, 0)).count++;
+                }
+            }
+        }
+
+        List<ActivityStats> result = new ArrayList<>(stats.values());
+        Collections.sort(result, Comparator.comparingLong(s -> s.minute));
+        return result;
+    }
+
     public ResourceData getLayer(String name) {
         // TODO Auto-generated method stub
         return null;
@@ -173,18 +308,340 @@ public java.util.List<RequestData> getOwsRequests(
     @Override
     public void clear() {
         live.clear();
-        history.clear();
+        lock.writeLock().lock();
+        try {
+            history.clear();
+            activity.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     @Override
     public void dispose() {
-        live.clear();
-        history.clear();
+        clear();
         REQUEST_ID_GEN = new AtomicLong(1);
     }
 
+    /** Builds a single predicate out of the query filter and date range */
+    Predicate toPredicate(Query q) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (q.getFilter() != null) {
+            predicates.add(toPredicate(q.getFilter()));
+        }
+        if (q.getFromDate() != null || q.getToDate() != null) {
+            predicates.add(new DateRange(q.getFromDate(), q.getToDate()));
+        }
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+        return new AndPredicate(predicates);
+    }
+
+    Predicate toPredicate(Filter f) {
+        if (f instanceof CompositeFilter) {
+            List<Predicate> predicates = new ArrayList<>();
+            for (Filter child : ((CompositeFilter) f).getFilters()) {
+                predicates.add(toPredicate(child));
+            }
+            return f instanceof Or ? new OrPredicate(predicates) : new AndPredicate(predicates);
+        }
+
+        if (RESOURCE.equals(f.getLeft())) {
+            return new ResourceCompare(f.getType(), f.getRight());
+        } else if (RESOURCE.equals(f.getRight())) {
+            return new ResourceCompare(f.getType(), f.getLeft());
+        }
+        PropertyCompare compare = new PropertyCompare(f.getLeft(), f.getType(), f.getRight());
+        Column column = Column.get(compare.property);
+        if (column != null) {
+            return new ColumnCompare(compare, column);
+        }
+        return compare;
+    }
+
+    /** Per minute request statistics */
+    public static class ActivityStats {
+        long minute;
+        long count;
+        long failed;
+        long totalTime;
+
+        ActivityStats(long minute, long count, long failed, long totalTime) {
+            this.minute = minute;
+            this.count = count;
+            this.failed = failed;
+            this.totalTime = totalTime;
+        }
+
+        /** The start of the minute */
+        public Date getTime() {
+            return new Date(minute * MINUTE);
+        }
+
+        /** Number of requests started in the minute */
+        public long getCount() {
+            return count;
+        }
+
+        /** Number of completed requests started in the minute that failed */
+        public long getFailed() {
+            return failed;
+        }
+
+        /** Total time of the completed requests started in the minute, in milliseconds */
+        public long getTotalTime() {
+            return totalTime;
+        }
+    }
+
+    /** Ring buffer of the most recent requests, with a columnar copy of the common fields */
+    static class History {
+        final int capacity;
+        final RequestData[] records;
+        final long[] ids;
+        final long[] startTimes;
+        final long[] totalTimes;
+        final String[] services;
+        final String[] operations;
+        final Status[] statuses;
+        final String[][] resources;
+
+        /** Maps request ids to their slot */
+        final Map<Long, Integer> index = new HashMap<>();
+
+        /** The slot the next request will be written to */
+        int head;
+
+        int size;
+
+        History(int capacity) {
+            this.capacity = capacity;
+            this.records = new RequestData[capacity];
+            this.ids = new long[capacity];
+            this.startTimes = new long[capacity];
+            this.totalTimes = new long[capacity];
+            this.services = new String[capacity];
+            this.operations = new String[capacity];
+            this.statuses = new Status[capacity];
+            this.resources = new String[capacity][];
+        }
+
+        /** Returns the slot of the n-th request, from the oldest to the newest */
+        int slot(int n) {
+            return (head - size + n + capacity) % capacity;
+        }
+
+        void add(RequestData data) {
+            if (size == capacity) {
+                // overwriting the oldest request
+                index.remove(ids[head]);
+            } else {
+                size++;
+            }
+            set(head, data);
+            index.put(data.getId(), head);
+            head = (head + 1) % capacity;
+        }
+
+        /** Refreshes the columns of a request, returns false if the request is not found */
+        boolean update(RequestData data) {
+            Integer slot = index.get(data.getId());
+            if (slot == null) {
+                return false;
+            }
+            set(slot, data);
+            return true;
+        }
+
+        RequestData get(long id) {
+            Integer slot = index.get(id);
+            return slot == null ? null : records[slot];
+        }
+
+        void set(int slot, RequestData data) {
+            records[slot] = data;
+            ids[slot] = data.getId();
+            startTimes[slot] =
+                    data.getStartTime() == null ? Long.MIN_VALUE : data.getStartTime().getTime();
+            totalTimes[slot] = data.getTotalTime();
+            services[slot] = data.getService();
+            operations[slot] = data.getOperation();
+            statuses[slot] = data.getStatus();
+            List<String> layers = data.getResources();
+            resources[slot] = layers == null ? null : layers.toArray(new String[layers.size()]);
+        }
+
+        void clear() {
+            Arrays.fill(records, null);
+            Arrays.fill(services, null);
+            Arrays.fill(operations, null);
+            Arrays.fill(statuses, null);
+            Arrays.fill(resources, null);
+            index.clear();
+            head = 0;
+            size = 0;
+        }
+    }
+
+    /** Per minute aggregates of the completed requests, in a ring indexed by minute */
+    static class Activity {
+        final long[] minutes;
+        final long[] counts;
+        final long[] failures;
+        final long[] totalTimes;
+
+        Activity(int size) {
+            minutes = new long[size];
+            counts = new long[size];
+            failures = new long[size];
+            totalTimes = new long[size];
+        }
+
+        void add(RequestData data) {
+            if (data.getStartTime() == null) {
+                return;
+            }
+            long minute = Math.floorDiv(data.getStartTime().getTime(), MINUTE);
+            int slot = (int) Math.floorMod(minute, (long) minutes.length);
+            if (minutes[slot] > minute) {
+                // older than the time span we are keeping
+                return;
+            } else if (minutes[slot] < minute) {
+                minutes[slot] = minute;
+                counts[slot] = 0;
+                failures[slot] = 0;
+                totalTimes[slot] = 0;
+            }
+            counts[slot]++;
+            totalTimes[slot] += data.getTotalTime();
+            if (data.getStatus() == Status.FAILED) {
+                failures[slot]++;
+            }
+        }
+
+        void clear() {
+            Arrays.fill(minutes, 0);
+            Arrays.fill(counts, 0);
+            Arrays.fill(failures, 0);
+            Arrays.fill(totalTimes, 0);
+        }
+    }
+
+    /** The properties available as columns in the history */
+    enum Column {
+        ID("id") {
+            @Override
+            Object get(History h, int slot) {
+                return h.ids[slot];
+            }
+        },
+        SERVICE("service") {
+            @Override
+            Object get(History h, int slot) {
+                return h.services[slot];
+            }
+        },
+        OPERATION("operation") {
+            @Override
+            Object get(History h, int slot) {
+                return h.operations[slot];
+            }
+        },
+        STATUS("status") {
+            @Override
+            Object get(History h, int slot) {
+                return h.statuses[slot];
+            }
+        },
+        TOTAL_TIME("totalTime") {
+            @Override
+            Object get(History h, int slot) {
+                return h.totalTimes[slot];
+            }
+        };
+
+        final String property;
+
+        Column(String property) {
+            this.property = property;
+        }
+
+        abstract Object get(History h, int slot);
+
+        static Column get(String property) {
+            for (Column c : values()) {
+                if (c.property.equalsIgnoreCase(property)) {
+                    return c;
+                }
+            }
+            return null;
+        }
+    }
+
     static interface Predicate {
         boolean matches(RequestData data);
+
+        /** Matches a request in the history, by default using the request itself */
+        default boolean matches(History history, int slot) {
+            return matches(history.records[slot]);
+        }
+    }
+
+    static class AndPredicate implements Predicate {
+        List<Predicate> predicates;
+
+        AndPredicate(List<Predicate> predicates) {
+            this.predicates = predicates;
+        }
+
+        @Override
+        public boolean matches(RequestData data) {
+            for (Predicate p : predicates) {
+                if (!p.matches(data)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean matches(History history, int slot) {
+            for (Predicate p : predicates) {
+                if (!p.matches(history, slot)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static class OrPredicate implements Predicate {
+        List<Predicate> predicates;
+
+        OrPredicate(List<Predicate> predicates) {
+            this.predicates = predicates;
+        }
+
+        @Override
+        public boolean matches(RequestData data) {
+            for (Predicate p : predicates) {
+                if (p.matches(data)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean matches(History history, int slot) {
+            for (Predicate p : predicates) {
+                if (p.matches(history, slot)) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     static class DateRange implements Predicate {
@@ -203,15 +660,27 @@ public boolean matches(RequestData data) {
             if (time == null) {
                 return false;
             }
+            return matches(time.getTime());
+        }
 
+        @Override
+        public boolean matches(History history, int slot) {
+            long time = history.startTimes[slot];
+            if (time == Long.MIN_VALUE) {
+                return false;
+            }
+            return matches(time);
+        }
+
+        boolean matches(long time) {
             if (from != null) {
-                if (time.before(from)) {
+                if (time < from.getTime()) {
                     return false;
                 }
             }
 
             if (to != null) {
-                if (time.after(to)) {
+                if (time > to.getTime()) {
                     return false;
                 }
             }
@@ -222,41 +691,42 @@ public boolean matches(RequestData data) {
 
     static class PropertyCompare implements Predicate {
 
-        Object left, right;
+        String property;
+        Object value;
         Comparison compare;
 
         public PropertyCompare(Object left, Comparison compare, Object right) {
-            this.left = left;
-            this.right = right;
-            this.compare = compare;
-        }
-
-        @Override
-        public boolean matches(RequestData data) {
-            String property = null;
-            Object value = null;
-            if (left instanceof String && OwsUtils.has(data, (String) left)) {
+            // resolve the property once, against a template request
+            RequestData template = new RequestData();
+            if (left instanceof String && OwsUtils.has(template, (String) left)) {
                 property = (String) left;
                 value = right;
-            } else if (right instanceof String && OwsUtils.has(data, (String) right)) {
+            } else if (right instanceof String && OwsUtils.has(template, (String) right)) {
                 property = (String) right;
                 value = left;
             }
             if (property == null) {
                 throw new IllegalArgumentException("Could not find property");
             }
+            this.compare = compare;
+
+            if (compare == Comparison.IN && !(value instanceof List)) {
+                throw new UnsupportedOperationException(
+                        "IN comparison only supported against list values");
+            }
+        }
+
+        @Override
+        public boolean matches(RequestData data) {
+            return matchesValue(OwsUtils.get(data, property));
+        }
 
-            Object o = OwsUtils.get(data, property);
+        boolean matchesValue(Object o) {
             if (o == null) {
                 return value == null && compare == Comparison.EQ;
             }
 
             if (compare == Comparison.IN) {
-                if (!(value instanceof List)) {
-                    throw new UnsupportedOperationException(
-                            "IN comparison only supported against list values");
-                }
-
                 return ((List) value).contains(o);
             }
 
@@ -294,7 +764,71 @@ private boolean compare(Object value, Comparable o) {
         }
     }
 
-    static class Sorter implements Comparator<RequestData> {
+    /** Compares a property against a value, using the history columns when available */
+    static class ColumnCompare implements Predicate {
+        PropertyCompare delegate;
+        Column column;
+
+        ColumnCompare(PropertyCompare delegate, Column column) {
+            this.delegate = delegate;
+            this.column = column;
+        }
+
+        @Override
+        public boolean matches(RequestData data) {
+            return delegate.matches(data);
+        }
+
+        @Override
+        public boolean matches(History history, int slot) {
+            return delegate.matchesValue(column.get(history, slot));
+        }
+    }
+
+    /** Checks if the request resources contain a given one (or one in a list, for IN) */
+    static class ResourceCompare implements Predicate {
+        Comparison compare;
+        Object value;
+
+        ResourceCompare(Comparison compare, Object value) {
+            if (compare != Comparison.EQ && compare != Comparison.NEQ && compare != Comparison.IN) {
+                throw new UnsupportedOperationException(
+                        "Resources only support equality, non-equality and IN comparisons");
+            }
+            if (compare == Comparison.IN && !(value instanceof List)) {
+                throw new UnsupportedOperationException(
+                        "IN comparison only supported against list values");
+            }
+            this.compare = compare;
+            this.value = value;
+        }
+
+        @Override
+        public boolean matches(RequestData data) {
+            List<String> resources = data.getResources();
+            return matches(resources == null ? null : resources.toArray(new String[0]));
+        }
+
+        @Override
+        public boolean matches(History history, int slot) {
+            return matches(history.resources[slot]);
+        }
+
+        boolean matches(String[] resources) {
+            boolean found = false;
+            if (resources != null) {
+                for (String r : resources) {
+                    if (compare == Comparison.IN ? ((List) value).contains(r) : r.equals(value)) {
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            return compare == Comparison.NEQ ? !found : found;
+        }
+    }
+
+    static class Sorter implements Comparator<Object> {
 
         String property;
         SortOrder order;
@@ -304,17 +838,29 @@ static class Sorter implements Comparator<RequestData> {
             this.order = order;
         }
 
+        /** Sorts the requests, extracting the sort key only once per request */
+        List<RequestData> sort(List<RequestData> requests) {
+            Object[][] keyed = new Object[requests.size()][];
+            for (int i = 0; i < keyed.length; i++) {
+                RequestData r = requests.get(i);
+                keyed[i] = new Object[] {OwsUtils.get(r, property), r};
+            }
+            Arrays.sort(keyed, (k1, k2) -> compare(k1[0], k2[0]));
+            List<RequestData> result = new ArrayList<>(keyed.length);
+            for (Object[] k : keyed) {
+                result.add((RequestData) k[1]);
+            }
+            return result;
+        }
+
         @Override
-        public int compare(RequestData r1, RequestData r2) {
-            int c = compareInternal(r1, r2);
+        public int compare(Object o1, Object o2) {
+            int c = compareInternal(o1, o2);
             return order == SortOrder.ASC ? c : -1 * c;
         }
 
         @SuppressWarnings("unchecked")
-        public int compareInternal(RequestData r1, RequestData r2) {
-            Object o1 = OwsUtils.get(r1, property);
-            Object o2 = OwsUtils.get(r2, property);
-
+        public int compareInternal(Object o1, Object o2) {
             if (o1 == null && o2 != null) {
                 return 1;
             }
@@ -18,6 +18,8 @@
 import org.apache.wicket.markup.html.image.resource.BufferedDynamicImageResource;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.PropertyModel;
+import org.geoserver.monitor.MemoryMonitorDAO;
+import org.geoserver.monitor.MemoryMonitorDAO.ActivityStats;
 import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.RequestData;
@@ -43,6 +45,9 @@ public abstract class ActivityChartBasePanel extends Panel {
     Date to;
     NonCachingImage chartImage;
 
+    /** True if the chart uses the per minute activity precomputed by the in memory storage */
+    boolean aggregated;
+
     public ActivityChartBasePanel(String id, Monitor monitor) {
         super(id);
 
@@ -100,7 +105,16 @@ BufferedDynamicImageResource queryAndRenderChart(Monitor monitor, Date[] range)
         q.properties("startTime").between(range[0], range[1]);
 
         DataGatherer gatherer = new DataGatherer();
-        monitor.query(q, gatherer);
+        aggregated = monitor.getDAO() instanceof MemoryMonitorDAO;
+        if (aggregated) {
+            // use the precomputed per minute activity, it covers more than the request history
+            MemoryMonitorDAO dao = (MemoryMonitorDAO) monitor.getDAO();
+            for (ActivityStats stats : dao.getActivity(range[0], range[1])) {
+                gatherer.add(stats.getTime(), (int) stats.getCount());
+            }
+        } else {
+            monitor.query(q, gatherer);
+        }
 
         HashMap<RegularTimePeriod, Integer> data = gatherer.getData();
 
@@ -157,13 +171,17 @@ class DataGatherer implements RequestDataVisitor {
 
         @Override
         public void visit(RequestData r, Object... aggregates) {
-            RegularTimePeriod period = getTimePeriod(r.getStartTime());
+            add(r.getStartTime(), 1);
+        }
+
+        void add(Date time, int requests) {
+            RegularTimePeriod period = getTimePeriod(time);
             Integer count = data.get(period);
 
             if (count == null) {
-                count = Integer.valueOf(1);
+                count = Integer.valueOf(requests);
             } else {
-                count = Integer.valueOf(count.intValue() + 1);
+                count = Integer.valueOf(count.intValue() + requests);
             }
 
             data.put(period, count);
@@ -9,6 +9,7 @@
 import java.util.Calendar;
 import java.util.Date;
 import org.geoserver.monitor.Monitor;
+import org.jfree.data.time.Minute;
 import org.jfree.data.time.RegularTimePeriod;
 import org.jfree.data.time.Second;
 
@@ -35,8 +36,11 @@ protected Date[] getDateRange() {
 
     @Override
     protected RegularTimePeriod getTimePeriod(Date time) {
+        // the in memory storage only keeps per minute activity, the others have the single requests
+        if (aggregated) {
+            return new Minute(time);
+        }
         return new Second(time);
-        // return new Minute(time);
         // return new Hour(time);
     }
 
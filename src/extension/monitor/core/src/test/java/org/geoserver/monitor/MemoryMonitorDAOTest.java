@@ -5,7 +5,20 @@
  */
 package org.geoserver.monitor;
 
+import static org.geoserver.monitor.MonitorTestData.assertCovered;
+import static org.geoserver.monitor.MonitorTestData.assertCoveredInOrder;
+import static org.geoserver.monitor.MonitorTestData.toDate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import org.geoserver.monitor.MemoryMonitorDAO.ActivityStats;
+import org.geoserver.monitor.Query.Comparison;
+import org.geoserver.monitor.RequestData.Status;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
 public class MemoryMonitorDAOTest extends MonitorDAOTestSupport {
 
@@ -14,4 +27,108 @@ public static void createDAO() throws Exception {
         dao = new MemoryMonitorDAO();
         setUpData();
     }
+
+    @Test
+    public void testGetRequestsOr() throws Exception {
+        List<RequestData> datas =
+                dao.getRequests(
+                        new Query()
+                                .filter(
+                                        new Or(
+                                                new Filter("path", "/two", Comparison.EQ),
+                                                new Filter("path", "/seven", Comparison.EQ))));
+        assertCovered(datas, 2, 7);
+    }
+
+    @Test
+    public void testGetRequestsAnd() throws Exception {
+        List<RequestData> datas =
+                dao.getRequests(
+                        new Query()
+                                .filter("service", "foo", Comparison.EQ)
+                                .and("status", Status.RUNNING, Comparison.EQ));
+        assertCovered(datas, 11, 15, 20);
+    }
+
+    @Test
+    public void testGetRequestsByResource() throws Exception {
+        assertCovered(
+                dao.getRequests(new Query().filter("resource", "widgets", Comparison.EQ)),
+                11,
+                14,
+                18);
+        assertCovered(
+                dao.getRequests(
+                        new Query()
+                                .filter(
+                                        "resource",
+                                        Arrays.asList("widgets", "stuff"),
+                                        Comparison.IN)),
+                11,
+                13,
+                14,
+                15,
+                16,
+                17,
+                18,
+                19);
+        assertEquals(17, dao.getCount(new Query().filter("resource", "widgets", Comparison.NEQ)));
+    }
+
+    @Test
+    public void testHistorySize() throws Exception {
+        MonitorConfig config = new MonitorConfig();
+        config.getProperties().put("memory.historySize", "5");
+        MemoryMonitorDAO dao = new MemoryMonitorDAO();
+        dao.init(config);
+        new MonitorTestData(dao).setup();
+
+        // only the last 5 requests are kept
+        assertCoveredInOrder(dao.getRequests(), 16, 17, 18, 19, 20);
+        assertNull(dao.getRequest(15));
+        assertNotNull(dao.getRequest(16));
+        assertEquals(2, dao.getCount(new Query().filter("path", "/foo", Comparison.EQ)));
+    }
+
+    @Test
+    public void testUpdateColumns() throws Exception {
+        MemoryMonitorDAO dao = new MemoryMonitorDAO();
+        new MonitorTestData(dao).setup();
+
+        RequestData data = dao.getRequest(3);
+        data.setService("WMS");
+        data.setResources(Arrays.asList("roads"));
+        dao.update(data);
+
+        assertCoveredInOrder(
+                dao.getRequests(new Query().filter("service", "WMS", Comparison.EQ)), 3);
+        assertCoveredInOrder(
+                dao.getRequests(new Query().filter("resource", "roads", Comparison.EQ)), 3);
+    }
+
+    @Test
+    public void testActivity() throws Exception {
+        MonitorConfig config = new MonitorConfig();
+        config.getProperties().put("memory.historySize", "2");
+        MemoryMonitorDAO dao = new MemoryMonitorDAO();
+        dao.init(config);
+        new MonitorTestData(dao).setup();
+
+        // the activity is kept even for the requests no longer in the history
+        List<ActivityStats> activity =
+                dao.getActivity(toDate("2010-08-23T15:00:00"), toDate("2010-08-23T16:00:00"));
+        assertEquals(4, activity.size());
+        assertEquals(toDate("2010-08-23T15:26:00"), activity.get(0).getTime());
+        assertEquals(1, activity.get(0).getCount());
+        assertEquals(0, activity.get(0).getFailed());
+        assertEquals(toDate("2010-08-23T15:56:00"), activity.get(3).getTime());
+        assertEquals(1, activity.get(3).getFailed());
+
+        // running requests are accounted for too
+        RequestData running = dao.init(new RequestData());
+        running.setStartTime(toDate("2010-08-23T15:26:10"));
+        dao.add(running);
+        activity = dao.getActivity(null, toDate("2010-08-23T15:27:00"));
+        assertEquals(2, activity.get(activity.size() - 1).getCount());
+    }
 }
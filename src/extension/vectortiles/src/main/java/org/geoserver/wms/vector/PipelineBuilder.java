@@ -269,7 +269,10 @@ public PipelineBuilder transform(final boolean transformToScreenCoordinates) {
 
         final MathTransform tx = transformToScreenCoordinates ? sourceToScreen : sourceToTargetCrs;
 
-        addLast(new Transform(tx));
+        // geometries already in the target CRS, e.g., the ones partitioned out of a metatile
+        if (!tx.isIdentity()) {
+            addLast(new Transform(tx));
+        }
         return this;
     }
 
@@ -282,7 +285,41 @@ public PipelineBuilder simplify(
             boolean isTransformToScreenCoordinates,
             final Set<RenderingHints.Key> fsHints,
             final Hints qHints) {
+        setDistanceHint(fsHints, qHints);
+
+        double pixelDistance = context.screenSimplificationDistance;
+        double simplificationDistance = context.targetCRSSimplificationDistance;
+
+        double distanceTolerance =
+                isTransformToScreenCoordinates ? pixelDistance : simplificationDistance;
+
+        addLast(new Simplify(distanceTolerance));
+        return this;
+    }
+
+    /**
+     * Simplify the geometry in target CRS coordinates, once for all the tiles of a metatile, with a
+     * tolerance matching the one {@link #simplify} would use for each tile
+     *
+     * @param isTransformToScreenCoordinates Whether the tiles will be in screen coordinates
+     */
+    public PipelineBuilder simplifyMetaTile(
+            boolean isTransformToScreenCoordinates,
+            final Set<RenderingHints.Key> fsHints,
+            final Hints qHints) {
+        setDistanceHint(fsHints, qHints);
+
+        // the screen tolerance is expressed in pixels, convert it to target CRS units
+        double distanceTolerance =
+                isTransformToScreenCoordinates
+                        ? context.targetCRSSimplificationDistance * PIXEL_BASE_SAMPLE_SIZE
+                        : context.targetCRSSimplificationDistance;
 
+        addLast(new Simplify(distanceTolerance));
+        return this;
+    }
+
+    private void setDistanceHint(final Set<RenderingHints.Key> fsHints, final Hints qHints) {
         if (fsHints != null && qHints != null) {
             // if possible we let the datastore do the generalizations
 
@@ -296,14 +333,16 @@ public PipelineBuilder simplify(
                 // do not return: we can still perform some in memory generalization ...
             }
         }
-        double pixelDistance = context.screenSimplificationDistance;
-        double simplificationDistance = context.targetCRSSimplificationDistance;
-
-        double distanceTolerance =
-                isTransformToScreenCoordinates ? pixelDistance : simplificationDistance;
+    }
 
-        addLast(new Simplify(distanceTolerance));
-        return this;
+    /**
+     * Returns the rendering area expanded by the query buffer, in target CRS coordinates, that is,
+     * the area the features of the tile would be queried from if it was built on its own
+     */
+    public ReferencedEnvelope getBufferedArea() {
+        ReferencedEnvelope area = new ReferencedEnvelope(context.renderingArea);
+        area.expandBy(context.queryBuffer * context.pixelSizeInTargetCRS);
+        return area;
     }
 
     /**
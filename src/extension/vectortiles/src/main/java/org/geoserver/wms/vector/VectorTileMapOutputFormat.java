@@ -22,6 +22,8 @@
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
 import org.geoserver.wms.map.AbstractMapOutputFormat;
+import org.geoserver.wms.map.RawMap;
+import org.geoserver.wms.map.RawMetaTileMap;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
 import org.geotools.feature.FeatureCollection;
@@ -31,6 +33,7 @@
 import org.geotools.renderer.lite.VectorMapRenderUtils;
 import org.geotools.util.factory.Hints;
 import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.opengis.feature.Attribute;
 import org.opengis.feature.ComplexAttribute;
@@ -82,17 +85,14 @@ public WebMap produceMap(final WMSMapContent mapContent) throws ServiceException
         checkArgument(mapContent.getMapWidth() > 0);
         checkArgument(mapContent.getMapHeight() > 0);
 
-        final ReferencedEnvelope renderingArea = mapContent.getRenderingArea();
-        int mapWidth = mapContent.getMapWidth();
-        int mapHeight = mapContent.getMapHeight();
-        Rectangle paintArea = new Rectangle(mapWidth, mapHeight);
-        if (this.tileBuilderFactory.shouldOversampleScale()) {
-            paintArea =
-                    new Rectangle(
-                            this.tileBuilderFactory.getOversampleX() * mapWidth,
-                            this.tileBuilderFactory.getOversampleY() * mapHeight);
+        int[] metaTiling = RawMetaTileMap.getMetaTiling(mapContent.getRequest());
+        if (metaTiling != null && metaTiling[0] * metaTiling[1] > 1) {
+            return produceMetaTile(mapContent, metaTiling[0], metaTiling[1]);
         }
 
+        final ReferencedEnvelope renderingArea = mapContent.getRenderingArea();
+        Rectangle paintArea = getPaintArea(mapContent.getMapWidth(), mapContent.getMapHeight());
+
         final VectorTileBuilder vectorTileBuilder =
                 this.tileBuilderFactory.newBuilder(paintArea, renderingArea);
 
@@ -107,23 +107,7 @@ public WebMap produceMap(final WMSMapContent mapContent) throws ServiceException
             }
 
             sourceCrs = geometryDescriptor.getType().getCoordinateReferenceSystem();
-            int buffer =
-                    VectorMapRenderUtils.getComputedBuffer(
-                            mapContent.getBuffer(),
-                            VectorMapRenderUtils.getFeatureStyles(
-                                    layer,
-                                    paintArea,
-                                    VectorMapRenderUtils.getMapScale(mapContent, renderingArea),
-                                    featureSource.getSchema()));
-            if (this.tileBuilderFactory.shouldOversampleScale()) {
-                // buffer is in pixels (style pixels), need to convert to paint area pixels
-                buffer *=
-                        Math.max(
-                                Math.max(
-                                        this.tileBuilderFactory.getOversampleX(),
-                                        this.tileBuilderFactory.getOversampleY()),
-                                1); // if 0 (i.e. test case), don't expand
-            }
+            int buffer = getBuffer(mapContent, layer, paintArea);
 
             Query query = getStyleQuery(layer, mapContent);
             Hints hints = query.getHints();
@@ -149,6 +133,150 @@ public WebMap produceMap(final WMSMapContent mapContent) throws ServiceException
         return map;
     }
 
+    /**
+     * Builds all the tiles of a metatile in a single pass: each layer is queried once over the
+     * whole metatile, its geometries are transformed and simplified once, and then clipped into
+     * each of the tiles they overlap.
+     */
+    private WebMap produceMetaTile(WMSMapContent mapContent, int columns, int rows)
+            throws IOException {
+        final ReferencedEnvelope metaArea = mapContent.getRenderingArea();
+        final CoordinateReferenceSystem targetCrs = metaArea.getCoordinateReferenceSystem();
+        Rectangle metaPaintArea = getPaintArea(mapContent.getMapWidth(), mapContent.getMapHeight());
+        Rectangle tilePaintArea =
+                getPaintArea(mapContent.getMapWidth() / columns, mapContent.getMapHeight() / rows);
+        double tileWidth = metaArea.getWidth() / columns;
+        double tileHeight = metaArea.getHeight() / rows;
+
+        ReferencedEnvelope[][] tileAreas = new ReferencedEnvelope[columns][rows];
+        VectorTileBuilder[][] builders = new VectorTileBuilder[columns][rows];
+        for (int c = 0; c < columns; c++) {
+            for (int r = 0; r < rows; r++) {
+                double minX = metaArea.getMinX() + c * tileWidth;
+                double minY = metaArea.getMinY() + r * tileHeight;
+                tileAreas[c][r] =
+                        new ReferencedEnvelope(
+                                minX, minX + tileWidth, minY, minY + tileHeight, targetCrs);
+                builders[c][r] = tileBuilderFactory.newBuilder(tilePaintArea, tileAreas[c][r]);
+            }
+        }
+
+        for (Layer layer : mapContent.layers()) {
+            FeatureSource<?, ?> featureSource = layer.getFeatureSource();
+            GeometryDescriptor geometryDescriptor =
+                    featureSource.getSchema().getGeometryDescriptor();
+            if (null == geometryDescriptor) {
+                continue;
+            }
+
+            CoordinateReferenceSystem sourceCrs =
+                    geometryDescriptor.getType().getCoordinateReferenceSystem();
+            int buffer = getBuffer(mapContent, layer, metaPaintArea);
+
+            Query query = getStyleQuery(layer, mapContent);
+            Hints hints = query.getHints();
+
+            Pipeline pipeline;
+            Pipeline[][] tilePipelines = new Pipeline[columns][rows];
+            ReferencedEnvelope[][] tileBounds = new ReferencedEnvelope[columns][rows];
+            try {
+                // the per metatile steps, leaving the geometries in the target CRS
+                pipeline =
+                        PipelineBuilder.newBuilder(
+                                        metaArea,
+                                        metaPaintArea,
+                                        sourceCrs,
+                                        overSamplingFactor,
+                                        buffer)
+                                .preprocess()
+                                .transform(false)
+                                .simplifyMetaTile(
+                                        transformToScreenCoordinates,
+                                        featureSource.getSupportedHints(),
+                                        hints)
+                                .build();
+                // and the per tile ones
+                for (int c = 0; c < columns; c++) {
+                    for (int r = 0; r < rows; r++) {
+                        PipelineBuilder builder =
+                                PipelineBuilder.newBuilder(
+                                        new ReferencedEnvelope(tileAreas[c][r]),
+                                        tilePaintArea,
+                                        targetCrs,
+                                        overSamplingFactor,
+                                        buffer);
+                        tileBounds[c][r] = builder.getBufferedArea();
+                        tilePipelines[c][r] =
+                                builder.transform(transformToScreenCoordinates)
+                                        .clip(clipToMapBounds, transformToScreenCoordinates)
+                                        .collapseCollections()
+                                        .build();
+                    }
+                }
+            } catch (FactoryException e) {
+                throw new ServiceException(e);
+            }
+
+            hints.remove(Hints.SCREENMAP);
+
+            FeatureCollection<?, ?> features = featureSource.getFeatures(query);
+
+            runMetaTile(
+                    features,
+                    pipeline,
+                    geometryDescriptor,
+                    builders,
+                    tilePipelines,
+                    tileBounds,
+                    layer);
+        }
+
+        RawMap[][] tiles = new RawMap[columns][rows];
+        for (int c = 0; c < columns; c++) {
+            for (int r = 0; r < rows; r++) {
+                WebMap tile = builders[c][r].build(mapContent);
+                if (!(tile instanceof RawMap)) {
+                    throw new ServiceException(
+                            "Metatiling is not supported by the " + getMimeType() + " format");
+                }
+                tiles[c][r] = (RawMap) tile;
+            }
+        }
+        return new RawMetaTileMap(mapContent, tiles, tileBuilderFactory.getMimeType());
+    }
+
+    private Rectangle getPaintArea(int width, int height) {
+        if (this.tileBuilderFactory.shouldOversampleScale()) {
+            return new Rectangle(
+                    this.tileBuilderFactory.getOversampleX() * width,
+                    this.tileBuilderFactory.getOversampleY() * height);
+        }
+        return new Rectangle(width, height);
+    }
+
+    private int getBuffer(WMSMapContent mapContent, Layer layer, Rectangle paintArea) {
+        FeatureSource<?, ?> featureSource = layer.getFeatureSource();
+        int buffer =
+                VectorMapRenderUtils.getComputedBuffer(
+                        mapContent.getBuffer(),
+                        VectorMapRenderUtils.getFeatureStyles(
+                                layer,
+                                paintArea,
+                                VectorMapRenderUtils.getMapScale(
+                                        mapContent, mapContent.getRenderingArea()),
+                                featureSource.getSchema()));
+        if (this.tileBuilderFactory.shouldOversampleScale()) {
+            // buffer is in pixels (style pixels), need to convert to paint area pixels
+            buffer *=
+                    Math.max(
+                            Math.max(
+                                    this.tileBuilderFactory.getOversampleX(),
+                                    this.tileBuilderFactory.getOversampleY()),
+                            1); // if 0 (i.e. test case), don't expand
+        }
+        return buffer;
+    }
+
     protected Pipeline getPipeline(
             final WMSMapContent mapContent,
             final ReferencedEnvelope renderingArea,
@@ -250,6 +378,82 @@ void run(
         }
     }
 
+    void runMetaTile(
+            FeatureCollection<?, ?> features,
+            Pipeline pipeline,
+            GeometryDescriptor geometryDescriptor,
+            VectorTileBuilder[][] builders,
+            Pipeline[][] tilePipelines,
+            ReferencedEnvelope[][] tileBounds,
+            Layer layer) {
+        Stopwatch sw = Stopwatch.createStarted();
+        int count = 0;
+        int total = 0;
+        final String geometryName = geometryDescriptor.getName().getLocalPart();
+
+        try (FeatureIterator<?> it = features.features()) {
+            while (it.hasNext()) {
+                Feature feature = it.next();
+                total++;
+
+                Geometry originalGeom = (Geometry) feature.getDefaultGeometryProperty().getValue();
+                Geometry metaGeom;
+                try {
+                    metaGeom = pipeline.execute(originalGeom);
+                } catch (Exception processingException) {
+                    LOGGER.log(
+                            Level.WARNING,
+                            processingException.getLocalizedMessage(),
+                            processingException);
+                    continue;
+                }
+                if (metaGeom.isEmpty()) {
+                    continue;
+                }
+
+                final String layerName = feature.getType().getName().getLocalPart();
+                final String featureId = feature.getIdentifier().toString();
+                Map<String, Object> properties = null;
+
+                Envelope envelope = metaGeom.getEnvelopeInternal();
+                for (int c = 0; c < builders.length; c++) {
+                    for (int r = 0; r < builders[c].length; r++) {
+                        if (!tileBounds[c][r].intersects(envelope)) {
+                            continue;
+                        }
+                        Geometry finalGeom;
+                        try {
+                            finalGeom = tilePipelines[c][r].execute(metaGeom);
+                        } catch (Exception processingException) {
+                            LOGGER.log(
+                                    Level.WARNING,
+                                    processingException.getLocalizedMessage(),
+                                    processingException);
+                            continue;
+                        }
+                        if (finalGeom.isEmpty()) {
+                            continue;
+                        }
+                        if (properties == null) {
+                            properties = getProperties(feature);
+                        }
+                        builders[c][r].addFeature(
+                                layerName, featureId, geometryName, finalGeom, properties);
+                        count++;
+                    }
+                }
+            }
+        }
+        sw.stop();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            String msg =
+                    String.format(
+                            "Added %,d tile features out of %,d features of '%s' in %s",
+                            count, total, layer.getTitle(), sw);
+            LOGGER.fine(msg);
+        }
+    }
+
     /** @return {@code null}, not a raster format. */
     @Override
     public MapProducerCapabilities getCapabilities(String format) {
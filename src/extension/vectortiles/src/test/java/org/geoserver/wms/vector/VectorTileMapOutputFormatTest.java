@@ -24,6 +24,7 @@
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -32,10 +33,13 @@
 import org.geoserver.catalog.SLDHandler;
 import org.geoserver.config.GeoServerLoader;
 import org.geoserver.platform.GeoServerExtensionsHelper;
+import org.geoserver.platform.ServiceException;
 import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.MapLayerInfo;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
+import org.geoserver.wms.map.RawMap;
+import org.geoserver.wms.map.RawMetaTileMap;
 import org.geoserver.wms.mapbox.MapBoxTileBuilderFactory;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.Query;
@@ -452,6 +456,120 @@ public void testCQLfilter() throws Exception {
                         anyProperties());
     }
 
+    @Test
+    public void testMetaTile() throws Exception {
+        ReferencedEnvelope metaBounds = new ReferencedEnvelope(-45, 45, -45, 45, WGS84);
+        double[] tileOrigins = {-45, 0};
+
+        // the features each tile gets when built on its own
+        Map<String, Set<String>> expected = new HashMap<>();
+        for (int c = 0; c < 2; c++) {
+            for (int r = 0; r < 2; r++) {
+                ReferencedEnvelope tileBounds =
+                        new ReferencedEnvelope(
+                                tileOrigins[c],
+                                tileOrigins[c] + 45,
+                                tileOrigins[r],
+                                tileOrigins[r] + 45,
+                                WGS84);
+                RecordingTileBuilder builder = new RecordingTileBuilder();
+                VectorTileBuilderFactory factory = mockFactory();
+                when(factory.newBuilder(any(Rectangle.class), any(ReferencedEnvelope.class)))
+                        .thenReturn(builder);
+                VectorTileMapOutputFormat format = new VectorTileMapOutputFormat(factory);
+                format.setClipToMapBounds(true);
+                format.produceMap(
+                        createMapContent(tileBounds, new Rectangle(256, 256), 0, pointLayer));
+                expected.put(c + "_" + r, builder.features);
+            }
+        }
+
+        // build them all in one go
+        Map<ReferencedEnvelope, RecordingTileBuilder> builders = new HashMap<>();
+        VectorTileBuilderFactory factory = mockFactory();
+        when(factory.newBuilder(any(Rectangle.class), any(ReferencedEnvelope.class)))
+                .thenAnswer(
+                        invocation -> {
+                            Rectangle paintArea = invocation.getArgument(0);
+                            Assert.assertEquals(new Rectangle(256, 256), paintArea);
+                            ReferencedEnvelope area = invocation.getArgument(1);
+                            return builders.computeIfAbsent(
+                                    new ReferencedEnvelope(area), e -> new RecordingTileBuilder());
+                        });
+        VectorTileMapOutputFormat format = new VectorTileMapOutputFormat(factory);
+        format.setClipToMapBounds(true);
+        WMSMapContent mapContent =
+                createMapContent(metaBounds, new Rectangle(512, 512), 0, pointLayer);
+        mapContent.getRequest().getFormatOptions().put("metatile", "2x2");
+        WebMap map = format.produceMap(mapContent);
+
+        Assert.assertTrue(map instanceof RawMetaTileMap);
+        RawMetaTileMap metaTile = (RawMetaTileMap) map;
+        Assert.assertEquals(2, metaTile.getColumns());
+        Assert.assertEquals(2, metaTile.getRows());
+        Assert.assertEquals(4, builders.size());
+        for (int c = 0; c < 2; c++) {
+            for (int r = 0; r < 2; r++) {
+                ReferencedEnvelope tileBounds =
+                        new ReferencedEnvelope(
+                                tileOrigins[c],
+                                tileOrigins[c] + 45,
+                                tileOrigins[r],
+                                tileOrigins[r] + 45,
+                                WGS84);
+                RecordingTileBuilder builder = builders.get(tileBounds);
+                Assert.assertEquals(expected.get(c + "_" + r), builder.features);
+                assertSame(builder.map, metaTile.getTile(c, r));
+            }
+        }
+        // the south-east tile gets the southern points only
+        Set<String> southEast = builders.get(new ReferencedEnvelope(0, 45, -45, 0, WGS84)).features;
+        Assert.assertTrue(southEast.contains("pointNear"));
+        Assert.assertTrue(southEast.contains("pointFar"));
+        Assert.assertFalse(southEast.contains("point3"));
+    }
+
+    @Test(expected = ServiceException.class)
+    public void testMetaTileInvalid() throws Exception {
+        ReferencedEnvelope mapBounds = new ReferencedEnvelope(-45, 45, -45, 45, WGS84);
+        WMSMapContent mapContent =
+                createMapContent(mapBounds, new Rectangle(512, 512), 0, pointLayer);
+        // 512 cannot be split in 3 tiles
+        mapContent.getRequest().getFormatOptions().put("metatile", "3x2");
+        outputFormat.produceMap(mapContent);
+    }
+
+    private VectorTileBuilderFactory mockFactory() {
+        VectorTileBuilderFactory factory = mock(VectorTileBuilderFactory.class);
+        when(factory.getMimeType()).thenReturn("testMime");
+        when(factory.getOutputFormats()).thenReturn(ImmutableSet.of("testMime", "testFormat"));
+        return factory;
+    }
+
+    /** Records the identifiers of the features added to the tile */
+    private static class RecordingTileBuilder implements VectorTileBuilder {
+
+        Set<String> features = new HashSet<>();
+
+        RawMap map;
+
+        @Override
+        public void addFeature(
+                String layerName,
+                String featureId,
+                String geometryName,
+                Geometry geometry,
+                Map<String, Object> properties) {
+            features.add(featureId);
+        }
+
+        @Override
+        public WebMap build(WMSMapContent mapContent) throws IOException {
+            map = new RawMap(mapContent, new byte[0], "testMime");
+            return map;
+        }
+    }
+
     private WMSMapContent createMapContent(
             ReferencedEnvelope mapBounds, Rectangle renderingArea, Integer buffer, Layer... layers)
             throws Exception {
@@ -11,6 +11,7 @@
 import static com.google.common.collect.Iterators.forEnumeration;
 import static com.google.common.collect.Lists.newArrayList;
 import static org.geowebcache.grid.GridUtil.findBestMatchingGrid;
+import static org.geowebcache.seed.GWCTask.TYPE.SEED;
 import static org.geowebcache.seed.GWCTask.TYPE.TRUNCATE;
 
 import com.google.common.base.Preconditions;
@@ -65,6 +66,8 @@
 import org.geoserver.gwc.layer.GeoServerTileLayer;
 import org.geoserver.gwc.layer.GeoServerTileLayerInfo;
 import org.geoserver.gwc.layer.GeoServerTileLayerInfoImpl;
+import org.geoserver.gwc.layer.MetaTileWriter;
+import org.geoserver.gwc.seed.PredictiveSeeder;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.HttpErrorCodeException;
 import org.geoserver.ows.Request;
@@ -138,6 +141,7 @@
 import org.geowebcache.storage.DefaultStorageFinder;
 import org.geowebcache.storage.StorageBroker;
 import org.geowebcache.storage.StorageException;
+import org.geowebcache.storage.TileObject;
 import org.geowebcache.storage.TileRange;
 import org.geowebcache.util.ServletUtils;
 import org.locationtech.jts.densify.Densifier;
@@ -205,6 +209,10 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
 
     private ConfigurableLockProvider lockProvider;
 
+    private MetaTileWriter metaTileWriter;
+
+    private PredictiveSeeder predictiveSeeder;
+
     private JDBCConfigurationStorage jdbcConfigurationStorage;
 
     private FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
@@ -419,6 +427,7 @@ public void truncate(final String layerName, final ReferencedEnvelope bounds)
             throws GeoWebCacheException {
 
         final TileLayer tileLayer = tld.getTileLayer(layerName);
+        discardPendingTiles(layerName);
         final Collection<String> gridSubSets = tileLayer.getGridSubsets();
 
         /*
@@ -583,10 +592,123 @@ private void truncate(
             final GridSubset gridSubset,
             String formatName,
             Map<String, String> parameters) {
-        final int threadCount = 1;
+        discardPendingTiles(layer.getName());
         int zoomStart = gridSubset.getZoomStart();
         int zoomStop = gridSubset.getZoomStop();
-        final TYPE taskType = TRUNCATE;
+        dispatchTasks(
+                layer, bounds, gridSubset, formatName, parameters, zoomStart, zoomStop, TRUNCATE);
+    }
+
+    /**
+     * Truncates the tiles of a layer intersecting the bounds in the given zoom levels, for all its
+     * formats and cached styles
+     *
+     * @param layerName name of the layer to truncate, non {@code null}
+     * @param gridSetId grid set to truncate, non {@code null}
+     * @param bounds bounds to truncate, in the grid set CRS
+     * @param zoomStart first zoom level to truncate
+     * @param zoomStop last zoom level to truncate
+     */
+    public void truncate(
+            String layerName, String gridSetId, BoundingBox bounds, int zoomStart, int zoomStop) {
+        final TileLayer layer = getTileLayerByName(layerName);
+        final GridSubset gridSubset = layer.getGridSubset(gridSetId);
+        if (gridSubset == null) {
+            return;
+        }
+        discardPendingTiles(layerName);
+        final String defaultStyle = layer.getStyles();
+        Set<String> styleNames = getCachedStyles(layerName);
+        if (styleNames.isEmpty()) {
+            styleNames.add("");
+        }
+        for (String style : styleNames) {
+            Map<String, String> parameters = null;
+            if (style.length() > 0 && !style.equals(defaultStyle)) {
+                parameters = Collections.singletonMap("STYLES", style);
+            }
+            for (MimeType mime : layer.getMimeTypes()) {
+                dispatchTasks(
+                        layer,
+                        bounds,
+                        gridSubset,
+                        mime.getFormat(),
+                        parameters,
+                        zoomStart,
+                        zoomStop,
+                        TRUNCATE);
+            }
+        }
+    }
+
+    /**
+     * Seeds the missing tiles of a layer intersecting the bounds in the given zoom levels, for all
+     * its formats, with the default style
+     *
+     * @param layerName name of the layer to seed, non {@code null}
+     * @param gridSetId grid set to seed, non {@code null}
+     * @param bounds bounds to seed, in the grid set CRS
+     * @param zoomStart first zoom level to seed
+     * @param zoomStop last zoom level to seed
+     */
+    public void seed(
+            String layerName, String gridSetId, BoundingBox bounds, int zoomStart, int zoomStop) {
+        final TileLayer layer = getTileLayerByName(layerName);
+        final GridSubset gridSubset = layer.getGridSubset(gridSetId);
+        if (gridSubset == null) {
+            return;
+        }
+        for (MimeType mime : layer.getMimeTypes()) {
+            dispatchTasks(
+                    layer, bounds, gridSubset, mime.getFormat(), null, zoomStart, zoomStop, SEED);
+        }
+    }
+
+    /**
+     * Deletes the given tiles of a layer, for all its formats and cached parameters
+     *
+     * @param layerName name of the layer, non {@code null}
+     * @param gridSetId grid set of the tiles, non {@code null}
+     * @param tileIndexes the x, y, z index of each tile
+     * @return the number of tiles that were found and deleted, in at least one format or parameters
+     *     combination
+     */
+    public int deleteTiles(String layerName, String gridSetId, Collection<long[]> tileIndexes)
+            throws StorageException {
+        final TileLayer layer = getTileLayerByName(layerName);
+        discardPendingTiles(layerName);
+        Set<Map<String, String>> parameters =
+                new HashSet<>(storageBroker.getCachedParameters(layerName));
+        // the tiles cached with the default parameters
+        parameters.add(null);
+        int deleted = 0;
+        for (long[] tileIndex : tileIndexes) {
+            boolean found = false;
+            for (MimeType mime : layer.getMimeTypes()) {
+                for (Map<String, String> params : parameters) {
+                    TileObject tile =
+                            TileObject.createQueryTileObject(
+                                    layerName, tileIndex, gridSetId, mime.getFormat(), params);
+                    found |= storageBroker.delete(tile);
+                }
+            }
+            if (found) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private void dispatchTasks(
+            final TileLayer layer,
+            final BoundingBox bounds,
+            final GridSubset gridSubset,
+            String formatName,
+            Map<String, String> parameters,
+            int zoomStart,
+            int zoomStop,
+            TYPE taskType) {
+        final int threadCount = 1;
         SeedRequest req =
                 new SeedRequest(
                         layer.getName(),
@@ -651,6 +773,7 @@ private Set<String> getCachedStyles(final String layerName) {
      *     false} if there wasn't a cache for that layer.
      */
     public synchronized boolean layerRemoved(final String prefixedName) {
+        discardPendingTiles(prefixedName);
         try {
             return storageBroker.delete(prefixedName);
         } catch (StorageException e) {
@@ -2038,6 +2161,7 @@ public boolean isInternalGridSet(final String gridSetId) {
      *     delete all tiles (sigh)
      */
     public void deleteCacheByGridSetId(final String layerName, final String gridSetId) {
+        discardPendingTiles(layerName);
         try {
             storageBroker.deleteByGridSetId(layerName, gridSetId);
         } catch (StorageException e) {
@@ -2356,6 +2480,35 @@ public LockProvider getLockProvider() {
         return lockProvider;
     }
 
+    /** The writer used to encode and store the meta tiles of the GeoServer tile layers, if any */
+    public MetaTileWriter getMetaTileWriter() {
+        return metaTileWriter;
+    }
+
+    public void setMetaTileWriter(MetaTileWriter metaTileWriter) {
+        this.metaTileWriter = metaTileWriter;
+    }
+
+    /** The seeder of the most requested tiles, if any */
+    public PredictiveSeeder getPredictiveSeeder() {
+        return predictiveSeeder;
+    }
+
+    public void setPredictiveSeeder(PredictiveSeeder predictiveSeeder) {
+        this.predictiveSeeder = predictiveSeeder;
+    }
+
+    public StorageBroker getStorageBroker() {
+        return storageBroker;
+    }
+
+    /** Drops the tiles of the layer still waiting to be written, ahead of a truncation */
+    private void discardPendingTiles(String layerName) {
+        if (metaTileWriter != null) {
+            metaTileWriter.discard(layerName);
+        }
+    }
+
     public JDBCConfiguration getJDBCDiskQuotaConfig()
             throws IOException, org.geowebcache.config.ConfigurationException {
         return jdbcConfigurationStorage.getJDBCDiskQuotaConfig();
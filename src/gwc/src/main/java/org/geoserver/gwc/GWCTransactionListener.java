@@ -8,6 +8,7 @@
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +21,7 @@
 import net.opengis.wfs.TransactionType;
 import net.opengis.wfs.UpdateElementType;
 import org.eclipse.emf.ecore.EObject;
+import org.geoserver.gwc.TileInvalidationQueue.DirtyAreas;
 import org.geoserver.wfs.TransactionCallback;
 import org.geoserver.wfs.TransactionEvent;
 import org.geoserver.wfs.TransactionEventType;
@@ -27,11 +29,15 @@
 import org.geoserver.wfs.request.TransactionRequest;
 import org.geoserver.wfs.request.TransactionResponse;
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.geometry.jts.JTS;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.geometry.jts.ReferencedEnvelope3D;
 import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
 import org.geowebcache.GeoWebCacheException;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.TransformException;
@@ -57,11 +63,28 @@ public class GWCTransactionListener implements TransactionCallback {
 
     static final String GWC_TRANSACTION_INFO_PLACEHOLDER = "GWC_TRANSACTION_INFO_PLACEHOLDER";
 
+    static final String GWC_TRANSACTION_GEOMETRIES_PLACEHOLDER =
+            "GWC_TRANSACTION_GEOMETRIES_PLACEHOLDER";
+
+    private TileInvalidationQueue invalidationQueue;
+
     /** @param gwc */
     public GWCTransactionListener(final GWC gwc) {
         this.gwc = gwc;
     }
 
+    /**
+     * Sets the queue the modified geometries are handed to, when enabled, instead of truncating the
+     * caches by bounds at the end of the transaction
+     */
+    public void setInvalidationQueue(TileInvalidationQueue invalidationQueue) {
+        this.invalidationQueue = invalidationQueue;
+    }
+
+    private boolean isQueueEnabled() {
+        return invalidationQueue != null && invalidationQueue.isEnabled();
+    }
+
     /**
      * Not used, we're interested in the {@link #dataStoreChange} and {@link #afterTransaction}
      * hooks
@@ -104,6 +127,10 @@ public void afterTransaction(
     }
 
     private void afterTransactionInternal(final TransactionRequest transaction, boolean committed) {
+        if (isQueueEnabled()) {
+            getByLayerDirtyAreas(transaction).forEach(invalidationQueue::add);
+            return;
+        }
 
         final Map<String, List<ReferencedEnvelope>> byLayerDirtyRegions =
                 getByLayerDirtyRegions(transaction);
@@ -207,6 +234,17 @@ private void dataStoreChangeInternal(final TransactionEvent event) {
         }
 
         final SimpleFeatureCollection affectedFeatures = event.getAffectedFeatures();
+        if (isQueueEnabled()) {
+            // collect the geometries now, the updated features would be read in their new state
+            TransactionRequest request = TransactionRequest.adapt(event.getRequest());
+            Map<String, DirtyAreas> byLayerDirtyAreas = getByLayerDirtyAreas(request);
+            for (String tileLayerName : affectedTileLayers) {
+                DirtyAreas areas =
+                        byLayerDirtyAreas.computeIfAbsent(tileLayerName, k -> new DirtyAreas());
+                addAffectedGeometries(areas, tileLayerName, affectedFeatures);
+            }
+            return;
+        }
         final ReferencedEnvelope affectedBounds = affectedFeatures.getBounds();
 
         final TransactionType transaction = event.getRequest();
@@ -232,6 +270,40 @@ private Map<String, List<ReferencedEnvelope>> getByLayerDirtyRegions(
         return byLayerDirtyRegions;
     }
 
+    @SuppressWarnings("unchecked")
+    private Map<String, DirtyAreas> getByLayerDirtyAreas(final TransactionRequest transaction) {
+        final Map<Object, Object> extendedProperties = transaction.getExtendedProperties();
+        return (Map<String, DirtyAreas>)
+                extendedProperties.computeIfAbsent(
+                        GWC_TRANSACTION_GEOMETRIES_PLACEHOLDER, k -> new HashMap<>());
+    }
+
+    /**
+     * Adds the geometries of the affected features, or their bounds if there are too many of them
+     */
+    private void addAffectedGeometries(
+            DirtyAreas areas, String tileLayerName, SimpleFeatureCollection affectedFeatures) {
+        CoordinateReferenceSystem crs = affectedFeatures.getSchema().getCoordinateReferenceSystem();
+        if (crs == null) {
+            crs = gwc.getDeclaredCrs(tileLayerName);
+        }
+        List<Geometry> geometries = new ArrayList<>();
+        try (SimpleFeatureIterator it = affectedFeatures.features()) {
+            while (it.hasNext()) {
+                Object geometry = it.next().getDefaultGeometry();
+                if (geometry instanceof Geometry) {
+                    geometries.add((Geometry) geometry);
+                }
+                if (geometries.size() > TileInvalidationQueue.MAX_GEOMETRIES) {
+                    ReferencedEnvelope bounds = affectedFeatures.getBounds();
+                    geometries = Collections.singletonList(JTS.toGeometry((Envelope) bounds));
+                    break;
+                }
+            }
+        }
+        areas.add(crs, geometries);
+    }
+
     private void addLayerDirtyRegion(
             final TransactionRequest transaction,
             final String tileLayerName,
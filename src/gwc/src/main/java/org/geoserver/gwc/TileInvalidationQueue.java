@@ -0,0 +1,455 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.geowebcache.grid.BoundingBox;
+import org.geowebcache.grid.GridSubset;
+import org.geowebcache.grid.SRS;
+import org.geowebcache.layer.TileLayer;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Invalidates the tiles touched by the geometries modified in a transaction, in the background.
+ *
+ * <p>The edits are collected per tile layer for {@link #DELAY} milliseconds, so that the ones
+ * issued in a quick succession are handled in one go. Then, for each grid set and zoom level, the
+ * tiles actually intersecting the modified geometries are deleted, rather than all the tiles in
+ * their bounds. When the geometries span more than {@link #MAX_TILES} tiles at a zoom level, that
+ * level and the following ones are truncated by bounds instead. The deleted tiles can optionally be
+ * seeded again. If the tiles of a grid set cannot be invalidated one by one, the grid set is
+ * truncated by the bounds of the modified geometries.
+ *
+ * <p>The queue is disabled by default, the transactions then truncate the caches synchronously by
+ * bounds.
+ */
+public class TileInvalidationQueue implements DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(TileInvalidationQueue.class);
+
+    /** Milliseconds the edits are collected for, 0 or less disables the queue */
+    static final long DELAY = Long.getLong("gwc.invalidation.delay", 0);
+
+    /** Tiles per zoom level above which the tiles are truncated by bounds */
+    static final int MAX_TILES = Integer.getInteger("gwc.invalidation.maxTiles", 10000);
+
+    /** Pixels the modified geometries are expanded by, to account for the symbol sizes */
+    static final int BUFFER = Integer.getInteger("gwc.invalidation.buffer", 0);
+
+    /** Whether the deleted tiles are seeded again */
+    static final boolean RESEED = Boolean.getBoolean("gwc.invalidation.reseed");
+
+    /**
+     * Geometries kept per modified feature collection, and per layer while the edits are collected,
+     * their bounds are used beyond this
+     */
+    static final int MAX_GEOMETRIES = Integer.getInteger("gwc.invalidation.maxGeometries", 1000);
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    private final GWC gwc;
+
+    private final long delay;
+
+    private final int maxTiles;
+
+    private final int buffer;
+
+    private final boolean reseed;
+
+    private final int maxGeometries;
+
+    private final ScheduledExecutorService executor;
+
+    /** The edits waiting to be processed, by tile layer name */
+    private final Map<String, DirtyAreas> pending = new LinkedHashMap<>();
+
+    private final AtomicLong geometries = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong invalidatedTiles = new AtomicLong();
+
+    private final AtomicLong truncatedLevels = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    public TileInvalidationQueue(GWC gwc) {
+        this(gwc, DELAY, MAX_TILES, BUFFER, RESEED);
+    }
+
+    public TileInvalidationQueue(GWC gwc, long delay, int maxTiles, int buffer, boolean reseed) {
+        this(gwc, delay, maxTiles, buffer, reseed, MAX_GEOMETRIES);
+    }
+
+    public TileInvalidationQueue(
+            GWC gwc, long delay, int maxTiles, int buffer, boolean reseed, int maxGeometries) {
+        this.gwc = gwc;
+        this.delay = delay;
+        this.maxTiles = maxTiles;
+        this.buffer = buffer;
+        this.reseed = reseed;
+        this.maxGeometries = maxGeometries;
+        this.executor =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setDaemon(true)
+                                .setNameFormat("gwc-tile-invalidation-%d")
+                                .build());
+    }
+
+    public boolean isEnabled() {
+        return delay > 0;
+    }
+
+    /**
+     * Queues the areas modified in a tile layer, the affected tiles will be invalidated after the
+     * configured delay, along with any other area of the same layer queued in the meantime. Past
+     * the max number of geometries, the areas of the layer are reduced to their bounds.
+     */
+    public void add(String layerName, DirtyAreas areas) {
+        geometries.addAndGet(areas.size());
+        synchronized (pending) {
+            DirtyAreas layerAreas = pending.get(layerName);
+            if (layerAreas == null) {
+                layerAreas = new DirtyAreas();
+                pending.put(layerName, layerAreas);
+                executor.schedule(() -> process(layerName), delay, TimeUnit.MILLISECONDS);
+            }
+            layerAreas.addAll(areas);
+            if (layerAreas.size() > maxGeometries) {
+                layerAreas.reduceToBounds();
+            }
+        }
+    }
+
+    /** Invalidates the tiles for all the queued edits, without waiting for the delay to expire */
+    public void flush() {
+        List<String> layerNames;
+        synchronized (pending) {
+            layerNames = new ArrayList<>(pending.keySet());
+        }
+        layerNames.forEach(this::process);
+    }
+
+    private void process(String layerName) {
+        DirtyAreas areas;
+        synchronized (pending) {
+            areas = pending.remove(layerName);
+        }
+        if (areas == null) {
+            return;
+        }
+        batches.incrementAndGet();
+        try {
+            Stopwatch sw = Stopwatch.createStarted();
+            long tiles = invalidate(layerName, areas);
+            invalidatedTiles.addAndGet(tiles);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(
+                        String.format(
+                                "Invalidated %,d tiles of %s for %,d modified geometries in %s",
+                                tiles, layerName, areas.size(), sw.stop()));
+            }
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Error invalidating the tiles of " + layerName, e);
+        }
+    }
+
+    private long invalidate(String layerName, DirtyAreas areas) {
+        final TileLayer layer = gwc.getTileLayerByName(layerName);
+        long tiles = 0;
+        for (String gridSetId : layer.getGridSubsets()) {
+            GridSubset gridSubset = layer.getGridSubset(gridSetId);
+            try {
+                List<Geometry> dirty = transform(areas, gridSubset);
+                if (!dirty.isEmpty()) {
+                    tiles += invalidate(layerName, gridSubset, dirty);
+                }
+            } catch (Exception e) {
+                // don't leave stale tiles around, fall back on the truncation by bounds
+                failures.incrementAndGet();
+                LOGGER.log(
+                        Level.WARNING,
+                        "Error invalidating the tiles of "
+                                + layerName
+                                + " in "
+                                + gridSetId
+                                + ", truncating by bounds",
+                        e);
+                truncate(layerName, gridSubset, areas);
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Truncates the tiles of the grid subset in the bounds of the modified geometries, or all of
+     * them if the bounds cannot be transformed to the grid set CRS
+     */
+    private void truncate(String layerName, GridSubset gridSubset, DirtyAreas areas) {
+        final BoundingBox extent = gridSubset.getOriginalExtent();
+        BoundingBox bounds;
+        try {
+            CoordinateReferenceSystem gridSetCrs =
+                    CRS.decode("EPSG:" + gridSubset.getSRS().getNumber(), true);
+            Envelope envelope = new Envelope();
+            for (Map.Entry<CoordinateReferenceSystem, List<Geometry>> entry :
+                    areas.geometries.entrySet()) {
+                ReferencedEnvelope modified =
+                        new ReferencedEnvelope(CRS.getHorizontalCRS(entry.getKey()));
+                entry.getValue().forEach(g -> modified.expandToInclude(g.getEnvelopeInternal()));
+                envelope.expandToInclude(modified.transform(gridSetCrs, true));
+            }
+            if (envelope.isNull() || !extent.intersects(toBoundingBox(envelope))) {
+                return;
+            }
+            bounds = BoundingBox.intersection(extent, toBoundingBox(envelope));
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not compute the modified bounds, truncating all", e);
+            bounds = extent;
+        }
+        int zoomStart = gridSubset.getZoomStart();
+        int zoomStop = gridSubset.getZoomStop();
+        gwc.truncate(layerName, gridSubset.getName(), bounds, zoomStart, zoomStop);
+        truncatedLevels.addAndGet(zoomStop - zoomStart + 1);
+    }
+
+    /** Transforms the modified geometries to the grid set CRS */
+    private List<Geometry> transform(DirtyAreas areas, GridSubset gridSubset) throws Exception {
+        final SRS srs = gridSubset.getSRS();
+        final CoordinateReferenceSystem gridSetCrs = CRS.decode("EPSG:" + srs.getNumber(), true);
+        final BoundingBox extent = gridSubset.getOriginalExtent();
+        final Envelope coverage =
+                new Envelope(
+                        extent.getMinX(), extent.getMaxX(), extent.getMinY(), extent.getMaxY());
+
+        List<Geometry> result = new ArrayList<>();
+        for (Map.Entry<CoordinateReferenceSystem, List<Geometry>> entry :
+                areas.geometries.entrySet()) {
+            CoordinateReferenceSystem crs = CRS.getHorizontalCRS(entry.getKey());
+            MathTransform tx = CRS.findMathTransform(crs, gridSetCrs, true);
+            for (Geometry geometry : entry.getValue()) {
+                Geometry transformed;
+                try {
+                    transformed = tx.isIdentity() ? geometry : JTS.transform(geometry, tx);
+                } catch (Exception e) {
+                    // fall back on the bounds, as the truncation by bounds would
+                    LOGGER.log(Level.FINE, "Could not transform, using the bounds", e);
+                    transformed =
+                            JTS.toGeometry(
+                                    new ReferencedEnvelope(geometry.getEnvelopeInternal(), crs)
+                                            .transform(gridSetCrs, true));
+                }
+                if (!transformed.isEmpty()
+                        && coverage.intersects(transformed.getEnvelopeInternal())) {
+                    result.add(transformed);
+                }
+            }
+        }
+        return result;
+    }
+
+    private long invalidate(String layerName, GridSubset gridSubset, List<Geometry> dirty)
+            throws Exception {
+        final String gridSetId = gridSubset.getName();
+        List<PreparedGeometry> prepared = new ArrayList<>(dirty.size());
+        for (Geometry geometry : dirty) {
+            prepared.add(PreparedGeometryFactory.prepare(geometry));
+        }
+
+        long tiles = 0;
+        for (int z = gridSubset.getZoomStart(); z <= gridSubset.getZoomStop(); z++) {
+            double distance = buffer * gridSubset.getGridSet().getGrid(z).getResolution();
+            Set<TileIndex> hits = new HashSet<>();
+            Envelope dirtyBounds = new Envelope();
+            boolean overflow = false;
+            for (PreparedGeometry geometry : prepared) {
+                Envelope envelope = new Envelope(geometry.getGeometry().getEnvelopeInternal());
+                envelope.expandBy(distance);
+                dirtyBounds.expandToInclude(envelope);
+                long[] range = gridSubset.getCoverageIntersection(z, toBoundingBox(envelope));
+                if (range == null || range[0] > range[2] || range[1] > range[3]) {
+                    continue;
+                }
+                long count = (range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+                if (overflow || hits.size() + count > maxTiles) {
+                    overflow = true;
+                    continue;
+                }
+                for (long x = range[0]; x <= range[2]; x++) {
+                    for (long y = range[1]; y <= range[3]; y++) {
+                        long[] index = {x, y, z};
+                        BoundingBox bounds = gridSubset.boundsFromIndex(index);
+                        Envelope tile =
+                                new Envelope(
+                                        bounds.getMinX(),
+                                        bounds.getMaxX(),
+                                        bounds.getMinY(),
+                                        bounds.getMaxY());
+                        tile.expandBy(distance);
+                        if (geometry.intersects(GEOMETRY_FACTORY.toGeometry(tile))) {
+                            hits.add(new TileIndex(index));
+                        }
+                    }
+                }
+            }
+
+            if (overflow) {
+                // too many tiles to check one by one, and more at the next levels
+                int zoomStop = gridSubset.getZoomStop();
+                gwc.truncate(layerName, gridSetId, toBoundingBox(dirtyBounds), z, zoomStop);
+                truncatedLevels.addAndGet(zoomStop - z + 1);
+                break;
+            }
+            if (hits.isEmpty()) {
+                continue;
+            }
+
+            List<long[]> indexes = new ArrayList<>(hits.size());
+            Envelope hitBounds = new Envelope();
+            for (TileIndex hit : hits) {
+                indexes.add(hit.index);
+                BoundingBox bounds = gridSubset.boundsFromIndex(hit.index);
+                hitBounds.expandToInclude(bounds.getMinX(), bounds.getMinY());
+                hitBounds.expandToInclude(bounds.getMaxX(), bounds.getMaxY());
+            }
+            tiles += gwc.deleteTiles(layerName, gridSetId, indexes);
+            if (reseed) {
+                // seeding only renders the tiles missing in the area, that is, the deleted ones
+                hitBounds.expandBy(-gridSubset.getGridSet().getGrid(z).getResolution());
+                gwc.seed(layerName, gridSetId, toBoundingBox(hitBounds), z, z);
+            }
+        }
+        return tiles;
+    }
+
+    private static BoundingBox toBoundingBox(Envelope envelope) {
+        return new BoundingBox(
+                envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY());
+    }
+
+    /** Number of modified geometries received */
+    public long getGeometriesCount() {
+        return geometries.get();
+    }
+
+    /** Number of times the tiles of a layer have been invalidated */
+    public long getBatchesCount() {
+        return batches.get();
+    }
+
+    /** Number of tiles deleted one by one, regardless of their formats and parameters */
+    public long getInvalidatedTilesCount() {
+        return invalidatedTiles.get();
+    }
+
+    /** Number of zoom levels truncated by bounds, as they had too many tiles to check */
+    public long getTruncatedLevelsCount() {
+        return truncatedLevels.get();
+    }
+
+    public long getFailuresCount() {
+        return failures.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TileInvalidationQueue[geometries="
+                + getGeometriesCount()
+                + ", batches="
+                + getBatchesCount()
+                + ", invalidatedTiles="
+                + getInvalidatedTilesCount()
+                + ", truncatedLevels="
+                + getTruncatedLevelsCount()
+                + ", failures="
+                + getFailuresCount()
+                + "]";
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        // process the edits still waiting, the tiles would be stale on the next startup otherwise
+        flush();
+        executor.shutdownNow();
+    }
+
+    /** The geometries modified in a tile layer, by CRS */
+    public static class DirtyAreas {
+
+        final Map<CoordinateReferenceSystem, List<Geometry>> geometries = new HashMap<>();
+
+        public void add(CoordinateReferenceSystem crs, Collection<Geometry> modified) {
+            geometries.computeIfAbsent(crs, k -> new ArrayList<>()).addAll(modified);
+        }
+
+        public void addAll(DirtyAreas other) {
+            other.geometries.forEach(this::add);
+        }
+
+        public int size() {
+            return geometries.values().stream().mapToInt(List::size).sum();
+        }
+
+        /** Replaces the geometries with their bounds, one polygon per CRS */
+        void reduceToBounds() {
+            for (List<Geometry> modified : geometries.values()) {
+                Envelope bounds = new Envelope();
+                modified.forEach(g -> bounds.expandToInclude(g.getEnvelopeInternal()));
+                modified.clear();
+                modified.add(JTS.toGeometry(bounds));
+            }
+        }
+    }
+
+    /** Wraps a tile index to use it as a set element */
+    private static class TileIndex {
+
+        final long[] index;
+
+        TileIndex(long[] index) {
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TileIndex && Arrays.equals(index, ((TileIndex) o).index);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(index);
+        }
+    }
+}
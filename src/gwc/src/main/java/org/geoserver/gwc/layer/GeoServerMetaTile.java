@@ -21,6 +21,7 @@
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
 import org.geoserver.wms.map.RawMap;
+import org.geoserver.wms.map.RawMetaTileMap;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geoserver.wms.map.RenderedImageMapResponse;
 import org.geoserver.wms.map.RenderedImageTimeDecorator;
@@ -71,7 +72,21 @@ public boolean writeTileToStream(final int tileIdx, Resource target) throws IOEx
 
         checkNotNull(metaTileMap, "webMap is not set");
 
+        if (metaTileMap instanceof RawMetaTileMap) {
+            int[] cell = getTileColumnRow(tileIdx);
+            RawMap tileMap = ((RawMetaTileMap) metaTileMap).getTile(cell[0], cell[1]);
+            try (OutputStream outStream = target.getOutputStream()) {
+                tileMap.writeTo(outStream);
+            }
+            return true;
+        }
         if (metaTileMap instanceof RawMap) {
+            if (this.tiles.length > 1) {
+                throw new IllegalArgumentException(
+                        "The "
+                                + responseFormat.getFormat()
+                                + " output format did not split the metatile into tiles");
+            }
             try (OutputStream outStream = target.getOutputStream()) {
                 ((RawMap) metaTileMap).writeTo(outStream);
             }
@@ -133,6 +148,44 @@ public boolean writeTileToStream(final int tileIdx, Resource target) throws IOEx
         }
     }
 
+    /**
+     * Returns the column and row of a tile in this metatile, starting from the south-west corner,
+     * matching the layout of a {@link RawMetaTileMap}
+     */
+    int[] getTileColumnRow(int tileIdx) {
+        long[][] positions = getTilesGridPositions();
+        long[] bounds = getTilesGridBounds(positions);
+        return new int[] {
+            (int) (positions[tileIdx][0] - bounds[0]), (int) (positions[tileIdx][1] - bounds[1])
+        };
+    }
+
+    /**
+     * Returns the number of columns and rows of tiles in this metatile, which can be less than the
+     * metatiling factors at the edges of the grid
+     */
+    int[] getTileColumnsRows() {
+        long[] bounds = getTilesGridBounds(getTilesGridPositions());
+        return new int[] {(int) (bounds[2] - bounds[0] + 1), (int) (bounds[3] - bounds[1] + 1)};
+    }
+
+    private static long[] getTilesGridBounds(long[][] positions) {
+        long[] bounds = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+        for (long[] position : positions) {
+            bounds[0] = Math.min(bounds[0], position[0]);
+            bounds[1] = Math.min(bounds[1], position[1]);
+            bounds[2] = Math.max(bounds[2], position[0]);
+            bounds[3] = Math.max(bounds[3], position[1]);
+        }
+        return bounds;
+    }
+
+    /** Synchronized, as the tiles can be encoded in parallel by the {@link MetaTileWriter} */
+    @Override
+    protected synchronized void disposeLater(RenderedImage tile) {
+        super.disposeLater(tile);
+    }
+
     /** Checks if this meta tile has a gutter, or not */
     private boolean metaHasGutter() {
         if (this.gutter == null) {
@@ -52,6 +52,7 @@
 import org.geoserver.gwc.GWC;
 import org.geoserver.gwc.config.GWCConfig;
 import org.geoserver.gwc.dispatch.GwcServiceDispatcherCallback;
+import org.geoserver.gwc.seed.PredictiveSeeder;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.LocalWorkspace;
 import org.geoserver.ows.Request;
@@ -66,6 +67,7 @@
 import org.geoserver.wms.WebMap;
 import org.geoserver.wms.capabilities.CapabilityUtil;
 import org.geoserver.wms.capabilities.LegendSample;
+import org.geoserver.wms.map.RawMetaTileMap;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.util.NumberRange;
@@ -122,6 +124,12 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer, TileJSO
     public static final int ENV_TX_POINTS =
             Integer.parseInt(System.getProperty("GWC_ENVELOPE_TX_POINTS", "5"));
 
+    /**
+     * Enables metatiling for vector tile formats, which are then built in a single pass over the
+     * metatile and split into tiles by the output format, rather than one request per tile
+     */
+    static boolean VECTOR_METATILING = Boolean.getBoolean("gwc.metatile.vector");
+
     private final GeoServerTileLayerInfo info;
 
     public static final String GWC_SEED_INTERCEPT_TOKEN = "GWC_SEED_INTERCEPT";
@@ -545,7 +553,7 @@ public ConveyorTile getTile(ConveyorTile tile)
 
         int metaX;
         int metaY;
-        if (mime.supportsTiling()) {
+        if (supportsMetaTiling(mime)) {
             metaX = info.getMetaTilingX();
             metaY = info.getMetaTilingY();
         } else {
@@ -555,6 +563,10 @@ public ConveyorTile getTile(ConveyorTile tile)
         ConveyorTile returnTile = getMetatilingReponse(tile, true, metaX, metaY);
 
         sendTileRequestedEvent(returnTile);
+        PredictiveSeeder seeder = GWC.get().getPredictiveSeeder();
+        if (seeder != null) {
+            seeder.record(returnTile);
+        }
 
         return returnTile;
     }
@@ -629,6 +641,21 @@ protected ConveyorTile getMetatilingReponse(
         return finalizeTile(tile);
     }
 
+    /**
+     * Uses the {@link MetaTileWriter} when parallel encoding or write-behind are enabled, falls
+     * back on the sequential encoding and storage otherwise
+     */
+    @Override
+    protected void saveTiles(MetaTile metaTile, ConveyorTile tileProto, long requestTime)
+            throws GeoWebCacheException {
+        MetaTileWriter writer = GWC.get().getMetaTileWriter();
+        if (writer != null && writer.isEnabled()) {
+            writer.saveTiles(this, metaTile, tileProto, requestTime);
+        } else {
+            super.saveTiles(metaTile, tileProto, requestTime);
+        }
+    }
+
     /**
      * Based on configuration, sets caching to be permanent on blobstore, or to use the transient
      * metatile cache instead. Must be called after dispatching the GetMap request, in order to have
@@ -758,19 +785,48 @@ private Map<String, String> buildGetMap(final ConveyorTile tile, final MetaTile
         }
         params.putAll(filteredParams);
 
+        // vector tiles cannot be split after encoding, ask the output format to build them
+        if (mimeType.isVector() && metaTile instanceof GeoServerMetaTile) {
+            int[] tiles = ((GeoServerMetaTile) metaTile).getTileColumnsRows();
+            if (tiles[0] * tiles[1] > 1) {
+                addMetaTilingOption(params, tiles[0], tiles[1]);
+            }
+        }
+
         return params;
     }
 
+    private void addMetaTilingOption(Map<String, String> params, int columns, int rows) {
+        String option = RawMetaTileMap.METATILE_FORMAT_OPTION + ":" + columns + "x" + rows;
+        String key = "FORMAT_OPTIONS";
+        for (String name : params.keySet()) {
+            if (name.equalsIgnoreCase(key)) {
+                key = name;
+            }
+        }
+        String formatOptions = params.get(key);
+        if (formatOptions == null || formatOptions.isEmpty()) {
+            params.put(key, option);
+        } else {
+            params.put(key, formatOptions + ";" + option);
+        }
+    }
+
     private boolean tryCacheFetch(ConveyorTile tile) {
         int expireCache = this.getExpireCache((int) tile.getTileIndex()[2]);
         if (expireCache != GWCVars.CACHE_DISABLE_CACHE) {
             try {
-                return tile.retrieve(expireCache * 1000L);
+                if (tile.retrieve(expireCache * 1000L)) {
+                    return true;
+                }
             } catch (GeoWebCacheException gwce) {
                 LOGGER.info(gwce.getMessage());
                 tile.setErrorMsg(gwce.getMessage());
                 return false;
             }
+            // the tile might have been rendered, but still waiting to be written
+            MetaTileWriter writer = GWC.get().getMetaTileWriter();
+            return writer != null && writer.fetchPending(tile);
         }
         return false;
     }
@@ -835,12 +891,16 @@ public void seedTile(ConveyorTile tile, boolean tryCache)
 
         int metaX = info.getMetaTilingX();
         int metaY = info.getMetaTilingY();
-        if (!tile.getMimeType().supportsTiling()) {
+        if (!supportsMetaTiling(tile.getMimeType())) {
             metaX = metaY = 1;
         }
         getMetatilingReponse(tile, tryCache, metaX, metaY);
     }
 
+    private boolean supportsMetaTiling(MimeType mime) {
+        return mime.supportsTiling() || (VECTOR_METATILING && mime.isVector());
+    }
+
     /** @see org.geowebcache.layer.TileLayer#getGridSubsets() */
     @Override
     public Set<String> getGridSubsets() {
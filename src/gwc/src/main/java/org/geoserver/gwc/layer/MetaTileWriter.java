@@ -0,0 +1,451 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc.layer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotools.util.logging.Logging;
+import org.geowebcache.GeoWebCacheException;
+import org.geowebcache.conveyor.Conveyor.CacheResult;
+import org.geowebcache.conveyor.ConveyorTile;
+import org.geowebcache.grid.GridSubset;
+import org.geowebcache.io.ByteArrayResource;
+import org.geowebcache.io.Resource;
+import org.geowebcache.layer.MetaTile;
+import org.geowebcache.storage.StorageBroker;
+import org.geowebcache.storage.StorageException;
+import org.geowebcache.storage.TileObject;
+import org.geowebcache.util.GWCVars;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Encodes and stores the tiles of a {@link GeoServerMetaTile}, as an alternative to the sequential
+ * {@code TileLayer#saveTiles}:
+ *
+ * <ul>
+ *   <li>the tile requested by the client is encoded first, on the request thread
+ *   <li>the other tiles are encoded in parallel, using {@link #ENCODING_THREADS} threads shared by
+ *       all the layers
+ *   <li>the tiles are written to the blob store by a write-behind queue, holding at most {@link
+ *       #QUEUE_SIZE} tiles and served by {@link #WRITER_THREADS} threads. When the queue is full
+ *       the thread encoding the tiles writes them itself, slowing down the production of new tiles
+ *       to the pace of the blob store. Tiles waiting in the queue are served from memory to the
+ *       requests looking them up
+ * </ul>
+ *
+ * Both are disabled by default, the layers fall back on the GeoWebCache behavior when no encoding
+ * threads and no queue are configured.
+ */
+public class MetaTileWriter implements DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(MetaTileWriter.class);
+
+    /** Number of threads encoding the tiles of a meta tile, 0 encodes them sequentially */
+    static final int ENCODING_THREADS = Integer.getInteger("gwc.metatile.encodingThreads", 0);
+
+    /** Max number of tiles waiting to be written, 0 writes them synchronously */
+    static final int QUEUE_SIZE = Integer.getInteger("gwc.writeBehind.queueSize", 0);
+
+    /** Number of threads writing the queued tiles */
+    static final int WRITER_THREADS = Integer.getInteger("gwc.writeBehind.threads", 2);
+
+    private final ExecutorService encoders;
+
+    private final ThreadPoolExecutor writers;
+
+    /** The tiles waiting to be written, by tile key */
+    private final Map<String, TileObject> pending = new ConcurrentHashMap<>();
+
+    /** Incremented each time a layer is truncated, to drop the writes queued before */
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong queued = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong discarded = new AtomicLong();
+
+    private final AtomicLong callerWrites = new AtomicLong();
+
+    private final AtomicLong pendingHits = new AtomicLong();
+
+    private final AtomicInteger maxPending = new AtomicInteger();
+
+    public MetaTileWriter() {
+        this(ENCODING_THREADS, QUEUE_SIZE, WRITER_THREADS);
+    }
+
+    public MetaTileWriter(int encodingThreads, int queueSize, int writerThreads) {
+        if (encodingThreads > 0) {
+            encoders =
+                    new ThreadPoolExecutor(
+                            encodingThreads,
+                            encodingThreads,
+                            60,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            threadFactory("gwc-metatile-encoder-%d"));
+            ((ThreadPoolExecutor) encoders).allowCoreThreadTimeOut(true);
+        } else {
+            encoders = null;
+        }
+        if (queueSize > 0 && writerThreads > 0) {
+            RejectedExecutionHandler backpressure =
+                    (task, executor) -> {
+                        if (!executor.isShutdown()) {
+                            callerWrites.incrementAndGet();
+                            task.run();
+                        }
+                    };
+            writers =
+                    new ThreadPoolExecutor(
+                            writerThreads,
+                            writerThreads,
+                            60,
+                            TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(queueSize),
+                            threadFactory("gwc-write-behind-%d"),
+                            backpressure);
+            writers.allowCoreThreadTimeOut(true);
+        } else {
+            writers = null;
+        }
+    }
+
+    private static ThreadFactory threadFactory(String format) {
+        return new ThreadFactoryBuilder().setNameFormat(format).setDaemon(true).build();
+    }
+
+    /** Returns true if either parallel encoding or write-behind are enabled */
+    public boolean isEnabled() {
+        return encoders != null || writers != null;
+    }
+
+    /**
+     * Encodes and stores the tiles of the meta tile, the requested one is set as the blob of the
+     * conveyor tile. Returns once all the tiles are encoded, as the meta tile cannot be disposed
+     * before, while the tiles might still be waiting to be written.
+     */
+    public void saveTiles(
+            GeoServerTileLayer layer, MetaTile metaTile, ConveyorTile tileProto, long requestTime)
+            throws GeoWebCacheException {
+        final long[][] gridPositions = metaTile.getTilesGridPositions();
+        final long[] gridLoc = tileProto.getTileIndex();
+        final GridSubset gridSubset = layer.getGridSubset(tileProto.getGridSetId());
+        final int zoomLevel = (int) gridLoc[2];
+        final boolean store = layer.getExpireCache(zoomLevel) != GWCVars.CACHE_DISABLE_CACHE;
+        final long generation = getGeneration(layer.getName());
+
+        // the requested tile goes first, the client is waiting for it
+        List<Callable<Void>> others = new ArrayList<>();
+        for (int i = 0; i < gridPositions.length; i++) {
+            final long[] gridPos = gridPositions[i];
+            if (!gridSubset.covers(gridPos)) {
+                // edge tile outside coverage, do not store it
+                continue;
+            }
+            final int tileIdx = i;
+            if (gridPos[0] == gridLoc[0] && gridPos[1] == gridLoc[1] && gridPos[2] == gridLoc[2]) {
+                Resource resource = encode(metaTile, tileIdx);
+                tileProto.setBlob(resource);
+                if (store) {
+                    TileObject tile =
+                            store(layer, tileProto, gridPos, resource, requestTime, generation);
+                    tileProto.getStorageObject().setCreated(tile.getCreated());
+                }
+            } else if (store) {
+                others.add(
+                        () -> {
+                            Resource resource = encode(metaTile, tileIdx);
+                            store(layer, tileProto, gridPos, resource, requestTime, generation);
+                            return null;
+                        });
+            }
+        }
+
+        if (encoders == null || others.size() < 2) {
+            for (Callable<Void> task : others) {
+                call(task);
+            }
+        } else {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : others) {
+                futures.add(encoders.submit(task));
+            }
+            // wait for all of them, the meta tile image is disposed once this method returns
+            GeoWebCacheException error = null;
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = new GeoWebCacheException(e);
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error =
+                                e.getCause() instanceof GeoWebCacheException
+                                        ? (GeoWebCacheException) e.getCause()
+                                        : new GeoWebCacheException(e.getCause());
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private void call(Callable<Void> task) throws GeoWebCacheException {
+        try {
+            task.call();
+        } catch (GeoWebCacheException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GeoWebCacheException(e);
+        }
+    }
+
+    private Resource encode(MetaTile metaTile, int tileIdx) {
+        // each tile gets its own buffer, it might still be queued when the next is encoded
+        ByteArrayResource resource = new ByteArrayResource(16 * 1024);
+        try {
+            boolean completed = metaTile.writeTileToStream(tileIdx, resource);
+            if (!completed) {
+                LOGGER.severe("metaTile.writeTileToStream returned false, no tiles saved");
+            }
+        } catch (IOException ioe) {
+            LOGGER.log(Level.SEVERE, "Unable to write image tile to ByteArrayOutputStream", ioe);
+        }
+        return resource;
+    }
+
+    private TileObject store(
+            GeoServerTileLayer layer,
+            ConveyorTile tileProto,
+            long[] gridPos,
+            Resource resource,
+            long requestTime,
+            long generation)
+            throws GeoWebCacheException {
+        long[] idx = {gridPos[0], gridPos[1], gridPos[2]};
+        TileObject tile =
+                TileObject.createCompleteTileObject(
+                        layer.getName(),
+                        idx,
+                        tileProto.getGridSetId(),
+                        tileProto.getMimeType().getFormat(),
+                        tileProto.getParameters(),
+                        resource);
+        tile.setCreated(requestTime);
+
+        StorageBroker storageBroker = tileProto.getStorageBroker();
+        try {
+            if (tileProto.isMetaTileCacheOnly()) {
+                storageBroker.putTransient(tile);
+            } else if (writers == null) {
+                storageBroker.put(tile);
+            } else {
+                enqueue(storageBroker, tile, getKey(tileProto, idx), generation);
+            }
+        } catch (StorageException e) {
+            throw new GeoWebCacheException(e);
+        }
+        return tile;
+    }
+
+    private void enqueue(
+            StorageBroker storageBroker, TileObject tile, String key, long generation) {
+        pending.put(key, tile);
+        maxPending.accumulateAndGet(pending.size(), Math::max);
+        queued.incrementAndGet();
+        writers.execute(
+                () -> {
+                    try {
+                        // skip the tiles rendered before a truncation of their layer
+                        if (pending.get(key) != tile
+                                || generation != getGeneration(tile.getLayerName())) {
+                            discarded.incrementAndGet();
+                            return;
+                        }
+                        storageBroker.put(tile);
+                        written.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        LOGGER.log(Level.WARNING, "Failed to write tile " + key, e);
+                    } finally {
+                        pending.remove(key, tile);
+                        if (pending.isEmpty()) {
+                            synchronized (pending) {
+                                pending.notifyAll();
+                            }
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Looks up the requested tile among the ones waiting to be written, and if found sets it as the
+     * conveyor blob
+     *
+     * @return true if the tile was found
+     */
+    public boolean fetchPending(ConveyorTile tile) {
+        if (writers == null || pending.isEmpty()) {
+            return false;
+        }
+        TileObject pendingTile = pending.get(getKey(tile, tile.getTileIndex()));
+        if (pendingTile == null) {
+            return false;
+        }
+        tile.setBlob(pendingTile.getBlob());
+        tile.getStorageObject().setCreated(pendingTile.getCreated());
+        tile.setCacheResult(CacheResult.HIT);
+        pendingHits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Drops the queued writes for the given layer, to be called when its tiles are truncated or
+     * removed, otherwise the tiles rendered before the truncation could be written after it
+     */
+    public void discard(String layerName) {
+        generations.computeIfAbsent(layerName, n -> new AtomicLong()).incrementAndGet();
+        pending.values().removeIf(tile -> layerName.equals(tile.getLayerName()));
+    }
+
+    private long getGeneration(String layerName) {
+        AtomicLong generation = generations.get(layerName);
+        return generation == null ? 0 : generation.get();
+    }
+
+    private String getKey(ConveyorTile tile, long[] idx) {
+        StringBuilder key = new StringBuilder();
+        key.append(tile.getLayerId());
+        key.append("_").append(tile.getGridSetId());
+        key.append("_").append(idx[0]).append("_").append(idx[1]).append("_").append(idx[2]);
+        if (tile.getParametersId() != null) {
+            key.append("_").append(tile.getParametersId());
+        }
+        key.append(".").append(tile.getMimeType().getFormat());
+        return key.toString();
+    }
+
+    /**
+     * Waits for the queued tiles to be written
+     *
+     * @return true if the queue has been drained, false if the timeout expired before
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (pending) {
+            while (!pending.isEmpty()) {
+                long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (wait <= 0) {
+                    return false;
+                }
+                pending.wait(wait);
+            }
+        }
+        return true;
+    }
+
+    /** Number of tiles waiting to be written */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /** Max number of tiles that have been waiting to be written at the same time */
+    public int getMaxPendingCount() {
+        return maxPending.get();
+    }
+
+    /** Number of tiles handed to the write-behind queue */
+    public long getQueuedCount() {
+        return queued.get();
+    }
+
+    /** Number of queued tiles written to the blob store */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /** Number of queued tiles that could not be written */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /** Number of queued tiles dropped because their layer got truncated */
+    public long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    /** Number of tiles written by the encoding threads because the queue was full */
+    public long getCallerWritesCount() {
+        return callerWrites.get();
+    }
+
+    /** Number of requests served from the tiles waiting to be written */
+    public long getPendingHitsCount() {
+        return pendingHits.get();
+    }
+
+    @Override
+    public String toString() {
+        return "MetaTileWriter[pending="
+                + getPendingCount()
+                + ", maxPending="
+                + getMaxPendingCount()
+                + ", queued="
+                + getQueuedCount()
+                + ", written="
+                + getWrittenCount()
+                + ", failed="
+                + getFailedCount()
+                + ", discarded="
+                + getDiscardedCount()
+                + ", callerWrites="
+                + getCallerWritesCount()
+                + ", pendingHits="
+                + getPendingHitsCount()
+                + "]";
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (encoders != null) {
+            encoders.shutdown();
+        }
+        if (writers != null) {
+            // let the queued tiles be written
+            writers.shutdown();
+            if (!writers.awaitTermination(60, TimeUnit.SECONDS)) {
+                LOGGER.warning("Timed out waiting for the queued tiles to be written: " + this);
+                writers.shutdownNow();
+            } else if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Write-behind queue drained: " + this);
+            }
+        }
+    }
+}
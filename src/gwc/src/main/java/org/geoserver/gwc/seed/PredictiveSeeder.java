@@ -0,0 +1,242 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc.seed;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.gwc.GWC;
+import org.geoserver.gwc.seed.TileHeatMap.HotTile;
+import org.geotools.util.logging.Logging;
+import org.geowebcache.conveyor.Conveyor.CacheResult;
+import org.geowebcache.conveyor.ConveyorTile;
+import org.geowebcache.layer.TileLayer;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Seeds the most requested tiles when the server is idle, so that they are found in the cache when
+ * requested again.
+ *
+ * <p>The tile requests are counted in a {@link TileHeatMap}. Every {@link #INTERVAL} seconds, if
+ * the system load per processor is not above {@link #MAX_LOAD}, the hottest tiles are looked up in
+ * the cache, and at most {@link #BATCH_SIZE} of them are rendered because missing or expired. The
+ * counts are then halved, for the seeding to follow the changes in the request patterns.
+ *
+ * <p>The tiles are rendered through the GeoServer dispatcher, like any other tile, so the limits
+ * set by the control flow module, if installed, apply to them too. The seeding runs without
+ * authentication, layers requiring it are not seeded.
+ *
+ * <p>Disabled by default, no request is tracked unless an interval is configured.
+ */
+public class PredictiveSeeder implements DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(PredictiveSeeder.class);
+
+    /** Seconds between two seeding runs, 0 or less disables the seeding */
+    static final long INTERVAL = Long.getLong("gwc.predictiveSeed.interval", 0);
+
+    /** Max number of tiles tracked per layer */
+    static final int CAPACITY = Integer.getInteger("gwc.predictiveSeed.capacity", 1000);
+
+    /** Max number of tiles rendered per run */
+    static final int BATCH_SIZE = Integer.getInteger("gwc.predictiveSeed.batchSize", 100);
+
+    /** System load average per processor above which the seeding is skipped */
+    static final double MAX_LOAD =
+            Double.parseDouble(System.getProperty("gwc.predictiveSeed.maxLoad", "0.5"));
+
+    private final TileHeatMap heatMap;
+
+    private final long interval;
+
+    private final int batchSize;
+
+    private final double maxLoad;
+
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong runs = new AtomicLong();
+
+    private final AtomicLong busyRuns = new AtomicLong();
+
+    private final AtomicLong checkedTiles = new AtomicLong();
+
+    private final AtomicLong seededTiles = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    public PredictiveSeeder() {
+        this(INTERVAL, CAPACITY, BATCH_SIZE, MAX_LOAD);
+    }
+
+    public PredictiveSeeder(long interval, int capacity, int batchSize, double maxLoad) {
+        this.heatMap = new TileHeatMap(capacity);
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.maxLoad = maxLoad;
+        if (interval > 0) {
+            this.executor =
+                    Executors.newSingleThreadScheduledExecutor(
+                            new ThreadFactoryBuilder()
+                                    .setDaemon(true)
+                                    .setNameFormat("gwc-predictive-seeder-%d")
+                                    .build());
+            executor.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.SECONDS);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return interval > 0;
+    }
+
+    /** Counts a tile request, to be called for the tiles requested by clients only */
+    public void record(ConveyorTile tile) {
+        if (isEnabled()) {
+            requests.incrementAndGet();
+            heatMap.record(tile);
+        }
+    }
+
+    TileHeatMap getHeatMap() {
+        return heatMap;
+    }
+
+    private void run() {
+        try {
+            seed();
+        } catch (RuntimeException e) {
+            // don't let the exception cancel the next runs
+            LOGGER.log(Level.WARNING, "Predictive seeding failed", e);
+        }
+    }
+
+    /** Renders the hottest tiles missing from the cache, as long as the server is idle */
+    void seed() {
+        runs.incrementAndGet();
+        try {
+            if (!isIdle()) {
+                busyRuns.incrementAndGet();
+                LOGGER.fine("Skipping the predictive seeding, the server is busy");
+                return;
+            }
+            GWC gwc = GWC.get();
+            int rendered = 0;
+            for (HotTile hot : heatMap.getHottest(Integer.MAX_VALUE)) {
+                if (rendered >= batchSize || !isIdle()) {
+                    break;
+                }
+                TileLayer layer;
+                try {
+                    layer = gwc.getTileLayerByName(hot.layerName);
+                } catch (IllegalArgumentException e) {
+                    // layer removed in the meantime
+                    heatMap.remove(hot.layerName);
+                    continue;
+                }
+                if (!layer.isEnabled()) {
+                    continue;
+                }
+                ConveyorTile tile =
+                        new ConveyorTile(
+                                gwc.getStorageBroker(),
+                                hot.layerName,
+                                hot.gridSetId,
+                                hot.getIndex(),
+                                hot.mimeType,
+                                hot.parameters,
+                                null,
+                                null);
+                try {
+                    layer.seedTile(tile, true);
+                    checkedTiles.incrementAndGet();
+                    if (tile.getCacheResult() != CacheResult.HIT) {
+                        rendered++;
+                        seededTiles.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    LOGGER.log(Level.FINE, "Failed to seed " + hot, e);
+                }
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Predictive seeding rendered " + rendered + " tiles, " + this);
+            }
+        } finally {
+            heatMap.decay();
+        }
+    }
+
+    /** Whether the system load allows seeding, assumes so if the load cannot be determined */
+    protected boolean isIdle() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double load = os.getSystemLoadAverage();
+        return load < 0 || load / os.getAvailableProcessors() <= maxLoad;
+    }
+
+    /** Number of tile requests counted */
+    public long getRequestsCount() {
+        return requests.get();
+    }
+
+    /** Number of seeding runs, including the skipped ones */
+    public long getRunsCount() {
+        return runs.get();
+    }
+
+    /** Number of seeding runs skipped because the server was busy */
+    public long getBusyRunsCount() {
+        return busyRuns.get();
+    }
+
+    /** Number of hot tiles looked up in the cache */
+    public long getCheckedTilesCount() {
+        return checkedTiles.get();
+    }
+
+    /** Number of hot tiles rendered because missing or expired */
+    public long getSeededTilesCount() {
+        return seededTiles.get();
+    }
+
+    public long getFailuresCount() {
+        return failures.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PredictiveSeeder[requests="
+                + getRequestsCount()
+                + ", runs="
+                + getRunsCount()
+                + ", busyRuns="
+                + getBusyRunsCount()
+                + ", checkedTiles="
+                + getCheckedTilesCount()
+                + ", seededTiles="
+                + getSeededTilesCount()
+                + ", failures="
+                + getFailuresCount()
+                + ", trackedTiles="
+                + heatMap.size()
+                + "]";
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
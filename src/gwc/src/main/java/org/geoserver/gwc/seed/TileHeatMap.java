@@ -0,0 +1,223 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc.seed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.geowebcache.conveyor.ConveyorTile;
+import org.geowebcache.mime.MimeType;
+
+/**
+ * Counts the requests of the most popular tiles of each tile layer.
+ *
+ * <p>At most {@code capacity} tiles are tracked per layer, when the limit is reached the least
+ * requested half is dropped, so that the tiles requested often enough stay while the occasional
+ * ones make room for the new ones. The counts are meant to be {@link #decay() decayed}
+ * periodically, for the map to follow the changes in the request patterns.
+ */
+public class TileHeatMap {
+
+    private static final Comparator<HotTile> HOTTEST_FIRST =
+            Comparator.comparingLong(HotTile::getCount).reversed();
+
+    private final int capacity;
+
+    private final Map<String, LayerHeat> layers = new ConcurrentHashMap<>();
+
+    public TileHeatMap(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /** Counts a request for the given tile, unless its format is unknown */
+    public void record(ConveyorTile tile) {
+        if (tile.getMimeType() == null) {
+            return;
+        }
+        HotTile hot =
+                new HotTile(
+                        tile.getLayerId(),
+                        tile.getGridSetId(),
+                        tile.getMimeType(),
+                        tile.getFilteringParameters(),
+                        tile.getTileIndex().clone(),
+                        0);
+        layers.computeIfAbsent(hot.layerName, k -> new LayerHeat()).record(hot);
+    }
+
+    /**
+     * Returns the tiles with the highest request counts, across all layers
+     *
+     * @param max the max number of tiles returned
+     */
+    public List<HotTile> getHottest(int max) {
+        List<HotTile> result = new ArrayList<>();
+        for (LayerHeat heat : layers.values()) {
+            result.addAll(heat.snapshot());
+        }
+        result.sort(HOTTEST_FIRST);
+        return result.size() > max ? new ArrayList<>(result.subList(0, max)) : result;
+    }
+
+    /** Halves all the counts, dropping the tiles not requested anymore */
+    public void decay() {
+        layers.values().forEach(LayerHeat::decay);
+        layers.values().removeIf(LayerHeat::isEmpty);
+    }
+
+    /** Forgets about the tiles of a layer, e.g. because it has been removed */
+    public void remove(String layerName) {
+        layers.remove(layerName);
+    }
+
+    /** Number of tiles tracked, across all layers */
+    public int size() {
+        return layers.values().stream().mapToInt(LayerHeat::size).sum();
+    }
+
+    private class LayerHeat {
+
+        private final Map<HotTile, HotTile> tiles = new HashMap<>();
+
+        synchronized void record(HotTile tile) {
+            HotTile existing = tiles.get(tile);
+            if (existing == null) {
+                if (tiles.size() >= capacity) {
+                    evict();
+                }
+                existing = tile;
+                tiles.put(existing, existing);
+            }
+            existing.count++;
+        }
+
+        /** Drops the least requested half of the tiles */
+        private void evict() {
+            List<HotTile> sorted = new ArrayList<>(tiles.values());
+            sorted.sort(HOTTEST_FIRST);
+            sorted.subList(sorted.size() / 2, sorted.size()).forEach(tiles::remove);
+        }
+
+        synchronized List<HotTile> snapshot() {
+            List<HotTile> result = new ArrayList<>(tiles.size());
+            for (HotTile tile : tiles.values()) {
+                result.add(
+                        new HotTile(
+                                tile.layerName,
+                                tile.gridSetId,
+                                tile.mimeType,
+                                tile.parameters,
+                                tile.index,
+                                tile.count));
+            }
+            return result;
+        }
+
+        synchronized void decay() {
+            tiles.values().removeIf(tile -> (tile.count >>= 1) == 0);
+        }
+
+        synchronized boolean isEmpty() {
+            return tiles.isEmpty();
+        }
+
+        synchronized int size() {
+            return tiles.size();
+        }
+    }
+
+    /** A tracked tile, its identity does not depend on its request count */
+    public static class HotTile {
+
+        final String layerName;
+
+        final String gridSetId;
+
+        final MimeType mimeType;
+
+        final Map<String, String> parameters;
+
+        final long[] index;
+
+        long count;
+
+        HotTile(
+                String layerName,
+                String gridSetId,
+                MimeType mimeType,
+                Map<String, String> parameters,
+                long[] index,
+                long count) {
+            this.layerName = layerName;
+            this.gridSetId = gridSetId;
+            this.mimeType = mimeType;
+            this.parameters = parameters;
+            this.index = index;
+            this.count = count;
+        }
+
+        public String getLayerName() {
+            return layerName;
+        }
+
+        public String getGridSetId() {
+            return gridSetId;
+        }
+
+        public MimeType getMimeType() {
+            return mimeType;
+        }
+
+        public Map<String, String> getParameters() {
+            return parameters;
+        }
+
+        public long[] getIndex() {
+            return index.clone();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            HotTile other = (HotTile) o;
+            return Objects.equals(layerName, other.layerName)
+                    && Objects.equals(gridSetId, other.gridSetId)
+                    && Objects.equals(mimeType, other.mimeType)
+                    && Objects.equals(parameters, other.parameters)
+                    && Arrays.equals(index, other.index);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layerName, gridSetId, mimeType, parameters)
+                    + 31 * Arrays.hashCode(index);
+        }
+
+        @Override
+        public String toString() {
+            return layerName
+                    + " "
+                    + gridSetId
+                    + " "
+                    + Arrays.toString(index)
+                    + " "
+                    + (mimeType == null ? null : mimeType.getFormat())
+                    + " "
+                    + parameters
+                    + ": "
+                    + count;
+        }
+    }
+}
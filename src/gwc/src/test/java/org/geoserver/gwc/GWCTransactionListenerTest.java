@@ -6,13 +6,17 @@
 package org.geoserver.gwc;
 
 import static org.geotools.referencing.crs.DefaultGeographicCRS.WGS84;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -26,16 +30,23 @@
 import javax.xml.namespace.QName;
 import net.opengis.wfs.InsertElementType;
 import net.opengis.wfs.TransactionType;
+import org.geoserver.gwc.TileInvalidationQueue.DirtyAreas;
 import org.geoserver.wfs.TransactionEvent;
 import org.geoserver.wfs.TransactionEventType;
 import org.geoserver.wfs.request.TransactionRequest;
 import org.geoserver.wfs.request.TransactionResponse;
+import org.geotools.data.DataUtilities;
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.geometry.jts.ReferencedEnvelope3D;
 import org.geotools.referencing.CRS;
 import org.junit.Before;
 import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+import org.mockito.ArgumentCaptor;
+import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 public class GWCTransactionListenerTest {
@@ -211,12 +222,54 @@ public void testAfterTransaction() throws Exception {
         verify(mediator, times(1)).truncate(eq("theGroup"), eq(expectedEnv));
     }
 
+    @Test
+    public void testAfterTransactionQueued() throws Exception {
+        TileInvalidationQueue queue = mock(TileInvalidationQueue.class);
+        when(queue.isEnabled()).thenReturn(true);
+        listener.setInvalidationQueue(queue);
+
+        SimpleFeatureType type =
+                DataUtilities.createType("testType", "the_geom:LineString:srid=4326");
+        Geometry line = new WKTReader().read("LINESTRING(-170 -80, 170 80)");
+        SimpleFeatureCollection affectedFeatures =
+                DataUtilities.collection(
+                        SimpleFeatureBuilder.build(type, new Object[] {line}, "testType.1"));
+
+        Map<Object, Object> extendedProperties = new HashMap<>();
+        issueInsert(extendedProperties, affectedFeatures);
+        assertFalse(
+                extendedProperties.containsKey(
+                        GWCTransactionListener.GWC_TRANSACTION_INFO_PLACEHOLDER));
+
+        TransactionRequest request = mock(TransactionRequest.class);
+        TransactionResponse result = mock(TransactionResponse.class);
+        when(request.getExtendedProperties()).thenReturn(extendedProperties);
+        listener.afterTransaction(request, result, true);
+
+        ArgumentCaptor<DirtyAreas> areas = ArgumentCaptor.forClass(DirtyAreas.class);
+        verify(queue).add(eq("theLayer"), areas.capture());
+        verify(queue).add(eq("theGroup"), any(DirtyAreas.class));
+        verify(mediator, never()).truncate(anyString(), any(ReferencedEnvelope.class));
+
+        // the geometry itself is queued, not its bounds
+        List<Geometry> geometries =
+                areas.getValue().geometries.get(type.getCoordinateReferenceSystem());
+        assertEquals(Collections.singletonList(line), geometries);
+    }
+
     /**
      * Issues a fake dataStoreChange insert event that affects two tile layers: "theLayer" and
      * "theGroup"
      */
     private void issueInsert(
             Map<Object, Object> extendedProperties, ReferencedEnvelope affectedBounds) {
+        SimpleFeatureCollection affectedFeatures = mock(SimpleFeatureCollection.class);
+        when(affectedFeatures.getBounds()).thenReturn(affectedBounds);
+        issueInsert(extendedProperties, affectedFeatures);
+    }
+
+    private void issueInsert(
+            Map<Object, Object> extendedProperties, SimpleFeatureCollection affectedFeatures) {
 
         TransactionType transaction = mock(TransactionType.class);
         when(transaction.getExtendedProperties()).thenReturn(extendedProperties);
@@ -237,8 +290,6 @@ private void issueInsert(
                         eq(layerName.getNamespaceURI()), eq(layerName.getLocalPart())))
                 .thenReturn(ImmutableSet.of("theLayer", "theGroup"));
 
-        SimpleFeatureCollection affectedFeatures = mock(SimpleFeatureCollection.class);
-        when(affectedFeatures.getBounds()).thenReturn(affectedBounds);
         when(event.getAffectedFeatures()).thenReturn(affectedFeatures);
 
         listener.dataStoreChange(event);
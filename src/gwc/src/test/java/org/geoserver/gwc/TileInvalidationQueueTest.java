@@ -0,0 +1,177 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import static org.geotools.referencing.crs.DefaultGeographicCRS.WGS84;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Collections;
+import org.geoserver.gwc.TileInvalidationQueue.DirtyAreas;
+import org.geowebcache.config.DefaultGridsets;
+import org.geowebcache.grid.BoundingBox;
+import org.geowebcache.grid.GridSet;
+import org.geowebcache.grid.GridSetBroker;
+import org.geowebcache.grid.GridSubset;
+import org.geowebcache.grid.GridSubsetFactory;
+import org.geowebcache.layer.TileLayer;
+import org.geowebcache.storage.StorageException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.io.WKTReader;
+import org.mockito.ArgumentCaptor;
+
+public class TileInvalidationQueueTest {
+
+    private static final String LAYER = "theLayer";
+
+    private static final String GRIDSET = "EPSG:4326";
+
+    private GWC gwc;
+
+    private TileInvalidationQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        GridSetBroker gridSetBroker =
+                new GridSetBroker(Collections.singletonList(new DefaultGridsets(true, true)));
+        GridSet gridSet = gridSetBroker.getDefaults().worldEpsg4326();
+        GridSubset gridSubset =
+                GridSubsetFactory.createGridSubSet(gridSet, gridSet.getOriginalExtent(), 0, 5);
+
+        TileLayer layer = mock(TileLayer.class);
+        when(layer.getGridSubsets()).thenReturn(Collections.singleton(GRIDSET));
+        when(layer.getGridSubset(GRIDSET)).thenReturn(gridSubset);
+
+        gwc = mock(GWC.class);
+        when(gwc.getTileLayerByName(LAYER)).thenReturn(layer);
+        when(gwc.deleteTiles(eq(LAYER), eq(GRIDSET), anyCollection()))
+                .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(2)).size());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        queue = new TileInvalidationQueue(gwc, 0, 10000, 0, false);
+        assertFalse(queue.isEnabled());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvalidateIntersectingTiles() throws Exception {
+        queue = new TileInvalidationQueue(gwc, 60000, 10000, 0, false);
+        assertTrue(queue.isEnabled());
+        queue.add(LAYER, areas("LINESTRING(-170 -80, 170 80)"));
+        queue.add(LAYER, areas("POINT(10 10)"));
+        queue.flush();
+
+        ArgumentCaptor<Collection<long[]>> tiles = ArgumentCaptor.forClass(Collection.class);
+        verify(gwc, times(6)).deleteTiles(eq(LAYER), eq(GRIDSET), tiles.capture());
+        verify(gwc, never())
+                .truncate(anyString(), anyString(), any(BoundingBox.class), anyInt(), anyInt());
+        verify(gwc, never())
+                .seed(anyString(), anyString(), any(BoundingBox.class), anyInt(), anyInt());
+
+        // at zoom level 5 the grid is 64x32, the line bounds cover most of it, the line does not
+        Collection<long[]> level5 = tiles.getAllValues().get(5);
+        assertTrue(level5.size() > 64);
+        assertTrue(level5.size() < 64 * 32 / 4);
+        for (long[] tile : level5) {
+            assertEquals(5, tile[2]);
+        }
+
+        assertEquals(2, queue.getGeometriesCount());
+        assertEquals(1, queue.getBatchesCount());
+        long total = tiles.getAllValues().stream().mapToLong(Collection::size).sum();
+        assertEquals(total, queue.getInvalidatedTilesCount());
+        assertEquals(0, queue.getFailuresCount());
+    }
+
+    @Test
+    public void testTruncateBeyondMaxTiles() throws Exception {
+        queue = new TileInvalidationQueue(gwc, 60000, 10, 0, true);
+        queue.add(LAYER, areas("LINESTRING(-170 -80, 170 80)"));
+        queue.flush();
+
+        // levels 0 and 1 have 2 and 8 tiles, from level 2 on the bounds are truncated
+        verify(gwc, times(2)).deleteTiles(eq(LAYER), eq(GRIDSET), anyCollection());
+        verify(gwc, times(2))
+                .seed(eq(LAYER), eq(GRIDSET), any(BoundingBox.class), anyInt(), anyInt());
+        verify(gwc).truncate(eq(LAYER), eq(GRIDSET), any(BoundingBox.class), eq(2), eq(5));
+        assertEquals(4, queue.getTruncatedLevelsCount());
+    }
+
+    @Test
+    public void testTruncateOnFailure() throws Exception {
+        queue = new TileInvalidationQueue(gwc, 60000, 10000, 0, false);
+        doThrow(new StorageException("Failed"))
+                .when(gwc)
+                .deleteTiles(eq(LAYER), eq(GRIDSET), anyCollection());
+        queue.add(LAYER, areas("POINT(10 10)"));
+        queue.flush();
+
+        // the whole grid set is truncated in the modified bounds
+        ArgumentCaptor<BoundingBox> bounds = ArgumentCaptor.forClass(BoundingBox.class);
+        verify(gwc).truncate(eq(LAYER), eq(GRIDSET), bounds.capture(), eq(0), eq(5));
+        assertEquals(10, bounds.getValue().getMinX(), 1e-6);
+        assertEquals(10, bounds.getValue().getMaxY(), 1e-6);
+        assertEquals(1, queue.getFailuresCount());
+        assertEquals(6, queue.getTruncatedLevelsCount());
+    }
+
+    @Test
+    public void testMaxGeometriesPerLayer() throws Exception {
+        queue = new TileInvalidationQueue(gwc, 60000, 10000, 0, false, 2);
+        queue.add(LAYER, areas("POINT(-170 -80)"));
+        queue.add(LAYER, areas("POINT(-170 80)"));
+        queue.add(LAYER, areas("POINT(170 80)"));
+        queue.flush();
+
+        // reduced to the bounds, the level 0 tiles are both hit
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<long[]>> tiles = ArgumentCaptor.forClass(Collection.class);
+        verify(gwc, times(6)).deleteTiles(eq(LAYER), eq(GRIDSET), tiles.capture());
+        assertEquals(2, tiles.getAllValues().get(0).size());
+        // the bounds cover the whole level 1 grid, the points alone would hit 3 tiles
+        assertEquals(8, tiles.getAllValues().get(1).size());
+        assertEquals(3, queue.getGeometriesCount());
+    }
+
+    @Test
+    public void testDestroyFlushes() throws Exception {
+        queue = new TileInvalidationQueue(gwc, 60000, 10000, 0, false);
+        queue.add(LAYER, areas("POINT(10 10)"));
+        queue.destroy();
+        queue = null;
+
+        verify(gwc, times(6)).deleteTiles(eq(LAYER), eq(GRIDSET), anyCollection());
+    }
+
+    private DirtyAreas areas(String wkt) throws Exception {
+        DirtyAreas areas = new DirtyAreas();
+        areas.add(WGS84, Collections.singletonList(new WKTReader().read(wkt)));
+        return areas;
+    }
+}
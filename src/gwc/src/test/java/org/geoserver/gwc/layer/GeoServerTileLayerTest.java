@@ -37,10 +37,12 @@
 import java.awt.image.BufferedImage;
 import java.awt.image.renderable.ParameterBlock;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -48,11 +50,13 @@
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -62,6 +66,7 @@
 import javax.media.jai.RenderedOp;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.io.IOUtils;
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.Keyword;
@@ -100,7 +105,10 @@
 import org.geoserver.wms.GetLegendGraphicOutputFormat;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.WebMap;
 import org.geoserver.wms.capabilities.LegendSample;
+import org.geoserver.wms.map.RawMap;
+import org.geoserver.wms.map.RawMetaTileMap;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geoserver.wms.map.RenderedImageMapResponse;
 import org.geoserver.wms.map.RenderedImageTimeDecorator;
@@ -130,6 +138,7 @@
 import org.geowebcache.mime.FormatModifier;
 import org.geowebcache.mime.MimeType;
 import org.geowebcache.storage.StorageBroker;
+import org.geowebcache.storage.TileObject;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -939,6 +948,176 @@ public void testGetTile() throws Exception {
         new GetTileMockTester();
     }
 
+    @Test
+    public void testVectorMetaTileColumnRow() throws Exception {
+        GridSubset gridSubset = setUpWorldLayer().getGridSubset("EPSG:4326");
+
+        // zoom 0 has a single row of two tiles, the metatile is cut by the grid edge
+        GeoServerMetaTile partial =
+                new GeoServerMetaTile(
+                        gridSubset,
+                        ApplicationMime.mapboxVector,
+                        null,
+                        new long[] {1, 0, 0},
+                        4,
+                        4,
+                        0);
+        assertArrayEquals(new int[] {2, 1}, partial.getTileColumnsRows());
+        assertTileColumnRow(partial, 0, 0);
+
+        // zoom 2 has 8x4 tiles, the metatile is complete, starting from the south-west corner
+        GeoServerMetaTile full =
+                new GeoServerMetaTile(
+                        gridSubset,
+                        ApplicationMime.mapboxVector,
+                        null,
+                        new long[] {5, 2, 2},
+                        4,
+                        4,
+                        0);
+        assertArrayEquals(new int[] {4, 4}, full.getTileColumnsRows());
+        assertTileColumnRow(full, 4, 0);
+    }
+
+    private void assertTileColumnRow(GeoServerMetaTile metaTile, long minX, long minY) {
+        long[][] positions = metaTile.getTilesGridPositions();
+        for (int i = 0; i < positions.length; i++) {
+            int[] expected = {(int) (positions[i][0] - minX), (int) (positions[i][1] - minY)};
+            assertArrayEquals(expected, metaTile.getTileColumnRow(i));
+        }
+    }
+
+    @Test
+    public void testVectorMetaTiling() throws Exception {
+        boolean vectorMetaTiling = GeoServerTileLayer.VECTOR_METATILING;
+        try {
+            GeoServerTileLayer.VECTOR_METATILING = true;
+            // partial metatile at the grid edge, and a full one
+            assertVectorMetaTile(new long[] {1, 0, 0}, "metatile:2x1", 2);
+            assertVectorMetaTile(new long[] {5, 2, 2}, "metatile:4x4", 16);
+
+            // without the flag the vector tiles are rendered one by one
+            GeoServerTileLayer.VECTOR_METATILING = false;
+            assertVectorMetaTile(new long[] {5, 2, 2}, null, 1);
+        } finally {
+            GeoServerTileLayer.VECTOR_METATILING = vectorMetaTiling;
+        }
+    }
+
+    /**
+     * Requests a vector tile, checks the metatile format option sent to the output format, and that
+     * each tile cut out of the metatile is the same as the tile rendered on its own
+     */
+    private void assertVectorMetaTile(long[] tileIndex, String formatOptions, int tileCount)
+            throws Exception {
+        GeoServerTileLayer layer = setUpWorldLayer();
+        GridSubset gridSubset = layer.getGridSubset("EPSG:4326");
+
+        List<Map<String, String>> requests = new ArrayList<>();
+        when(mockGWC.dispatchOwsRequest(any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            Map<String, String> params = invocation.getArgument(0);
+                            requests.add(params);
+                            GeoServerTileLayer.WEB_MAP.set(renderVectorTiles(params));
+                            return null;
+                        });
+        // the tile buffers are reused, read the tiles as they get stored
+        Map<String, String> stored = new HashMap<>();
+        Map<String, String> expected = new HashMap<>();
+        StorageBroker storageBroker = mock(StorageBroker.class);
+        when(storageBroker.put(any()))
+                .thenAnswer(
+                        invocation -> {
+                            TileObject tile = invocation.getArgument(0);
+                            String key = Arrays.toString(tile.getXYZ());
+                            stored.put(key, content(tile.getBlob()));
+                            expected.put(
+                                    key,
+                                    renderVectorTile(gridSubset.boundsFromIndex(tile.getXYZ())));
+                            return true;
+                        });
+
+        ConveyorTile tile =
+                new ConveyorTile(
+                        storageBroker,
+                        layer.getName(),
+                        "EPSG:4326",
+                        tileIndex,
+                        ApplicationMime.mapboxVector,
+                        null,
+                        new MockHttpServletRequest(),
+                        new MockHttpServletResponse());
+        ConveyorTile returned = layer.getTile(tile);
+
+        assertEquals(1, requests.size());
+        assertEquals(formatOptions, requests.get(0).get("FORMAT_OPTIONS"));
+        assertEquals(
+                renderVectorTile(gridSubset.boundsFromIndex(tileIndex)),
+                content(returned.getBlob()));
+        assertEquals(tileCount, stored.size());
+        assertEquals(expected, stored);
+    }
+
+    /** A layer covering the whole world, publishing vector tiles */
+    private GeoServerTileLayer setUpWorldLayer() {
+        resource.setLatLonBoundingBox(new ReferencedEnvelope(-180, 180, -90, 90, WGS84));
+        resource.setNativeBoundingBox(new ReferencedEnvelope(-180, 180, -90, 90, WGS84));
+        layerInfoTileLayer = new GeoServerTileLayer(layerInfo, defaults, gridSetBroker);
+        layerInfoTileLayer.getInfo().getMimeFormats().add(ApplicationMime.mapboxVector.getFormat());
+        return layerInfoTileLayer;
+    }
+
+    /**
+     * Fakes a vector tiles output format, splitting the map in tiles when asked for a metatile.
+     * Each tile contains its own bounds, see {@link #renderVectorTile(BoundingBox)}
+     */
+    private WebMap renderVectorTiles(Map<String, String> params) {
+        BoundingBox bbox = new BoundingBox(params.get("BBOX"));
+        int columns = 1;
+        int rows = 1;
+        String options = params.get("FORMAT_OPTIONS");
+        if (options != null) {
+            String[] factors = options.substring("metatile:".length()).split("x");
+            columns = Integer.parseInt(factors[0]);
+            rows = Integer.parseInt(factors[1]);
+        }
+        WMSMapContent content = new WMSMapContent();
+        String format = params.get("FORMAT");
+        double width = bbox.getWidth() / columns;
+        double height = bbox.getHeight() / rows;
+        RawMap[][] tiles = new RawMap[columns][rows];
+        for (int c = 0; c < columns; c++) {
+            for (int r = 0; r < rows; r++) {
+                BoundingBox tileBounds =
+                        new BoundingBox(
+                                bbox.getMinX() + c * width,
+                                bbox.getMinY() + r * height,
+                                bbox.getMinX() + (c + 1) * width,
+                                bbox.getMinY() + (r + 1) * height);
+                byte[] tile = renderVectorTile(tileBounds).getBytes(StandardCharsets.UTF_8);
+                tiles[c][r] = new RawMap(content, tile, format);
+            }
+        }
+        return options == null ? tiles[0][0] : new RawMetaTileMap(content, tiles, format);
+    }
+
+    private static String renderVectorTile(BoundingBox bbox) {
+        return String.format(
+                Locale.ENGLISH,
+                "%.6f,%.6f,%.6f,%.6f",
+                bbox.getMinX(),
+                bbox.getMinY(),
+                bbox.getMaxX(),
+                bbox.getMaxY());
+    }
+
+    private static String content(Resource blob) throws IOException {
+        try (InputStream in = blob.getInputStream()) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
     private FeatureTypeInfo getMockTimeFeatureType() {
         FeatureTypeInfo resource = mock(FeatureTypeInfo.class);
         MetadataMap metadata = new MetadataMap();
@@ -1013,6 +1192,29 @@ protected void performAssertions() throws Exception {
         };
     }
 
+    @Test
+    public void testGetTileWriteBehind() throws Exception {
+        MetaTileWriter writer = new MetaTileWriter(2, 10, 1);
+        when(mockGWC.getMetaTileWriter()).thenReturn(writer);
+        try {
+            new GetTileMockTester() {
+
+                // the tile is persisted in the background, and only once
+                @Override
+                protected void performAssertions() throws Exception {
+                    assertTrue(writer.flush(10, TimeUnit.SECONDS));
+                    verify(storageBroker, times(1)).put(Mockito.any());
+                    verify(storageBroker, never()).putTransient(Mockito.any());
+                    assertEquals(1, writer.getQueuedCount());
+                    assertEquals(1, writer.getWrittenCount());
+                    assertEquals(0, writer.getPendingCount());
+                }
+            };
+        } finally {
+            writer.destroy();
+        }
+    }
+
     /** Test expire web cache without any setup of LayerInfo resource. */
     @Test
     public void testExpireClientsDisabledLayer() {
@@ -0,0 +1,172 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc.seed;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.geoserver.gwc.GWC;
+import org.geoserver.gwc.seed.TileHeatMap.HotTile;
+import org.geowebcache.conveyor.Conveyor.CacheResult;
+import org.geowebcache.conveyor.ConveyorTile;
+import org.geowebcache.layer.TileLayer;
+import org.geowebcache.mime.MimeType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PredictiveSeederTest {
+
+    private static final String LAYER = "theLayer";
+
+    private static final String GRIDSET = "EPSG:4326";
+
+    private MimeType png;
+
+    private TileLayer layer;
+
+    private List<long[]> seeded = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        png = MimeType.createFromFormat("image/png");
+        layer = mock(TileLayer.class);
+        when(layer.isEnabled()).thenReturn(true);
+        // tile 0,0,1 is cached, the others are rendered
+        doAnswer(
+                        invocation -> {
+                            ConveyorTile tile = invocation.getArgument(0);
+                            if (Arrays.equals(new long[] {0, 0, 1}, tile.getTileIndex())) {
+                                tile.setCacheResult(CacheResult.HIT);
+                            } else {
+                                seeded.add(tile.getTileIndex());
+                            }
+                            return null;
+                        })
+                .when(layer)
+                .seedTile(any(ConveyorTile.class), eq(true));
+
+        GWC gwc = mock(GWC.class);
+        when(gwc.getTileLayerByName(LAYER)).thenReturn(layer);
+        when(gwc.getTileLayerByName("removed")).thenThrow(new IllegalArgumentException());
+        GWC.set(gwc);
+    }
+
+    @After
+    public void tearDown() {
+        GWC.set(null);
+    }
+
+    @Test
+    public void testHeatMapCapacity() {
+        TileHeatMap heatMap = new TileHeatMap(4);
+        request(heatMap, LAYER, 3, 0, 0, 1);
+        request(heatMap, LAYER, 2, 1, 0, 1);
+        request(heatMap, LAYER, 1, 2, 0, 1);
+        request(heatMap, LAYER, 1, 3, 0, 1);
+        // full, the least requested half is dropped to make room
+        request(heatMap, LAYER, 1, 0, 1, 1);
+        request(heatMap, "other", 1, 0, 0, 0);
+
+        List<HotTile> hottest = heatMap.getHottest(10);
+        assertEquals(4, hottest.size());
+        assertArrayEquals(new long[] {0, 0, 1}, hottest.get(0).getIndex());
+        assertEquals(3, hottest.get(0).getCount());
+        assertArrayEquals(new long[] {1, 0, 1}, hottest.get(1).getIndex());
+        assertEquals(2, heatMap.getHottest(2).size());
+
+        // the tiles requested once fade away
+        heatMap.decay();
+        assertEquals(2, heatMap.size());
+        assertEquals(1, heatMap.getHottest(10).get(0).getCount());
+    }
+
+    @Test
+    public void testSeedHottestMissing() throws Exception {
+        PredictiveSeeder seeder = new IdleSeeder(true, 2);
+        request(seeder, LAYER, 5, 0, 0, 1);
+        request(seeder, LAYER, 4, 1, 0, 1);
+        request(seeder, "removed", 3, 0, 0, 0);
+        request(seeder, LAYER, 2, 2, 0, 1);
+        request(seeder, LAYER, 1, 3, 0, 1);
+
+        seeder.seed();
+
+        // the cached tile is checked but does not count in the batch
+        assertEquals(2, seeded.size());
+        assertArrayEquals(new long[] {1, 0, 1}, seeded.get(0));
+        assertArrayEquals(new long[] {2, 0, 1}, seeded.get(1));
+        assertEquals(3, seeder.getCheckedTilesCount());
+        assertEquals(2, seeder.getSeededTilesCount());
+        assertEquals(15, seeder.getRequestsCount());
+        // counts halved, removed layer forgotten, tile requested once dropped
+        assertEquals(3, seeder.getHeatMap().size());
+    }
+
+    @Test
+    public void testSkipWhenBusy() throws Exception {
+        PredictiveSeeder seeder = new IdleSeeder(false, 10);
+        request(seeder, LAYER, 2, 1, 0, 1);
+
+        seeder.seed();
+
+        verify(layer, never()).seedTile(any(ConveyorTile.class), anyBoolean());
+        assertEquals(1, seeder.getBusyRunsCount());
+        assertEquals(1, seeder.getHeatMap().getHottest(1).get(0).getCount());
+    }
+
+    @Test
+    public void testDisabled() {
+        PredictiveSeeder seeder = new PredictiveSeeder(0, 10, 10, 1);
+        assertFalse(seeder.isEnabled());
+        request(seeder, LAYER, 1, 0, 0, 0);
+        assertEquals(0, seeder.getRequestsCount());
+        assertEquals(0, seeder.getHeatMap().size());
+    }
+
+    private void request(TileHeatMap heatMap, String layerName, int times, long... index) {
+        for (int i = 0; i < times; i++) {
+            heatMap.record(tile(layerName, index));
+        }
+    }
+
+    private void request(PredictiveSeeder seeder, String layerName, int times, long... index) {
+        for (int i = 0; i < times; i++) {
+            seeder.record(tile(layerName, index));
+        }
+    }
+
+    private ConveyorTile tile(String layerName, long... index) {
+        return new ConveyorTile(null, layerName, GRIDSET, index, png, null, null, null);
+    }
+
+    /** Does not schedule any run, and reports a fixed idle status */
+    private static class IdleSeeder extends PredictiveSeeder {
+
+        private final boolean idle;
+
+        IdleSeeder(boolean idle, int batchSize) {
+            super(Long.MAX_VALUE, 100, batchSize, 1);
+            this.idle = idle;
+        }
+
+        @Override
+        protected boolean isIdle() {
+            return idle;
+        }
+    }
+}
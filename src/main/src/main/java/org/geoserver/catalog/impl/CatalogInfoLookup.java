@@ -8,6 +8,8 @@
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -29,6 +31,11 @@
  * <p>The lookups by predicate have been tested and optimized for performance, in particular the
  * current for loops turned out to be significantly faster than building and returning streams
  *
+ * <p>Secondary indexes can be registered via {@link #index(String, Function)}, mapping a property
+ * (e.g., "store.id") to the identifier of the referenced object. The indexes are kept up to date on
+ * add, remove and update, and allow {@link #list(Class, String, String, Predicate)} to only visit
+ * the objects associated to a given key, instead of scanning the whole lookup.
+ *
  * @param <T>
  */
 class CatalogInfoLookup<T extends CatalogInfo> {
@@ -37,6 +44,7 @@
     ConcurrentHashMap<Class<T>, Map<String, T>> idMultiMap = new ConcurrentHashMap<>();
     ConcurrentHashMap<Class<T>, Map<Name, T>> nameMultiMap = new ConcurrentHashMap<>();
     Function<T, Name> nameMapper;
+    Map<String, SecondaryIndex<T>> indexes = new ConcurrentHashMap<>();
     static final Predicate<?> TRUE = x -> true;
 
     /** Returns {@link CatalogInfoLookup#TRUE} in a type-safe way */
@@ -49,6 +57,22 @@ public CatalogInfoLookup(Function<T, Name> nameMapper) {
         this.nameMapper = nameMapper;
     }
 
+    /**
+     * Registers a secondary index on the given property. The key mapper should return the
+     * identifier of the object referenced by the property (can return null, e.g., for global
+     * objects not associated to a workspace). Indexes should be registered before any value is
+     * added to the lookup.
+     */
+    public CatalogInfoLookup<T> index(String property, Function<T, String> keyMapper) {
+        indexes.put(property, new SecondaryIndex<>(keyMapper));
+        return this;
+    }
+
+    /** Returns true if there is a secondary index for the given property */
+    public boolean isIndexed(String property) {
+        return indexes.containsKey(property);
+    }
+
     @SuppressWarnings("unchecked")
     <K> Map<K, T> getMapForValue(ConcurrentHashMap<Class<T>, Map<K, T>> maps, T value) {
         Class<T> vc;
@@ -89,6 +113,9 @@ public T add(T value) {
         Name name = nameMapper.apply(value);
         nameMap.put(name, value);
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
+        for (SecondaryIndex<T> index : indexes.values()) {
+            index.add(value);
+        }
         return idMap.put(value.getId(), value);
     }
 
@@ -105,16 +132,26 @@ public T remove(T value) {
         Name name = nameMapper.apply(value);
         Map<Name, T> nameMap = getMapForValue(nameMultiMap, value);
         nameMap.remove(name);
+        for (SecondaryIndex<T> index : indexes.values()) {
+            index.remove(value);
+        }
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
         return idMap.remove(value.getId());
     }
 
-    /** Updates the value in the name map. The new value must be a ModificationProxy */
+    /**
+     * Updates the value in the name map and in the secondary indexes. The new value must be a
+     * ModificationProxy
+     */
     @SuppressWarnings("unchecked")
     public void update(T proxiedValue) {
         ModificationProxy h = (ModificationProxy) Proxy.getInvocationHandler(proxiedValue);
         T actualValue = (T) h.getProxyObject();
 
+        for (SecondaryIndex<T> index : indexes.values()) {
+            index.update(actualValue, proxiedValue);
+        }
+
         Name oldName = nameMapper.apply(actualValue);
         Name newName = nameMapper.apply(proxiedValue);
         if (!oldName.equals(newName)) {
@@ -127,6 +164,9 @@ public void update(T proxiedValue) {
     public void clear() {
         idMultiMap.clear();
         nameMultiMap.clear();
+        for (SecondaryIndex<T> index : indexes.values()) {
+            index.clear();
+        }
     }
 
     /**
@@ -157,6 +197,36 @@ <U extends CatalogInfo> List<U> list(Class<U> clazz, Predicate<U> predicate) {
         return result;
     }
 
+    /**
+     * Looks up objects by class and matching predicate, visiting only the objects associated to the
+     * given key in the secondary index of the specified property. The results are sorted by name,
+     * like {@link #list(Class, Predicate)} does.
+     *
+     * @throws IllegalArgumentException if the property is not indexed
+     */
+    <U extends CatalogInfo> List<U> list(
+            Class<U> clazz, String property, String key, Predicate<U> predicate) {
+        SecondaryIndex<T> index = indexes.get(property);
+        if (index == null) {
+            throw new IllegalArgumentException("Property " + property + " is not indexed");
+        }
+        ArrayList<T> matches = new ArrayList<>();
+        for (T v : index.get(key)) {
+            @SuppressWarnings("unchecked")
+            final U u = (U) v;
+            if (clazz.isInstance(v) && (predicate == TRUE || predicate.test(u))) {
+                matches.add(v);
+            }
+        }
+        if (matches.size() > 1) {
+            matches.sort(Comparator.comparing(v -> nameMapper.apply(v), NAME_COMPARATOR));
+        }
+
+        @SuppressWarnings("unchecked")
+        List<U> result = (List<U>) matches;
+        return result;
+    }
+
     /** Looks up a CatalogInfo by class and identifier */
     public <U extends CatalogInfo> U findById(String id, Class<U> clazz) {
         for (Class<T> key : idMultiMap.keySet()) {
@@ -246,4 +316,81 @@ public CatalogInfoLookup<T> setCatalog(Catalog catalog) {
 
         return this;
     }
+
+    /** Compares names the same way the name maps do */
+    @SuppressWarnings("unchecked")
+    static final Comparator<Name> NAME_COMPARATOR =
+            (n1, n2) -> ((Comparable<Name>) n1).compareTo(n2);
+
+    /**
+     * A secondary index, grouping the values by the identifier of a referenced object. Values are
+     * kept in concurrent maps keyed by id, so that the index can be read while being modified.
+     */
+    static class SecondaryIndex<T extends CatalogInfo> {
+
+        /** Key used for values not referencing any object, concurrent maps do not allow nulls */
+        static final String NULL_KEY = "__NULL__";
+
+        final Function<T, String> keyMapper;
+
+        final ConcurrentHashMap<String, Map<String, T>> values = new ConcurrentHashMap<>();
+
+        SecondaryIndex(Function<T, String> keyMapper) {
+            this.keyMapper = keyMapper;
+        }
+
+        private String key(T value) {
+            String key = keyMapper.apply(value);
+            return key == null ? NULL_KEY : key;
+        }
+
+        void add(T value) {
+            add(key(value), value);
+        }
+
+        private void add(String key, T value) {
+            values.compute(
+                    key,
+                    (k, map) -> {
+                        Map<String, T> result = map != null ? map : new ConcurrentHashMap<>();
+                        result.put(value.getId(), value);
+                        return result;
+                    });
+        }
+
+        void remove(T value) {
+            remove(key(value), value);
+        }
+
+        private void remove(String key, T value) {
+            values.computeIfPresent(
+                    key,
+                    (k, map) -> {
+                        map.remove(value.getId());
+                        return map.isEmpty() ? null : map;
+                    });
+        }
+
+        /** Moves the actual value under the new key, if the proxied value changed it */
+        void update(T actualValue, T proxiedValue) {
+            String oldKey = key(actualValue);
+            String newKey = key(proxiedValue);
+            if (!oldKey.equals(newKey)) {
+                remove(oldKey, actualValue);
+                add(newKey, actualValue);
+            }
+        }
+
+        Collection<T> get(String key) {
+            Map<String, T> map = values.get(key == null ? NULL_KEY : key);
+            if (map == null) {
+                return Collections.emptyList();
+            }
+            return map.values();
+        }
+
+        void clear() {
+            values.clear();
+        }
+    }
 }
@@ -40,7 +40,12 @@
 import org.geoserver.ows.util.OwsUtils;
 import org.geotools.feature.NameImpl;
 import org.opengis.feature.type.Name;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
 import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 
@@ -91,10 +96,27 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
                             s.getWorkspace() != null ? s.getWorkspace().getId() : null,
                             s.getName());
 
+    /** Identifier of the workspace of a store, used as a secondary index key */
+    static final Function<StoreInfo, String> STORE_WORKSPACE_MAPPER =
+            s -> s.getWorkspace() != null ? s.getWorkspace().getId() : null;
+
+    /** Identifier of the store of a resource, used as a secondary index key */
+    static final Function<ResourceInfo, String> RESOURCE_STORE_MAPPER =
+            r -> r.getStore() != null ? r.getStore().getId() : null;
+
+    /** Identifier of the resource of a layer, used as a secondary index key */
+    static final Function<LayerInfo, String> LAYER_RESOURCE_MAPPER =
+            l -> l.getResource() != null ? l.getResource().getId() : null;
+
+    /** Identifier of the workspace of a style, used as a secondary index key */
+    static final Function<StyleInfo, String> STYLE_WORKSPACE_MAPPER =
+            s -> s.getWorkspace() != null ? s.getWorkspace().getId() : null;
+
     static final class LayerInfoLookup extends CatalogInfoLookup<LayerInfo> {
 
         public LayerInfoLookup() {
             super(LAYER_NAME_MAPPER);
+            index("resource.id", LAYER_RESOURCE_MAPPER);
         }
 
         public void update(ResourceInfo proxiedValue) {
@@ -122,14 +144,13 @@ public LayerInfoLookup setCatalog(Catalog catalog) {
     }
 
     /** Contains the stores keyed by implementation class */
-    protected CatalogInfoLookup<StoreInfo> stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+    protected CatalogInfoLookup<StoreInfo> stores = newStoreLookup();
 
     /** The default store keyed by workspace id */
     protected Map<String, DataStoreInfo> defaultStores = new ConcurrentHashMap<>();
 
     /** resources */
-    protected CatalogInfoLookup<ResourceInfo> resources =
-            new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+    protected CatalogInfoLookup<ResourceInfo> resources = newResourceLookup();
 
     /** The default namespace */
     protected volatile NamespaceInfo defaultNamespace;
@@ -156,7 +177,7 @@ public LayerInfoLookup setCatalog(Catalog catalog) {
             new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER);
 
     /** styles */
-    protected CatalogInfoLookup<StyleInfo> styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+    protected CatalogInfoLookup<StyleInfo> styles = newStyleLookup();
 
     /** the catalog */
     private CatalogImpl catalog;
@@ -165,6 +186,21 @@ public DefaultCatalogFacade(Catalog catalog) {
         setCatalog(catalog);
     }
 
+    static CatalogInfoLookup<StoreInfo> newStoreLookup() {
+        return new CatalogInfoLookup<>(STORE_NAME_MAPPER)
+                .index("workspace.id", STORE_WORKSPACE_MAPPER);
+    }
+
+    static CatalogInfoLookup<ResourceInfo> newResourceLookup() {
+        return new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER)
+                .index("store.id", RESOURCE_STORE_MAPPER);
+    }
+
+    static CatalogInfoLookup<StyleInfo> newStyleLookup() {
+        return new CatalogInfoLookup<>(STYLE_NAME_MAPPER)
+                .index("workspace.id", STYLE_WORKSPACE_MAPPER);
+    }
+
     @Override
     public void setCatalog(Catalog catalog) {
         this.catalog = (CatalogImpl) catalog;
@@ -246,7 +282,8 @@ public <T extends StoreInfo> List<T> getStoresByWorkspace(
             ws = workspace;
         }
 
-        List<T> matches = stores.list(clazz, s -> ws.equals(s.getWorkspace()));
+        List<T> matches =
+                stores.list(clazz, "workspace.id", ws.getId(), s -> ws.equals(s.getWorkspace()));
         return ModificationProxy.createList(matches, clazz);
     }
 
@@ -408,7 +445,8 @@ private <T extends CatalogInfo> T wrapInModificationProxy(T ci, Class<T> clazz)
 
     @Override
     public <T extends ResourceInfo> List<T> getResourcesByStore(StoreInfo store, Class<T> clazz) {
-        List<T> matches = resources.list(clazz, r -> store.equals(r.getStore()));
+        List<T> matches =
+                resources.list(clazz, "store.id", store.getId(), r -> store.equals(r.getStore()));
         return ModificationProxy.createList(matches, clazz);
     }
 
@@ -931,7 +969,9 @@ public List<StyleInfo> getStylesByWorkspace(WorkspaceInfo workspace) {
         // TODO: support ANY_WORKSPACE?
         List<StyleInfo> matches;
         if (workspace == NO_WORKSPACE) {
-            matches = styles.list(StyleInfo.class, s -> s.getWorkspace() == null);
+            matches =
+                    styles.list(
+                            StyleInfo.class, "workspace.id", null, s -> s.getWorkspace() == null);
         } else {
             WorkspaceInfo ws;
             if (workspace == null) {
@@ -940,7 +980,12 @@ public List<StyleInfo> getStylesByWorkspace(WorkspaceInfo workspace) {
                 ws = workspace;
             }
 
-            matches = styles.list(StyleInfo.class, s -> ws.equals(s.getWorkspace()));
+            matches =
+                    styles.list(
+                            StyleInfo.class,
+                            "workspace.id",
+                            ws.getId(),
+                            s -> ws.equals(s.getWorkspace()));
         }
 
         return ModificationProxy.createList(matches, StyleInfo.class);
@@ -982,7 +1027,7 @@ public void resolve() {
 
         // stores
         if (stores == null) {
-            stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+            stores = newStoreLookup();
         }
         for (Object o : stores.values()) {
             resolve((StoreInfoImpl) o);
@@ -990,7 +1035,7 @@ public void resolve() {
 
         // styles
         if (styles == null) {
-            styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+            styles = newStyleLookup();
         }
         for (StyleInfo s : styles.values()) {
             resolve(s);
@@ -998,7 +1043,7 @@ public void resolve() {
 
         // resources
         if (resources == null) {
-            resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+            resources = newResourceLookup();
         }
         for (Object o : resources.values()) {
             resolve((ResourceInfo) o);
@@ -1166,23 +1211,23 @@ public <T extends CatalogInfo> Iterable<T> iterable(
         List<T> all;
 
         if (NamespaceInfo.class.isAssignableFrom(of)) {
-            all = namespaces.list(of, toPredicate(filter));
+            all = list(namespaces, of, filter);
         } else if (WorkspaceInfo.class.isAssignableFrom(of)) {
-            all = workspaces.list(of, toPredicate(filter));
+            all = list(workspaces, of, filter);
         } else if (StoreInfo.class.isAssignableFrom(of)) {
-            all = stores.list(of, toPredicate(filter));
+            all = list(stores, of, filter);
         } else if (ResourceInfo.class.isAssignableFrom(of)) {
-            all = resources.list(of, toPredicate(filter));
+            all = list(resources, of, filter);
         } else if (LayerInfo.class.isAssignableFrom(of)) {
-            all = layers.list(of, toPredicate(filter));
+            all = list(layers, of, filter);
         } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
-            all = layerGroups.list(of, toPredicate(filter));
+            all = list(layerGroups, of, filter);
         } else if (PublishedInfo.class.isAssignableFrom(of)) {
             all = new ArrayList<>();
-            all.addAll((List<T>) layers.list(LayerInfo.class, toPredicate(filter)));
-            all.addAll((List<T>) layerGroups.list(LayerGroupInfo.class, toPredicate(filter)));
+            all.addAll((List<T>) list(layers, LayerInfo.class, filter));
+            all.addAll((List<T>) list(layerGroups, LayerGroupInfo.class, filter));
         } else if (StyleInfo.class.isAssignableFrom(of)) {
-            all = styles.list(of, toPredicate(filter));
+            all = list(styles, of, filter);
         } else if (MapInfo.class.isAssignableFrom(of)) {
             all = (List<T>) new ArrayList<>(maps);
         } else {
@@ -1203,6 +1248,64 @@ public <T extends CatalogInfo> Iterable<T> iterable(
         return ModificationProxy.createList(all, of);
     }
 
+    /**
+     * Lists the objects matching the filter. If the filter is an equality comparison against the
+     * object id or an indexed property, or a logical AND containing one, only the matching objects
+     * are evaluated against the full filter, instead of scanning the whole lookup.
+     */
+    <T extends CatalogInfo> List<T> list(CatalogInfoLookup<?> lookup, Class<T> of, Filter filter) {
+        Predicate<T> predicate = toPredicate(filter);
+        List<Filter> candidates;
+        if (filter instanceof And) {
+            candidates = ((And) filter).getChildren();
+        } else {
+            candidates = Collections.singletonList(filter);
+        }
+        for (Filter candidate : candidates) {
+            if (!(candidate instanceof PropertyIsEqualTo)) {
+                continue;
+            }
+            PropertyIsEqualTo equal = (PropertyIsEqualTo) candidate;
+            String property = getPropertyName(equal);
+            Object value = getLiteralValue(equal);
+            if (property == null || !(value instanceof String) || !equal.isMatchingCase()) {
+                continue;
+            }
+            String key = (String) value;
+            if ("id".equals(property)) {
+                List<T> result = new ArrayList<>();
+                T match = lookup.findById(key, of);
+                if (match != null
+                        && (predicate == CatalogInfoLookup.TRUE || predicate.test(match))) {
+                    result.add(match);
+                }
+                return result;
+            } else if (lookup.isIndexed(property)) {
+                return lookup.list(of, property, key, predicate);
+            }
+        }
+
+        return lookup.list(of, predicate);
+    }
+
+    private String getPropertyName(BinaryComparisonOperator comparison) {
+        if (comparison.getExpression1() instanceof PropertyName) {
+            return ((PropertyName) comparison.getExpression1()).getPropertyName();
+        } else if (comparison.getExpression2() instanceof PropertyName) {
+            return ((PropertyName) comparison.getExpression2()).getPropertyName();
+        }
+        return null;
+    }
+
+    private Object getLiteralValue(BinaryComparisonOperator comparison) {
+        if (comparison.getExpression1() instanceof Literal) {
+            return ((Literal) comparison.getExpression1()).getValue();
+        } else if (comparison.getExpression2() instanceof Literal) {
+            return ((Literal) comparison.getExpression2()).getValue();
+        }
+        return null;
+    }
+
     private <T> Predicate<T> toPredicate(Filter filter) {
         if (filter != null && filter != Filter.INCLUDE) {
             return o -> filter.evaluate(o);
@@ -0,0 +1,283 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.platform.resource.Resource.Type;
+import org.geoserver.platform.resource.Resources;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A binary snapshot of the catalog, used to speed up startup by avoiding the parse of every single
+ * configuration file in the data directory.
+ *
+ * <p>The snapshot contains the catalog objects encoded with the XStream compact binary format, in
+ * the same order the {@link GeoServerLoader} would add them, along with the default workspace,
+ * namespace and stores. It is tagged with a manifest, a hash of the paths and modification times of
+ * the XML configuration files found in the data directory: a snapshot whose manifest does not match
+ * the current data directory is considered stale and ignored.
+ */
+class CatalogSnapshot {
+
+    static final Logger LOGGER = Logging.getLogger(CatalogSnapshot.class);
+
+    /** Name of the snapshot file, in the root of the data directory */
+    static final String SNAPSHOT_FILE = "catalog.snapshot";
+
+    /** Directories whose XML files contribute to the manifest */
+    static final String[] CATALOG_DIRECTORIES = {"workspaces", "styles", "layergroups"};
+
+    static final int MAGIC = 0x47534353; // GSCS
+
+    static final int VERSION = 1;
+
+    GeoServerResourceLoader resourceLoader;
+
+    XStreamPersisterFactory xpf;
+
+    public CatalogSnapshot(GeoServerResourceLoader resourceLoader, XStreamPersisterFactory xpf) {
+        this.resourceLoader = resourceLoader;
+        this.xpf = xpf;
+    }
+
+    /** Returns the resource holding the snapshot */
+    Resource getResource() {
+        return resourceLoader.get(SNAPSHOT_FILE);
+    }
+
+    /**
+     * Computes the manifest of the current data directory contents, that is, a hash of the paths
+     * and last modification times of all the XML files that contribute to the catalog.
+     */
+    public String computeManifest() throws IOException {
+        List<Resource> files = new ArrayList<>();
+        // global.xml controls how stores are validated while loading
+        Resource global = resourceLoader.get("global.xml");
+        if (Resources.exists(global)) {
+            files.add(global);
+        }
+        for (String directory : CATALOG_DIRECTORIES) {
+            collectXmlFiles(resourceLoader.get(directory), files);
+        }
+        files.sort(Comparator.comparing(Resource::path));
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Resource file : files) {
+                digest.update(file.path().getBytes(StandardCharsets.UTF_8));
+                digest.update(Long.toString(file.lastmodified()).getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void collectXmlFiles(Resource directory, List<Resource> files) {
+        if (directory.getType() != Type.DIRECTORY) {
+            return;
+        }
+        for (Resource child : directory.list()) {
+            if (child.getType() == Type.DIRECTORY) {
+                collectXmlFiles(child, files);
+            } else if (child.getType() == Type.RESOURCE
+                    && child.name().toLowerCase().endsWith(".xml")) {
+                files.add(child);
+            }
+        }
+    }
+
+    /** Writes out a snapshot of the catalog, tagging it with the given manifest */
+    public void write(CatalogImpl catalog, String manifest) throws IOException {
+        write(catalog, manifest, Collections.emptySet());
+    }
+
+    /**
+     * Writes out a snapshot of the catalog, tagging it with the given manifest
+     *
+     * @param disabledStores identifiers of the stores disabled on startup because they could not
+     *     connect, they are written as enabled, like they are in the configuration files
+     */
+    public void write(CatalogImpl catalog, String manifest, Set<String> disabledStores)
+            throws IOException {
+        XStreamPersister xp = xpf.createBinaryPersister();
+        xp.setCatalog(catalog);
+        Resource resource = getResource();
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(resource.out()))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(manifest);
+
+            writeAll(xp, catalog.getWorkspaces(), out);
+            writeAll(xp, catalog.getNamespaces(), out);
+            writeAll(xp, catalog.getStyles(), out);
+            List<StoreInfo> reenabled = new ArrayList<>();
+            for (StoreInfo store : catalog.getStores(StoreInfo.class)) {
+                if (!store.isEnabled() && disabledStores.contains(store.getId())) {
+                    reenabled.add(ModificationProxy.unwrap(store));
+                }
+            }
+            try {
+                reenabled.forEach(s -> s.setEnabled(true));
+                writeAll(xp, catalog.getStores(StoreInfo.class), out);
+            } finally {
+                reenabled.forEach(s -> s.setEnabled(false));
+            }
+            writeAll(xp, catalog.getResources(ResourceInfo.class), out);
+            writeAll(xp, catalog.getLayers(), out);
+            writeAll(xp, catalog.getLayerGroups(), out);
+
+            writeId(catalog.getDefaultWorkspace(), out);
+            writeId(catalog.getDefaultNamespace(), out);
+            List<DataStoreInfo> defaultStores = new ArrayList<>();
+            for (WorkspaceInfo ws : catalog.getWorkspaces()) {
+                DataStoreInfo ds = catalog.getDefaultDataStore(ws);
+                if (ds != null) {
+                    defaultStores.add(ds);
+                }
+            }
+            out.writeInt(defaultStores.size());
+            for (DataStoreInfo ds : defaultStores) {
+                out.writeUTF(ds.getWorkspace().getId());
+                out.writeUTF(ds.getId());
+            }
+        }
+    }
+
+    private void writeAll(
+            XStreamPersister xp, List<? extends CatalogInfo> infos, DataOutputStream out)
+            throws IOException {
+        out.writeInt(infos.size());
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (CatalogInfo info : infos) {
+            bos.reset();
+            xp.save(info, bos);
+            out.writeInt(bos.size());
+            bos.writeTo(out);
+        }
+    }
+
+    private void writeId(CatalogInfo info, DataOutputStream out) throws IOException {
+        out.writeUTF(info == null ? "" : info.getId());
+    }
+
+    /**
+     * Reads the catalog back from the snapshot, or returns null if the snapshot is missing or its
+     * manifest does not match the provided one.
+     *
+     * @throws IOException if the snapshot is corrupted or cannot be decoded, for example because a
+     *     plugin contributing to the catalog has been removed
+     */
+    public CatalogImpl read(String manifest) throws IOException {
+        Resource resource = getResource();
+        if (!Resources.exists(resource)) {
+            LOGGER.config("No catalog snapshot found");
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(resource.in()))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.config("Catalog snapshot has an unsupported format, ignoring it");
+                return null;
+            }
+            if (!manifest.equals(in.readUTF())) {
+                LOGGER.config("Catalog snapshot is stale, ignoring it");
+                return null;
+            }
+
+            CatalogImpl catalog = new CatalogImpl();
+            catalog.setResourceLoader(resourceLoader);
+            XStreamPersister xp = xpf.createBinaryPersister();
+            xp.setCatalog(catalog);
+            xp.setUnwrapNulls(false);
+            // the contents have already been validated when the snapshot was taken
+            catalog.setExtendedValidation(false);
+
+            readAll(xp, WorkspaceInfo.class, in).forEach(catalog::add);
+            readAll(xp, NamespaceInfo.class, in).forEach(catalog::add);
+            readAll(xp, StyleInfo.class, in).forEach(catalog::add);
+            readAll(xp, StoreInfo.class, in).forEach(catalog::add);
+            readAll(xp, ResourceInfo.class, in).forEach(catalog::add);
+            readAll(xp, LayerInfo.class, in).forEach(catalog::add);
+            readAll(xp, LayerGroupInfo.class, in).forEach(catalog::add);
+
+            String defaultWorkspace = in.readUTF();
+            if (!defaultWorkspace.isEmpty()) {
+                catalog.setDefaultWorkspace(catalog.getWorkspace(defaultWorkspace));
+            }
+            String defaultNamespace = in.readUTF();
+            if (!defaultNamespace.isEmpty()) {
+                catalog.setDefaultNamespace(catalog.getNamespace(defaultNamespace));
+            }
+            int defaultStores = in.readInt();
+            for (int i = 0; i < defaultStores; i++) {
+                WorkspaceInfo ws = catalog.getWorkspace(in.readUTF());
+                DataStoreInfo ds = catalog.getDataStore(in.readUTF());
+                if (ws != null && ds != null) {
+                    catalog.setDefaultDataStore(ws, ds);
+                }
+            }
+
+            xp.setUnwrapNulls(true);
+            catalog.resolve();
+            catalog.setExtendedValidation(true);
+            if (LOGGER.isLoggable(Level.CONFIG)) {
+                LOGGER.config(
+                        "Loaded catalog snapshot with " + catalog.getLayers().size() + " layers");
+            }
+            return catalog;
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to decode the catalog snapshot", e);
+        }
+    }
+
+    private <T> List<T> readAll(XStreamPersister xp, Class<T> clazz, DataInputStream in)
+            throws IOException {
+        int count = in.readInt();
+        List<T> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] contents = new byte[in.readInt()];
+            in.readFully(contents);
+            result.add(xp.load(new ByteArrayInputStream(contents), clazz));
+        }
+        return result;
+    }
+}
@@ -12,9 +12,18 @@
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -29,6 +38,7 @@
 import org.geoserver.catalog.NamespaceInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.ResourcePool;
+import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMSStoreInfo;
@@ -37,6 +47,8 @@
 import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.event.CatalogListener;
 import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.catalog.impl.ResolvingProxy;
 import org.geoserver.catalog.util.LegacyCatalogImporter;
 import org.geoserver.catalog.util.LegacyCatalogReader;
 import org.geoserver.catalog.util.LegacyFeatureTypeInfoReader;
@@ -176,6 +188,97 @@ public LayerContents apply(Resource rd) throws IOException {
     /** WMTS Layer IO resource mapper */
     static final ResourceLayerMapper WMTS_LAYER_MAPPER =
             new ResourceLayerMapper("wmtslayer.xml", "wmts layer");
+
+    /**
+     * System/environment variable or servlet context parameter enabling the parallel loading of
+     * stores, resources and layers, see {@link #isParallelLoading()}
+     */
+    public static final String PARALLEL_LOADING_KEY = "org.geoserver.catalog.parallelLoading";
+
+    /**
+     * System/environment variable or servlet context parameter enabling the usage of a binary
+     * catalog snapshot on startup, see {@link #isSnapshotEnabled()}
+     */
+    public static final String SNAPSHOT_KEY = "org.geoserver.catalog.snapshot";
+
+    /** Describes a type of store, its configuration file, and the resources it contains */
+    static final class StoreType {
+        final String fileName;
+        final String description;
+        final Class<? extends StoreInfo> storeClass;
+        final Class<? extends ResourceInfo> resourceClass;
+        final ResourceLayerMapper layerMapper;
+
+        StoreType(
+                String fileName,
+                String description,
+                Class<? extends StoreInfo> storeClass,
+                Class<? extends ResourceInfo> resourceClass,
+                ResourceLayerMapper layerMapper) {
+            this.fileName = fileName;
+            this.description = description;
+            this.storeClass = storeClass;
+            this.resourceClass = resourceClass;
+            this.layerMapper = layerMapper;
+        }
+    }
+
+    /** The store types, in the same lookup order used by the sequential loader */
+    static final List<StoreType> STORE_TYPES =
+            Arrays.asList(
+                    new StoreType(
+                            "datastore.xml",
+                            "data store",
+                            DataStoreInfo.class,
+                            FeatureTypeInfo.class,
+                            FEATURE_LAYER_MAPPER),
+                    new StoreType(
+                            "coveragestore.xml",
+                            "coverage store",
+                            CoverageStoreInfo.class,
+                            CoverageInfo.class,
+                            COVERAGE_LAYER_MAPPER),
+                    new StoreType(
+                            "wmsstore.xml",
+                            "wms store",
+                            WMSStoreInfo.class,
+                            WMSLayerInfo.class,
+                            WMS_LAYER_MAPPER),
+                    new StoreType(
+                            "wmtsstore.xml",
+                            "wmts store",
+                            WMTSStoreInfo.class,
+                            WMTSLayerInfo.class,
+                            WMTS_LAYER_MAPPER));
+
+    /** A resource and its layer, already parsed, but not yet added to the catalog */
+    static final class ParsedLayer {
+        final Resource resource;
+        final ResourceInfo info;
+        final LayerInfo layer;
+
+        public ParsedLayer(Resource resource, ResourceInfo info, LayerInfo layer) {
+            this.resource = resource;
+            this.info = info;
+            this.layer = layer;
+        }
+    }
+
+    /** A store and its layers, already parsed, but not yet added to the catalog */
+    static final class ParsedStore {
+        final Resource resource;
+        final StoreType type;
+        final StoreInfo store;
+        final List<ParsedLayer> layers;
+
+        public ParsedStore(
+                Resource resource, StoreType type, StoreInfo store, List<ParsedLayer> layers) {
+            this.resource = resource;
+            this.type = type;
+            this.store = store;
+            this.layers = layers;
+        }
+    }
     /**
      * Generic layer catalog loader for all types of IO resources
      *
@@ -186,11 +289,14 @@ public LayerContents apply(Resource rd) throws IOException {
         Class<T> clazz;
         XStreamPersister xp;
         Catalog catalog;
+        AtomicInteger failures;
 
-        public LayerLoader(Class<T> clazz, XStreamPersister xp, Catalog catalog) {
+        public LayerLoader(
+                Class<T> clazz, XStreamPersister xp, Catalog catalog, AtomicInteger failures) {
             this.clazz = clazz;
             this.xp = xp;
             this.catalog = catalog;
+            this.failures = failures;
         }
 
         @Override
@@ -200,6 +306,7 @@ public void accept(LayerContents lc) {
                 ft = depersist(xp, lc.contents, clazz);
                 catalog.add(ft);
             } catch (Exception e) {
+                failures.incrementAndGet();
                 LOGGER.log(Level.WARNING, "Failed to load resource", e);
                 return;
             }
@@ -233,6 +340,7 @@ public void accept(LayerContents lc) {
                 }
 
             } catch (Exception e) {
+                failures.incrementAndGet();
                 LOGGER.log(Level.WARNING, "Failed to load layer " + lc.resource.name(), e);
             }
         }
@@ -244,6 +352,12 @@ public void accept(LayerContents lc) {
     GeoServer geoserver;
     XStreamPersisterFactory xpf = new XStreamPersisterFactory();
 
+    /** Identifiers of the data stores disabled because they could not connect on startup */
+    Set<String> startupDisabledStores = ConcurrentHashMap.newKeySet();
+
+    /** Number of catalog objects that failed to load in the last {@link #readCatalog} */
+    final AtomicInteger catalogLoadFailures = new AtomicInteger();
+
     // JD: this is a hack for the moment, it is used only to maintain tests since the test setup
     // relies
     // on the old data directory structure, once the tests have been ported to the new structure
@@ -446,7 +560,11 @@ protected void readCatalog(Catalog catalog, XStreamPersister xp) throws Exceptio
             // assume 2.x style data directory
             Stopwatch sw = Stopwatch.createStarted();
             LOGGER.config("Loading catalog...");
-            catalog2 = (CatalogImpl) readCatalog(xp);
+            if (isSnapshotEnabled()) {
+                catalog2 = readCatalogSnapshot(xp);
+            } else {
+                catalog2 = (CatalogImpl) readCatalog(xp);
+            }
             LOGGER.config("Read catalog in " + sw.stop());
         } else {
             // import old style catalog, register the persister now so that we start
@@ -483,8 +601,70 @@ boolean checkStoresOnStartup(XStreamPersister xp) {
         return true;
     }
 
+    /**
+     * Returns true if the catalog snapshot is enabled via the {@link #SNAPSHOT_KEY} property. When
+     * enabled the catalog is loaded from a binary snapshot if the data directory did not change
+     * since it was taken, otherwise it is read from the XML files and a new snapshot is written.
+     */
+    protected boolean isSnapshotEnabled() {
+        return Boolean.parseBoolean(GeoServerExtensions.getProperty(SNAPSHOT_KEY));
+    }
+
+    /**
+     * Reads the catalog from the binary snapshot, falling back on the data directory XML files if
+     * the snapshot is missing, stale or cannot be decoded
+     */
+    CatalogImpl readCatalogSnapshot(XStreamPersister xp) throws Exception {
+        CatalogSnapshot snapshot = new CatalogSnapshot(resourceLoader, xpf);
+        // compute the manifest before reading, so that changes happening while loading
+        // will make the snapshot stale
+        String manifest = snapshot.computeManifest();
+        try {
+            CatalogImpl catalog = snapshot.read(manifest);
+            if (catalog != null) {
+                // the snapshot has the persisted state, check the stores like the XML loader does
+                if (checkStoresOnStartup(xp)) {
+                    Stopwatch sw = Stopwatch.createStarted();
+                    for (DataStoreInfo ds : catalog.getDataStores()) {
+                        if (ds.isEnabled()) {
+                            checkDataStore(ModificationProxy.unwrap(ds));
+                        }
+                    }
+                    logPhase("data store checks", sw);
+                }
+                return catalog;
+            }
+        } catch (IOException e) {
+            LOGGER.log(
+                    Level.WARNING,
+                    "Failed to load the catalog snapshot, reading the data directory instead",
+                    e);
+        }
+
+        CatalogImpl catalog = (CatalogImpl) readCatalog(xp);
+        int failures = catalogLoadFailures.get();
+        if (failures > 0) {
+            // e.g. a missing plugin, the snapshot would keep the objects out even after fixing it,
+            // as the manifest only tracks the data directory files
+            LOGGER.warning(
+                    failures + " catalog objects failed to load, not writing the catalog snapshot");
+            return catalog;
+        }
+        try {
+            Stopwatch sw = Stopwatch.createStarted();
+            // stores disabled by a temporary outage must come back enabled on the next startup
+            snapshot.write(catalog, manifest, startupDisabledStores);
+            logPhase("catalog snapshot writing", sw);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to write the catalog snapshot", e);
+        }
+        return catalog;
+    }
+
     /** Reads the catalog from disk. */
     Catalog readCatalog(XStreamPersister xp) throws Exception {
+        startupDisabledStores.clear();
+        catalogLoadFailures.set(0);
         CatalogImpl catalog = new CatalogImpl();
         catalog.setResourceLoader(resourceLoader);
         xp.setCatalog(catalog);
@@ -497,7 +677,9 @@ Catalog readCatalog(XStreamPersister xp) throws Exception {
         }
 
         // global styles
+        Stopwatch sw = Stopwatch.createStarted();
         loadStyles(resourceLoader.get("styles"), catalog, xp);
+        logPhase("global styles", sw);
 
         // workspaces, stores, and resources
         Resource workspaces = resourceLoader.get("workspaces");
@@ -513,7 +695,7 @@ Catalog readCatalog(XStreamPersister xp) throws Exception {
                                 "Loaded default workspace '" + defaultWorkspace.getName() + "'");
                     }
                 } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Failed to load default workspace", e);
+                    catalogLoadFailed("Failed to load default workspace", e);
                 }
             } else {
                 LOGGER.warning("No default workspace was found.");
@@ -526,6 +708,7 @@ Catalog readCatalog(XStreamPersister xp) throws Exception {
                             .filter(r -> Resources.DirectoryFilter.INSTANCE.accept(r))
                             .collect(Collectors.toList());
 
+            sw = Stopwatch.createStarted();
             try (AsynchResourceIterator<WorkspaceContents> it =
                     new AsynchResourceIterator<>(
                             workspaces,
@@ -542,10 +725,8 @@ Catalog readCatalog(XStreamPersister xp) throws Exception {
                                 Level.CONFIG,
                                 () -> String.format("Loaded workspace '%s'", ws.getName()));
                     } catch (Exception e) {
-                        LOGGER.log(
-                                Level.WARNING,
-                                "Failed to load workspace '" + workspaceResource.name() + "'",
-                                e);
+                        catalogLoadFailed(
+                                "Failed to load workspace '" + workspaceResource.name() + "'", e);
                         continue;
                     }
 
@@ -555,8 +736,7 @@ Catalog readCatalog(XStreamPersister xp) throws Exception {
                         ns = depersist(xp, wc.nsContents, NamespaceInfo.class);
                         catalog.add(ns);
                     } catch (Exception e) {
-                        LOGGER.log(
-                                Level.WARNING,
+                        catalogLoadFailed(
                                 "Failed to load namespace for '" + workspaceResource.name() + "'",
                                 e);
                     }
@@ -595,76 +775,39 @@ Catalog readCatalog(XStreamPersister xp) throws Exception {
                     }
                 }
             }
-
-            // maps each store into a SingleResourceContents
-            ResourceMapper<SingleResourceContents> storeMapper =
-                    sd -> {
-                        Resource f = sd.get("datastore.xml");
-                        if (Resources.exists(f)) {
-                            return new SingleResourceContents(f, f.getContents());
-                        }
-                        f = sd.get("coveragestore.xml");
-                        if (Resources.exists(f)) {
-                            return new SingleResourceContents(f, f.getContents());
-                        }
-                        f = sd.get("wmsstore.xml");
-                        if (Resources.exists(f)) {
-                            return new SingleResourceContents(f, f.getContents());
-                        }
-                        f = sd.get("wmtsstore.xml");
-                        if (Resources.exists(f)) {
-                            return new SingleResourceContents(f, f.getContents());
-                        }
-                        if (!isConfigDirectory(sd)) {
-                            LOGGER.warning("Ignoring store directory '" + sd.name() + "'");
-                        }
-                        // nothing found
-                        return null;
-                    };
-
-            for (Resource wsd : workspaceList) {
-                // load the stores for this workspace
-                try (AsynchResourceIterator<SingleResourceContents> it =
-                        new AsynchResourceIterator<>(
-                                wsd, Resources.DirectoryFilter.INSTANCE, storeMapper)) {
-                    while (it.hasNext()) {
-                        SingleResourceContents SingleResourceContents = it.next();
-                        final String resourceName = SingleResourceContents.resource.name();
-                        if ("datastore.xml".equals(resourceName)) {
-                            loadDataStore(SingleResourceContents, catalog, xp, checkStores);
-                        } else if ("coveragestore.xml".equals(resourceName)) {
-                            loadCoverageStore(SingleResourceContents, catalog, xp);
-                        } else if ("wmsstore.xml".equals(resourceName)) {
-                            loadWmsStore(SingleResourceContents, catalog, xp);
-                        } else if ("wmtsstore.xml".equals(resourceName)) {
-                            loadWmtsStore(SingleResourceContents, catalog, xp);
-                        } else if (!isConfigDirectory(SingleResourceContents.resource)) {
-                            LOGGER.warning(
-                                    "Ignoring store directory '"
-                                            + SingleResourceContents.resource.name()
-                                            + "'");
-                            continue;
-                        }
+            logPhase("workspaces, namespaces and workspace styles", sw);
+
+            if (isParallelLoading()) {
+                sw = Stopwatch.createStarted();
+                loadStoresParallel(workspaceList, catalog, checkStores);
+                logPhase("stores, resources and layers", sw);
+
+                sw = Stopwatch.createStarted();
+                for (Resource wsd : workspaceList) {
+                    Resource layergroups = wsd.get("layergroups");
+                    if (layergroups != null) {
+                        loadLayerGroups(layergroups, catalog, xp);
                     }
                 }
-
-                // load the layer groups for this workspace
-                Resource layergroups = wsd.get("layergroups");
-                if (layergroups != null) {
-                    loadLayerGroups(layergroups, catalog, xp);
-                }
+                logPhase("workspace layer groups", sw);
+            } else {
+                loadStoresSequential(workspaceList, catalog, xp, checkStores);
             }
         } else {
             LOGGER.warning("No 'workspaces' directory found, unable to load any stores.");
         }
 
         // layergroups
+        sw = Stopwatch.createStarted();
         Resource layergroups = resourceLoader.get("layergroups");
         if (layergroups != null) {
             loadLayerGroups(layergroups, catalog, xp);
         }
+        logPhase("global layer groups", sw);
         xp.setUnwrapNulls(true);
+        sw = Stopwatch.createStarted();
         catalog.resolve();
+        logPhase("catalog resolution", sw);
         // re-enable extended validation
         if (!checkStores) {
             catalog.setExtendedValidation(true);
@@ -672,6 +815,306 @@ Catalog readCatalog(XStreamPersister xp) throws Exception {
         return catalog;
     }
 
+    /**
+     * Logs a catalog object that could not be loaded, counting it in {@link #catalogLoadFailures}
+     */
+    private void catalogLoadFailed(String message, Throwable t) {
+        catalogLoadFailures.incrementAndGet();
+        LOGGER.log(Level.WARNING, message, t);
+    }
+
+    /** Logs the time taken by a loading phase */
+    private void logPhase(String phase, Stopwatch sw) {
+        sw.stop();
+        LOGGER.log(Level.CONFIG, () -> "Loaded " + phase + " in " + sw);
+    }
+
+    /**
+     * Returns true if the parallel catalog loading is enabled via the {@link #PARALLEL_LOADING_KEY}
+     * property. In this mode the stores of all workspaces, along with their resources and layers,
+     * get parsed concurrently, and only the catalog additions happen in the loading thread.
+     */
+    protected boolean isParallelLoading() {
+        return Boolean.parseBoolean(GeoServerExtensions.getProperty(PARALLEL_LOADING_KEY));
+    }
+
+    /**
+     * Loads stores, resources, layers and layer groups one workspace at a time, parsing the files
+     * in the loading thread
+     */
+    private void loadStoresSequential(
+            List<Resource> workspaceList,
+            CatalogImpl catalog,
+            XStreamPersister xp,
+            boolean checkStores) {
+        Stopwatch storesWatch = Stopwatch.createUnstarted();
+        Stopwatch groupsWatch = Stopwatch.createUnstarted();
+
+        // maps each store into a SingleResourceContents
+        ResourceMapper<SingleResourceContents> storeMapper =
+                sd -> {
+                    Resource f = sd.get("datastore.xml");
+                    if (Resources.exists(f)) {
+                        return new SingleResourceContents(f, f.getContents());
+                    }
+                    f = sd.get("coveragestore.xml");
+                    if (Resources.exists(f)) {
+                        return new SingleResourceContents(f, f.getContents());
+                    }
+                    f = sd.get("wmsstore.xml");
+                    if (Resources.exists(f)) {
+                        return new SingleResourceContents(f, f.getContents());
+                    }
+                    f = sd.get("wmtsstore.xml");
+                    if (Resources.exists(f)) {
+                        return new SingleResourceContents(f, f.getContents());
+                    }
+                    if (!isConfigDirectory(sd)) {
+                        LOGGER.warning("Ignoring store directory '" + sd.name() + "'");
+                    }
+                    // nothing found
+                    return null;
+                };
+
+        for (Resource wsd : workspaceList) {
+            // load the stores for this workspace
+            storesWatch.start();
+            try (AsynchResourceIterator<SingleResourceContents> it =
+                    new AsynchResourceIterator<>(
+                            wsd, Resources.DirectoryFilter.INSTANCE, storeMapper)) {
+                while (it.hasNext()) {
+                    SingleResourceContents SingleResourceContents = it.next();
+                    final String resourceName = SingleResourceContents.resource.name();
+                    if ("datastore.xml".equals(resourceName)) {
+                        loadDataStore(SingleResourceContents, catalog, xp, checkStores);
+                    } else if ("coveragestore.xml".equals(resourceName)) {
+                        loadCoverageStore(SingleResourceContents, catalog, xp);
+                    } else if ("wmsstore.xml".equals(resourceName)) {
+                        loadWmsStore(SingleResourceContents, catalog, xp);
+                    } else if ("wmtsstore.xml".equals(resourceName)) {
+                        loadWmtsStore(SingleResourceContents, catalog, xp);
+                    } else if (!isConfigDirectory(SingleResourceContents.resource)) {
+                        LOGGER.warning(
+                                "Ignoring store directory '"
+                                        + SingleResourceContents.resource.name()
+                                        + "'");
+                        continue;
+                    }
+                }
+            }
+            storesWatch.stop();
+
+            // load the layer groups for this workspace
+            groupsWatch.start();
+            Resource layergroups = wsd.get("layergroups");
+            if (layergroups != null) {
+                loadLayerGroups(layergroups, catalog, xp);
+            }
+            groupsWatch.stop();
+        }
+        LOGGER.log(Level.CONFIG, () -> "Loaded stores, resources and layers in " + storesWatch);
+        LOGGER.log(Level.CONFIG, () -> "Loaded workspace layer groups in " + groupsWatch);
+    }
+
+    /**
+     * Loads the stores of all the given workspaces, along with their resources and layers. The
+     * files are read and parsed concurrently, each thread using its own {@link XStreamPersister},
+     * while the catalog additions (and their validation) are performed by the calling thread, one
+     * store at a time, as soon as each store has been parsed. References to objects that were not
+     * yet in the catalog at parse time (the store of a resource, the resource of a layer) are
+     * resolved just before adding the objects.
+     */
+    private void loadStoresParallel(
+            List<Resource> workspaceList, CatalogImpl catalog, boolean checkStores) {
+        List<Resource> storeDirectories =
+                workspaceList
+                        .parallelStream()
+                        .flatMap(wsd -> wsd.list().stream())
+                        .filter(r -> Resources.DirectoryFilter.INSTANCE.accept(r))
+                        .collect(Collectors.toList());
+        if (storeDirectories.isEmpty()) {
+            return;
+        }
+
+        ThreadLocal<XStreamPersister> persisters =
+                ThreadLocal.withInitial(
+                        () -> {
+                            XStreamPersister xp = xpf.createXMLPersister();
+                            xp.setCatalog(catalog);
+                            xp.setUnwrapNulls(false);
+                            return xp;
+                        });
+        int threads =
+                Math.max(
+                        AsynchResourceIterator.ASYNCH_RESOURCE_THREADS,
+                        Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<ParsedStore> completion = new ExecutorCompletionService<>(executor);
+            for (Resource sd : storeDirectories) {
+                completion.submit(() -> parseStore(sd, persisters.get()));
+            }
+            for (int i = 0; i < storeDirectories.size(); i++) {
+                ParsedStore parsed;
+                try {
+                    parsed = completion.take().get();
+                } catch (ExecutionException e) {
+                    catalogLoadFailed("Failed to load store", e.getCause());
+                    continue;
+                }
+                if (parsed != null) {
+                    addParsedStore(parsed, catalog, checkStores);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading the catalog stores", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses a store directory, along with the resources and layers it contains. Returns null if
+     * the directory does not contain a store, or the store cannot be parsed
+     */
+    private ParsedStore parseStore(Resource sd, XStreamPersister xp) {
+        for (StoreType type : STORE_TYPES) {
+            Resource f = sd.get(type.fileName);
+            if (!Resources.exists(f)) {
+                continue;
+            }
+
+            StoreInfo store;
+            try {
+                store = depersist(xp, f.getContents(), type.storeClass);
+            } catch (Exception e) {
+                catalogLoadFailed("Failed to load " + type.description + " '" + sd.name() + "'", e);
+                return null;
+            }
+
+            List<ParsedLayer> layers = new ArrayList<>();
+            for (Resource rd : sd.list()) {
+                if (!Resources.DirectoryFilter.INSTANCE.accept(rd)) {
+                    continue;
+                }
+                LayerContents lc;
+                ResourceInfo info;
+                try {
+                    lc = type.layerMapper.apply(rd);
+                    if (lc == null) {
+                        continue;
+                    }
+                    info = depersist(xp, lc.contents, type.resourceClass);
+                } catch (Exception e) {
+                    catalogLoadFailed("Failed to load resource '" + rd.name() + "'", e);
+                    continue;
+                }
+                LayerInfo layer = null;
+                try {
+                    layer = depersist(xp, lc.layerContents, LayerInfo.class);
+                } catch (Exception e) {
+                    catalogLoadFailed("Failed to load layer " + rd.name(), e);
+                }
+                layers.add(new ParsedLayer(rd, info, layer));
+            }
+
+            return new ParsedStore(f, type, store, layers);
+        }
+
+        if (!isConfigDirectory(sd)) {
+            LOGGER.warning("Ignoring store directory '" + sd.name() + "'");
+        }
+        return null;
+    }
+
+    /** Adds a parsed store, its resources and layers to the catalog */
+    private void addParsedStore(ParsedStore parsed, CatalogImpl catalog, boolean checkStores) {
+        StoreInfo store = parsed.store;
+        try {
+            catalog.add(store);
+
+            if (LOGGER.isLoggable(Level.CONFIG)) {
+                LOGGER.config(
+                        "Loaded "
+                                + parsed.type.description
+                                + " '"
+                                + store.getName()
+                                + "', "
+                                + (store.isEnabled() ? "enabled" : "disabled"));
+            }
+
+            if (checkStores && store instanceof DataStoreInfo && store.isEnabled()) {
+                checkDataStore((DataStoreInfo) store);
+            }
+        } catch (Exception e) {
+            catalogLoadFailed(
+                    "Failed to load "
+                            + parsed.type.description
+                            + " '"
+                            + parsed.resource.parent().name()
+                            + "'",
+                    e);
+            return;
+        }
+
+        for (ParsedLayer pl : parsed.layers) {
+            ResourceInfo info = pl.info;
+            try {
+                // the store was not in the catalog yet when the resource got parsed
+                StoreInfo resolvedStore = ResolvingProxy.resolve(catalog, info.getStore());
+                if (resolvedStore != null) {
+                    info.setStore(ModificationProxy.unwrap(resolvedStore));
+                }
+                catalog.add(info);
+                LOGGER.config("Loaded resource '" + pl.resource.name() + "'");
+            } catch (Exception e) {
+                catalogLoadFailed("Failed to load resource", e);
+                continue;
+            }
+
+            LayerInfo l = pl.layer;
+            if (l == null) {
+                continue;
+            }
+            try {
+                // same as above, the resource was not in the catalog at parse time
+                ResourceInfo resolvedResource = ResolvingProxy.resolve(catalog, l.getResource());
+                if (resolvedResource != null) {
+                    l.setResource(ModificationProxy.unwrap(resolvedResource));
+                }
+                catalog.add(l);
+
+                LOGGER.config("Loaded layer '" + l.getName() + "'");
+
+                for (StyleInfo style : l.getStyles()) {
+                    if (null == style) {
+                        LOGGER.log(
+                                Level.SEVERE,
+                                "Layer '" + l.getName() + "' references a missing style");
+                    }
+                }
+            } catch (Exception e) {
+                catalogLoadFailed("Failed to load layer " + pl.resource.name(), e);
+            }
+        }
+    }
+
+    /** Connects to the data store, disabling it if the connection fails */
+    private void checkDataStore(DataStoreInfo ds) {
+        // connect to the datastore to determine if we should disable it
+        try {
+            ds.getDataStore(null);
+        } catch (Throwable t) {
+            LOGGER.warning("Error connecting to '" + ds.getName() + "'. Disabling.");
+            LOGGER.log(Level.INFO, "", t);
+
+            ds.setError(t);
+            ds.setEnabled(false);
+            startupDisabledStores.add(ds.getId());
+        }
+    }
+
     private void loadWmsStore(
             SingleResourceContents SingleResourceContents,
             CatalogImpl catalog,
@@ -688,13 +1131,13 @@ private void loadWmsStore(
                             + "', "
                             + (wms.isEnabled() ? "enabled" : "disabled"));
         } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Failed to load wms store '" + storeResource.name() + "'", e);
+            catalogLoadFailed("Failed to load wms store '" + storeResource.name() + "'", e);
             return;
         }
 
         // load wms layers
         LayerLoader<WMSLayerInfo> coverageLoader =
-                new LayerLoader<>(WMSLayerInfo.class, xp, catalog);
+                new LayerLoader<>(WMSLayerInfo.class, xp, catalog, catalogLoadFailures);
         try (AsynchResourceIterator<LayerContents> it =
                 new AsynchResourceIterator<>(
                         storeResource.parent(),
@@ -719,14 +1162,13 @@ private void loadWmtsStore(
 
             LOGGER.info("Loaded wmtsstore '" + wmts.getName() + "'");
         } catch (Exception e) {
-            LOGGER.log(
-                    Level.WARNING, "Failed to load wmts store '" + storeResource.name() + "'", e);
+            catalogLoadFailed("Failed to load wmts store '" + storeResource.name() + "'", e);
             return;
         }
 
         // load wmts layers
         LayerLoader<WMTSLayerInfo> coverageLoader =
-                new LayerLoader<>(WMTSLayerInfo.class, xp, catalog);
+                new LayerLoader<>(WMTSLayerInfo.class, xp, catalog, catalogLoadFailures);
         try (AsynchResourceIterator<LayerContents> it =
                 new AsynchResourceIterator<>(
                         storeResource.parent(),
@@ -757,16 +1199,13 @@ private void loadCoverageStore(
                                 + (cs.isEnabled() ? "enabled" : "disabled"));
             }
         } catch (Exception e) {
-            LOGGER.log(
-                    Level.WARNING,
-                    "Failed to load coverage store '" + storeResource.name() + "'",
-                    e);
+            catalogLoadFailed("Failed to load coverage store '" + storeResource.name() + "'", e);
             return;
         }
 
         // load coverages
         LayerLoader<CoverageInfo> coverageLoader =
-                new LayerLoader<>(CoverageInfo.class, xp, catalog);
+                new LayerLoader<>(CoverageInfo.class, xp, catalog, catalogLoadFailures);
         try (AsynchResourceIterator<LayerContents> it =
                 new AsynchResourceIterator<>(
                         storeResource.parent(),
@@ -799,28 +1238,17 @@ private void loadDataStore(
             }
 
             if (checkStores && ds.isEnabled()) {
-                // connect to the datastore to determine if we should disable it
-                try {
-                    ds.getDataStore(null);
-                } catch (Throwable t) {
-                    LOGGER.warning("Error connecting to '" + ds.getName() + "'. Disabling.");
-                    LOGGER.log(Level.INFO, "", t);
-
-                    ds.setError(t);
-                    ds.setEnabled(false);
-                }
+                checkDataStore(ds);
             }
         } catch (Exception e) {
-            LOGGER.log(
-                    Level.WARNING,
-                    "Failed to load data store '" + storeResource.parent().name() + "'",
-                    e);
+            catalogLoadFailed(
+                    "Failed to load data store '" + storeResource.parent().name() + "'", e);
             return;
         }
 
         // load feature types
         LayerLoader<FeatureTypeInfo> featureLoader =
-                new LayerLoader<>(FeatureTypeInfo.class, xp, catalog);
+                new LayerLoader<>(FeatureTypeInfo.class, xp, catalog, catalogLoadFailures);
         try (AsynchResourceIterator<LayerContents> it =
                 new AsynchResourceIterator<>(
                         storeResource.parent(),
@@ -1021,7 +1449,7 @@ void loadStyles(Resource styles, Catalog catalog, XStreamPersister xp) throws IO
                         LOGGER.config("Loaded style '" + s.getName() + "'");
                     }
                 } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Failed to load style" + r.resource.name(), e);
+                    catalogLoadFailed("Failed to load style" + r.resource.name(), e);
                 }
             }
         }
@@ -1043,7 +1471,7 @@ void loadLayerGroups(Resource layerGroups, Catalog catalog, XStreamPersister xp)
 
                     LOGGER.config("Loaded layer group '" + lg.getName() + "'");
                 } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Failed to load layer group " + r.resource.name(), e);
+                    catalogLoadFailed("Failed to load layer group " + r.resource.name(), e);
                 }
             }
         }
@@ -28,6 +28,7 @@
 import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.binary.BinaryStreamDriver;
 import com.thoughtworks.xstream.io.json.JettisonStaxWriter;
 import com.thoughtworks.xstream.io.xml.StaxWriter;
 import com.thoughtworks.xstream.mapper.CannotResolveClassException;
@@ -251,6 +252,9 @@ protected void postEncodeWMTSStore(
     /** internal xstream instance */
     XStream xs;
 
+    /** The stream driver, or null if the default XML one is in use */
+    HierarchicalStreamDriver streamDriver;
+
     /** GeoServer reference used to resolve references to gloal from services */
     GeoServer geoserver;
 
@@ -292,6 +296,7 @@ protected XStreamPersister(HierarchicalStreamDriver streamDriver) {
         ReflectionProvider reflectionProvider =
                 new CustomReflectionProvider(new FieldDictionary(sorter));
         // new Sun14ReflectionProvider( new FieldDictionary( sorter  ) );
+        this.streamDriver = streamDriver;
         if (streamDriver != null) {
             xs = new SecureXStream(reflectionProvider, streamDriver);
         } else {
@@ -690,7 +695,14 @@ void log(Level level, String msg) {
     public void save(Object obj, OutputStream out) throws IOException {
         // unwrap dynamic proxies
         Object unwrapped = unwrapProxies(obj);
-        xs.toXML(unwrapped, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (streamDriver instanceof BinaryStreamDriver) {
+            // the binary driver works off streams only, cannot be wrapped in a writer
+            HierarchicalStreamWriter writer = streamDriver.createWriter(out);
+            xs.marshal(unwrapped, writer);
+            writer.flush();
+        } else {
+            xs.toXML(unwrapped, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
     }
 
     /**
@@ -6,6 +6,7 @@
 package org.geoserver.config.util;
 
 import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
+import com.thoughtworks.xstream.io.binary.BinaryStreamDriver;
 import com.thoughtworks.xstream.io.json.JettisonMappedXmlDriver;
 import java.util.ArrayList;
 import java.util.List;
@@ -83,6 +84,14 @@ public XStreamPersister createJSONPersister(boolean alwaysSerializeCollectionsAs
         return buildPersister(driver);
     }
 
+    /**
+     * Creates an instance configured to persist in the XStream compact binary format. The output is
+     * not meant to be human readable, it's used for internal caches such as the catalog snapshot.
+     */
+    public XStreamPersister createBinaryPersister() {
+        return buildPersister(new BinaryStreamDriver());
+    }
+
     /** Builds a persister and runs the initializers against it */
     private XStreamPersister buildPersister(HierarchicalStreamDriver driver) {
         XStreamPersister persister = new XStreamPersister(driver);
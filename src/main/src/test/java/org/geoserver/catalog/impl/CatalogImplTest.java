@@ -3064,6 +3064,59 @@ public void testListPredicate() {
                 Lists.newArrayList(catalog.list(LayerInfo.class, filter, offset, limit, null)));
     }
 
+    @Test
+    public void testListIndexedPredicate() {
+        addDataStore();
+        addNamespace();
+
+        DataStoreInfo ds2 = catalog.getFactory().createDataStore();
+        ds2.setEnabled(true);
+        ds2.setName("ds2");
+        ds2.setWorkspace(ws);
+        catalog.add(ds2);
+
+        FeatureTypeInfo ft1, ft2, ft3;
+        catalog.add(ft1 = newFeatureType("ft1", ds));
+        catalog.add(ft2 = newFeatureType("ft2", ds));
+        catalog.add(ft3 = newFeatureType("ft3", ds2));
+        ft1 = catalog.getFeatureType(ft1.getId());
+        ft2 = catalog.getFeatureType(ft2.getId());
+        ft3 = catalog.getFeatureType(ft3.getId());
+
+        // equality on an indexed property, results are sorted by name as in a full scan
+        Filter filter = equal("store.id", ds.getId());
+        assertEquals(
+                Lists.newArrayList(ft1, ft2),
+                Lists.newArrayList(catalog.list(FeatureTypeInfo.class, filter)));
+
+        // indexed property combined with other conditions
+        filter = Predicates.and(equal("store.id", ds.getId()), equal("name", "ft2"));
+        assertEquals(
+                Sets.newHashSet(ft2), Sets.newHashSet(catalog.list(FeatureTypeInfo.class, filter)));
+
+        // lookup by id
+        filter = equal("id", ft3.getId());
+        assertEquals(
+                Sets.newHashSet(ft3), Sets.newHashSet(catalog.list(ResourceInfo.class, filter)));
+        assertEquals(0, catalog.count(CoverageInfo.class, filter));
+
+        // moving a resource to another store updates the index
+        ft2.setStore(ds2);
+        catalog.save(ft2);
+        ft2 = catalog.getFeatureType(ft2.getId());
+        filter = equal("store.id", ds2.getId());
+        assertEquals(
+                Sets.newHashSet(ft2, ft3),
+                Sets.newHashSet(catalog.list(FeatureTypeInfo.class, filter)));
+        assertEquals(
+                Lists.newArrayList(ft1), catalog.getResourcesByStore(ds, FeatureTypeInfo.class));
+
+        // removal updates the index as well
+        catalog.remove(ft1);
+        assertEquals(0, catalog.count(FeatureTypeInfo.class, equal("store.id", ds.getId())));
+        assertTrue(catalog.getResourcesByStore(ds, FeatureTypeInfo.class).isEmpty());
+    }
+
     /**
      * This tests more advanced filters: multi-valued filters, opposite equations, field equations
      */
@@ -0,0 +1,180 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.data.test.MockData;
+import org.geoserver.data.test.SystemTestData;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.platform.resource.Resources;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.After;
+import org.junit.Test;
+
+public class CatalogSnapshotTest extends GeoServerSystemTestSupport {
+
+    @Override
+    protected void setUpTestData(SystemTestData testData) throws Exception {
+        super.setUpTestData(testData);
+        testData.setUpDefaultRasterLayers();
+    }
+
+    @After
+    public void clearSnapshot() throws Exception {
+        System.clearProperty(GeoServerLoader.SNAPSHOT_KEY);
+        getResourceLoader().get(CatalogSnapshot.SNAPSHOT_FILE).delete();
+    }
+
+    @Test
+    public void testReloadWritesSnapshot() throws Exception {
+        Catalog catalog = getCatalog();
+        Set<String> layers = getIds(catalog.getLayers());
+
+        System.setProperty(GeoServerLoader.SNAPSHOT_KEY, "true");
+        getGeoServer().reload();
+        assertTrue(Resources.exists(getResourceLoader().get(CatalogSnapshot.SNAPSHOT_FILE)));
+        assertEquals(layers, getIds(catalog.getLayers()));
+
+        // second reload goes through the snapshot
+        getGeoServer().reload();
+        assertEquals(layers, getIds(catalog.getLayers()));
+        assertNotNull(catalog.getLayerByName(getLayerId(MockData.BUILDINGS)).getResource());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        CatalogImpl catalog = (CatalogImpl) applicationContext.getBean("rawCatalog");
+        CatalogSnapshot snapshot =
+                new CatalogSnapshot(getResourceLoader(), new XStreamPersisterFactory());
+        String manifest = snapshot.computeManifest();
+        snapshot.write(catalog, manifest);
+
+        CatalogImpl read = snapshot.read(manifest);
+        assertNotNull(read);
+        assertEquals(getIds(catalog.getWorkspaces()), getIds(read.getWorkspaces()));
+        assertEquals(getIds(catalog.getNamespaces()), getIds(read.getNamespaces()));
+        assertEquals(getIds(catalog.getStyles()), getIds(read.getStyles()));
+        assertEquals(
+                getIds(catalog.getStores(StoreInfo.class)),
+                getIds(read.getStores(StoreInfo.class)));
+        assertEquals(
+                getIds(catalog.getResources(ResourceInfo.class)),
+                getIds(read.getResources(ResourceInfo.class)));
+        assertEquals(getIds(catalog.getLayers()), getIds(read.getLayers()));
+        assertEquals(getIds(catalog.getLayerGroups()), getIds(read.getLayerGroups()));
+        assertEquals(catalog.getDefaultWorkspace().getId(), read.getDefaultWorkspace().getId());
+        assertEquals(catalog.getDefaultNamespace().getId(), read.getDefaultNamespace().getId());
+
+        // references are resolved against the new catalog
+        LayerInfo layer = read.getLayerByName(getLayerId(MockData.BUILDINGS));
+        FeatureTypeInfo ft = (FeatureTypeInfo) layer.getResource();
+        assertEquals(
+                catalog.getFeatureTypeByName(getLayerId(MockData.BUILDINGS)).getId(), ft.getId());
+        assertNotNull(ft.getStore().getWorkspace());
+        assertNotNull(layer.getDefaultStyle());
+    }
+
+    @Test
+    public void testStoreCheckNotPersisted() throws Exception {
+        Catalog catalog = getCatalog();
+        GeoServerInfo global = getGeoServer().getGlobal();
+        ResourceErrorHandling errorHandling = global.getResourceErrorHandling();
+        global.setResourceErrorHandling(ResourceErrorHandling.OGC_EXCEPTION_REPORT);
+        getGeoServer().save(global);
+        // a store that cannot connect, like one whose database is temporarily down
+        DataStoreInfo broken = catalog.getFactory().createDataStore();
+        broken.setName("broken");
+        broken.setWorkspace(catalog.getDefaultWorkspace());
+        broken.setEnabled(true);
+        broken.getConnectionParameters().put("notAStoreParameter", "true");
+        catalog.add(broken);
+        try {
+            System.setProperty(GeoServerLoader.SNAPSHOT_KEY, "true");
+            getGeoServer().reload();
+            assertFalse(catalog.getDataStoreByName("broken").isEnabled());
+
+            // the snapshot has the configured state
+            CatalogSnapshot snapshot =
+                    new CatalogSnapshot(getResourceLoader(), new XStreamPersisterFactory());
+            CatalogImpl read = snapshot.read(snapshot.computeManifest());
+            assertNotNull(read);
+            assertTrue(read.getDataStoreByName("broken").isEnabled());
+
+            // loading from the snapshot checks the stores again
+            getGeoServer().reload();
+            assertFalse(catalog.getDataStoreByName("broken").isEnabled());
+        } finally {
+            catalog.remove(catalog.getDataStoreByName("broken"));
+            global = getGeoServer().getGlobal();
+            global.setResourceErrorHandling(errorHandling);
+            getGeoServer().save(global);
+        }
+    }
+
+    @Test
+    public void testNoSnapshotOnLoadFailure() throws Exception {
+        // a resource that cannot be parsed, like one whose plugin is not installed
+        FeatureTypeInfo buildings =
+                getCatalog().getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        Resource broken = getDataDirectory().get(buildings.getStore()).get("broken");
+        Resource featureType = broken.get("featuretype.xml");
+        try (OutputStream os = featureType.out()) {
+            os.write("<featureType><missingPlugin/>".getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            System.setProperty(GeoServerLoader.SNAPSHOT_KEY, "true");
+            getGeoServer().reload();
+            // the snapshot would keep the resource out once the plugin gets installed
+            assertFalse(Resources.exists(getResourceLoader().get(CatalogSnapshot.SNAPSHOT_FILE)));
+            assertNotNull(getCatalog().getLayerByName(getLayerId(MockData.BUILDINGS)));
+        } finally {
+            broken.delete();
+        }
+    }
+
+    @Test
+    public void testStaleSnapshot() throws Exception {
+        Catalog catalog = getCatalog();
+        CatalogSnapshot snapshot =
+                new CatalogSnapshot(getResourceLoader(), new XStreamPersisterFactory());
+        String manifest = snapshot.computeManifest();
+        snapshot.write((CatalogImpl) applicationContext.getBean("rawCatalog"), manifest);
+
+        // modify the catalog, the manifest changes and the snapshot is no longer usable
+        Thread.sleep(1001);
+        FeatureTypeInfo ft = catalog.getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        ft.setTitle("A new title");
+        catalog.save(ft);
+
+        String updated = snapshot.computeManifest();
+        assertNotEquals(manifest, updated);
+        assertNull(snapshot.read(updated));
+    }
+
+    private Set<String> getIds(Iterable<? extends CatalogInfo> infos) {
+        Set<String> ids = new TreeSet<>();
+        infos.forEach(i -> ids.add(i.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,76 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.TreeSet;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.data.test.SystemTestData;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.After;
+import org.junit.Test;
+
+public class GeoServerParallelLoadingTest extends GeoServerSystemTestSupport {
+
+    @Override
+    protected void setUpTestData(SystemTestData testData) throws Exception {
+        super.setUpTestData(testData);
+        testData.setUpDefaultRasterLayers();
+    }
+
+    @After
+    public void clearParallelLoading() {
+        System.clearProperty(GeoServerLoader.PARALLEL_LOADING_KEY);
+    }
+
+    @Test
+    public void testReloadParallel() throws Exception {
+        Catalog catalog = getCatalog();
+        Set<String> stores = getNames(catalog, StoreInfo.class);
+        Set<String> resources = getNames(catalog, ResourceInfo.class);
+        Set<String> layers = getNames(catalog, LayerInfo.class);
+
+        System.setProperty(GeoServerLoader.PARALLEL_LOADING_KEY, "true");
+        getGeoServer().reload();
+
+        assertEquals(stores, getNames(catalog, StoreInfo.class));
+        assertEquals(resources, getNames(catalog, ResourceInfo.class));
+        assertEquals(layers, getNames(catalog, LayerInfo.class));
+
+        // references that could not be resolved at parse time have been resolved on add
+        for (LayerInfo layer : catalog.getLayers()) {
+            ResourceInfo resource = ModificationProxy.unwrap(layer.getResource());
+            assertFalse(Proxy.isProxyClass(resource.getClass()));
+            StoreInfo store = ModificationProxy.unwrap(resource.getStore());
+            assertFalse(Proxy.isProxyClass(store.getClass()));
+            assertNotNull(store.getWorkspace());
+            assertEquals(
+                    resource.getId(),
+                    catalog.getLayerByName(layer.prefixedName()).getResource().getId());
+        }
+    }
+
+    private Set<String> getNames(Catalog catalog, Class<?> type) {
+        Set<String> names = new TreeSet<>();
+        if (StoreInfo.class.equals(type)) {
+            catalog.getStores(StoreInfo.class)
+                    .forEach(s -> names.add(s.getWorkspace().getName() + ":" + s.getName()));
+        } else if (ResourceInfo.class.equals(type)) {
+            catalog.getResources(ResourceInfo.class).forEach(r -> names.add(r.prefixedName()));
+        } else {
+            catalog.getLayers().forEach(l -> names.add(l.prefixedName()));
+        }
+        return names;
+    }
+}
@@ -51,6 +51,11 @@ public V put(K key, V value) {
         return super.put(upper(key), value);
     }
 
+    @Override
+    public V remove(Object key) {
+        return super.remove(upper(key));
+    }
+
     @SuppressWarnings("unchecked")
     K upper(Object key) {
         if ((key != null) && key instanceof String) {
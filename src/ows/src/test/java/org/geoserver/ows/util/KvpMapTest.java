@@ -5,6 +5,7 @@
 package org.geoserver.ows.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import org.junit.Test;
 
@@ -19,5 +20,7 @@ public void testCaseInsensitive() {
         assertEquals("bar", map.get("foo"));
         assertEquals("bar", map.getOrDefault("foo", null));
         assertEquals("bar", map.getOrDefault("FOO", null));
+        assertEquals("bar", map.remove("Foo"));
+        assertFalse(map.containsKey("foo"));
     }
 }
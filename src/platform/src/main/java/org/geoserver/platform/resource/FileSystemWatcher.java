@@ -10,6 +10,14 @@
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -21,11 +29,15 @@
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,9 +50,16 @@
 /**
  * Active object (using a ScheduledExecutorService) used to watch file system for changes.
  *
- * <p>This implementation currently polls the file system and should be updated with Java 7
- * WatchService when available. The internal design is similar to WatchService, WatchKey and
- * WatchEvent in order to facilitate this transition.
+ * <p>When the platform provides native file system events, watched directories (or the parent
+ * directories of watched files) are registered with a {@link WatchService}, and only the watches
+ * that received events get their delta computed. The subdirectories of watched directories are
+ * registered too, as polling reports them modified when their contents change. Bursts of events are
+ * coalesced, so that a group of changes happening together results in a single notification.
+ * Watches that cannot be registered (e.g., the file or its parent does not exist yet) and platforms
+ * lacking a watch service fall back on polling the file system. Polling can be forced by setting
+ * the {@link #GS_WATCHER_POLLING} system property to true, which is recommended for network file
+ * systems, as they do not report changes made by other hosts, and for platforms where the JDK watch
+ * service itself polls, as it does on macOS.
  *
  * <p>This implementation makes a few concessions to being associated with ResourceStore, reporting
  * changes with resource paths rather than files.
@@ -51,6 +70,15 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
 
     private static final Logger LOGGER = Logging.getLogger(FileSystemWatcher.class);
 
+    /** System property forcing the usage of polling instead of native file system events */
+    public static final String GS_WATCHER_POLLING = "gs.watcher.polling";
+
+    /** Quiet period after the last native event before a burst of events gets notified */
+    static final long COALESCE_DELAY_MS = 50;
+
+    /** Maximum amount of time a burst of native events can be coalesced for */
+    static final long MAX_COALESCE_MS = 1000;
+
     /** Change to file system */
     static class Delta {
         /** Watched directory where changes occurred */
@@ -123,6 +151,15 @@ private class Watch implements Comparable<Watch> {
         private Set<File> children = null;
         private long childrenLastModifiedMax = 0L;
 
+        /** The native watch key, or null if the watch is being polled */
+        volatile WatchKey key;
+
+        /** The directory registered with the watch service, either the file or its parent */
+        File keyDirectory;
+
+        /** The native watch keys of the subdirectories, when watching a directory */
+        final Map<File, WatchKey> childKeys = new ConcurrentHashMap<>();
+
         public Watch(File file, String path) {
             Objects.requireNonNull(file);
             Objects.requireNonNull(path);
@@ -308,6 +345,25 @@ private Delta watchedFileRemoved(long now) {
         public boolean isMatch(File file, String path) {
             return this.file.equals(file) && this.path.equals(path);
         }
+
+        /** The directory to register with the watch service, or null if there is none yet */
+        File getRegistrationTarget() {
+            if (file.isDirectory()) {
+                return file;
+            }
+            File parent = file.getParentFile();
+            return parent != null && parent.isDirectory() ? parent : null;
+        }
+
+        /**
+         * Returns true if the native event on the given path, reported by the given key, applies
+         */
+        boolean isAffectedBy(WatchKey eventKey, Path context) {
+            // directories are affected by any event, in them or in their subdirectories
+            return eventKey != key
+                    || file.equals(keyDirectory)
+                    || file.getName().equals(context.toString());
+        }
     }
 
     private ScheduledExecutorService pool;
@@ -318,10 +374,23 @@ public boolean isMatch(File file, String path) {
 
     CopyOnWriteArrayList<Watch> watchers = new CopyOnWriteArrayList<>();
 
+    /** The native watch service, or null if polling is in use */
+    private WatchService watchService;
+
+    /** The watches associated to each native watch key */
+    private final Map<WatchKey, Set<Watch>> keys = new ConcurrentHashMap<>();
+
+    private Thread eventThread;
+
+    private final LongAdder notificationCount = new LongAdder();
+
+    private final LongAdder notificationLatency = new LongAdder();
+
+    private final AtomicLong maxNotificationLatency = new AtomicLong();
+
     /**
-     * Note we have a single runnable here to review all outstanding Watch instances. The focus is
-     * on using minimal system resources while we wait for Java 7 WatchService (to be more
-     * efficient).
+     * Note we have a single runnable here to review all outstanding Watch instances that are not
+     * natively watched. The focus is on using minimal system resources.
      */
     private Runnable sync =
             new Runnable() {
@@ -331,6 +400,11 @@ public void run() {
                     for (Watch watch : watchers) {
                         if (watch.getListeners().isEmpty()) {
                             watchers.remove(watch);
+                            unregister(watch);
+                            continue;
+                        }
+                        if (watch.key != null) {
+                            // natively watched, changes are reported by the event thread
                             continue;
                         }
                         final boolean directory = watch.file.isDirectory();
@@ -358,54 +432,65 @@ public void run() {
                                             time, unit, watch.file));
                         }
                         if (delta != null) {
-                            notify(watch, delta);
+                            notifyListeners(watch, delta, start);
                         }
+                        // switch to native events as soon as possible
+                        register(watch);
                     }
                 }
+            };
 
-                private void notify(Watch watch, Delta delta) {
-                    if (LOGGER.isLoggable(Level.INFO)) {
-                        LOGGER.config(
-                                String.format(
-                                        "Notifying %s change on %s. Created: %,d, removed: %,d, modified: %,d",
-                                        delta.kind,
-                                        delta.context,
-                                        delta.created.size(),
-                                        delta.removed.size(),
-                                        delta.modified.size()));
+    /**
+     * Notifies the listeners of a watch.
+     *
+     * @param detected the {@link System#nanoTime()} at which the change was first detected, used to
+     *     track the notification latency
+     */
+    private void notifyListeners(Watch watch, Delta delta, long detected) {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.config(
+                    String.format(
+                            "Notifying %s change on %s. Created: %,d, removed: %,d, modified: %,d",
+                            delta.kind,
+                            delta.context,
+                            delta.created.size(),
+                            delta.removed.size(),
+                            delta.modified.size()));
+        }
+        // do not call listeners on the watch thread, they may take a
+        // considerable amount of time to process the events
+        CompletableFuture.runAsync(
+                () -> {
+                    /** Created based on created/removed/modified files */
+                    List<ResourceNotification.Event> events =
+                            ResourceNotification.delta(
+                                    watch.file, delta.created, delta.removed, delta.modified);
+
+                    ResourceNotification notify =
+                            new ResourceNotification(
+                                    watch.getPath(), delta.kind, watch.last, events);
+
+                    for (ResourceListener listener : watch.getListeners()) {
+                        try {
+                            listener.changed(notify);
+                        } catch (Throwable t) {
+                            Logger logger =
+                                    Logger.getLogger(listener.getClass().getPackage().getName());
+                            logger.log(
+                                    Level.FINE,
+                                    "Unable to notify " + watch + ":" + t.getMessage(),
+                                    t);
+                        }
                     }
-                    // do not call listeners on the watch thread, they may take a
-                    // considerable amount of time to process the events
-                    CompletableFuture.runAsync(
-                            () -> {
-                                /** Created based on created/removed/modified files */
-                                List<ResourceNotification.Event> events =
-                                        ResourceNotification.delta(
-                                                watch.file,
-                                                delta.created,
-                                                delta.removed,
-                                                delta.modified);
-
-                                ResourceNotification notify =
-                                        new ResourceNotification(
-                                                watch.getPath(), delta.kind, watch.last, events);
-
-                                for (ResourceListener listener : watch.getListeners()) {
-                                    try {
-                                        listener.changed(notify);
-                                    } catch (Throwable t) {
-                                        Logger logger =
-                                                Logger.getLogger(
-                                                        listener.getClass().getPackage().getName());
-                                        logger.log(
-                                                Level.FINE,
-                                                "Unable to notify " + watch + ":" + t.getMessage(),
-                                                t);
-                                    }
-                                }
-                            });
-                }
-            };
+                    recordLatency(System.nanoTime() - detected);
+                });
+    }
+
+    private void recordLatency(long latency) {
+        notificationCount.increment();
+        notificationLatency.add(latency);
+        maxNotificationLatency.accumulateAndGet(latency, Math::max);
+    }
 
     private ScheduledFuture<?> monitor;
 
@@ -429,6 +514,20 @@ private void notify(Watch watch, Delta delta) {
         Objects.requireNonNull(fileExtractor);
         this.pool = Executors.newSingleThreadScheduledExecutor(tFactory);
         this.fileExtractor = fileExtractor;
+        if (!Boolean.getBoolean(GS_WATCHER_POLLING)) {
+            this.watchService = createWatchService();
+        }
+    }
+
+    /** Creates the native watch service, or returns null if the platform does not provide one */
+    private static WatchService createWatchService() {
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            return service;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.log(Level.CONFIG, "Native file system events not available, using polling", e);
+            return null;
+        }
     }
 
     FileSystemWatcher() {
@@ -455,10 +554,15 @@ public synchronized void addListener(String path, ResourceListener listener) {
         Watch watch = watch(file, path);
         if (watch == null) {
             watch = new Watch(file, path);
+            register(watch);
             watchers.add(watch);
             if (monitor == null) {
                 monitor = pool.scheduleWithFixedDelay(sync, delay, delay, unit);
             }
+            if (watchService != null && eventThread == null) {
+                eventThread = tFactory.newThread(this::processEvents);
+                eventThread.start();
+            }
         }
         watch.addListener(listener);
     }
@@ -475,6 +579,7 @@ public synchronized boolean removeListener(String path, ResourceListener listene
             watch.removeListener(listener);
             if (watch.getListeners().isEmpty()) {
                 removed = watchers.remove(watch);
+                unregister(watch);
             }
         }
         if (removed && watchers.isEmpty()) {
@@ -496,8 +601,228 @@ public void schedule(long delay, TimeUnit unit) {
         }
     }
 
+    /**
+     * Registers the watch with the native watch service, or updates its registration if the
+     * directory to watch changed, e.g., because the watched file turned out to be a directory.
+     * Watches that cannot be registered are left for the polling thread.
+     */
+    private synchronized void register(Watch watch) {
+        if (watchService == null) {
+            return;
+        }
+        File target = watch.getRegistrationTarget();
+        if (target == null) {
+            unregister(watch);
+            return;
+        }
+        WatchKey current = watch.key;
+        if (current == null || !current.isValid() || !target.equals(watch.keyDirectory)) {
+            unregister(watch);
+            WatchKey key = registerKey(target, watch);
+            if (key == null) {
+                return;
+            }
+            watch.keyDirectory = target;
+            watch.key = key;
+        }
+        if (target.equals(watch.file) && !registerChildren(watch)) {
+            // changes in the subdirectories would go unnoticed, poll instead
+            unregister(watch);
+        }
+    }
+
+    /**
+     * Registers the subdirectories of a watched directory, as native events only cover its direct
+     * entries, while polling reports a subdirectory as modified when its contents change. Drops the
+     * keys of the subdirectories that are gone. Returns false if a subdirectory cannot be
+     * registered.
+     */
+    private boolean registerChildren(Watch watch) {
+        File[] children = watch.file.listFiles(File::isDirectory);
+        Set<File> directories =
+                children == null ? Collections.emptySet() : new HashSet<>(Arrays.asList(children));
+        Iterator<Map.Entry<File, WatchKey>> it = watch.childKeys.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<File, WatchKey> entry = it.next();
+            if (!directories.contains(entry.getKey()) || !entry.getValue().isValid()) {
+                release(entry.getValue(), watch);
+                it.remove();
+            }
+        }
+        for (File directory : directories) {
+            if (!watch.childKeys.containsKey(directory)) {
+                WatchKey key = registerKey(directory, watch);
+                if (key == null) {
+                    return false;
+                }
+                watch.childKeys.put(directory, key);
+            }
+        }
+        return true;
+    }
+
+    /** Registers a directory for the given watch, returns null if not possible */
+    private WatchKey registerKey(File directory, Watch watch) {
+        try {
+            WatchKey key =
+                    directory
+                            .toPath()
+                            .register(
+                                    watchService,
+                                    StandardWatchEventKinds.ENTRY_CREATE,
+                                    StandardWatchEventKinds.ENTRY_DELETE,
+                                    StandardWatchEventKinds.ENTRY_MODIFY);
+            keys.computeIfAbsent(key, k -> new CopyOnWriteArraySet<>()).add(watch);
+            return key;
+        } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+            LOGGER.log(Level.FINE, "Unable to register " + directory + ", will poll it instead", e);
+            return null;
+        }
+    }
+
+    /** Removes the watch from the native watch service, cancelling the keys no longer used */
+    private synchronized void unregister(Watch watch) {
+        for (WatchKey key : watch.childKeys.values()) {
+            release(key, watch);
+        }
+        watch.childKeys.clear();
+        WatchKey key = watch.key;
+        if (key == null) {
+            return;
+        }
+        watch.key = null;
+        watch.keyDirectory = null;
+        release(key, watch);
+    }
+
+    /** Dissociates the watch from the key, cancelling the key if no longer used */
+    private void release(WatchKey key, Watch watch) {
+        keys.computeIfPresent(
+                key,
+                (k, watches) -> {
+                    watches.remove(watch);
+                    if (watches.isEmpty()) {
+                        k.cancel();
+                        return null;
+                    }
+                    return watches;
+                });
+    }
+
+    /**
+     * Event thread loop, waits for native events, coalesces bursts of them and then hands over the
+     * affected watches to the executor for delta computation and notification.
+     */
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                long detected = System.nanoTime();
+                Set<Watch> affected = new HashSet<>();
+                collect(key, affected);
+                // coalesce the burst until quiet, but not forever
+                long deadline = detected + MILLISECONDS.toNanos(MAX_COALESCE_MS);
+                while (System.nanoTime() < deadline
+                        && (key = watchService.poll(COALESCE_DELAY_MS, MILLISECONDS)) != null) {
+                    collect(key, affected);
+                }
+                if (!affected.isEmpty()) {
+                    pool.execute(() -> flush(affected, detected));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // watcher destroyed
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "File system event processing stopped", e);
+        }
+    }
+
+    /** Collects the watches affected by the events of the given key, and resets it */
+    private void collect(WatchKey key, Set<Watch> affected) {
+        Set<Watch> watches = keys.getOrDefault(key, Collections.emptySet());
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                affected.addAll(watches);
+                continue;
+            }
+            Path context = (Path) event.context();
+            for (Watch watch : watches) {
+                if (watch.isAffectedBy(key, context)) {
+                    affected.add(watch);
+                }
+            }
+        }
+        if (!key.reset()) {
+            // directory is gone, the watches will be polled until it comes back, or the
+            // subdirectory is dropped when the delta is computed
+            affected.addAll(watches);
+            keys.remove(key);
+            for (Watch watch : watches) {
+                if (watch.key == key) {
+                    watch.key = null;
+                } else {
+                    watch.childKeys.values().remove(key);
+                }
+            }
+        }
+    }
+
+    /** Computes and notifies the changes of the natively watched files, runs in the executor */
+    private void flush(Set<Watch> affected, long detected) {
+        long now = System.currentTimeMillis();
+        for (Watch watch : affected) {
+            if (!watchers.contains(watch)) {
+                continue;
+            }
+            // register before computing the delta, to avoid missing events in between
+            register(watch);
+            try {
+                Delta delta = watch.changed(now);
+                if (delta != null) {
+                    notifyListeners(watch, delta, detected);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error computing changes of " + watch.file, e);
+            }
+        }
+    }
+
+    /** Number of watched files and directories */
+    public int getWatchCount() {
+        return watchers.size();
+    }
+
+    /** Number of watched files and directories using native file system events */
+    public int getNativeWatchCount() {
+        return (int) watchers.stream().filter(w -> w.key != null).count();
+    }
+
+    /** Number of notifications sent to listeners so far */
+    public long getNotificationCount() {
+        return notificationCount.sum();
+    }
+
+    /**
+     * Average time between a change being detected and its listeners having been notified. For
+     * polled watches the time spent waiting for the next poll is not accounted for.
+     */
+    public long getAverageNotificationLatency(TimeUnit unit) {
+        long count = notificationCount.sum();
+        return count == 0 ? 0 : unit.convert(notificationLatency.sum() / count, NANOSECONDS);
+    }
+
+    /** Maximum time between a change being detected and its listeners having been notified */
+    public long getMaxNotificationLatency(TimeUnit unit) {
+        return unit.convert(maxNotificationLatency.get(), NANOSECONDS);
+    }
+
     @Override
     public void destroy() throws Exception {
+        if (watchService != null) {
+            watchService.close();
+        }
         pool.shutdown();
         monitor = null;
     }
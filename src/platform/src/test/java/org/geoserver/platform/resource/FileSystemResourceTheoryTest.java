@@ -39,6 +39,7 @@
 import org.hamcrest.CoreMatchers;
 import org.hamcrest.core.IsNull;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -333,6 +334,78 @@ public void dynamicAsyncDirectoryEvents() throws Exception {
         assertEquals(files.size(), fileEvents.size());
     }
 
+    @Test
+    public void nativeWatchMetrics() throws Exception {
+        File fileD = Paths.toFile(store.baseDirectory, "DirC/FileD");
+        FileSystemWatcher watcher = (FileSystemWatcher) store.getResourceNotificationDispatcher();
+
+        AwaitResourceListener listener = new AwaitResourceListener();
+        watcher.addListener("DirC", listener);
+        assertEquals(1, watcher.getWatchCount());
+        // native events are not available on all platforms
+        Assume.assumeTrue(watcher.getNativeWatchCount() == 1);
+
+        // the poll delay is long, only native events can provide the notification in time
+        touch(fileD);
+        ResourceNotification n = listener.await(MAX_WAIT_SEC, SECONDS);
+        assertEquals(Kind.ENTRY_MODIFY, n.getKind());
+        assertEquals("FileD", n.events().get(0).getPath());
+
+        await().atMost(MAX_WAIT_SEC, SECONDS).until(() -> watcher.getNotificationCount() == 1);
+        assertTrue(
+                watcher.getMaxNotificationLatency(MILLISECONDS)
+                        >= watcher.getAverageNotificationLatency(MILLISECONDS));
+
+        watcher.removeListener("DirC", listener);
+        assertEquals(0, watcher.getNativeWatchCount());
+    }
+
+    @Test
+    public void nativeWatchSubdirectory() throws Exception {
+        File dirE = Paths.toFile(store.baseDirectory, "DirE");
+        File subdir = new File(dirE, "SubDir");
+        assertTrue(subdir.mkdir());
+        // make sure the change below alters the subdirectory date, even with coarse timestamps
+        assertTrue(subdir.setLastModified(System.currentTimeMillis() - 10000));
+        FileSystemWatcher watcher = (FileSystemWatcher) store.getResourceNotificationDispatcher();
+
+        AwaitResourceListener listener = new AwaitResourceListener();
+        watcher.addListener("DirE", listener);
+        // native events are not available on all platforms
+        Assume.assumeTrue(watcher.getNativeWatchCount() == 1);
+
+        // as with polling, a change inside a subdirectory reports the subdirectory as modified
+        touch(new File(subdir, "FileF"));
+        ResourceNotification n = listener.await(MAX_WAIT_SEC, SECONDS);
+        assertEquals(Kind.ENTRY_MODIFY, n.getKind());
+        assertEquals("SubDir", n.events().get(0).getPath());
+    }
+
+    @Test
+    public void pollingFallback() throws Exception {
+        File fileD = Paths.toFile(store.baseDirectory, "DirC/FileD");
+        System.setProperty(FileSystemWatcher.GS_WATCHER_POLLING, "true");
+        FileSystemWatcher watcher;
+        try {
+            watcher = new FileSystemWatcher(path -> Paths.toFile(store.baseDirectory, path));
+        } finally {
+            System.clearProperty(FileSystemWatcher.GS_WATCHER_POLLING);
+        }
+        try {
+            watcher.schedule(100, MILLISECONDS);
+            AwaitResourceListener listener = new AwaitResourceListener();
+            watcher.addListener("DirC", listener);
+            assertEquals(0, watcher.getNativeWatchCount());
+
+            touch(fileD);
+            ResourceNotification n = listener.await(MAX_WAIT_SEC, SECONDS);
+            assertEquals(Kind.ENTRY_MODIFY, n.getKind());
+            assertEquals("FileD", n.events().get(0).getPath());
+        } finally {
+            watcher.destroy();
+        }
+    }
+
     private int getEventCounts(List<ResourceNotification> notifications) {
         return (int)
                 notifications.stream()
@@ -0,0 +1,276 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import com.google.common.cache.Cache;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.namespace.QName;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.request.Native;
+import org.geoserver.wfs.request.TransactionElement;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geoserver.wfs.request.TransactionResponse;
+import org.geotools.data.Query;
+import org.geotools.filter.visitor.DefaultFilterVisitor;
+import org.geotools.filter.visitor.SimplifyingFilterVisitor;
+import org.geotools.util.factory.Hints;
+import org.geotools.util.logging.Logging;
+import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.VolatileFunction;
+
+/**
+ * Caches the feature counts used to compute the WFS 2.0 numberMatched, so that the counts for
+ * expensive filters are not repeated at each page of a paged request. The counts are cached by
+ * layer, normalized filter, view parameters and user (as the user can have access to a subset of
+ * the data). Counts depending on environment variables, or on joins, are not cached.
+ *
+ * <p>Every WFS transaction invalidates the counts of all the layers in the stores it touches. Data
+ * can also be modified without going through WFS, the cached counts expire after {@link
+ * #TIME_TO_LIVE} seconds in any case.
+ *
+ * <p>The cache is disabled by default, it can be enabled by setting the {@code
+ * GS_WFS_COUNT_CACHE_TTL} system variable to the number of seconds the counts should be kept. The
+ * {@code GS_WFS_COUNT_CACHE_SIZE} variable controls how many counts are kept (1000 by default).
+ */
+public class CountCache implements TransactionCallback {
+
+    static final Logger LOGGER = Logging.getLogger(CountCache.class);
+
+    static final String COUNT_CACHE_STORES = "COUNT_CACHE_STORES";
+
+    /** Time to live of the counts, in seconds, 0 or less disables the cache */
+    static long TIME_TO_LIVE = Long.getLong("GS_WFS_COUNT_CACHE_TTL", 0);
+
+    static int MAX_ENTRIES = Integer.getInteger("GS_WFS_COUNT_CACHE_SIZE", 1000);
+
+    private final Catalog catalog;
+
+    private final ExpiringCache<Key, Entry> cache =
+            new ExpiringCache<>(() -> TIME_TO_LIVE, () -> MAX_ENTRIES);
+
+    /** Per store generation, incremented at each change */
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /** Incremented on changes that cannot be tied to a store */
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    public CountCache(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /** Returns the cache registered in the application context, if any */
+    public static CountCache get() {
+        return GeoServerExtensions.bean(CountCache.class);
+    }
+
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    /**
+     * Returns the cached count for the query against the given layer, or runs the counter and
+     * caches its result
+     */
+    public int getCount(FeatureTypeInfo layer, Query query, Callable<Integer> counter)
+            throws Exception {
+        Key key = isEnabled() ? getKey(layer, query) : null;
+        if (key == null) {
+            return counter.call();
+        }
+
+        Cache<Key, Entry> cache = this.cache.get();
+        long generation = getGeneration(key.storeId);
+        long global = globalGeneration.get();
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.generation == generation && entry.global == global) {
+            return entry.count;
+        }
+
+        int count = counter.call();
+        // don't cache counts that might have been computed while the data was being modified
+        if (count >= 0
+                && generation == getGeneration(key.storeId)
+                && global == globalGeneration.get()) {
+            cache.put(key, new Entry(count, generation, global));
+        }
+        return count;
+    }
+
+    /** Drops all the cached counts */
+    public void clear() {
+        globalGeneration.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private long getGeneration(String storeId) {
+        return generations.computeIfAbsent(storeId, id -> new AtomicLong()).get();
+    }
+
+    private void invalidateStore(String storeId) {
+        generations.computeIfAbsent(storeId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /** Builds the cache key, or returns null if the query count cannot be cached */
+    Key getKey(FeatureTypeInfo layer, Query query) {
+        if (layer == null || layer.getStore() == null || !query.getJoins().isEmpty()) {
+            return null;
+        }
+        Filter filter = query.getFilter() != null ? query.getFilter() : Filter.INCLUDE;
+        VolatileFunctionFinder finder = new VolatileFunctionFinder();
+        filter.accept(finder, null);
+        if (finder.found) {
+            return null;
+        }
+        filter = SimplifyingFilterVisitor.simplify(filter);
+
+        Object viewParams =
+                query.getHints() != null
+                        ? query.getHints().get(Hints.VIRTUAL_TABLE_PARAMETERS)
+                        : null;
+        return new Key(
+                layer.getStore().getId(),
+                layer.getId(),
+                filter,
+                viewParams,
+                ExpiringCache.getUser());
+    }
+
+    @Override
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        String storeId = getStoreId(event.getLayerName());
+        if (storeId == null) {
+            globalGeneration.incrementAndGet();
+            return;
+        }
+        invalidateStore(storeId);
+        // the changes are visible to other connections only after the commit, keep track of the
+        // store to invalidate it again at the end of the transaction
+        TransactionRequest request = TransactionRequest.adapt(event.getRequest());
+        if (request != null) {
+            getTouchedStores(request).add(storeId);
+        }
+    }
+
+    @Override
+    public TransactionRequest beforeTransaction(TransactionRequest request) throws WFSException {
+        return request;
+    }
+
+    @Override
+    public void beforeCommit(TransactionRequest request) throws WFSException {
+        // nothing to do
+    }
+
+    @Override
+    public void afterTransaction(
+            TransactionRequest request, TransactionResponse result, boolean committed) {
+        try {
+            Set<String> stores = getTouchedStores(request);
+            for (TransactionElement element : request.getElements()) {
+                if (element instanceof Native) {
+                    // no idea of what it touched
+                    globalGeneration.incrementAndGet();
+                }
+                String storeId = getStoreId(element.getTypeName());
+                if (storeId != null) {
+                    stores.add(storeId);
+                }
+            }
+            for (String storeId : stores) {
+                invalidateStore(storeId);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to invalidate the cached counts", e);
+            globalGeneration.incrementAndGet();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> getTouchedStores(TransactionRequest request) {
+        Map<Object, Object> properties = request.getExtendedProperties();
+        return (Set<String>) properties.computeIfAbsent(COUNT_CACHE_STORES, k -> new HashSet<>());
+    }
+
+    private String getStoreId(QName typeName) {
+        if (typeName == null) {
+            return null;
+        }
+        FeatureTypeInfo info =
+                catalog.getFeatureTypeByName(typeName.getNamespaceURI(), typeName.getLocalPart());
+        if (info == null || info.getStore() == null) {
+            return null;
+        }
+        return info.getStore().getId();
+    }
+
+    /** Looks for functions whose value changes from request to request, e.g., env */
+    static class VolatileFunctionFinder extends DefaultFilterVisitor {
+        boolean found;
+
+        @Override
+        public Object visit(Function expression, Object data) {
+            if (expression instanceof VolatileFunction
+                    || "env".equalsIgnoreCase(expression.getName())) {
+                found = true;
+            }
+            return super.visit(expression, data);
+        }
+    }
+
+    static class Key {
+        final String storeId;
+        final String layerId;
+        final Filter filter;
+        final Object viewParams;
+        final String user;
+
+        Key(String storeId, String layerId, Filter filter, Object viewParams, String user) {
+            this.storeId = storeId;
+            this.layerId = layerId;
+            this.filter = filter;
+            this.viewParams = viewParams;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(layerId, key.layerId)
+                    && Objects.equals(filter, key.filter)
+                    && Objects.equals(viewParams, key.viewParams)
+                    && Objects.equals(user, key.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layerId, filter, viewParams, user);
+        }
+    }
+
+    static class Entry {
+        final int count;
+        final long generation;
+        final long global;
+
+        Entry(int count, long generation, long global) {
+            this.count = count;
+            this.generation = generation;
+            this.global = global;
+        }
+    }
+}
@@ -6,6 +6,7 @@
 package org.geoserver.wfs;
 
 import java.io.IOException;
+import org.geoserver.catalog.FeatureTypeInfo;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
 
@@ -26,11 +27,23 @@ class CountExecutor {
 
     int providedCount = COUNT_UNSET;
 
+    FeatureTypeInfo layer;
+
+    CountCache cache;
+
     public CountExecutor(FeatureSource source, Query query) {
         this.source = source;
         this.query = query;
     }
 
+    /** Builds a count executor that will look up and store the count in the given cache */
+    public CountExecutor(
+            FeatureSource source, Query query, FeatureTypeInfo layer, CountCache cache) {
+        this(source, query);
+        this.layer = layer;
+        this.cache = cache;
+    }
+
     public CountExecutor(int providedCount) {
         this.providedCount = providedCount;
     }
@@ -41,7 +54,16 @@ public int getCount() throws IOException {
         } else {
             // make sure we get a count by getting a feature colleciton
             // FeatureSource.getCount(...) can return -1
-            return source.getFeatures(query).size();
+            if (cache == null) {
+                return source.getFeatures(query).size();
+            }
+            try {
+                return cache.getCount(layer, query, () -> source.getFeatures(query).size());
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
         }
     }
 
@@ -0,0 +1,86 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Holds the Guava cache backing the WFS response caches, whose entries expire after a time to live
+ * configured with a system variable. The time to live and size are looked up at each access, the
+ * cache is rebuilt when the time to live changes, and a time to live of 0 or less disables it.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ExpiringCache<K, V> {
+
+    private final LongSupplier timeToLive;
+
+    private final IntSupplier maxEntries;
+
+    private Cache<K, V> cache;
+
+    private long cacheTimeToLive;
+
+    /**
+     * @param timeToLive the time to live of the entries, in seconds
+     * @param maxEntries the max number of entries kept
+     */
+    public ExpiringCache(LongSupplier timeToLive, IntSupplier maxEntries) {
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean isEnabled() {
+        return timeToLive.getAsLong() > 0;
+    }
+
+    /** Returns the cache, building it on first access or if the time to live changed */
+    public synchronized Cache<K, V> get() {
+        long ttl = timeToLive.getAsLong();
+        if (cache == null || cacheTimeToLive != ttl) {
+            cache =
+                    CacheBuilder.newBuilder()
+                            .maximumSize(maxEntries.getAsInt())
+                            .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                            .build();
+            cacheTimeToLive = ttl;
+        }
+        return cache;
+    }
+
+    /** Drops all the entries */
+    public synchronized void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the current user name and roles, to be part of the keys of the entries depending on
+     * the data security, or null if there is no authentication
+     */
+    public static String getUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) {
+            return null;
+        }
+        Set<String> authorities =
+                auth.getAuthorities().stream()
+                        .map(GrantedAuthority::getAuthority)
+                        .collect(Collectors.toCollection(TreeSet::new));
+        return auth.getName() + authorities;
+    }
+}
@@ -13,10 +13,17 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -26,7 +33,6 @@
 import net.opengis.wfs20.QueryType;
 import net.opengis.wfs20.ResultTypeType;
 import net.opengis.wfs20.StoredQueryType;
-import org.apache.commons.lang3.SystemUtils;
 import org.geoserver.catalog.AttributeTypeInfo;
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.FeatureTypeInfo;
@@ -53,6 +59,7 @@
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.wfs.WFSDataStoreFactory;
 import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
 import org.geotools.feature.NameImpl;
 import org.geotools.feature.SchemaException;
 import org.geotools.filter.FilterCapabilities;
@@ -120,8 +127,6 @@
 import org.opengis.metadata.extent.GeographicBoundingBox;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
-import org.springframework.cglib.proxy.Enhancer;
-import org.springframework.cglib.proxy.LazyLoader;
 import org.xml.sax.helpers.NamespaceSupport;
 
 /**
@@ -143,6 +148,18 @@ public class GetFeature {
     private static final Logger LOGGER =
             org.geotools.util.logging.Logging.getLogger("org.vfny.geoserver.requests");
 
+    /**
+     * When positive, the numberMatched counts are computed in background, in parallel with the
+     * encoding of the features, and omitted if not available within this number of milliseconds
+     */
+    static long ASYNC_COUNT_TIMEOUT = Long.getLong("GS_WFS_ASYNC_COUNT_TIMEOUT", 0);
+
+    /**
+     * When enabled, the next link of sorted paged requests uses a cursor locating the next page by
+     * the sort key of the last feature returned, instead of an offset
+     */
+    static boolean KEYSET_PAGING = Boolean.getBoolean("GS_WFS_KEYSET_PAGING");
+
     /** Describes the allowed filters we support for join queries. */
     private static final FilterCapabilities joinFilterCapabilities;
 
@@ -305,7 +322,7 @@ public FeatureCollectionResponse run(GetFeatureRequest request) throws WFSExcept
 
         boolean isNumberMatchedSkipped = false;
         int count = 0; // should probably be long
-        BigInteger totalCount = BigInteger.ZERO;
+        Supplier<BigInteger> totalCount = () -> BigInteger.ZERO;
 
         // offset into result set in which to return features
         int totalOffset = request.getStartIndex() != null ? request.getStartIndex().intValue() : -1;
@@ -324,6 +341,14 @@ public FeatureCollectionResponse run(GetFeatureRequest request) throws WFSExcept
         }
         int offset = totalOffset;
 
+        // with keyset paging the page is located by the cursor, there is no absolute offset
+        PagingCursor cursor = getPagingCursor(request, queries, totalOffset);
+        boolean keyed = cursor != null && cursor.hasKey();
+        if (keyed) {
+            totalOffset = -1;
+            offset = cursor.getSkip();
+        }
+
         // feature collection size, we may need to calculate it
         // optimization: WFS 1.0 does not require count unless we have multiple query elements
         // and we are asked to perform a global limit on the results returned
@@ -334,200 +359,58 @@ public FeatureCollectionResponse run(GetFeatureRequest request) throws WFSExcept
         List<FeatureCollection<? extends FeatureType, ? extends Feature>> results =
                 new ArrayList<>();
         final List<CountExecutor> totalCountExecutors = new ArrayList<>();
+        PagingCursor next = null;
         try {
+            // when the queries are independent from each other, plan them all upfront and
+            // count them in parallel, the results are then processed in the requested order
+            List<QueryPlan> plans = null;
+            if (isParallelPlanning(queries, calculateSize, offset)) {
+                plans = new ArrayList<>();
+                for (int i = 0; i < queries.size(); i++) {
+                    Query query = queries.get(i);
+                    Map<String, String> viewParam = viewParams != null ? viewParams.get(i) : null;
+                    try {
+                        plans.add(planQuery(request, query, viewParam, offset, maxFeatures, null));
+                    } catch (WFSException e) {
+                        throw locateQueryException(e, query);
+                    }
+                }
+                List<Callable<Integer>> sizes = new ArrayList<>();
+                for (QueryPlan plan : plans) {
+                    sizes.add(plan.features::size);
+                }
+                List<Integer> counted = ParallelCounter.count(sizes);
+                for (int i = 0; i < plans.size(); i++) {
+                    plans.get(i).size = counted.get(i);
+                }
+            }
+
+            QueryPlan lastPlan = null;
             for (int i = 0; (i < queries.size()) && (count < maxFeatures); i++) {
 
                 Query query = queries.get(i);
                 try {
-                    // alias sanity check
-                    validateQueryAliases(request, query);
-
-                    List<FeatureTypeInfo> metas = new ArrayList<>();
-                    for (QName typeName : query.getTypeNames()) {
-                        metas.add(featureTypeInfo(typeName, request));
-                    }
-
-                    // first is the primary feature type
-                    FeatureTypeInfo meta = metas.get(0);
-
-                    // parse the requested property names and distribute among requested types
-                    List<List<String>> reqPropertyNames = parsePropertyNames(query, metas);
-
-                    NamespaceSupport ns = getNamespaceSupport();
-
-                    // set up joins (if specified)
-                    List<Join> joins = null;
-                    String primaryAlias = null;
-                    QName primaryTypeName = query.getTypeNames().get(0);
-                    FeatureTypeInfo primaryMeta = metas.get(0);
-
-                    // make sure filters are sane
-                    //
-                    // Validation of filters on non-simple feature types is not yet supported.
-                    // FIXME: Support validation of filters on non-simple feature types:
-                    // need to consider xpath properties and how to configure namespace prefixes in
-                    // GeoTools app-schema FeaturePropertyAccessorFactory.
-                    Filter filter = query.getFilter();
-
-                    if (filter == null && metas.size() > 1) {
-                        throw new WFSException(request, "Join query must specify a filter");
-                    }
-
-                    if (filter != null) {
-                        if (meta.getFeatureType() instanceof SimpleFeatureType) {
-                            if (metas.size() > 1) {
-                                // sanitize aliases, they must not conflict with feature type names
-                                // nor with their attributes
-                                query = AliasedQuery.fixAliases(metas, query);
-                                // the filter might have been rewritten
-                                filter = query.getFilter();
-
-                                // the join extracting visitor cannot handle negated filters,
-                                // the simplifier handles most common case removing the negation,
-                                // e.g., not(a < 10) -> a >= 10
-                                filter = SimplifyingFilterVisitor.simplify(filter);
-
-                                // join, need to separate the joining filter from other filters
-                                JoinExtractingVisitor extractor =
-                                        new JoinExtractingVisitor(metas, query.getAliases());
-                                extractor.setQueriedTypes(query.getTypeNames());
-                                filter.accept(extractor, null);
-
-                                primaryAlias = extractor.getPrimaryAlias();
-                                primaryMeta = extractor.getPrimaryFeatureType();
-                                metas = extractor.getFeatureTypes();
-                                primaryTypeName =
-                                        new QName(
-                                                primaryMeta.getNamespace().getURI(),
-                                                primaryMeta.getName());
-                                joins = extractor.getJoins();
-                                if (joins.size() != metas.size() - 1) {
-                                    throw new WFSException(
-                                            request,
-                                            String.format(
-                                                    "Query specified %d types but %d "
-                                                            + "join filters were found",
-                                                    metas.size(), extractor.getJoins().size()));
-                                }
-
-                                // validate the filter for each join, as well as the join filter
-                                for (int j = 1; j < metas.size(); j++) {
-                                    Join join = joins.get(j - 1);
-                                    validateJoin(request, query, filter, join, metas.get(j));
-                                }
-
-                                filter = extractor.getPrimaryFilter();
-                                if (filter != null) {
-                                    validateFilter(filter, query, primaryMeta, request);
-                                }
-                            } else {
-                                validateFilter(filter, query, meta, request);
-                            }
-                        } else {
-                            BBOXNamespaceSettingVisitor filterVisitor =
-                                    new BBOXNamespaceSettingVisitor(ns);
-                            filter.accept(filterVisitor, null);
-                        }
-                    }
-
-                    List<List<PropertyName>> propNames = new ArrayList<>();
-                    List<List<PropertyName>> allPropNames = new ArrayList<>();
-                    collectPropertyNames(
-                            request, metas, meta, reqPropertyNames, ns, propNames, allPropNames);
-
-                    // validate sortby if present
-                    List<SortBy> sortBy = query.getSortBy();
-                    if (sortBy != null
-                            && !sortBy.isEmpty()
-                            && meta.getFeatureType() instanceof SimpleFeatureType) {
-                        validateSortBy(sortBy, meta, request);
-                    }
-
-                    // load primary feature source
-                    Hints hints = null;
-                    if (joins != null) {
-                        hints = new Hints(ResourcePool.JOINS, joins);
-                    }
-
-                    // for remote reprojection in case of WFS-NG datastore ONLY
-                    if (meta.getStore()
-                                            .getConnectionParameters()
-                                            .get(WFSDataStoreFactory.USEDEFAULTSRS.key)
-                                    != null
-                            && meta.getMetadata().get(FeatureTypeInfo.OTHER_SRS) != null) {
-                        // if wfs-ng datastore is NOT set to use default srs
-                        // then find request SRS in OTHER_SRS list
-                        if (!Boolean.valueOf(
-                                        meta.getStore()
-                                                .getConnectionParameters()
-                                                .get(WFSDataStoreFactory.USEDEFAULTSRS.key)
-                                                .toString())
-                                && query.getSrsName() != null) {
-                            hints = setWFSCascadingReprojection(query, meta, hints);
-                        }
-                    }
-
-                    FeatureSource<? extends FeatureType, ? extends Feature> source =
-                            primaryMeta.getFeatureSource(null, hints);
-
-                    // handle local maximum
-                    int queryMaxFeatures = maxFeatures - count;
-                    int metaMaxFeatures = maxFeatures(metas);
-                    if (metaMaxFeatures > 0 && metaMaxFeatures < queryMaxFeatures) {
-                        queryMaxFeatures = metaMaxFeatures;
-                    }
-                    Map<String, String> viewParam = viewParams != null ? viewParams.get(i) : null;
-                    org.geotools.data.Query gtQuery =
-                            toDataQuery(
-                                    query,
-                                    filter,
-                                    offset,
-                                    queryMaxFeatures,
-                                    source,
-                                    request,
-                                    allPropNames.get(0),
-                                    viewParam,
-                                    joins,
-                                    primaryTypeName,
-                                    primaryAlias);
-
-                    if (LOGGER.isLoggable(Level.FINE)) {
-                        LOGGER.fine("Query is " + query + "\n To gt2: " + gtQuery);
-                    }
-
-                    // allow extensions to alter the query being run
-                    GetFeatureContext context =
-                            new GetFeatureContext(request, meta, source, gtQuery);
-                    List<GetFeatureCallback> callbacks =
-                            GeoServerExtensions.extensions(GetFeatureCallback.class);
-                    if (!callbacks.isEmpty()) {
-                        for (GetFeatureCallback callback : callbacks) {
-                            callback.beforeQuerying(context);
-                        }
-                        if (gtQuery != context.getQuery() && LOGGER.isLoggable(Level.FINE)) {
-                            LOGGER.fine("Query after GetFeatureCallback changes: " + source);
-                        }
-                        gtQuery = context.getQuery();
+                    QueryPlan plan;
+                    if (plans != null) {
+                        plan = plans.get(i);
+                    } else {
+                        Map<String, String> viewParam =
+                                viewParams != null ? viewParams.get(i) : null;
+                        plan =
+                                planQuery(
+                                        request,
+                                        query,
+                                        viewParam,
+                                        offset,
+                                        maxFeatures - count,
+                                        cursor);
                     }
-
+                    // the query might have been rewritten while planning
+                    query = plan.query;
+                    lastPlan = plan;
                     FeatureCollection<? extends FeatureType, ? extends Feature> features =
-                            getFeatures(request, source, gtQuery);
-
-                    // For complex features, we need the targetCrs and version in scenario where we
-                    // have
-                    // a top level feature that does not contain a geometry(therefore no crs) and
-                    // has a
-                    // nested feature that contains geometry as its property.Furthermore it is
-                    // possible
-                    // for each nested feature to have different crs hence we need to reproject on
-                    // each
-                    // feature accordingly.
-                    if (!(meta.getFeatureType() instanceof SimpleFeatureType)) {
-                        features.getSchema().getUserData().put("targetCrs", query.getSrsName());
-                        features.getSchema()
-                                .getUserData()
-                                .put("targetVersion", request.getVersion());
-                    }
+                            plan.features;
+                    int queryMaxFeatures = Math.min(plan.maxFeatures, maxFeatures - count);
 
                     if (!calculateSize) {
                         // if offset was specified and we have more queries left in this request
@@ -538,7 +421,17 @@ public FeatureCollectionResponse run(GetFeatureRequest request) throws WFSExcept
 
                     int size = 0;
                     if (calculateSize) {
-                        size = features.size();
+                        size = plan.size != null ? plan.size : features.size();
+                        // queries counted in parallel could not know about the features returned
+                        // by the previous ones, re-run with the actual limit if needed
+                        if (size > queryMaxFeatures) {
+                            org.geotools.data.Query limited =
+                                    new org.geotools.data.Query(plan.gtQuery);
+                            limited.setMaxFeatures(queryMaxFeatures);
+                            features =
+                                    queryFeatures(request, query, plan.meta, plan.source, limited);
+                            size = queryMaxFeatures;
+                        }
                     }
 
                     // update the count
@@ -548,34 +441,29 @@ public FeatureCollectionResponse run(GetFeatureRequest request) throws WFSExcept
                     // check maxFeatures and offset, if they are unset we can use the size we
                     // calculated above
                     isNumberMatchedSkipped =
-                            meta.getSkipNumberMatched() && !request.isResultTypeHits();
+                            plan.meta.getSkipNumberMatched() && !request.isResultTypeHits();
                     if (!isNumberMatchedSkipped) {
                         if (calculateSize
                                 && (queryMaxFeatures == Integer.MAX_VALUE
                                         || size < queryMaxFeatures)
-                                && offset <= 0) {
+                                && offset <= 0
+                                && !keyed) {
                             totalCountExecutors.add(new CountExecutor(size));
                         } else {
                             org.geotools.data.Query qTotal =
-                                    toDataQuery(
-                                            query,
-                                            filter,
-                                            0,
-                                            Integer.MAX_VALUE,
-                                            source,
-                                            request,
-                                            allPropNames.get(0),
-                                            viewParam,
-                                            joins,
-                                            primaryTypeName,
-                                            primaryAlias);
-                            totalCountExecutors.add(new CountExecutor(source, qTotal));
+                                    toDataQuery(plan, request, 0, Integer.MAX_VALUE);
+                            totalCountExecutors.add(
+                                    new CountExecutor(
+                                            plan.source,
+                                            qTotal,
+                                            plan.primaryMeta,
+                                            getCountCache()));
                         }
                     }
 
                     // if offset is present we need to check the size of this returned feature
                     // collection and adjust the offset for the next feature collection accordingly
-                    if (offset > 0) {
+                    if (offset > 0 && !keyed) {
                         if (size > 0) {
                             // features returned, offset can be set to zero
                             offset = 0;
@@ -583,21 +471,10 @@ public FeatureCollectionResponse run(GetFeatureRequest request) throws WFSExcept
                             // no features might have been because of the offset that was specified,
                             // check the size of the same query but with no offset
                             org.geotools.data.Query q2 =
-                                    toDataQuery(
-                                            query,
-                                            filter,
-                                            0,
-                                            queryMaxFeatures,
-                                            source,
-                                            request,
-                                            allPropNames.get(0),
-                                            viewParam,
-                                            joins,
-                                            primaryTypeName,
-                                            primaryAlias);
+                                    toDataQuery(plan, request, 0, queryMaxFeatures);
 
                             // int size2 = getFeatures(request, source, q2).size();
-                            int size2 = source.getCount(q2);
+                            int size2 = plan.source.getCount(q2);
                             if (size2 > 0) {
                                 // adjust the offset for the next query
                                 offset = Math.max(0, offset - size2);
@@ -608,31 +485,29 @@ public FeatureCollectionResponse run(GetFeatureRequest request) throws WFSExcept
                     // we may need to shave off geometries we did load only to make bounds
                     // computation happy
                     // TODO: support non-SimpleFeature geometry shaving
-                    List<PropertyName> metaPropNames = propNames.get(0);
+                    List<PropertyName> metaPropNames = plan.propertyNames;
                     if (features.getSchema() instanceof SimpleFeatureType
                             && metaPropNames != null
-                            && metaPropNames.size() < allPropNames.get(0).size()) {
+                            && metaPropNames.size() < plan.allPropertyNames.size()) {
                         features = retypeToRequestedProperties(features, metaPropNames);
                     }
 
                     // allow encoders to grab information about this layer if needs be
-                    if (primaryMeta != null) {
-                        features = TypeInfoCollectionWrapper.wrap(features, primaryMeta);
+                    if (plan.primaryMeta != null) {
+                        features = TypeInfoCollectionWrapper.wrap(features, plan.primaryMeta);
                     }
 
                     results.add(features);
                 } catch (WFSException e) {
-                    // intercept and set locator to query handle if one was set, or if it simply set
-                    // to GetFeature, which is the default
-                    if (query.getHandle() != null
-                            && (e.getLocator() == null
-                                    || "GetFeature".equalsIgnoreCase(e.getLocator()))) {
-                        e.setLocator(query.getHandle());
-                    }
-                    throw e;
+                    throw locateQueryException(e, query);
                 }
             }
 
+            // with keyset paging, the next page is located by the last key of the current one
+            if (lastPlan != null && lastPlan.cursor != null && count > 0 && count >= maxFeatures) {
+                next = getNextCursor(lastPlan, count);
+            }
+
             totalCount =
                     updateTotalCount(
                             maxFeatures,
@@ -646,15 +521,470 @@ public FeatureCollectionResponse run(GetFeatureRequest request) throws WFSExcept
                     request, "Error occurred getting features", e, request.getHandle());
         }
 
-        return buildResults(
-                request,
-                totalOffset,
+        FeatureCollectionResponse result =
+                buildResults(
+                        request,
+                        totalOffset,
+                        maxFeatures,
+                        count,
+                        null,
+                        results,
+                        lockId,
+                        getFeatureById,
+                        next);
+        // the count might still be running, output formats get it only when they need it
+        result.setLazyTotalNumberOfFeatures(totalCount);
+        return result;
+    }
+
+    /**
+     * Validates the query and turns it into a data query, running it against the primary feature
+     * source of the query, without consuming the resulting collection yet
+     *
+     * @param maxFeatures the max number of features that can still be returned by the request
+     * @param cursor the keyset paging cursor, if any
+     */
+    private QueryPlan planQuery(
+            GetFeatureRequest request,
+            Query query,
+            Map<String, String> viewParam,
+            int offset,
+            int maxFeatures,
+            PagingCursor cursor)
+            throws IOException {
+        // alias sanity check
+        validateQueryAliases(request, query);
+
+        List<FeatureTypeInfo> metas = new ArrayList<>();
+        for (QName typeName : query.getTypeNames()) {
+            metas.add(featureTypeInfo(typeName, request));
+        }
+
+        // first is the primary feature type
+        FeatureTypeInfo meta = metas.get(0);
+
+        // parse the requested property names and distribute among requested types
+        List<List<String>> reqPropertyNames = parsePropertyNames(query, metas);
+
+        NamespaceSupport ns = getNamespaceSupport();
+
+        // set up joins (if specified)
+        List<Join> joins = null;
+        String primaryAlias = null;
+        QName primaryTypeName = query.getTypeNames().get(0);
+        FeatureTypeInfo primaryMeta = metas.get(0);
+
+        // make sure filters are sane
+        //
+        // Validation of filters on non-simple feature types is not yet supported.
+        // FIXME: Support validation of filters on non-simple feature types:
+        // need to consider xpath properties and how to configure namespace prefixes in
+        // GeoTools app-schema FeaturePropertyAccessorFactory.
+        Filter filter = query.getFilter();
+
+        if (filter == null && metas.size() > 1) {
+            throw new WFSException(request, "Join query must specify a filter");
+        }
+
+        if (filter != null) {
+            if (meta.getFeatureType() instanceof SimpleFeatureType) {
+                if (metas.size() > 1) {
+                    // sanitize aliases, they must not conflict with feature type names
+                    // nor with their attributes
+                    query = AliasedQuery.fixAliases(metas, query);
+                    // the filter might have been rewritten
+                    filter = query.getFilter();
+
+                    // the join extracting visitor cannot handle negated filters,
+                    // the simplifier handles most common case removing the negation,
+                    // e.g., not(a < 10) -> a >= 10
+                    filter = SimplifyingFilterVisitor.simplify(filter);
+
+                    // join, need to separate the joining filter from other filters
+                    JoinExtractingVisitor extractor =
+                            new JoinExtractingVisitor(metas, query.getAliases());
+                    extractor.setQueriedTypes(query.getTypeNames());
+                    filter.accept(extractor, null);
+
+                    primaryAlias = extractor.getPrimaryAlias();
+                    primaryMeta = extractor.getPrimaryFeatureType();
+                    metas = extractor.getFeatureTypes();
+                    primaryTypeName =
+                            new QName(primaryMeta.getNamespace().getURI(), primaryMeta.getName());
+                    joins = extractor.getJoins();
+                    if (joins.size() != metas.size() - 1) {
+                        throw new WFSException(
+                                request,
+                                String.format(
+                                        "Query specified %d types but %d "
+                                                + "join filters were found",
+                                        metas.size(), extractor.getJoins().size()));
+                    }
+
+                    // validate the filter for each join, as well as the join filter
+                    for (int j = 1; j < metas.size(); j++) {
+                        Join join = joins.get(j - 1);
+                        validateJoin(request, query, filter, join, metas.get(j));
+                    }
+
+                    filter = extractor.getPrimaryFilter();
+                    if (filter != null) {
+                        validateFilter(filter, query, primaryMeta, request);
+                    }
+                } else {
+                    validateFilter(filter, query, meta, request);
+                }
+            } else {
+                BBOXNamespaceSettingVisitor filterVisitor = new BBOXNamespaceSettingVisitor(ns);
+                filter.accept(filterVisitor, null);
+            }
+        }
+
+        List<List<PropertyName>> propNames = new ArrayList<>();
+        List<List<PropertyName>> allPropNames = new ArrayList<>();
+        collectPropertyNames(request, metas, meta, reqPropertyNames, ns, propNames, allPropNames);
+
+        // validate sortby if present
+        List<SortBy> sortBy = query.getSortBy();
+        if (sortBy != null
+                && !sortBy.isEmpty()
+                && meta.getFeatureType() instanceof SimpleFeatureType) {
+            validateSortBy(sortBy, meta, request);
+        }
+
+        // load primary feature source
+        Hints hints = null;
+        if (joins != null) {
+            hints = new Hints(ResourcePool.JOINS, joins);
+        }
+
+        // for remote reprojection in case of WFS-NG datastore ONLY
+        if (meta.getStore().getConnectionParameters().get(WFSDataStoreFactory.USEDEFAULTSRS.key)
+                        != null
+                && meta.getMetadata().get(FeatureTypeInfo.OTHER_SRS) != null) {
+            // if wfs-ng datastore is NOT set to use default srs
+            // then find request SRS in OTHER_SRS list
+            if (!Boolean.valueOf(
+                            meta.getStore()
+                                    .getConnectionParameters()
+                                    .get(WFSDataStoreFactory.USEDEFAULTSRS.key)
+                                    .toString())
+                    && query.getSrsName() != null) {
+                hints = setWFSCascadingReprojection(query, meta, hints);
+            }
+        }
+
+        FeatureSource<? extends FeatureType, ? extends Feature> source =
+                primaryMeta.getFeatureSource(null, hints);
+
+        // handle local maximum
+        int queryMaxFeatures = maxFeatures;
+        int metaMaxFeatures = maxFeatures(metas);
+        if (metaMaxFeatures > 0 && metaMaxFeatures < queryMaxFeatures) {
+            queryMaxFeatures = metaMaxFeatures;
+        }
+        org.geotools.data.Query gtQuery =
+                toDataQuery(
+                        query,
+                        filter,
+                        offset,
+                        queryMaxFeatures,
+                        source,
+                        request,
+                        allPropNames.get(0),
+                        viewParam,
+                        joins,
+                        primaryTypeName,
+                        primaryAlias);
+
+        // keyset paging, works only against simple features, with a stable sort
+        if (cursor != null) {
+            String unsupported = getKeysetPagingLimitation(sortBy, meta, source, joins);
+            if (unsupported == null) {
+                applyCursor(cursor, sortBy, meta, gtQuery);
+            } else if (cursor.hasKey()) {
+                throw new WFSException(
+                                request, unsupported, ServiceException.INVALID_PARAMETER_VALUE)
+                        .locator("cursor");
+            } else {
+                LOGGER.fine(unsupported + ", the next page will be located by offset");
+                cursor = null;
+            }
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Query is " + query + "\n To gt2: " + gtQuery);
+        }
+
+        // allow extensions to alter the query being run
+        GetFeatureContext context = new GetFeatureContext(request, meta, source, gtQuery);
+        List<GetFeatureCallback> callbacks =
+                GeoServerExtensions.extensions(GetFeatureCallback.class);
+        if (!callbacks.isEmpty()) {
+            for (GetFeatureCallback callback : callbacks) {
+                callback.beforeQuerying(context);
+            }
+            if (gtQuery != context.getQuery() && LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Query after GetFeatureCallback changes: " + source);
+            }
+            gtQuery = context.getQuery();
+        }
+
+        QueryPlan plan = new QueryPlan();
+        plan.query = query;
+        plan.filter = filter;
+        plan.meta = meta;
+        plan.primaryMeta = primaryMeta;
+        plan.source = source;
+        plan.gtQuery = gtQuery;
+        plan.maxFeatures = queryMaxFeatures;
+        plan.viewParam = viewParam;
+        plan.joins = joins;
+        plan.primaryTypeName = primaryTypeName;
+        plan.primaryAlias = primaryAlias;
+        plan.propertyNames = propNames.get(0);
+        plan.allPropertyNames = allPropNames.get(0);
+        plan.cursor = cursor;
+        plan.features = queryFeatures(request, query, meta, source, gtQuery);
+        return plan;
+    }
+
+    /**
+     * Returns why keyset paging cannot be used for the query, or null if it can. The features
+     * sharing the same key are skipped by offset, so the sort has to be made stable by the store
+     */
+    private String getKeysetPagingLimitation(
+            List<SortBy> sortBy,
+            FeatureTypeInfo meta,
+            FeatureSource<? extends FeatureType, ? extends Feature> source,
+            List<Join> joins)
+            throws IOException {
+        if (!(meta.getFeatureType() instanceof SimpleFeatureType) || joins != null) {
+            return "Paging cursors can only be used with simple feature types";
+        }
+        if (!source.getQueryCapabilities().supportsSorting(getStableSort(sortBy))) {
+            return "Paging cursors cannot be used, the store cannot sort on "
+                    + PagingCursor.toString(sortBy)
+                    + " followed by the natural order";
+        }
+        return null;
+    }
+
+    /**
+     * Restricts the data query to the features coming after the cursor key, and makes the sort
+     * stable, so that features sharing the same key are always returned in the same order
+     */
+    private void applyCursor(
+            PagingCursor cursor,
+            List<SortBy> sortBy,
+            FeatureTypeInfo meta,
+            org.geotools.data.Query gtQuery)
+            throws IOException {
+        if (cursor.hasKey()) {
+            Filter keyset = cursor.toFilter(sortBy, meta.getFeatureType(), filterFactory);
+            gtQuery.setFilter(filterFactory.and(gtQuery.getFilter(), keyset));
+        }
+        gtQuery.setSortBy(getStableSort(sortBy));
+    }
+
+    private SortBy[] getStableSort(List<SortBy> sortBy) {
+        List<SortBy> stable = new ArrayList<>(sortBy);
+        stable.add(SortBy.NATURAL_ORDER);
+        return stable.toArray(new SortBy[stable.size()]);
+    }
+
+    /** Returns true if the next links of sorted paged requests use keyset paging cursors */
+    public static boolean isKeysetPaging() {
+        return KEYSET_PAGING;
+    }
+
+    /** Enables or disables keyset paging, overriding the GS_WFS_KEYSET_PAGING system property */
+    public static void setKeysetPaging(boolean keysetPaging) {
+        KEYSET_PAGING = keysetPaging;
+    }
+
+    /**
+     * Returns the cursor of the requested page when using keyset paging, or null otherwise. A page
+     * located by offset gets a cursor without a key, so that the next page can be located by key
+     */
+    private PagingCursor getPagingCursor(
+            GetFeatureRequest request, List<Query> queries, int offset) {
+        List<SortBy> sortBy = queries.size() == 1 ? queries.get(0).getSortBy() : null;
+        boolean sorted = sortBy != null && !sortBy.isEmpty();
+        String token = getCursorToken(request);
+        if (token == null) {
+            boolean keyset = KEYSET_PAGING && sorted && !request.isResultTypeHits();
+            return keyset ? PagingCursor.offset(sortBy, offset) : null;
+        }
+
+        if (!sorted) {
+            throw new WFSException(
+                            request,
+                            "Paging cursors can only be used with a single sorted query",
+                            ServiceException.INVALID_PARAMETER_VALUE)
+                    .locator("cursor");
+        }
+        if (request.getStartIndex() != null && request.getStartIndex().signum() > 0) {
+            throw new WFSException(
+                            request,
+                            "Paging cursors cannot be used along with startIndex",
+                            ServiceException.INVALID_PARAMETER_VALUE)
+                    .locator("cursor");
+        }
+        PagingCursor cursor;
+        try {
+            cursor = PagingCursor.decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new WFSException(
+                            request, e.getMessage(), e, ServiceException.INVALID_PARAMETER_VALUE)
+                    .locator("cursor");
+        }
+        if (!cursor.matches(sortBy)) {
+            throw new WFSException(
+                            request,
+                            "The paging cursor was built for a different sorting",
+                            ServiceException.INVALID_PARAMETER_VALUE)
+                    .locator("cursor");
+        }
+        return cursor;
+    }
+
+    /** Returns the paging cursor provided by the client, if any */
+    protected String getCursorToken(GetFeatureRequest request) {
+        Request dispatcherRequest = Dispatcher.REQUEST.get();
+        if (dispatcherRequest == null || dispatcherRequest.getRawKvp() == null) {
+            return null;
+        }
+        Object token = dispatcherRequest.getRawKvp().get("CURSOR");
+        return token instanceof String && !((String) token).isEmpty() ? (String) token : null;
+    }
+
+    /**
+     * Scans the sort keys of the current page, reading only the sort attributes, to build the
+     * cursor of the next one
+     *
+     * @return the cursor, or null if the next page has to be located by offset
+     */
+    private PagingCursor getNextCursor(QueryPlan plan, int count) throws IOException {
+        List<SortBy> sortBy = plan.query.getSortBy();
+        PagingCursor cursor = plan.cursor;
+        if (!cursor.hasKey()) {
+            cursor = cursor.withNullsFirst(getNullsFirst(plan, sortBy));
+        }
+        org.geotools.data.Query keys = new org.geotools.data.Query(plan.gtQuery);
+        keys.setProperties(
+                sortBy.stream().map(SortBy::getPropertyName).collect(Collectors.toList()));
+        keys.setMaxFeatures(count);
+        List<Object> lastKey = null;
+        int run = 0;
+        try (FeatureIterator<? extends Feature> it = plan.source.getFeatures(keys).features()) {
+            while (it.hasNext()) {
+                Feature feature = it.next();
+                List<Object> key = new ArrayList<>(sortBy.size());
+                for (SortBy sort : sortBy) {
+                    key.add(sort.getPropertyName().evaluate(feature));
+                }
+                if (key.equals(lastKey)) {
+                    run++;
+                } else {
+                    lastKey = key;
+                    run = 1;
+                }
+            }
+        }
+        // the page might have been changed in the meantime, skip over it if nothing is found
+        return lastKey != null ? cursor.next(lastKey, run, count) : cursor.advance(count);
+    }
+
+    /**
+     * Finds out where the store sorts the nulls of the nillable sort attributes, by looking at the
+     * first value in the sort order: a null one means the nulls come first. When there are no nulls
+     * their position does not matter.
+     *
+     * @return a bit mask, bit i set when the nulls of the i-th sort attribute come first
+     */
+    private long getNullsFirst(QueryPlan plan, List<SortBy> sortBy) throws IOException {
+        FeatureType schema = plan.source.getSchema();
+        long nullsFirst = 0;
+        for (int i = 0; i < sortBy.size(); i++) {
+            SortBy sort = sortBy.get(i);
+            if (!PagingCursor.isNillable(sort.getPropertyName(), schema)) {
+                continue;
+            }
+            org.geotools.data.Query probe = new org.geotools.data.Query(plan.gtQuery);
+            probe.setFilter(Filter.INCLUDE);
+            probe.setStartIndex(null);
+            probe.setMaxFeatures(1);
+            probe.setProperties(Collections.singletonList(sort.getPropertyName()));
+            probe.setSortBy(new SortBy[] {sort});
+            try (FeatureIterator<? extends Feature> it =
+                    plan.source.getFeatures(probe).features()) {
+                if (it.hasNext() && sort.getPropertyName().evaluate(it.next()) == null) {
+                    nullsFirst |= 1L << i;
+                }
+            }
+        }
+        return nullsFirst;
+    }
+
+    /** Runs the data query, eventually setting up the target CRS of complex features */
+    private FeatureCollection<? extends FeatureType, ? extends Feature> queryFeatures(
+            GetFeatureRequest request,
+            Query query,
+            FeatureTypeInfo meta,
+            FeatureSource<? extends FeatureType, ? extends Feature> source,
+            org.geotools.data.Query gtQuery)
+            throws IOException {
+        FeatureCollection<? extends FeatureType, ? extends Feature> features =
+                getFeatures(request, source, gtQuery);
+
+        // For complex features, we need the targetCrs and version in scenario where we have a
+        // top level feature that does not contain a geometry(therefore no crs) and has a nested
+        // feature that contains geometry as its property.Furthermore it is possible for each nested
+        // feature to have different crs hence we need to reproject on each feature accordingly.
+        if (!(meta.getFeatureType() instanceof SimpleFeatureType)) {
+            features.getSchema().getUserData().put("targetCrs", query.getSrsName());
+            features.getSchema().getUserData().put("targetVersion", request.getVersion());
+        }
+        return features;
+    }
+
+    /** Builds a data query out of the planned one, with the given offset and limit */
+    private org.geotools.data.Query toDataQuery(
+            QueryPlan plan, GetFeatureRequest request, int offset, int maxFeatures) {
+        return toDataQuery(
+                plan.query,
+                plan.filter,
+                offset,
                 maxFeatures,
-                count,
-                totalCount,
-                results,
-                lockId,
-                getFeatureById);
+                plan.source,
+                request,
+                plan.allPropertyNames,
+                plan.viewParam,
+                plan.joins,
+                plan.primaryTypeName,
+                plan.primaryAlias);
+    }
+
+    /**
+     * The queries can be planned and counted in parallel when they are independent from each other,
+     * that is, when their sizes are computed anyways and there is no offset to distribute among
+     * them
+     */
+    private boolean isParallelPlanning(List<Query> queries, boolean calculateSize, int offset) {
+        return ParallelCounter.isEnabled() && queries.size() > 1 && calculateSize && offset <= 0;
+    }
+
+    /**
+     * Sets the locator to query handle if one was set, or if it simply set to GetFeature, which is
+     * the default
+     */
+    private WFSException locateQueryException(WFSException e, Query query) {
+        if (query.getHandle() != null
+                && (e.getLocator() == null || "GetFeature".equalsIgnoreCase(e.getLocator()))) {
+            e.setLocator(query.getHandle());
+        }
+        return e;
     }
 
     private void validateJoin(
@@ -682,7 +1012,11 @@ private void validateQueryAliases(GetFeatureRequest request, Query query) {
         }
     }
 
-    private BigInteger updateTotalCount(
+    /**
+     * Returns the total count of the features matched, computed lazily, as not all output formats
+     * need it, and those that do might write it after the features
+     */
+    private Supplier<BigInteger> updateTotalCount(
             int maxFeatures,
             boolean isNumberMatchedSkipped,
             int count,
@@ -702,30 +1036,28 @@ private BigInteger updateTotalCount(
         } else if (isPreComputed(totalCountExecutors)) {
             long total = getTotalCount(totalCountExecutors);
             totalCount = BigInteger.valueOf(total);
+        } else if (ASYNC_COUNT_TIMEOUT > 0) {
+            // in async mode start counting right away, in parallel with the encoding of the
+            // features, and give up if the count is not ready within the time budget
+            Future<Long> asyncCount =
+                    ParallelCounter.submit(() -> getTotalCount(totalCountExecutors));
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ASYNC_COUNT_TIMEOUT);
+            return () -> countLazily(() -> getTotalCount(asyncCount, deadline));
         } else {
-            if (SystemUtils.IS_JAVA_11 || SystemUtils.IS_JAVA_1_8) {
-                // ok, in this case we're forced to run the queries to discover the actual total
-                // count. We do so lazily, not all output formats need it, leveraging the fact that
-                // BigInteger is not final to wrap it in a lazy loading proxy
-                Enhancer enhancer = new Enhancer();
-                enhancer.setSuperclass(BigInteger.class);
-                enhancer.setCallback(
-                        (LazyLoader)
-                                () -> {
-                                    long totalCount1 = getTotalCount(totalCountExecutors);
-                                    return BigInteger.valueOf(totalCount1);
-                                });
-                totalCount =
-                        (BigInteger)
-                                enhancer.create(new Class[] {String.class}, new Object[] {"0"});
-            } else {
-                // Spring asm does not work with newer versions of Java, skip lazy loading for now
-                // we might want to revisit with a different approach later, e..g, when upgrading
-                // Spring and its internal ASM library
-                totalCount = BigInteger.valueOf(getTotalCount(totalCountExecutors));
-            }
+            // we're forced to run the queries to discover the actual total count
+            return () -> countLazily(() -> getTotalCount(totalCountExecutors));
+        }
+        return () -> totalCount;
+    }
+
+    private BigInteger countLazily(Callable<Long> count) {
+        try {
+            return BigInteger.valueOf(count.call());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException("Error occurred counting features", e);
         }
-        return totalCount;
     }
 
     private void collectPropertyNames(
@@ -907,9 +1239,13 @@ private boolean isPreComputed(List<CountExecutor> totalCountExecutors) {
     }
 
     private long getTotalCount(List<CountExecutor> totalCountExecutors) throws IOException {
-        long totalCount = 0;
+        // the counts are independent, run them in parallel
+        List<Callable<Integer>> counts = new ArrayList<>();
         for (CountExecutor q : totalCountExecutors) {
-            int result = q.getCount();
+            counts.add(q::getCount);
+        }
+        long totalCount = 0;
+        for (int result : ParallelCounter.count(counts)) {
             // if the count is unknown for one, we don't know the total,
             // period
             if (result == -1) {
@@ -922,6 +1258,39 @@ private long getTotalCount(List<CountExecutor> totalCountExecutors) throws IOExc
         return totalCount;
     }
 
+    /**
+     * Waits for a count running in background, up to the deadline. Returns -1, that is, unknown, if
+     * the count could not complete in time
+     */
+    private long getTotalCount(Future<Long> asyncCount, long deadline) throws IOException {
+        try {
+            long timeout = Math.max(0, deadline - System.nanoTime());
+            return asyncCount.get(timeout, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.fine("Feature count did not complete in time, numberMatched will be omitted");
+            asyncCount.cancel(true);
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            asyncCount.cancel(true);
+            return -1;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to count features", cause);
+        }
+    }
+
+    /** The count cache, if available and enabled */
+    private CountCache getCountCache() {
+        CountCache cache = CountCache.get();
+        return cache != null && cache.isEnabled() ? cache : null;
+    }
+
     private Filter toFeatureIdFilter(List<FeatureId> lockedFeatures) {
         if (lockedFeatures == null || lockedFeatures.isEmpty()) {
             return Filter.EXCLUDE;
@@ -1024,6 +1393,25 @@ protected FeatureCollectionResponse buildResults(
             List<FeatureCollection<? extends FeatureType, ? extends Feature>> results,
             String lockId,
             boolean getFeatureById) {
+        return buildResults(
+                request, offset, maxFeatures, count, total, results, lockId, getFeatureById, null);
+    }
+
+    /**
+     * Allows subclasses to alter the result generation
+     *
+     * @param next the cursor locating the next page, when using keyset paging
+     */
+    protected FeatureCollectionResponse buildResults(
+            GetFeatureRequest request,
+            int offset,
+            int maxFeatures,
+            int count,
+            BigInteger total,
+            List<FeatureCollection<? extends FeatureType, ? extends Feature>> results,
+            String lockId,
+            boolean getFeatureById,
+            PagingCursor next) {
 
         FeatureCollectionResponse result = request.createResponse();
         result.setNumberOfFeatures(BigInteger.valueOf(count));
@@ -1054,6 +1442,9 @@ protected FeatureCollectionResponse buildResults(
                 kvp = buildKvpFromRequest(request);
             }
             buildPrevNextLinks(request, offset, maxFeatures, count, result, kvp);
+            if (next != null) {
+                buildCursorLinks(request, maxFeatures, next, result, kvp);
+            }
         }
 
         return result;
@@ -1114,6 +1505,19 @@ protected void buildPrevNextLinks(
         }
     }
 
+    /** Sets the next link of a keyset paged request, locating the next page with the cursor */
+    protected void buildCursorLinks(
+            GetFeatureRequest request,
+            int maxFeatures,
+            PagingCursor next,
+            FeatureCollectionResponse result,
+            Map<String, String> kvp) {
+        kvp.remove("startIndex");
+        kvp.put("cursor", next.encode());
+        kvp.put("count", String.valueOf(maxFeatures));
+        result.setNext(buildURL(request.getBaseUrl(), "wfs", kvp, URLType.SERVICE));
+    }
+
     protected KvpMap<String, String> buildKvpFromRequest(GetFeatureRequest request) {
 
         // FILTER_LANGUAGE
@@ -1770,6 +2174,28 @@ private Filter buildFilterCRSFromInfo(
         }
     }
 
+    /** The outcome of the planning of a single query, before its results are consumed */
+    private static class QueryPlan {
+        Query query;
+        Filter filter;
+        FeatureTypeInfo meta;
+        FeatureTypeInfo primaryMeta;
+        FeatureSource<? extends FeatureType, ? extends Feature> source;
+        org.geotools.data.Query gtQuery;
+        int maxFeatures;
+        Map<String, String> viewParam;
+        List<Join> joins;
+        QName primaryTypeName;
+        String primaryAlias;
+        List<PropertyName> propertyNames;
+        List<PropertyName> allPropertyNames;
+        FeatureCollection<? extends FeatureType, ? extends Feature> features;
+        /** The size of the features, if computed upfront */
+        Integer size;
+        /** The keyset paging cursor applied to the query, if any */
+        PagingCursor cursor;
+    }
+
     private static class CiteBBOXValidator extends AbstractFilterVisitor {
         private final Query fquery;
         private final GetFeatureRequest request;
@@ -22,6 +22,7 @@
 import org.geoserver.wfs.request.TransactionElement;
 import org.geoserver.wfs.request.TransactionRequest;
 import org.geoserver.wfs.request.TransactionResponse;
+import org.geoserver.wfs.xml.TransactionSpool;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureStore;
 import org.geotools.data.collection.ListFeatureCollection;
@@ -69,7 +70,6 @@ public void checkValidity(
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void execute(
             TransactionElement element,
             TransactionRequest request,
@@ -81,6 +81,33 @@ public void execute(
         Insert insert = (Insert) element;
         LOGGER.finer("Transaction Insert:" + insert);
 
+        TransactionSpool spool = TransactionSpool.get(request);
+        if (spool != null && insert.getFeatures().isEmpty()) {
+            // the features of a spooled transaction are parsed and inserted a batch at a time
+            try {
+                Insert batch;
+                while ((batch = spool.next()) != null) {
+                    insert(batch, request, featureStores, response, listener);
+                }
+            } catch (WFSException e) {
+                throw e;
+            } catch (Exception e) {
+                String msg = "Error reading the features to insert: " + e.getMessage();
+                throw new WFSTransactionException(msg, e, insert.getHandle());
+            }
+        } else {
+            insert(insert, request, featureStores, response, listener);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insert(
+            Insert insert,
+            TransactionRequest request,
+            Map featureStores,
+            TransactionResponse response,
+            TransactionListener listener)
+            throws WFSTransactionException {
         long inserted = response.getTotalInserted().longValue();
 
         try {
@@ -277,6 +304,10 @@ public QName[] getTypeNames(TransactionRequest request, TransactionElement eleme
         List<QName> typeNames = new ArrayList<>();
 
         List features = insert.getFeatures();
+        TransactionSpool spool = TransactionSpool.get(request);
+        if (spool != null && features.isEmpty()) {
+            return spool.getTypeNames().toArray(new QName[0]);
+        }
         if (!features.isEmpty()) {
             for (Object next : features) {
                 // if parsing fails the parser just returns a Map, do throw an error in this case
@@ -0,0 +1,366 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.geotools.util.Converters;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+/**
+ * Continuation token for keyset paging. It records the sort key of the last feature returned in a
+ * page, along with the number of features sharing that same key that have already been returned, so
+ * that the next page can be located with a comparison on the sort attributes, which the store can
+ * resolve with an index, instead of an offset the store has to scan through.
+ *
+ * <p>Sort attributes can contain nulls, which stores sort either before or after all the other
+ * values. The cursor records where the store puts them for each sort attribute, so that the filter
+ * locating the next page can select the null values when they come after the key.
+ *
+ * <p>The token is opaque to clients, it's a URL safe Base64 encoding of the sort specification, the
+ * number of features to skip, the null ordering and the key values.
+ */
+public class PagingCursor {
+
+    /** Max number of sort keys in a cursor, guards against malformed tokens */
+    static final int MAX_KEYS = 64;
+
+    /** Parsers of the java.time values, their toString() is their ISO representation */
+    private static final Map<Class<?>, Function<String, Object>> TEMPORAL_PARSERS = new HashMap<>();
+
+    static {
+        TEMPORAL_PARSERS.put(Instant.class, Instant::parse);
+        TEMPORAL_PARSERS.put(LocalDate.class, LocalDate::parse);
+        TEMPORAL_PARSERS.put(LocalDateTime.class, LocalDateTime::parse);
+        TEMPORAL_PARSERS.put(LocalTime.class, LocalTime::parse);
+        TEMPORAL_PARSERS.put(OffsetDateTime.class, OffsetDateTime::parse);
+        TEMPORAL_PARSERS.put(OffsetTime.class, OffsetTime::parse);
+        TEMPORAL_PARSERS.put(ZonedDateTime.class, ZonedDateTime::parse);
+    }
+
+    private final String sortBy;
+
+    /** The last key values, or null when the page was located by offset */
+    private final List<String> values;
+
+    private final int skip;
+
+    /** Bit i is set when the store sorts the nulls of the i-th sort attribute before the values */
+    private final long nullsFirst;
+
+    PagingCursor(String sortBy, List<String> values, int skip, long nullsFirst) {
+        this.sortBy = sortBy;
+        this.values = values;
+        this.skip = skip;
+        this.nullsFirst = nullsFirst;
+    }
+
+    /** A cursor for a page located by offset, the first one in a keyset paging sequence */
+    public static PagingCursor offset(List<SortBy> sortBy, int offset) {
+        return new PagingCursor(toString(sortBy), null, Math.max(offset, 0), 0);
+    }
+
+    /**
+     * Parses a token generated by {@link #encode()}
+     *
+     * @throws IllegalArgumentException if the token is not valid
+     */
+    public static PagingCursor decode(String token) {
+        try (DataInputStream in =
+                new DataInputStream(
+                        new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            String sortBy = in.readUTF();
+            int skip = in.readInt();
+            long nullsFirst = in.readLong();
+            int size = in.readInt();
+            if (skip < 0 || size <= 0 || size > MAX_KEYS) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                values.add(in.readBoolean() ? in.readUTF() : null);
+            }
+            return new PagingCursor(sortBy, Collections.unmodifiableList(values), skip, nullsFirst);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    /** Returns the opaque token representing this cursor */
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(sortBy);
+            out.writeInt(skip);
+            out.writeLong(nullsFirst);
+            out.writeInt(values.size());
+            for (String value : values) {
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    out.writeUTF(value);
+                }
+            }
+        } catch (IOException e) {
+            // cannot happen writing in memory
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /** The number of features to skip after the last key, or the offset of the page */
+    public int getSkip() {
+        return skip;
+    }
+
+    /** Returns true if the cursor locates the page by key, false if by offset */
+    public boolean hasKey() {
+        return values != null;
+    }
+
+    /** Returns true if the store sorts the nulls of the i-th sort attribute before the values */
+    public boolean isNullsFirst(int i) {
+        return (nullsFirst & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns a copy of this cursor recording where the store sorts the nulls
+     *
+     * @param nullsFirst bit i is set when the nulls of the i-th sort attribute come first
+     */
+    public PagingCursor withNullsFirst(long nullsFirst) {
+        return new PagingCursor(sortBy, values, skip, nullsFirst);
+    }
+
+    /** Returns true if the cursor has been built for the given sort */
+    public boolean matches(List<SortBy> sortBy) {
+        return this.sortBy.equals(toString(sortBy));
+    }
+
+    /**
+     * Builds the filter selecting the features whose sort key is the same, or comes after, the one
+     * recorded in the cursor. Features with the same key are then skipped using {@link #getSkip()}
+     */
+    public Filter toFilter(List<SortBy> sortBy, FeatureType schema, FilterFactory2 ff) {
+        if (values == null) {
+            return Filter.INCLUDE;
+        }
+        // lexicographic comparison, e.g., for (a, b): a > va or (a = va and b >= vb), where the
+        // comparisons also select the nulls when the store sorts them after the key
+        List<Filter> alternatives = new ArrayList<>();
+        List<Filter> equalities = new ArrayList<>();
+        for (int i = 0; i < sortBy.size(); i++) {
+            SortBy sort = sortBy.get(i);
+            PropertyName property = sort.getPropertyName();
+            String text = values.get(i);
+            boolean last = i == sortBy.size() - 1;
+            Filter comparison;
+            Filter equality;
+            if (text == null) {
+                // only the values sorted before the nulls can come after them
+                equality = ff.isNull(property);
+                if (isNullsFirst(i)) {
+                    comparison = last ? Filter.INCLUDE : ff.not(ff.isNull(property));
+                } else {
+                    comparison = last ? equality : Filter.EXCLUDE;
+                }
+            } else {
+                Literal value = ff.literal(toValue(text, property, schema));
+                boolean descending = sort.getSortOrder() == SortOrder.DESCENDING;
+                equality = ff.equals(property, value);
+                if (!last) {
+                    comparison =
+                            descending ? ff.less(property, value) : ff.greater(property, value);
+                } else {
+                    comparison =
+                            descending
+                                    ? ff.lessOrEqual(property, value)
+                                    : ff.greaterOrEqual(property, value);
+                }
+                if (!isNullsFirst(i) && isNillable(property, schema)) {
+                    comparison = ff.or(comparison, ff.isNull(property));
+                }
+            }
+            if (comparison != Filter.EXCLUDE) {
+                alternatives.add(and(ff, equalities, comparison));
+            }
+            equalities.add(equality);
+        }
+        if (alternatives.isEmpty()) {
+            return Filter.EXCLUDE;
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : ff.or(alternatives);
+    }
+
+    private Filter and(FilterFactory2 ff, List<Filter> equalities, Filter comparison) {
+        if (equalities.isEmpty()) {
+            return comparison;
+        }
+        List<Filter> filters = new ArrayList<>(equalities);
+        if (comparison != Filter.INCLUDE) {
+            filters.add(comparison);
+        }
+        return filters.size() == 1 ? filters.get(0) : ff.and(filters);
+    }
+
+    /** Returns true if the property is an attribute of the schema that can contain nulls */
+    static boolean isNillable(PropertyName property, FeatureType schema) {
+        Object evaluated = property.evaluate(schema);
+        return !(evaluated instanceof AttributeDescriptor)
+                || ((AttributeDescriptor) evaluated).isNillable();
+    }
+
+    /**
+     * Builds the cursor for the page following the current one
+     *
+     * @param lastKey the sort key of the last feature in the current page
+     * @param run how many features at the end of the current page share the last key
+     * @param count the number of features in the current page
+     * @return the cursor, or null if the next page has to be located by offset
+     */
+    public PagingCursor next(List<Object> lastKey, int run, int count) {
+        List<String> key = lastKey.stream().map(PagingCursor::toText).collect(Collectors.toList());
+        int nextSkip = run;
+        if (run >= count) {
+            // the whole page has the same key, features with that key might have been returned
+            // by the previous pages too
+            if (key.equals(values)) {
+                nextSkip = skip + run;
+            } else if (values == null && skip > 0) {
+                return advance(count);
+            }
+        }
+        return new PagingCursor(sortBy, Collections.unmodifiableList(key), nextSkip, nullsFirst);
+    }
+
+    /**
+     * Builds the cursor for the page following the current one without looking at its keys, by
+     * skipping the features of the current page on top of the ones skipped already
+     *
+     * @param count the number of features in the current page
+     * @return the cursor, or null if the current page was located by offset, in which case the next
+     *     page has to be located by offset too
+     */
+    public PagingCursor advance(int count) {
+        if (values == null) {
+            return null;
+        }
+        return new PagingCursor(sortBy, values, skip + count, nullsFirst);
+    }
+
+    static String toString(List<SortBy> sortBy) {
+        return sortBy.stream()
+                .map(sb -> sb.getPropertyName().getPropertyName() + " " + sb.getSortOrder())
+                .collect(Collectors.joining(","));
+    }
+
+    private static String toText(Object value) {
+        if (value == null) {
+            return null;
+        }
+        // temporal values as ISO strings, keeping the fractional seconds of the timestamps
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toInstant().toString();
+        }
+        if (value instanceof Date) {
+            return Instant.ofEpochMilli(((Date) value).getTime()).toString();
+        }
+        if (value instanceof TemporalAccessor) {
+            return value.toString();
+        }
+        String text = Converters.convert(value, String.class);
+        return text != null ? text : value.toString();
+    }
+
+    private static Object toValue(String text, PropertyName property, FeatureType schema) {
+        Object evaluated = property.evaluate(schema);
+        if (!(evaluated instanceof AttributeDescriptor)) {
+            return text;
+        }
+        Class<?> binding = ((AttributeDescriptor) evaluated).getType().getBinding();
+        Object value = text;
+        try {
+            if (Date.class.isAssignableFrom(binding)) {
+                value = toDate(Instant.parse(text), binding);
+            } else if (TEMPORAL_PARSERS.containsKey(binding)) {
+                value = TEMPORAL_PARSERS.get(binding).apply(text);
+            }
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor value: " + text, e);
+        }
+        Object converted = Converters.convert(value, binding);
+        return converted != null ? converted : text;
+    }
+
+    private static Date toDate(Instant instant, Class<?> binding) {
+        if (Timestamp.class.isAssignableFrom(binding)) {
+            return Timestamp.from(instant);
+        } else if (java.sql.Date.class.isAssignableFrom(binding)) {
+            return new java.sql.Date(instant.toEpochMilli());
+        } else if (Time.class.isAssignableFrom(binding)) {
+            return new Time(instant.toEpochMilli());
+        }
+        return Date.from(instant);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PagingCursor that = (PagingCursor) o;
+        return skip == that.skip
+                && nullsFirst == that.nullsFirst
+                && Objects.equals(sortBy, that.sortBy)
+                && Objects.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sortBy, values, skip, nullsFirst);
+    }
+
+    @Override
+    public String toString() {
+        return "PagingCursor[sortBy="
+                + sortBy
+                + ", values="
+                + values
+                + ", skip="
+                + skip
+                + ", nullsFirst="
+                + Long.toBinaryString(nullsFirst)
+                + "]";
+    }
+}
@@ -0,0 +1,132 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+
+/**
+ * Runs the feature counts of a GetFeature request in parallel, on a bounded pool of threads shared
+ * by all requests. The calling thread runs itself the counts no pool thread picked up yet, so a
+ * busy pool never makes a request slower than running the counts one after the other.
+ *
+ * <p>The pool size is controlled by the {@code GS_WFS_COUNT_PARALLELISM} system variable, defaults
+ * to the number of processors, up to 4. A value of 1 disables the parallel counts.
+ */
+class ParallelCounter {
+
+    static int PARALLELISM =
+            Integer.getInteger(
+                    "GS_WFS_COUNT_PARALLELISM",
+                    Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static ThreadPoolExecutor executor;
+
+    static boolean isEnabled() {
+        return PARALLELISM > 1;
+    }
+
+    /** Runs the counts, returning the results in the same order */
+    static List<Integer> count(List<Callable<Integer>> counts) throws IOException {
+        List<FutureTask<Integer>> tasks = new ArrayList<>();
+        Thread caller = Thread.currentThread();
+        ThreadLocalsTransfer transfer =
+                isEnabled() && counts.size() > 1 ? new ThreadLocalsTransfer() : null;
+        for (Callable<Integer> count : counts) {
+            tasks.add(
+                    new FutureTask<>(
+                            () -> {
+                                if (Thread.currentThread() == caller) {
+                                    return count.call();
+                                }
+                                transfer.apply();
+                                try {
+                                    return count.call();
+                                } finally {
+                                    transfer.cleanup();
+                                }
+                            }));
+        }
+        if (transfer != null) {
+            // the first one is going to be run by the caller anyways
+            ThreadPoolExecutor executor = getExecutor();
+            for (int i = 1; i < tasks.size(); i++) {
+                executor.execute(tasks.get(i));
+            }
+        }
+
+        List<Integer> results = new ArrayList<>();
+        try {
+            for (FutureTask<Integer> task : tasks) {
+                // no-op if a pool thread already started it
+                task.run();
+                results.add(task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while counting features", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to count features", cause);
+        } finally {
+            // on failure, avoid running the counts that have not started yet
+            for (FutureTask<Integer> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return results;
+    }
+
+    /** Runs the count in background on the shared pool */
+    static <T> Future<T> submit(Callable<T> count) {
+        ThreadLocalsTransfer transfer = new ThreadLocalsTransfer();
+        return getExecutor()
+                .submit(
+                        () -> {
+                            transfer.apply();
+                            try {
+                                return count.call();
+                            } finally {
+                                transfer.cleanup();
+                            }
+                        });
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            executor =
+                    new ThreadPoolExecutor(
+                            PARALLELISM,
+                            PARALLELISM,
+                            60L,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            r -> {
+                                Thread thread =
+                                        new Thread(r, "WFSCounter-" + counter.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
@@ -6,6 +6,7 @@
 package org.geoserver.wfs;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -14,6 +15,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,16 +28,23 @@
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.request.Delete;
 import org.geoserver.wfs.request.Insert;
+import org.geoserver.wfs.request.Property;
 import org.geoserver.wfs.request.TransactionElement;
 import org.geoserver.wfs.request.TransactionRequest;
 import org.geoserver.wfs.request.TransactionResponse;
+import org.geoserver.wfs.request.Update;
+import org.geoserver.wfs.xml.TransactionSpool;
 import org.geotools.data.DefaultTransaction;
 import org.geotools.data.FeatureLockException;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.FeatureStore;
+import org.geotools.factory.CommonFactoryFinder;
+import org.locationtech.jts.geom.Geometry;
 import org.opengis.feature.Feature;
 import org.opengis.feature.type.FeatureType;
+import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
+import org.opengis.filter.Or;
 import org.springframework.context.ApplicationContext;
 
 /**
@@ -50,6 +59,13 @@ public class Transaction {
     private static final int DELETE_BATCH_SIZE =
             Integer.getInteger("org.geoserver.wfs.deleteBatchSize", 100);
 
+    /**
+     * Max number of consecutive updates setting the same values on the same type that get merged
+     * into a single update, 1 or less disables the aggregation
+     */
+    private static final int UPDATE_BATCH_SIZE =
+            Integer.getInteger("org.geoserver.wfs.updateBatchSize", 1);
+
     /** WFS configuration */
     protected WFSInfo wfs;
 
@@ -99,6 +115,9 @@ public TransactionResponse transaction(TransactionRequest request) throws WFSExc
         } catch (Throwable t) {
             abort(request); // release any locks
             throw new WFSException(request, t);
+        } finally {
+            // drop the features of large inserts spooled to disk, if any
+            TransactionSpool.dispose(request);
         }
     }
 
@@ -289,10 +308,11 @@ protected TransactionResponse execute(TransactionRequest request) throws Excepti
         // checks
         // Envelope envelope = new Envelope();
         Exception exception = null;
+        long start = System.nanoTime();
+        BatchManager batchManager =
+                createBatchManager(request, multiplexer, stores, elementHandlers, result);
 
         try {
-            BatchManager batchManager =
-                    createBatchManager(request, multiplexer, stores, elementHandlers, result);
             batchManager.run();
         } catch (WFSTransactionException e) {
             LOGGER.log(Level.SEVERE, "Transaction failed", e);
@@ -363,6 +383,10 @@ protected TransactionResponse execute(TransactionRequest request) throws Excepti
             request.setTransaction(null);
         }
 
+        if (LOGGER.isLoggable(Level.FINE)) {
+            logStatistics(request, result, batchManager, System.nanoTime() - start, committed);
+        }
+
         // inform plugins we're done
         fireAfterTransaction(request, result, committed);
 
@@ -425,7 +449,8 @@ protected TransactionResponse execute(TransactionRequest request) throws Excepti
      * @param stores
      * @param elementHandlers
      * @param result
-     * @return a new {@link BatchManager} batching INSERT and DELETE operations where possible.
+     * @return a new {@link BatchManager} batching INSERT, UPDATE and DELETE operations where
+     *     possible.
      */
     protected BatchManager createBatchManager(
             TransactionRequest request,
@@ -434,7 +459,45 @@ protected BatchManager createBatchManager(
             Map<TransactionElement, TransactionElementHandler> elementHandlers,
             TransactionResponse result) {
         return new BatchManager(
-                request, multiplexer, stores, result, elementHandlers, DELETE_BATCH_SIZE);
+                request,
+                multiplexer,
+                stores,
+                result,
+                elementHandlers,
+                DELETE_BATCH_SIZE,
+                UPDATE_BATCH_SIZE);
+    }
+
+    /** Logs the features modified by the transaction and the rate at which they were processed */
+    private void logStatistics(
+            TransactionRequest request,
+            TransactionResponse result,
+            BatchManager batchManager,
+            long elapsedNanos,
+            boolean committed) {
+        long inserted = total(result.getTotalInserted());
+        long updated = total(result.getTotalUpdated());
+        long deleted = total(result.getTotalDeleted());
+        long features = inserted + updated + deleted;
+        double millis = elapsedNanos / 1e6;
+        double rate = millis > 0 ? features * 1000 / millis : 0;
+        LOGGER.fine(
+                String.format(
+                        "Transaction%s %s: %d inserted, %d updated, %d deleted features, "
+                                + "%d elements run in %d batches, %.1f ms (%.1f features/s)",
+                        request.getHandle() != null ? " " + request.getHandle() : "",
+                        committed ? "committed" : "rolled back",
+                        inserted,
+                        updated,
+                        deleted,
+                        batchManager.getElementCount(),
+                        batchManager.getBatchCount(),
+                        millis,
+                        rate));
+    }
+
+    private long total(BigInteger total) {
+        return total != null ? total.longValue() : 0;
     }
 
     private TransactionRequest fireBeforeTransaction(TransactionRequest request) {
@@ -642,10 +705,11 @@ protected static class BatchManager {
         private TransactionResponse result;
         private Map<TransactionElement, TransactionElementHandler> elementHandlers;
         private int maxDeleteCount;
+        private int maxUpdateCount;
 
         /**
          * Creates a new {@link BatchManager}, ready to {@link #run()} and process the transactions
-         * content.
+         * content. Updates are not aggregated.
          *
          * @param request The current request
          * @param multiplexer the current transaction listener
@@ -662,17 +726,45 @@ public BatchManager(
                 TransactionResponse result,
                 Map<TransactionElement, TransactionElementHandler> elementHandlers,
                 int maxDeleteCount) {
+            this(request, multiplexer, stores, result, elementHandlers, maxDeleteCount, 1);
+        }
+
+        /**
+         * Creates a new {@link BatchManager}, ready to {@link #run()} and process the transactions
+         * content.
+         *
+         * @param request The current request
+         * @param multiplexer the current transaction listener
+         * @param stores The map of stores
+         * @param result The result
+         * @param elementHandlers Mapping of {@link TransactionElement} to its corresponding {@link
+         *     TransactionElementHandler}
+         * @param maxDeleteCount Maximum number of deletes to be aggregated into and existing delete
+         * @param maxUpdateCount Maximum number of updates to be aggregated into an existing update
+         *     setting the same values on the same type
+         */
+        public BatchManager(
+                TransactionRequest request,
+                TransactionListener multiplexer,
+                Map<QName, FeatureStore> stores,
+                TransactionResponse result,
+                Map<TransactionElement, TransactionElementHandler> elementHandlers,
+                int maxDeleteCount,
+                int maxUpdateCount) {
             this.request = request;
             this.multiplexer = multiplexer;
             this.stores = stores;
             this.result = result;
             this.elementHandlers = elementHandlers;
             this.maxDeleteCount = maxDeleteCount;
+            this.maxUpdateCount = maxUpdateCount;
         }
 
         private TransactionElement aggrTargetElement;
         private TransactionElementHandler aggrTargetHandler;
         private int aggrDeleteCount = 0;
+        private int aggrUpdateCount = 0;
+        private int batchCount = 0;
 
         /**
          * Runs the aggregation of the {@link TransactionElement}s and invokes the required {@link
@@ -702,6 +794,16 @@ public void run() {
             }
         }
 
+        /** @return the number of elements in the transaction, before the aggregation */
+        public int getElementCount() {
+            return elementHandlers.size();
+        }
+
+        /** @return the number of times a handler has been invoked, after the aggregation */
+        public int getBatchCount() {
+            return batchCount;
+        }
+
         /**
          * @param pElem
          * @return true, if the current target element for aggregation can accept the given element
@@ -723,9 +825,50 @@ private boolean canAggregate(TransactionElement pElem) {
                     return true;
                 }
             }
+            if (aggrTargetElement instanceof Update && pElem instanceof Update) {
+                if (aggrUpdateCount >= maxUpdateCount - 1) {
+                    return false;
+                }
+                Update lTarget = (Update) aggrTargetElement;
+                Update lElem = (Update) pElem;
+                QName lTargetType = lTarget.getTypeName();
+                // an update without filter hits all the features, nothing to gain merging it
+                return lTargetType != null
+                        && lTargetType.equals(lElem.getTypeName())
+                        && lTarget.getFilter() != null
+                        && lElem.getFilter() != null
+                        && sameValues(lTarget.getUpdateProperties(), lElem.getUpdateProperties());
+            }
             return false;
         }
 
+        /** Checks the two updates set the same properties to the same values */
+        private boolean sameValues(List<Property> pTarget, List<Property> pElem) {
+            if (pTarget.isEmpty() || pTarget.size() != pElem.size()) {
+                return false;
+            }
+            for (int i = 0; i < pTarget.size(); i++) {
+                Property lTarget = pTarget.get(i);
+                Property lElem = pElem.get(i);
+                if (!Objects.equals(lTarget.getName(), lElem.getName())) {
+                    return false;
+                }
+                Object lTargetValue = lTarget.getValue();
+                Object lElemValue = lElem.getValue();
+                if (!Objects.equals(lTargetValue, lElemValue)) {
+                    return false;
+                }
+                // geometry equality does not consider the CRS, which is in the user data
+                if (lTargetValue instanceof Geometry
+                        && !Objects.equals(
+                                ((Geometry) lTargetValue).getUserData(),
+                                ((Geometry) lElemValue).getUserData())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         /**
          * Aggregates the given element into the current aggregation target.
          *
@@ -744,6 +887,20 @@ private void aggregate(TransactionElement pElem) {
                 lTarget.addFilter(lElem.getFilter());
                 aggrDeleteCount++;
                 lRemoveFromRequest = true;
+            } else if (aggrTargetElement instanceof Update) {
+                Filter lTarget = aggrTargetElement.getFilter();
+                Filter lElem = pElem.getFilter();
+                List<Filter> lFilters = new ArrayList<>();
+                if (lTarget instanceof Or && aggrUpdateCount > 0) {
+                    // the result of a previous aggregation, flatten
+                    lFilters.addAll(((Or) lTarget).getChildren());
+                } else {
+                    lFilters.add(lTarget);
+                }
+                lFilters.add(lElem);
+                aggrTargetElement.setFilter(CommonFactoryFinder.getFilterFactory2().or(lFilters));
+                aggrUpdateCount++;
+                lRemoveFromRequest = true;
             }
             if (lRemoveFromRequest) {
                 // contents of the element have been added to target element. To avoid contents
@@ -753,10 +910,12 @@ private void aggregate(TransactionElement pElem) {
             }
         }
 
-        /** Calls the current handler with the current element, resetting the delete counter. */
+        /** Calls the current handler with the current element, resetting the counters. */
         private void runAggregated() {
             aggrTargetHandler.execute(aggrTargetElement, request, stores, result, multiplexer);
             aggrDeleteCount = 0;
+            aggrUpdateCount = 0;
+            batchCount++;
         }
     }
 }
@@ -0,0 +1,135 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.json;
+
+/**
+ * Formats doubles rounded to a given number of decimals straight into a char array, without
+ * allocating intermediate objects.
+ *
+ * <p>The output is the same as rounding with {@link RoundingUtil#round(double, int)} and then
+ * converting the result to a JSON number, that is, {@link Double#toString(double)} with the
+ * trailing zeros removed. Since the rounded value is an integer number of 10<sup>-numDecimals</sup>
+ * units, its digits can be computed with long arithmetic, as long as they fit in the 15 significant
+ * digits a double always represents exactly. The values falling outside of that range, or not being
+ * rounded at all by {@link RoundingUtil}, are reported back to the caller, which should use the
+ * standard conversion for them.
+ */
+public class DoubleFormatter {
+
+    /** Max number of chars used to format a single value */
+    public static final int MAX_LENGTH = 24;
+
+    static final int MAX_DECIMALS = 15;
+
+    static final long[] POW10 = new long[MAX_DECIMALS + 2];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    /** Max rounded value that can be formatted, 15 significant digits */
+    static final long MAX_UNITS = POW10[MAX_DECIMALS];
+
+    final int numDecimals;
+
+    final double scale;
+
+    public DoubleFormatter(int numDecimals) {
+        this.numDecimals = numDecimals;
+        this.scale = numDecimals >= 0 && numDecimals <= MAX_DECIMALS ? POW10[numDecimals] : 0;
+    }
+
+    /**
+     * Formats the value in the target array, starting at the given offset.
+     *
+     * @param value the value to be formatted
+     * @param target the target array, must have at least {@link #MAX_LENGTH} chars available after
+     *     the offset
+     * @param offset the position of the first char to be written
+     * @return the position past the last char written, or -1 if the value cannot be formatted and
+     *     the standard conversion should be used instead
+     */
+    public int format(double value, char[] target, int offset) {
+        if (scale == 0 || !Double.isFinite(value)) {
+            return -1;
+        }
+        // same as RoundingUtil, which does not round at all in this case
+        if (Math.ulp(value) * scale > 1d) {
+            return -1;
+        }
+        double rounded = Math.floor(value * scale + 0.5);
+        if (rounded == 0) {
+            target[offset] = '0';
+            return offset + 1;
+        }
+        if (Math.abs(rounded) >= MAX_UNITS) {
+            return -1;
+        }
+
+        long units = (long) rounded;
+        int pos = offset;
+        if (units < 0) {
+            target[pos++] = '-';
+            units = -units;
+        }
+        // decimal exponent of the value, Double.toString switches to the computerized scientific
+        // notation outside of [10^-3, 10^7)
+        int exponent = digits(units) - 1 - numDecimals;
+        if (exponent >= -3 && exponent < 7) {
+            int decimals = numDecimals;
+            while (decimals > 0 && units % 10 == 0) {
+                units /= 10;
+                decimals--;
+            }
+            long integer = units / POW10[decimals];
+            pos = writeDigits(integer, digits(integer), target, pos);
+            if (decimals > 0) {
+                target[pos++] = '.';
+                pos = writeDigits(units % POW10[decimals], decimals, target, pos);
+            }
+        } else {
+            while (units % 10 == 0) {
+                units /= 10;
+            }
+            int digits = digits(units);
+            long first = units / POW10[digits - 1];
+            target[pos++] = (char) ('0' + first);
+            target[pos++] = '.';
+            if (digits > 1) {
+                pos = writeDigits(units % POW10[digits - 1], digits - 1, target, pos);
+            } else {
+                target[pos++] = '0';
+            }
+            target[pos++] = 'E';
+            if (exponent < 0) {
+                target[pos++] = '-';
+                exponent = -exponent;
+            }
+            pos = writeDigits(exponent, digits(exponent), target, pos);
+        }
+        return pos;
+    }
+
+    /** Number of decimal digits of a positive value */
+    static int digits(long value) {
+        int digits = 1;
+        while (digits < POW10.length && value >= POW10[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /** Writes the value using exactly the given number of digits, zero padded on the left */
+    private static int writeDigits(long value, int digits, char[] target, int offset) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            target[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+}
@@ -5,11 +5,13 @@
  */
 package org.geoserver.wfs.json;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 import net.sf.json.JSONException;
+import net.sf.json.JSONString;
 import net.sf.json.util.JSONBuilder;
 import org.geotools.referencing.CRS;
 import org.geotools.util.Converters;
@@ -35,8 +37,16 @@ public class GeoJSONBuilder extends JSONBuilder {
 
     private CRS.AxisOrder axisOrder = CRS.AxisOrder.EAST_NORTH;
 
+    /** An empty JSON value, used to write raw content at the current position */
+    private static final JSONString RAW_VALUE = () -> "";
+
     private int numDecimals = 6;
 
+    private DoubleFormatter formatter = new DoubleFormatter(numDecimals);
+
+    /** Buffer for a single coordinate, up to 4 ordinates with separators and brackets */
+    private final char[] coordinateBuffer = new char[4 * (DoubleFormatter.MAX_LENGTH + 1) + 1];
+
     private boolean encodeMeasures = false;
 
     public GeoJSONBuilder(Writer w) {
@@ -174,6 +184,13 @@ private JSONBuilder writeCoordinates(CoordinateSequence coordinates) throws JSON
      * @return the JSON builder instance, this allow chained calls
      */
     private JSONBuilder writeCoordinate(double x, double y, double z, double m) {
+        // if Z value is not available but we have a measure, we set Z value to zero
+        z = Double.isNaN(z) && !Double.isNaN(m) ? 0 : z;
+        if (axisOrder == CRS.AxisOrder.NORTH_EAST
+                ? writeRawCoordinate(y, x, z, m)
+                : writeRawCoordinate(x, y, z, m)) {
+            return this;
+        }
         // start encoding JSON array
         this.array();
         // adjust the order of X and Y ordinates if needed
@@ -190,8 +207,6 @@ private JSONBuilder writeCoordinate(double x, double y, double z, double m) {
                 roundedValue(y);
             }
         }
-        // if Z value is not available but we have a measure, we set Z value to zero
-        z = Double.isNaN(z) && !Double.isNaN(m) ? 0 : z;
         // encode Z value if available
         if (!Double.isNaN(z)) {
             roundedValue(z);
@@ -204,6 +219,45 @@ private JSONBuilder writeCoordinate(double x, double y, double z, double m) {
         return this.endArray();
     }
 
+    /**
+     * Formats the coordinate with the {@link DoubleFormatter} in a reusable buffer, and writes it
+     * out directly, skipping the boxing and string conversions of {@link #value(double)}. The
+     * ordinates are expected in output order, NaN values are skipped.
+     *
+     * @return false if any of the ordinates could not be formatted, and nothing was written
+     */
+    private boolean writeRawCoordinate(double first, double second, double z, double m) {
+        char[] buffer = coordinateBuffer;
+        int pos = 0;
+        buffer[pos++] = '[';
+        pos = formatter.format(first, buffer, pos);
+        if (pos > 0 && !Double.isNaN(second)) {
+            buffer[pos++] = ',';
+            pos = formatter.format(second, buffer, pos);
+        }
+        if (pos > 0 && !Double.isNaN(z)) {
+            buffer[pos++] = ',';
+            pos = formatter.format(z, buffer, pos);
+        }
+        if (pos > 0 && !Double.isNaN(m)) {
+            buffer[pos++] = ',';
+            pos = formatter.format(m, buffer, pos);
+        }
+        if (pos < 0) {
+            return false;
+        }
+        buffer[pos++] = ']';
+
+        // let the builder handle the separators and state, then write the array
+        super.value(RAW_VALUE);
+        try {
+            writer.write(buffer, 0, pos);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return true;
+    }
+
     private void roundedValue(double value) {
         super.value(RoundingUtil.round(value, numDecimals));
     }
@@ -392,6 +446,7 @@ public void setAxisOrder(CRS.AxisOrder axisOrder) {
 
     public void setNumberOfDecimals(int numberOfDecimals) {
         this.numDecimals = numberOfDecimals;
+        this.formatter = new DoubleFormatter(numberOfDecimals);
     }
 
     /**
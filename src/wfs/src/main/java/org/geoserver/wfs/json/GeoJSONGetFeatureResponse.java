@@ -103,13 +103,6 @@ protected void write(
             throws IOException {
         if (LOGGER.isLoggable(Level.INFO)) LOGGER.info("about to encode JSON");
 
-        // get feature count for request
-        BigInteger totalNumberOfFeatures = featureCollection.getTotalNumberOfFeatures();
-        BigInteger featureCount =
-                (totalNumberOfFeatures != null && totalNumberOfFeatures.longValue() < 0)
-                        ? null
-                        : totalNumberOfFeatures;
-
         try {
             OutputStreamWriter osw =
                     new OutputStreamWriter(output, gs.getGlobal().getSettings().getCharset());
@@ -119,13 +112,7 @@ protected void write(
                 outWriter.write(getCallbackFunction() + "(");
             }
 
-            // currently complex features count always return zero
             boolean isComplex = isComplexFeature(featureCollection);
-            if (featureCount != null && isComplex && featureCount.equals(BigInteger.ZERO)) {
-                // a zero count when dealing with complex features means that features count is not
-                // supported
-                featureCount = null;
-            }
 
             // encode the features and extract information about the CRS and if geometry exists
             final GeoJSONBuilder jsonWriter = getGeoJSONBuilder(featureCollection, outWriter);
@@ -140,6 +127,20 @@ protected void write(
             CoordinateReferenceSystem crs = featuresInfo.crs;
             long numberReturned = featuresInfo.featureCount;
 
+            // get feature count for request only now, as the count can be computed lazily or
+            // in background while the features are being encoded
+            BigInteger totalNumberOfFeatures = featureCollection.getTotalNumberOfFeatures();
+            BigInteger featureCount =
+                    (totalNumberOfFeatures != null && totalNumberOfFeatures.longValue() < 0)
+                            ? null
+                            : totalNumberOfFeatures;
+            // currently complex features count always return zero
+            if (featureCount != null && isComplex && featureCount.equals(BigInteger.ZERO)) {
+                // a zero count when dealing with complex features means that features count is not
+                // supported
+                featureCount = null;
+            }
+
             // write the set of collection wide informations
             writeCollectionCounts(featureCount, numberReturned, jsonWriter);
             writeCollectionTimeStamp(jsonWriter);
@@ -8,6 +8,7 @@
 import java.math.BigInteger;
 import java.util.Calendar;
 import java.util.List;
+import java.util.function.Supplier;
 import net.opengis.wfs.FeatureCollectionType;
 import net.opengis.wfs.WfsFactory;
 import net.opengis.wfs20.Wfs20Factory;
@@ -24,6 +25,8 @@ public abstract class FeatureCollectionResponse extends RequestObject {
 
     private boolean getFeatureById = false;
 
+    private Supplier<BigInteger> lazyTotalNumberOfFeatures;
+
     public static FeatureCollectionResponse adapt(Object adaptee) {
         if (adaptee instanceof FeatureCollectionType) {
             return new WFS11((EObject) adaptee);
@@ -63,6 +66,31 @@ public void setTimeStamp(Calendar timeStamp) {
 
     public abstract void setTotalNumberOfFeatures(BigInteger n);
 
+    /**
+     * Sets a total number of features computed only on the first call to {@link
+     * #getTotalNumberOfFeatures()}, or when the adaptee is accessed. Output formats writing the
+     * total after the features thus let it be computed while they are encoding them.
+     */
+    public void setLazyTotalNumberOfFeatures(Supplier<BigInteger> total) {
+        this.lazyTotalNumberOfFeatures = total;
+    }
+
+    /** Computes and sets the lazy total number of features, if any */
+    protected void resolveTotalNumberOfFeatures() {
+        Supplier<BigInteger> total = lazyTotalNumberOfFeatures;
+        if (total != null) {
+            lazyTotalNumberOfFeatures = null;
+            setTotalNumberOfFeatures(total.get());
+        }
+    }
+
+    @Override
+    public EObject getAdaptee() {
+        // encoders working off the EMF object need the actual total
+        resolveTotalNumberOfFeatures();
+        return super.getAdaptee();
+    }
+
     public abstract void setPrevious(String previous);
 
     public abstract String getPrevious();
@@ -115,6 +143,7 @@ public void setNumberOfFeatures(BigInteger n) {
 
         @Override
         public BigInteger getTotalNumberOfFeatures() {
+            resolveTotalNumberOfFeatures();
             return totalNumberOfFeatures;
         }
 
@@ -200,6 +229,7 @@ public void setNumberOfFeatures(BigInteger n) {
 
         @Override
         public BigInteger getTotalNumberOfFeatures() {
+            resolveTotalNumberOfFeatures();
             BigInteger result = eGet(adaptee, "numberMatched", BigInteger.class);
             if (result != null && result.signum() < 0) return null;
             return result;
@@ -244,6 +274,7 @@ public void setFeatures(List<FeatureCollection> features) {
         @Override
         @SuppressWarnings("unchecked") // EMF model without generics
         public Object unadapt(Class<?> target) {
+            resolveTotalNumberOfFeatures();
             if (target.equals(net.opengis.wfs20.FeatureCollectionType.class)) {
                 return adaptee;
             } else if (target.equals(FeatureCollectionType.class)) {
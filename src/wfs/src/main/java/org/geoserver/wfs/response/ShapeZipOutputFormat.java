@@ -23,14 +23,25 @@
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.SimpleTimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.namespace.QName;
@@ -52,6 +63,7 @@
 import org.geoserver.platform.resource.Resource.Type;
 import org.geoserver.template.GeoServerTemplateLoader;
 import org.geoserver.template.TemplateUtils;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.util.IOUtils;
 import org.geoserver.wfs.WFSException;
 import org.geoserver.wfs.WFSGetFeatureOutputFormat;
@@ -70,6 +82,7 @@
 import org.geotools.wfs.v1_1.WFSConfiguration;
 import org.geotools.xsd.Encoder;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.Name;
 import org.opengis.referencing.FactoryException;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -78,6 +91,11 @@
 /**
  * This class returns a shapefile encoded results of the users's query.
  *
+ * <p>The shapefiles are streamed into the zip as soon as they are complete. A failure happening
+ * after the first one has been sent cannot be reported as a service exception anymore, the HTTP
+ * status being already 200: the zip is then left truncated, without its central directory, so that
+ * clients fail to open it instead of getting a partial result looking complete.
+ *
  * <p>Based on ShapeFeatureResponseDelegate.java from geoserver 1.5.x
  *
  * @author originally authored by Chris Holmes, The Open Planning Project, cholmes@openplans.org
@@ -97,6 +115,15 @@ public class ShapeZipOutputFormat extends WFSGetFeatureOutputFormat
     private long maxShpSize = Long.getLong("GS_SHP_MAX_SIZE", Integer.MAX_VALUE);
     private long maxDbfSize = Long.getLong("GS_DBF_MAX_SIZE", Integer.MAX_VALUE);
 
+    /** Size of the pool dumping the shapefiles in parallel, shared by all requests */
+    static final int POOL_SIZE =
+            Integer.getInteger(
+                    "GS_SHP_PARALLELISM", Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static ThreadPoolExecutor executor;
+
+    private int parallelism = POOL_SIZE;
+
     public ShapeZipOutputFormat(
             GeoServer gs, Catalog catalog, GeoServerResourceLoader resourceLoader) {
         super(gs, "SHAPE-ZIP");
@@ -184,11 +211,85 @@ public void write(
             final GetFeatureRequest request)
             throws IOException, ServiceException {
         // We might get multiple featurecollections in our response (multiple queries?) so we need
-        // to
-        // write out multiple shapefile sets, one for each query response.
+        // to write out multiple shapefile sets, one for each query response. Each set is dumped
+        // in its own sub-directory, and moved into the zip as soon as each shapefile is complete
         final File tempDir = IOUtils.createTempDirectory("shpziptemp");
+        ZipOutputStream zipOut = new ZipOutputStream(output);
+        ShapefileZipper zipper = new ShapefileZipper(zipOut);
+        boolean completed = false;
+        try {
+            // if an empty result out of feature type with unknown geometry is created, the
+            // zip file will be empty and the zip output stream will break
+            boolean shapefileCreated = false;
+            boolean distinct = hasDistinctSchemas(collections);
+            if (parallelism > 1 && collections.size() > 1 && distinct) {
+                shapefileCreated = dumpParallel(collections, tempDir, charset, request, zipper);
+            } else if (distinct) {
+                for (int i = 0; i < collections.size(); i++) {
+                    File dir = new File(tempDir, String.valueOf(i));
+                    shapefileCreated |= dump(collections.get(i), dir, charset, request, zipper);
+                }
+            } else {
+                // the same type more than once, the shapefiles of the later collections replace
+                // the earlier ones having the same name, so they are zipped only at the end
+                File dir = new File(tempDir, "shared");
+                for (SimpleFeatureCollection collection : collections) {
+                    shapefileCreated |= dump(collection, dir, charset, request, null);
+                }
+                zipper.addAll(dir);
+            }
+
+            // take care of the case the output is completely empty
+            if (!shapefileCreated) {
+                createEmptyZipWarning(tempDir);
+            }
+
+            // dump the request
+            if (this.gs.getService(WFSInfo.class).getIncludeWFSRequestDumpFile()) {
+                createRequestDump(tempDir, request, collections.get(0));
+            }
+            // zip the remaining files
+            zipper.addAll(tempDir);
+            zipOut.finish();
+            completed = true;
+
+            // This is an error, because this closes the output stream too... it's
+            // not the right place to do so
+            // zipOut.close();
+        } finally {
+            if (!completed) {
+                // don't let the dumps still running append entries, nor finish the zip
+                zipper.abort();
+            }
+            // make sure we remove the temp directory and its contents completely now
+            try {
+                FileUtils.deleteDirectory(tempDir);
+            } catch (IOException e) {
+                LOGGER.warning(
+                        "Could not delete temp directory: "
+                                + tempDir.getAbsolutePath()
+                                + " due to: "
+                                + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Dumps a single collection in the given directory, moving each shapefile into the zip as soon
+     * as the dumper is done with it, unless the zipper is null
+     */
+    private boolean dump(
+            SimpleFeatureCollection collection,
+            final File dir,
+            Charset charset,
+            final GetFeatureRequest request,
+            final ShapefileZipper zipper)
+            throws IOException {
+        if (!dir.isDirectory() && !dir.mkdir()) {
+            throw new IOException("Could not create temp directory " + dir.getAbsolutePath());
+        }
         ShapefileDumper dumper =
-                new ShapefileDumper(tempDir) {
+                new ShapefileDumper(dir) {
 
                     @Override
                     protected String getShapeName(SimpleFeatureType schema, String geometryType) {
@@ -203,64 +304,132 @@ protected void shapefileDumped(
                             String fileName, SimpleFeatureType remappedSchema) throws IOException {
                         try {
                             changeWKTFormatIfFileFormatIsESRI(
-                                    tempDir, request, fileName, remappedSchema);
+                                    dir, request, fileName, remappedSchema);
                         } catch (FactoryException e) {
                             throw new IOException("Failed to write out the ESRI style prj file", e);
                         }
+                        if (zipper != null) {
+                            zipper.addShapefile(dir, fileName);
+                        }
                     }
                 };
         dumper.setMaxDbfSize(maxDbfSize);
         dumper.setMaxShpSize(maxShpSize);
         dumper.setCharset(charset);
 
-        // target charset
+        boolean shapefileCreated = dumper.dump(collection);
+        if (zipper != null) {
+            // pick up whatever was not reported to shapefileDumped, and free the space right away
+            zipper.addAll(dir);
+            FileUtils.deleteDirectory(dir);
+        }
+        return shapefileCreated;
+    }
 
+    /**
+     * Dumps the collections on the pool shared by all requests. The calling thread dumps itself the
+     * collections no pool thread picked up yet, so a busy pool never makes a request slower than
+     * dumping them one after the other.
+     */
+    private boolean dumpParallel(
+            List<SimpleFeatureCollection> collections,
+            File tempDir,
+            Charset charset,
+            GetFeatureRequest request,
+            ShapefileZipper zipper)
+            throws IOException {
+        Thread caller = Thread.currentThread();
+        ThreadLocalsTransfer transfer = new ThreadLocalsTransfer();
+        List<FutureTask<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < collections.size(); i++) {
+            File dir = new File(tempDir, String.valueOf(i));
+            SimpleFeatureCollection collection = collections.get(i);
+            tasks.add(
+                    new FutureTask<>(
+                            () -> {
+                                if (Thread.currentThread() == caller) {
+                                    return dump(collection, dir, charset, request, zipper);
+                                }
+                                transfer.apply();
+                                try {
+                                    return dump(collection, dir, charset, request, zipper);
+                                } finally {
+                                    transfer.cleanup();
+                                }
+                            }));
+        }
+        // the first one is going to be dumped by the caller anyways
+        ThreadPoolExecutor executor = getExecutor();
+        for (int i = 1; i < tasks.size(); i++) {
+            executor.execute(tasks.get(i));
+        }
+
+        boolean shapefileCreated = false;
         try {
-            // if an empty result out of feature type with unknown geometry is created, the
-            // zip file will be empty and the zip output stream will break
-            boolean shapefileCreated = false;
-            for (SimpleFeatureCollection collection : collections) {
-                shapefileCreated |= dumper.dump(collection);
+            for (FutureTask<Boolean> task : tasks) {
+                // no-op if a pool thread already started it
+                task.run();
+                shapefileCreated |= getDumpResult(task);
             }
-
-            // take care of the case the output is completely empty
-            if (!shapefileCreated) {
-                createEmptyZipWarning(tempDir);
+        } finally {
+            // on failure, avoid dumping the collections that have not started yet
+            for (FutureTask<Boolean> task : tasks) {
+                task.cancel(true);
             }
+        }
+        return shapefileCreated;
+    }
 
-            // dump the request
-            if (this.gs.getService(WFSInfo.class).getIncludeWFSRequestDumpFile()) {
-                createRequestDump(tempDir, request, collections.get(0));
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            executor =
+                    new ThreadPoolExecutor(
+                            POOL_SIZE,
+                            POOL_SIZE,
+                            60L,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            r -> {
+                                Thread thread =
+                                        new Thread(
+                                                r, "ShapeZipDumper-" + counter.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Parallel dumps are performed only if the collections have different schemas, as otherwise
+     * they would compete for the same file names in the zip, and the winner would be random
+     */
+    private boolean hasDistinctSchemas(List<SimpleFeatureCollection> collections) {
+        Set<Name> names = new HashSet<>();
+        for (SimpleFeatureCollection collection : collections) {
+            if (!names.add(collection.getSchema().getName())) {
+                return false;
             }
-            // zip all the files produced
-            final FilenameFilter filter =
-                    (dir, name) -> {
-                        name = name.toLowerCase();
-                        return name.endsWith(".shp")
-                                || name.endsWith(".shx")
-                                || name.endsWith(".dbf")
-                                || name.endsWith(".prj")
-                                || name.endsWith(".cst")
-                                || name.endsWith(".txt");
-                    };
-            ZipOutputStream zipOut = new ZipOutputStream(output);
-            IOUtils.zipDirectory(tempDir, zipOut, filter);
-            zipOut.finish();
+        }
+        return true;
+    }
 
-            // This is an error, because this closes the output stream too... it's
-            // not the right place to do so
-            // zipOut.close();
-        } finally {
-            // make sure we remove the temp directory and its contents completely now
-            try {
-                FileUtils.deleteDirectory(tempDir);
-            } catch (IOException e) {
-                LOGGER.warning(
-                        "Could not delete temp directory: "
-                                + tempDir.getAbsolutePath()
-                                + " due to: "
-                                + e.getMessage());
+    private boolean getDumpResult(Future<Boolean> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while dumping the shapefiles", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            throw new IOException("Failed to dump the shapefiles", cause);
         }
     }
 
@@ -459,6 +628,117 @@ public void setMaxDbfSize(long maxDbfSize) {
         this.maxDbfSize = maxDbfSize;
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Enables dumping the collections of a request in parallel when greater than 1 (the default,
+     * unless there is a single processor). The number of threads, shared by all requests, is set by
+     * the {@code GS_SHP_PARALLELISM} system variable, defaults to the number of processors, up to
+     * 4.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Moves the shapefiles into the zip as soon as they are complete, so that the output starts
+     * flowing before all the collections have been dumped, and the temporary disk space is bounded
+     * by the shapefiles being written at any given time. Shared among the parallel dumps.
+     */
+    static class ShapefileZipper {
+
+        static final String[] EXTENSIONS = {".shp", ".shx", ".dbf", ".prj", ".cst"};
+
+        static final FilenameFilter FILTER =
+                (dir, name) -> {
+                    name = name.toLowerCase();
+                    return name.endsWith(".shp")
+                            || name.endsWith(".shx")
+                            || name.endsWith(".dbf")
+                            || name.endsWith(".prj")
+                            || name.endsWith(".cst")
+                            || name.endsWith(".txt");
+                };
+
+        private final ZipOutputStream zipOut;
+
+        private final Set<String> entries = new HashSet<>();
+
+        private boolean aborted;
+
+        ShapefileZipper(ZipOutputStream zipOut) {
+            this.zipOut = zipOut;
+        }
+
+        /** Adds the files of the given shapefile to the zip, and removes them from the disk */
+        synchronized void addShapefile(File dir, String fileName) throws IOException {
+            checkAborted();
+            for (String extension : EXTENSIONS) {
+                File file = new File(dir, fileName + extension);
+                if (file.exists()) {
+                    add(file);
+                }
+            }
+            zipOut.flush();
+        }
+
+        /** Adds the files in the directory to the zip, and removes them from the disk */
+        synchronized void addAll(File dir) throws IOException {
+            checkAborted();
+            File[] files = dir.listFiles(FILTER);
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    if (file.isFile()) {
+                        add(file);
+                    }
+                }
+            }
+            zipOut.flush();
+        }
+
+        /**
+         * Stops adding entries, to be called on failure. Once entries have been streamed the zip is
+         * left truncated, as the response cannot be turned into a service exception anymore
+         */
+        synchronized void abort() {
+            aborted = true;
+            if (!entries.isEmpty()) {
+                LOGGER.warning(
+                        "Shapefile output failed after streaming "
+                                + entries.size()
+                                + " zip entries, the zip sent to the client is truncated");
+            }
+        }
+
+        private void checkAborted() throws IOException {
+            if (aborted) {
+                throw new IOException("The shapefile output has been aborted");
+            }
+        }
+
+        /**
+         * Adds a file to the zip. Entries are streamed right away, so a name clash between distinct
+         * types, e.g. due to the file name templates, keeps the first one. The same type requested
+         * more than once is dumped in a shared directory instead, where the last one wins.
+         */
+        private void add(File file) throws IOException {
+            String name = file.getName();
+            if (entries.add(name)) {
+                zipOut.putNextEntry(new ZipEntry(name));
+                FileUtils.copyFile(file, zipOut);
+                zipOut.closeEntry();
+            } else {
+                LOGGER.warning("Skipping duplicate zip entry " + name);
+            }
+            if (!file.delete()) {
+                LOGGER.fine("Could not delete temp file " + file.getAbsolutePath());
+            }
+        }
+    }
+
     class FileNameSource {
 
         private Class<?> clazz;
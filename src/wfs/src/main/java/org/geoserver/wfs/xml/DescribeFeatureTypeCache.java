@@ -0,0 +1,283 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml;
+
+import com.google.common.cache.Cache;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.ConfigurationListenerAdapter;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerInfo;
+import org.geoserver.config.ServiceInfo;
+import org.geoserver.config.SettingsInfo;
+import org.geoserver.ows.URLMangler.URLType;
+import org.geoserver.ows.util.ResponseUtils;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.ExpiringCache;
+import org.geoserver.wfs.request.DescribeFeatureTypeRequest;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Caches the serialized DescribeFeatureType documents, so that repeated requests for the same
+ * types, including the ones issued internally to resolve the schema locations of a transaction, do
+ * not rebuild and encode the schemas each time. Building the schema is often more expensive than
+ * the data access itself for application schemas and types with many attributes.
+ *
+ * <p>Documents are cached by output format, version, feature type ids and modification dates,
+ * charset, user (as attributes can be hidden by the data security) and by the mangled schema base
+ * URL, which accounts for proxy base URLs, workspace specific services and authentication keys. Any
+ * catalog or configuration change drops all the cached documents. The structure of a feature type
+ * whose attributes are not listed in the configuration can also change in the store, without any
+ * catalog event, the documents expire after {@link #TIME_TO_LIVE} seconds in any case.
+ *
+ * <p>The cache is disabled by default, it can be enabled by setting the {@code
+ * GS_WFS_SCHEMA_CACHE_TTL} system variable to the number of seconds the documents should be kept.
+ * The {@code GS_WFS_SCHEMA_CACHE_SIZE} variable controls how many documents are kept (100 by
+ * default).
+ */
+public class DescribeFeatureTypeCache implements CatalogListener {
+
+    static final Logger LOGGER = Logging.getLogger(DescribeFeatureTypeCache.class);
+
+    /** Time to live of the documents, in seconds, 0 or less disables the cache */
+    static long TIME_TO_LIVE = Long.getLong("GS_WFS_SCHEMA_CACHE_TTL", 0);
+
+    static int MAX_ENTRIES = Integer.getInteger("GS_WFS_SCHEMA_CACHE_SIZE", 100);
+
+    private final ExpiringCache<Key, Entry> cache =
+            new ExpiringCache<>(() -> TIME_TO_LIVE, () -> MAX_ENTRIES);
+
+    /** Incremented at each catalog or configuration change */
+    private final AtomicLong generation = new AtomicLong();
+
+    public DescribeFeatureTypeCache(GeoServer geoServer) {
+        geoServer.getCatalog().addListener(this);
+        geoServer.addListener(
+                new ConfigurationListenerAdapter() {
+                    @Override
+                    public void handlePostGlobalChange(GeoServerInfo global) {
+                        clear();
+                    }
+
+                    @Override
+                    public void handleSettingsPostModified(SettingsInfo settings) {
+                        clear();
+                    }
+
+                    @Override
+                    public void handleSettingsAdded(SettingsInfo settings) {
+                        clear();
+                    }
+
+                    @Override
+                    public void handleSettingsRemoved(SettingsInfo settings) {
+                        clear();
+                    }
+
+                    @Override
+                    public void handlePostServiceChange(ServiceInfo service) {
+                        clear();
+                    }
+
+                    @Override
+                    public void handleServiceRemove(ServiceInfo service) {
+                        clear();
+                    }
+
+                    @Override
+                    public void reloaded() {
+                        clear();
+                    }
+                });
+    }
+
+    /** Returns the cache registered in the application context, if any */
+    public static DescribeFeatureTypeCache get() {
+        return GeoServerExtensions.bean(DescribeFeatureTypeCache.class);
+    }
+
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    /**
+     * Writes the cached document for the given types, or runs the encoder and caches its result.
+     * When the document cannot be cached the encoder writes straight to the output, without
+     * buffering.
+     *
+     * @param format identifies the output format and schema builder producing the document
+     * @param featureTypes the types described by the document
+     * @param request the DescribeFeatureType request
+     * @param charset the charset the document is encoded with
+     * @param output the stream the document is written to
+     * @param encoder builds and serializes the schema
+     */
+    public void writeSchema(
+            String format,
+            FeatureTypeInfo[] featureTypes,
+            DescribeFeatureTypeRequest request,
+            String charset,
+            OutputStream output,
+            SchemaEncoder encoder)
+            throws IOException {
+        Key key = isEnabled() ? getKey(format, featureTypes, request, charset) : null;
+        if (key == null) {
+            encoder.encode(output);
+            return;
+        }
+
+        Cache<Key, Entry> cache = this.cache.get();
+        long current = generation.get();
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null || entry.generation != current) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            encoder.encode(bout);
+            entry = new Entry(bout.toByteArray(), current);
+            // don't cache documents that might have been built while the configuration was
+            // changing
+            if (current == generation.get()) {
+                cache.put(key, entry);
+            }
+        }
+        output.write(entry.document);
+    }
+
+    /** Drops all the cached documents */
+    public void clear() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    Cache<Key, Entry> getCache() {
+        return cache.get();
+    }
+
+    /** Builds the cache key, or returns null if the document cannot be cached */
+    Key getKey(
+            String format,
+            FeatureTypeInfo[] featureTypes,
+            DescribeFeatureTypeRequest request,
+            String charset) {
+        List<String> layers = new ArrayList<>();
+        for (FeatureTypeInfo info : featureTypes) {
+            if (info == null || info.getId() == null) {
+                return null;
+            }
+            Date modified = info.getDateModified();
+            layers.add(info.getId() + "@" + (modified != null ? modified.getTime() : ""));
+        }
+        String baseURL = request.getBaseURL();
+        String location = null;
+        if (baseURL != null) {
+            try {
+                location =
+                        ResponseUtils.buildURL(baseURL, "wfs", new HashMap<>(), URLType.RESOURCE);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Could not build the schema location, not caching", e);
+                return null;
+            }
+        }
+        return new Key(
+                format, request.getVersion(), layers, location, charset, ExpiringCache.getUser());
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) {
+        clear();
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        clear();
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        clear();
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        clear();
+    }
+
+    @Override
+    public void reloaded() {
+        clear();
+    }
+
+    /** Builds and serializes a schema */
+    @FunctionalInterface
+    public interface SchemaEncoder {
+        void encode(OutputStream output) throws IOException;
+    }
+
+    static class Key {
+        final String format;
+        final String version;
+        final List<String> layers;
+        final String location;
+        final String charset;
+        final String user;
+
+        Key(
+                String format,
+                String version,
+                List<String> layers,
+                String location,
+                String charset,
+                String user) {
+            this.format = format;
+            this.version = version;
+            this.layers = layers;
+            this.location = location;
+            this.charset = charset;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(format, key.format)
+                    && Objects.equals(version, key.version)
+                    && Objects.equals(layers, key.layers)
+                    && Objects.equals(location, key.location)
+                    && Objects.equals(charset, key.charset)
+                    && Objects.equals(user, key.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(format, version, layers, location, charset, user);
+        }
+    }
+
+    static class Entry {
+        final byte[] document;
+        final long generation;
+
+        Entry(byte[] document, long generation) {
+            this.document = document;
+            this.generation = generation;
+        }
+    }
+}
@@ -7,6 +7,7 @@
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -14,12 +15,16 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.dom.DOMSource;
 import net.opengis.wfs20.FeatureCollectionType;
 import org.eclipse.emf.ecore.EObject;
+import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.config.GeoServer;
+import org.geoserver.ows.Dispatcher;
+import org.geoserver.ows.Request;
 import org.geoserver.ows.util.ResponseUtils;
 import org.geoserver.platform.Operation;
 import org.geoserver.wfs.WFSException;
@@ -28,7 +33,10 @@
 import org.geoserver.wfs.request.GetFeatureRequest;
 import org.geoserver.wfs.xml.v1_1_0.WFSConfiguration;
 import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.FeatureCollection;
+import org.geotools.gml.producer.CoordinateFormatter;
+import org.geotools.gml2.SrsSyntax;
 import org.geotools.gml3.v3_2.GML;
 import org.geotools.gml3.v3_2.GMLConfiguration;
 import org.geotools.wfs.v2_0.WFS;
@@ -51,6 +59,13 @@ public class GML32OutputFormat extends GML3OutputFormat {
         FORMATS.addAll(Arrays.asList(MIME_TYPES));
     }
 
+    /**
+     * Enables the streaming encoder for plain simple feature collections, see {@link
+     * GML32SimpleFeatureEncoder}
+     */
+    static boolean SIMPLE_FEATURE_ENCODING =
+            Boolean.parseBoolean(System.getProperty("GML32_SIMPLE_FEATURE_ENCODING", "false"));
+
     GeoServer geoServer;
 
     protected static DOMSource xslt;
@@ -125,11 +140,107 @@ protected Encoder createEncoder(
     protected void setAdditionalSchemaLocations(
             Encoder encoder, GetFeatureRequest request, WFSInfo wfs) {
         // since wfs 2.0 schema does not depend on gml 3.2 schema we register it manually
-        String loc =
-                wfs.isCanonicalSchemaLocation()
-                        ? GML.CANONICAL_SCHEMA_LOCATION
-                        : ResponseUtils.buildSchemaURL(request.getBaseUrl(), "gml/3.2.1/gml.xsd");
-        encoder.setSchemaLocation(GML.NAMESPACE, loc);
+        encoder.setSchemaLocation(GML.NAMESPACE, getGmlSchemaLocation(request, wfs));
+    }
+
+    private String getGmlSchemaLocation(GetFeatureRequest request, WFSInfo wfs) {
+        return wfs.isCanonicalSchemaLocation()
+                ? GML.CANONICAL_SCHEMA_LOCATION
+                : ResponseUtils.buildSchemaURL(request.getBaseUrl(), "gml/3.2.1/gml.xsd");
+    }
+
+    @Override
+    protected boolean encodeSimpleFeatures(
+            FeatureCollectionResponse results,
+            OutputStream output,
+            GetFeatureRequest request,
+            Map<String, Set<ResourceInfo>> resources)
+            throws IOException {
+        if (!SIMPLE_FEATURE_ENCODING || !canEncodeSimpleFeatures(results, request, resources)) {
+            return false;
+        }
+
+        WFSInfo wfs = getInfo();
+        List featureCollections = results.getFeature();
+        CoordinateFormatter formatter =
+                new CoordinateFormatter(getNumDecimals(featureCollections, geoServer, catalog));
+        formatter.setPadWithZeros(getPadWithZeros(featureCollections, geoServer, catalog));
+        formatter.setForcedDecimal(getForcedDecimal(featureCollections, geoServer, catalog));
+        SrsSyntax srsSyntax =
+                wfs.getGML().get(WFSInfo.Version.V_20).getSrsNameStyle().toSrsSyntax();
+        Charset charset = Charset.forName(geoServer.getSettings().getCharset());
+
+        GML32SimpleFeatureEncoder encoder =
+                new GML32SimpleFeatureEncoder(catalog, srsSyntax, formatter, charset);
+        encoder.setFeatureBounding(wfs.isFeatureBounding());
+        // cite compliance forces us to forgo srsDimension attribute
+        encoder.setEncodeSrsDimension(!wfs.isCiteCompliant());
+        if (wfs.isCanonicalSchemaLocation()) {
+            encoder.setSchemaLocation(getWfsNamespace(), getCanonicalWfsSchemaLocation());
+        } else {
+            encoder.setSchemaLocation(
+                    getWfsNamespace(),
+                    ResponseUtils.buildSchemaURL(
+                            request.getBaseURL(), getRelativeWfsSchemaLocation()));
+        }
+        for (Map.Entry<String, Set<ResourceInfo>> entry : resources.entrySet()) {
+            String typeNames =
+                    entry.getValue().stream()
+                            .map(r -> r.prefixedName())
+                            .collect(Collectors.joining(","));
+            encoder.setSchemaLocation(
+                    entry.getKey(), getDescribeFeatureTypeURL(request, typeNames));
+        }
+        encoder.setSchemaLocation(GML.NAMESPACE, getGmlSchemaLocation(request, wfs));
+        encoder.encode(results, output);
+        return true;
+    }
+
+    /**
+     * Checks if the response is a plain collection of simple features, the others (feature by id,
+     * joins, multiple queries, locks, curves, measures, user provided schemas) are left to the
+     * {@link Encoder}, as well as the verbose and SOAP outputs
+     */
+    private boolean canEncodeSimpleFeatures(
+            FeatureCollectionResponse results,
+            GetFeatureRequest request,
+            Map<String, Set<ResourceInfo>> resources)
+            throws IOException {
+        if (request == null
+                || results.isGetFeatureById()
+                || results.getLockId() != null
+                || results.getFeatures().size() != 1
+                || request.getQueries().size() != 1
+                || request.getQueries().get(0).getTypeNames().size() != 1) {
+            return false;
+        }
+        WFSInfo wfs = getInfo();
+        if (wfs.isVerbose() || geoServer.getSettings().isVerbose()) {
+            return false;
+        }
+        Request dispatcherRequest = Dispatcher.REQUEST.get();
+        if (dispatcherRequest != null && dispatcherRequest.isSOAP()) {
+            return false;
+        }
+        FeatureCollection fc = results.getFeatures().get(0);
+        if (!(fc instanceof SimpleFeatureCollection)
+                || !GML32SimpleFeatureEncoder.canEncode(((SimpleFeatureCollection) fc).getSchema())
+                || encodeMeasures(results.getFeature(), catalog)) {
+            return false;
+        }
+        for (Set<ResourceInfo> infos : resources.values()) {
+            for (ResourceInfo ri : infos) {
+                if (!(ri instanceof FeatureTypeInfo)) {
+                    return false;
+                }
+                FeatureTypeInfo fti = (FeatureTypeInfo) ri;
+                if (fti.isCircularArcPresent()
+                        || fti.getFeatureType().getUserData().get("schemaURI") != null) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     @Override
@@ -0,0 +1,528 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.wfs.request.FeatureCollectionResponse;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.geometry.jts.CurvedGeometry;
+import org.geotools.gml.producer.CoordinateFormatter;
+import org.geotools.gml2.SrsSyntax;
+import org.geotools.gml3.v3_2.GML;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.geotools.wfs.v2_0.WFS;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.geometry.BoundingBox;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Streams a WFS 2.0 GetFeature response made of a single collection of simple features straight to
+ * a {@link XMLStreamWriter}, without going through the XSD bindings of the GeoTools {@link
+ * org.geotools.xsd.Encoder}.
+ *
+ * <p>Element names, prefixes and geometry columns are resolved once for the feature type, the
+ * srsName once for each distinct CRS, and the ordinates are formatted from the {@link
+ * CoordinateSequence} into a reused buffer, so that the per feature work is limited to the actual
+ * values. Use {@link #canEncode(SimpleFeatureType)} to check whether a feature type is supported,
+ * complex features and curved geometries are left to the standard encoder.
+ */
+public class GML32SimpleFeatureEncoder {
+
+    static final Logger LOGGER = Logging.getLogger(GML32SimpleFeatureEncoder.class);
+
+    static final String GML_PREFIX = "gml";
+
+    static final String WFS_PREFIX = "wfs";
+
+    static final String XSI_PREFIX = "xsi";
+
+    /**
+     * Attributes that are not part of the application schema, see {@link FeatureTypeSchemaBuilder}
+     */
+    static final Set<String> GML_PROPERTIES =
+            new HashSet<>(
+                    Arrays.asList(
+                            "name",
+                            "description",
+                            "descriptionReference",
+                            "identifier",
+                            "boundedBy"));
+
+    static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    final Catalog catalog;
+
+    final SrsSyntax srsSyntax;
+
+    final CoordinateFormatter formatter;
+
+    final Charset charset;
+
+    boolean featureBounding = true;
+
+    boolean encodeSrsDimension = true;
+
+    Map<String, String> schemaLocations = new LinkedHashMap<>();
+
+    Map<CoordinateReferenceSystem, String> srsNames = new IdentityHashMap<>();
+
+    StringBuffer buffer = new StringBuffer();
+
+    char[] chars = new char[256];
+
+    XMLStreamWriter writer;
+
+    public GML32SimpleFeatureEncoder(
+            Catalog catalog, SrsSyntax srsSyntax, CoordinateFormatter formatter, Charset charset) {
+        this.catalog = catalog;
+        this.srsSyntax = srsSyntax;
+        this.formatter = formatter;
+        this.charset = charset;
+    }
+
+    /** Returns true if the features of the given type can be encoded by this class */
+    public static boolean canEncode(SimpleFeatureType schema) {
+        if (schema == null || schema.getName().getNamespaceURI() == null) {
+            return false;
+        }
+        for (AttributeDescriptor ad : schema.getAttributeDescriptors()) {
+            Class<?> binding = ad.getType().getBinding();
+            if (GML_PROPERTIES.contains(ad.getLocalName())) {
+                // mapped to the gml:AbstractFeature properties by the standard encoder
+                return false;
+            } else if (ad instanceof GeometryDescriptor) {
+                if (CurvedGeometry.class.isAssignableFrom(binding)) {
+                    return false;
+                }
+            } else if (!Number.class.isAssignableFrom(binding)
+                    && !CharSequence.class.isAssignableFrom(binding)
+                    && !Boolean.class.equals(binding)
+                    && !Character.class.equals(binding)
+                    && !Date.class.isAssignableFrom(binding)
+                    && !UUID.class.equals(binding)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Enables the encoding of the collection and feature bounds (true by default) */
+    public void setFeatureBounding(boolean featureBounding) {
+        this.featureBounding = featureBounding;
+    }
+
+    /** Enables the srsDimension attribute on envelopes and geometries (true by default) */
+    public void setEncodeSrsDimension(boolean encodeSrsDimension) {
+        this.encodeSrsDimension = encodeSrsDimension;
+    }
+
+    /** Adds a location to the xsi:schemaLocation attribute of the root element */
+    public void setSchemaLocation(String namespaceURI, String location) {
+        schemaLocations.put(namespaceURI, location);
+    }
+
+    /** Encodes the response, which is expected to contain a single simple feature collection */
+    public void encode(FeatureCollectionResponse results, OutputStream output) throws IOException {
+        SimpleFeatureCollection features = (SimpleFeatureCollection) results.getFeatures().get(0);
+        FeatureTypeEncoding type = new FeatureTypeEncoding(features.getSchema());
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(output, charset));
+        try {
+            writer = OUTPUT_FACTORY.createXMLStreamWriter(out);
+            writer.writeStartDocument(charset.name(), "1.0");
+            writeRoot(results, type);
+            if (featureBounding) {
+                writeEnvelope(WFS_PREFIX, WFS.NAMESPACE, features.getBounds());
+            }
+            try (SimpleFeatureIterator it = features.features()) {
+                while (it.hasNext()) {
+                    writer.writeStartElement(WFS_PREFIX, "member", WFS.NAMESPACE);
+                    writeFeature(it.next(), type);
+                    writer.writeEndElement();
+                }
+            }
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            out.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to encode the GML 3.2 response", e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (XMLStreamException e) {
+                    LOGGER.log(Level.FINE, "Failed to close the XML writer", e);
+                }
+            }
+        }
+    }
+
+    void writeRoot(FeatureCollectionResponse results, FeatureTypeEncoding type)
+            throws XMLStreamException {
+        writer.writeStartElement(WFS_PREFIX, "FeatureCollection", WFS.NAMESPACE);
+        writer.writeNamespace(XSI_PREFIX, XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+        writer.writeNamespace(WFS_PREFIX, WFS.NAMESPACE);
+        writer.writeNamespace(GML_PREFIX, GML.NAMESPACE);
+        if (!GML.NAMESPACE.equals(type.namespaceURI) && !WFS.NAMESPACE.equals(type.namespaceURI)) {
+            writer.writeNamespace(type.prefix, type.namespaceURI);
+        }
+
+        BigInteger matched = results.getTotalNumberOfFeatures();
+        BigInteger returned = results.getNumberOfFeatures();
+        writer.writeAttribute("numberMatched", matched != null ? matched.toString() : "unknown");
+        writer.writeAttribute("numberReturned", returned != null ? returned.toString() : "0");
+        Calendar timeStamp = results.getTimeStamp();
+        if (timeStamp != null) {
+            writer.writeAttribute("timeStamp", formatDateTime(timeStamp));
+        }
+        if (results.getNext() != null) {
+            writer.writeAttribute("next", results.getNext());
+        }
+        if (results.getPrevious() != null) {
+            writer.writeAttribute("previous", results.getPrevious());
+        }
+        if (!schemaLocations.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> entry : schemaLocations.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(entry.getKey()).append(' ').append(entry.getValue());
+            }
+            writer.writeAttribute(
+                    XSI_PREFIX,
+                    XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI,
+                    "schemaLocation",
+                    sb.toString());
+        }
+    }
+
+    void writeFeature(SimpleFeature feature, FeatureTypeEncoding type) throws XMLStreamException {
+        String id = feature.getID();
+        writer.writeStartElement(type.prefix, type.typeName, type.namespaceURI);
+        writer.writeAttribute(GML_PREFIX, GML.NAMESPACE, "id", id);
+        if (featureBounding) {
+            writeEnvelope(GML_PREFIX, GML.NAMESPACE, feature.getBounds());
+        }
+        for (int i = 0; i < type.names.length; i++) {
+            Object value = feature.getAttribute(i);
+            if (value == null) {
+                continue;
+            }
+            if (type.geometries[i]) {
+                Geometry geometry = (Geometry) value;
+                if (geometry.isEmpty()) {
+                    continue;
+                }
+                writer.writeStartElement(type.prefix, type.names[i], type.namespaceURI);
+                writeGeometry(geometry, type.crs[i], id + "." + type.names[i]);
+                writer.writeEndElement();
+            } else {
+                writer.writeStartElement(type.prefix, type.names[i], type.namespaceURI);
+                writer.writeCharacters(formatValue(value));
+                writer.writeEndElement();
+            }
+        }
+        writer.writeEndElement();
+    }
+
+    void writeEnvelope(String prefix, String namespaceURI, BoundingBox bounds)
+            throws XMLStreamException {
+        if (bounds == null || bounds.isEmpty()) {
+            return;
+        }
+        writer.writeStartElement(prefix, "boundedBy", namespaceURI);
+        writer.writeStartElement(GML_PREFIX, "Envelope", GML.NAMESPACE);
+        String srsName = getSrsName(bounds.getCoordinateReferenceSystem());
+        if (srsName != null) {
+            writer.writeAttribute("srsName", srsName);
+        }
+        int dimension = bounds.getDimension();
+        if (encodeSrsDimension) {
+            writer.writeAttribute("srsDimension", String.valueOf(dimension));
+        }
+        writer.writeStartElement(GML_PREFIX, "lowerCorner", GML.NAMESPACE);
+        buffer.setLength(0);
+        for (int i = 0; i < dimension; i++) {
+            appendOrdinate(bounds.getMinimum(i));
+        }
+        flushBuffer();
+        writer.writeEndElement();
+        writer.writeStartElement(GML_PREFIX, "upperCorner", GML.NAMESPACE);
+        buffer.setLength(0);
+        for (int i = 0; i < dimension; i++) {
+            appendOrdinate(bounds.getMaximum(i));
+        }
+        flushBuffer();
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    void writeGeometry(Geometry geometry, CoordinateReferenceSystem crs, String id)
+            throws XMLStreamException {
+        if (geometry instanceof CurvedGeometry) {
+            // only reached for types declared as a generic Geometry, curves are not supported
+            geometry = (Geometry) ((CurvedGeometry<?>) geometry).linearize();
+        }
+        if (geometry.getUserData() instanceof CoordinateReferenceSystem) {
+            crs = (CoordinateReferenceSystem) geometry.getUserData();
+        }
+        int dimension = getDimension(geometry);
+        if (geometry instanceof Point) {
+            writeStart("Point", id, crs, dimension);
+            writePositions("pos", ((Point) geometry).getCoordinateSequence(), dimension);
+        } else if (geometry instanceof LinearRing) {
+            writeStart("LinearRing", id, crs, dimension);
+            writePositions("posList", ((LinearRing) geometry).getCoordinateSequence(), dimension);
+        } else if (geometry instanceof LineString) {
+            writeStart("LineString", id, crs, dimension);
+            writePositions("posList", ((LineString) geometry).getCoordinateSequence(), dimension);
+        } else if (geometry instanceof Polygon) {
+            writeStart("Polygon", id, crs, dimension);
+            writeRings((Polygon) geometry, dimension);
+        } else if (geometry instanceof MultiPoint) {
+            writeStart("MultiPoint", id, crs, dimension);
+            writeMembers((GeometryCollection) geometry, "pointMember", id, dimension);
+        } else if (geometry instanceof MultiLineString) {
+            writeStart("MultiCurve", id, crs, dimension);
+            writeMembers((GeometryCollection) geometry, "curveMember", id, dimension);
+        } else if (geometry instanceof MultiPolygon) {
+            writeStart("MultiSurface", id, crs, dimension);
+            writeMembers((GeometryCollection) geometry, "surfaceMember", id, dimension);
+        } else if (geometry instanceof GeometryCollection) {
+            writeStart("MultiGeometry", id, crs, dimension);
+            writeMembers((GeometryCollection) geometry, "geometryMember", id, dimension);
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported geometry type " + geometry.getGeometryType());
+        }
+        writer.writeEndElement();
+    }
+
+    void writeStart(String name, String id, CoordinateReferenceSystem crs, int dimension)
+            throws XMLStreamException {
+        writer.writeStartElement(GML_PREFIX, name, GML.NAMESPACE);
+        writer.writeAttribute(GML_PREFIX, GML.NAMESPACE, "id", id);
+        String srsName = getSrsName(crs);
+        if (srsName != null) {
+            writer.writeAttribute("srsName", srsName);
+        }
+        if (encodeSrsDimension && crs != null) {
+            writer.writeAttribute("srsDimension", String.valueOf(dimension));
+        }
+    }
+
+    void writeMembers(GeometryCollection collection, String member, String id, int dimension)
+            throws XMLStreamException {
+        for (int i = 0; i < collection.getNumGeometries(); i++) {
+            Geometry geometry = collection.getGeometryN(i);
+            String memberId = id + "." + (i + 1);
+            writer.writeStartElement(GML_PREFIX, member, GML.NAMESPACE);
+            if (geometry instanceof Point) {
+                writeStart("Point", memberId, null, dimension);
+                writePositions("pos", ((Point) geometry).getCoordinateSequence(), dimension);
+                writer.writeEndElement();
+            } else if (geometry instanceof LineString && !(geometry instanceof LinearRing)) {
+                writeStart("LineString", memberId, null, dimension);
+                writePositions(
+                        "posList", ((LineString) geometry).getCoordinateSequence(), dimension);
+                writer.writeEndElement();
+            } else if (geometry instanceof Polygon) {
+                writeStart("Polygon", memberId, null, dimension);
+                writeRings((Polygon) geometry, dimension);
+                writer.writeEndElement();
+            } else {
+                writeGeometry(geometry, null, memberId);
+            }
+            writer.writeEndElement();
+        }
+    }
+
+    void writeRings(Polygon polygon, int dimension) throws XMLStreamException {
+        writeRing("exterior", polygon.getExteriorRing(), dimension);
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+            writeRing("interior", polygon.getInteriorRingN(i), dimension);
+        }
+    }
+
+    void writeRing(String name, LineString ring, int dimension) throws XMLStreamException {
+        writer.writeStartElement(GML_PREFIX, name, GML.NAMESPACE);
+        writer.writeStartElement(GML_PREFIX, "LinearRing", GML.NAMESPACE);
+        writePositions("posList", ring.getCoordinateSequence(), dimension);
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    void writePositions(String name, CoordinateSequence cs, int dimension)
+            throws XMLStreamException {
+        writer.writeStartElement(GML_PREFIX, name, GML.NAMESPACE);
+        buffer.setLength(0);
+        int size = cs.size();
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < dimension; d++) {
+                appendOrdinate(cs.getOrdinate(i, d));
+            }
+        }
+        flushBuffer();
+        writer.writeEndElement();
+    }
+
+    private void appendOrdinate(double ordinate) {
+        if (buffer.length() > 0) {
+            buffer.append(' ');
+        }
+        formatter.format(ordinate, buffer);
+    }
+
+    /** Writes out the buffer contents without turning them into a String */
+    private void flushBuffer() throws XMLStreamException {
+        int length = buffer.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        buffer.getChars(0, length, chars, 0);
+        writer.writeCharacters(chars, 0, length);
+    }
+
+    /** Number of spatial dimensions, the Z is considered only if actually present */
+    static int getDimension(Geometry geometry) {
+        CoordinateSequence cs = getFirstSequence(geometry);
+        if (cs == null) {
+            return 2;
+        }
+        int dimension = cs.getDimension() - cs.getMeasures();
+        if (dimension > 2 && (cs.size() == 0 || Double.isNaN(cs.getOrdinate(0, 2)))) {
+            return 2;
+        }
+        return dimension;
+    }
+
+    private static CoordinateSequence getFirstSequence(Geometry geometry) {
+        if (geometry instanceof Point) {
+            return ((Point) geometry).getCoordinateSequence();
+        } else if (geometry instanceof LineString) {
+            return ((LineString) geometry).getCoordinateSequence();
+        } else if (geometry instanceof Polygon) {
+            return ((Polygon) geometry).getExteriorRing().getCoordinateSequence();
+        } else if (geometry instanceof GeometryCollection) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                CoordinateSequence cs = getFirstSequence(geometry.getGeometryN(i));
+                if (cs != null && cs.size() > 0) {
+                    return cs;
+                }
+            }
+        }
+        return null;
+    }
+
+    String getSrsName(CoordinateReferenceSystem crs) {
+        if (crs == null) {
+            return null;
+        }
+        return srsNames.computeIfAbsent(crs, this::lookupSrsName);
+    }
+
+    private String lookupSrsName(CoordinateReferenceSystem crs) {
+        try {
+            Integer code = CRS.lookupEpsgCode(crs, false);
+            if (code != null) {
+                return srsSyntax.getPrefix() + code;
+            }
+        } catch (FactoryException e) {
+            LOGGER.log(Level.FINE, "Failed to lookup the EPSG code of " + crs, e);
+        }
+        return CRS.toSRS(crs);
+    }
+
+    static String formatValue(Object value) {
+        if (value instanceof java.sql.Date || value instanceof java.sql.Time) {
+            return value.toString();
+        } else if (value instanceof Date) {
+            return DateTimeFormatter.ISO_INSTANT.format(((Date) value).toInstant());
+        } else if (value instanceof Calendar) {
+            return formatDateTime((Calendar) value);
+        }
+        return value.toString();
+    }
+
+    static String formatDateTime(Calendar calendar) {
+        return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+                ZonedDateTime.ofInstant(calendar.toInstant(), calendar.getTimeZone().toZoneId()));
+    }
+
+    /** The names and geometry columns of a feature type, resolved once per request */
+    class FeatureTypeEncoding {
+        final String namespaceURI;
+        final String prefix;
+        final String typeName;
+        final String[] names;
+        final boolean[] geometries;
+        final CoordinateReferenceSystem[] crs;
+
+        FeatureTypeEncoding(SimpleFeatureType schema) {
+            namespaceURI = schema.getName().getNamespaceURI();
+            typeName = schema.getTypeName();
+            NamespaceInfo ns = catalog.getNamespaceByURI(namespaceURI);
+            prefix = ns != null ? ns.getPrefix() : "feature";
+
+            List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+            names = new String[descriptors.size()];
+            geometries = new boolean[names.length];
+            crs = new CoordinateReferenceSystem[names.length];
+            for (int i = 0; i < names.length; i++) {
+                AttributeDescriptor ad = descriptors.get(i);
+                names[i] = ad.getLocalName();
+                if (ad instanceof GeometryDescriptor) {
+                    geometries[i] = true;
+                    crs[i] = ((GeometryDescriptor) ad).getCoordinateReferenceSystem();
+                }
+            }
+        }
+    }
+}
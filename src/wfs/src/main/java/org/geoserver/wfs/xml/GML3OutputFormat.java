@@ -195,6 +195,10 @@ protected void write(
             }
         }
 
+        if (encodeSimpleFeatures(results, output, request, ns2metas)) {
+            return;
+        }
+
         WFSInfo wfs = getInfo();
 
         // set feature bounding parameter
@@ -262,15 +266,6 @@ protected void write(
         }
 
         // declare application schema namespaces
-
-        Map<String, String> params =
-                params(
-                        "service",
-                        "WFS",
-                        "version",
-                        request.getVersion(),
-                        "request",
-                        "DescribeFeatureType");
         for (Map.Entry<String, Set<ResourceInfo>> stringSetEntry : ns2metas.entrySet()) {
             Map.Entry entry = (Map.Entry) stringSetEntry;
 
@@ -303,10 +298,8 @@ protected void write(
             }
 
             if (typeNames.length() > 0) {
-                params.put("typeName", typeNames.toString());
                 // set the made up schema location for types not provided by the user
-                String schemaLocation =
-                        buildURL(request.getBaseURL(), "wfs", params, URLType.SERVICE);
+                String schemaLocation = getDescribeFeatureTypeURL(request, typeNames.toString());
                 LOGGER.finer(
                         "Unable to find user-defined schema location for: "
                                 + namespaceURI
@@ -324,6 +317,34 @@ protected void write(
         }
     }
 
+    /** Builds the DescribeFeatureType URL used as the schema location of the given types */
+    protected String getDescribeFeatureTypeURL(GetFeatureRequest request, String typeNames) {
+        Map<String, String> params =
+                params(
+                        "service",
+                        "WFS",
+                        "version",
+                        request.getVersion(),
+                        "request",
+                        "DescribeFeatureType",
+                        "typeName",
+                        typeNames);
+        return buildURL(request.getBaseURL(), "wfs", params, URLType.SERVICE);
+    }
+
+    /**
+     * Hook for subclasses that can encode simple features without going through the {@link
+     * Encoder}, returns true if the response has been written out.
+     */
+    protected boolean encodeSimpleFeatures(
+            FeatureCollectionResponse results,
+            OutputStream output,
+            GetFeatureRequest request,
+            Map<String, Set<ResourceInfo>> resources)
+            throws IOException {
+        return false;
+    }
+
     protected void updateConfiguration(
             Configuration configuration,
             int numDecimals,
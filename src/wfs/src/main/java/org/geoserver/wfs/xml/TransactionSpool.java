@@ -0,0 +1,394 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml;
+
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.geoserver.wfs.request.Insert;
+import org.geoserver.wfs.request.TransactionElement;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Streaming support for large insert transactions. Parsing a transaction with the GeoTools parser
+ * materializes the whole request, along with every feature to be inserted, in memory before the
+ * transaction even starts. When a request body is larger than {@link #THRESHOLD} characters it is
+ * spooled to a temporary file instead, and scanned with a StAX reader. If the transaction is made
+ * of {@code Insert} elements only, the request is parsed without the features, and the features are
+ * then parsed from the file {@link #BATCH_SIZE} at a time, while the inserts are executed (see
+ * {@link #next()}), keeping the memory usage bound regardless of the request size. Other requests
+ * are parsed from the file as usual.
+ *
+ * <p>Streaming is disabled by default, it can be enabled by setting the {@code
+ * GS_WFS_STREAMING_INSERT_THRESHOLD} system variable to the request size, in characters, above
+ * which a transaction gets spooled. The {@code GS_WFS_STREAMING_INSERT_BATCH} variable controls how
+ * many features are parsed and inserted at a time (1000 by default).
+ */
+public class TransactionSpool implements Closeable {
+
+    static final Logger LOGGER = Logging.getLogger(TransactionSpool.class);
+
+    static final String TRANSACTION_SPOOL = "TRANSACTION_SPOOL";
+
+    static final Set<String> WFS_NAMESPACES =
+            new HashSet<>(
+                    Arrays.asList(
+                            org.geoserver.wfs.xml.v1_1_0.WFS.NAMESPACE,
+                            org.geotools.wfs.v2_0.WFS.NAMESPACE));
+
+    /** Size of the requests, in characters, above which they get spooled, 0 or less disables */
+    static int THRESHOLD = Integer.getInteger("GS_WFS_STREAMING_INSERT_THRESHOLD", 0);
+
+    /** Number of features parsed and inserted at a time */
+    static int BATCH_SIZE = Integer.getInteger("GS_WFS_STREAMING_INSERT_BATCH", 1000);
+
+    /** Parses a transaction document, as the WFS xml readers do */
+    @FunctionalInterface
+    public interface RequestParser {
+        Object parse(Reader reader) throws Exception;
+    }
+
+    private final Path file;
+
+    private final RequestParser parser;
+
+    private final Set<QName> typeNames;
+
+    private Reader input;
+
+    private XMLStreamReader stream;
+
+    private int depth;
+
+    private StartTag transaction;
+
+    private StartTag insert;
+
+    TransactionSpool(Path file, RequestParser parser, Set<QName> typeNames) {
+        this.file = file;
+        this.parser = parser;
+        this.typeNames = typeNames;
+    }
+
+    /**
+     * Reads a transaction request, spooling it to disk and deferring the parsing of the inserted
+     * features if the request is larger than {@link #THRESHOLD}
+     *
+     * @param reader the request body
+     * @param parser parses the transaction document
+     * @return the parsed request
+     */
+    public static Object read(Reader reader, RequestParser parser) throws Exception {
+        if (THRESHOLD <= 0) {
+            return parser.parse(reader);
+        }
+
+        // small requests are parsed from memory as usual
+        CharArrayWriter head = new CharArrayWriter();
+        char[] buffer = new char[8192];
+        int n;
+        while (head.size() <= THRESHOLD && (n = reader.read(buffer)) != -1) {
+            head.write(buffer, 0, n);
+        }
+        if (head.size() <= THRESHOLD) {
+            return parser.parse(new CharArrayReader(head.toCharArray()));
+        }
+
+        Path file = Files.createTempFile("wfs-transaction", ".xml");
+        boolean streaming = false;
+        try {
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                head.writeTo(writer);
+                head = null;
+                while ((n = reader.read(buffer)) != -1) {
+                    writer.write(buffer, 0, n);
+                }
+            }
+
+            StringWriter skeleton = new StringWriter();
+            Set<QName> typeNames = scan(file, skeleton);
+            if (typeNames == null) {
+                try (Reader spooled = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    return parser.parse(spooled);
+                }
+            }
+
+            Object parsed = parser.parse(new StringReader(skeleton.toString()));
+            TransactionRequest request = TransactionRequest.adapt(parsed);
+            if (request == null) {
+                return parsed;
+            }
+            TransactionSpool spool = new TransactionSpool(file, parser, typeNames);
+            getProperties(request).put(TRANSACTION_SPOOL, spool);
+            streaming = true;
+            return parsed;
+        } finally {
+            if (!streaming) {
+                delete(file);
+            }
+        }
+    }
+
+    /**
+     * Scans the spooled request, checking if it is made of inserts only. If so, writes the request
+     * without the features in the skeleton, and returns the names of the feature types inserted.
+     * Otherwise returns null.
+     */
+    static Set<QName> scan(Path file, Writer skeleton) throws IOException {
+        Set<QName> typeNames = new LinkedHashSet<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            XMLStreamReader stream = createInputFactory().createXMLStreamReader(reader);
+            XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(skeleton);
+            int depth = 0;
+            while (stream.hasNext()) {
+                int event = stream.next();
+                if (event == XMLStreamConstants.DTD) {
+                    // leave entities to the request parser
+                    return null;
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 1 && !"Transaction".equals(stream.getLocalName())) {
+                        return null;
+                    } else if (depth == 2 && !isInsert(stream.getName())) {
+                        return null;
+                    } else if (depth <= 2) {
+                        new StartTag(stream).write(writer);
+                    } else if (depth == 3) {
+                        typeNames.add(stream.getName());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth <= 2) {
+                        writer.writeEndElement();
+                    }
+                    depth--;
+                }
+            }
+            writer.close();
+            stream.close();
+        } catch (XMLStreamException e) {
+            // let the request parser report the error
+            LOGGER.log(Level.FINE, "Could not scan the transaction, will parse it as a whole", e);
+            return null;
+        }
+        return typeNames;
+    }
+
+    private static boolean isInsert(QName name) {
+        return "Insert".equals(name.getLocalPart())
+                && WFS_NAMESPACES.contains(name.getNamespaceURI());
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /** Returns the spool of the given transaction, or null if its features have been parsed */
+    public static TransactionSpool get(TransactionRequest request) {
+        Map<Object, Object> properties = getProperties(request);
+        return properties != null ? (TransactionSpool) properties.get(TRANSACTION_SPOOL) : null;
+    }
+
+    /** Releases the spool of the given transaction, if any */
+    public static void dispose(TransactionRequest request) {
+        TransactionSpool spool = get(request);
+        if (spool != null) {
+            getProperties(request).remove(TRANSACTION_SPOOL);
+            spool.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> getProperties(TransactionRequest request) {
+        return request.getExtendedProperties();
+    }
+
+    /** The names of the feature types inserted by the transaction */
+    public Set<QName> getTypeNames() {
+        return Collections.unmodifiableSet(typeNames);
+    }
+
+    /**
+     * Parses the next batch of features. The features are returned in an {@link Insert} built after
+     * the element they belong to, features of different elements are never mixed.
+     *
+     * @return the next batch, or null if all the features have been returned
+     */
+    public Insert next() throws Exception {
+        if (stream == null) {
+            input = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            stream = createInputFactory().createXMLStreamReader(input);
+        }
+
+        StringWriter batch = new StringWriter();
+        XMLStreamWriter writer = null;
+        int count = 0;
+        while (stream.hasNext()) {
+            int event = stream.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (depth == 1) {
+                    transaction = new StartTag(stream);
+                } else if (depth == 2) {
+                    insert = new StartTag(stream);
+                } else {
+                    if (writer == null) {
+                        writer = XMLOutputFactory.newFactory().createXMLStreamWriter(batch);
+                        transaction.write(writer);
+                        insert.write(writer);
+                    }
+                    copyElement(stream, writer);
+                    depth--;
+                    if (++count >= BATCH_SIZE) {
+                        break;
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if (depth == 1 && writer != null) {
+                    // end of the insert element
+                    break;
+                }
+            }
+        }
+        if (writer == null) {
+            close();
+            return null;
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.close();
+
+        Object parsed = parser.parse(new StringReader(batch.toString()));
+        List<TransactionElement> elements = TransactionRequest.adapt(parsed).getElements();
+        return (Insert) elements.get(0);
+    }
+
+    /** Copies the current element, and its contents, leaving the stream on its end tag */
+    private static void copyElement(XMLStreamReader stream, XMLStreamWriter writer)
+            throws XMLStreamException {
+        new StartTag(stream).write(writer);
+        int level = 1;
+        while (level > 0) {
+            int event = stream.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    new StartTag(stream).write(writer);
+                    level++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    writer.writeEndElement();
+                    level--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    writer.writeCharacters(stream.getText());
+                    break;
+                case XMLStreamConstants.CDATA:
+                    writer.writeCData(stream.getText());
+                    break;
+                default:
+                    // comments and processing instructions are not needed
+            }
+        }
+    }
+
+    /** Closes the spooled file and deletes it */
+    @Override
+    public void close() {
+        try {
+            if (stream != null) {
+                stream.close();
+            }
+            if (input != null) {
+                input.close();
+            }
+        } catch (XMLStreamException | IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close the spooled transaction", e);
+        }
+        stream = null;
+        input = null;
+        delete(file);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to delete the spooled transaction " + file, e);
+        }
+    }
+
+    /** A start tag, along with its namespace declarations and attributes */
+    static class StartTag {
+        final QName name;
+        final List<String[]> namespaces = new ArrayList<>();
+        final List<QName> attributeNames = new ArrayList<>();
+        final List<String> attributeValues = new ArrayList<>();
+
+        StartTag(XMLStreamReader stream) {
+            this.name = stream.getName();
+            for (int i = 0; i < stream.getNamespaceCount(); i++) {
+                String uri = stream.getNamespaceURI(i);
+                namespaces.add(new String[] {stream.getNamespacePrefix(i), uri != null ? uri : ""});
+            }
+            for (int i = 0; i < stream.getAttributeCount(); i++) {
+                attributeNames.add(stream.getAttributeName(i));
+                attributeValues.add(stream.getAttributeValue(i));
+            }
+        }
+
+        void write(XMLStreamWriter writer) throws XMLStreamException {
+            writer.writeStartElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+            for (String[] namespace : namespaces) {
+                if (namespace[0] == null || namespace[0].isEmpty()) {
+                    writer.writeDefaultNamespace(namespace[1]);
+                } else {
+                    writer.writeNamespace(namespace[0], namespace[1]);
+                }
+            }
+            for (int i = 0; i < attributeNames.size(); i++) {
+                QName attribute = attributeNames.get(i);
+                if (attribute.getNamespaceURI() == null || attribute.getNamespaceURI().isEmpty()) {
+                    writer.writeAttribute(attribute.getLocalPart(), attributeValues.get(i));
+                } else {
+                    writer.writeAttribute(
+                            attribute.getPrefix(),
+                            attribute.getNamespaceURI(),
+                            attribute.getLocalPart(),
+                            attributeValues.get(i));
+                }
+            }
+        }
+    }
+}
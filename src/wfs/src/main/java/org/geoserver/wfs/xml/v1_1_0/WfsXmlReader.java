@@ -12,6 +12,7 @@
 import org.geoserver.ows.XmlRequestReader;
 import org.geoserver.util.EntityResolverProvider;
 import org.geoserver.wfs.WFSInfo;
+import org.geoserver.wfs.xml.TransactionSpool;
 import org.geoserver.wfs.xml.WFSXmlUtils;
 import org.geotools.util.Version;
 import org.geotools.xsd.Configuration;
@@ -53,6 +54,14 @@ protected WfsXmlReader(
 
     @Override
     public Object read(Object request, Reader reader, Map kvp) throws Exception {
+        if ("Transaction".equals(getElement().getLocalPart())) {
+            // large inserts are spooled and parsed while executing
+            return TransactionSpool.read(reader, r -> parse(r, kvp));
+        }
+        return parse(reader, kvp);
+    }
+
+    private Object parse(Reader reader, Map kvp) throws Exception {
         Parser parser = new Parser(configuration);
         parser.setStrict(false);
         parser.setEntityResolver(entityResolverProvider.getEntityResolver());
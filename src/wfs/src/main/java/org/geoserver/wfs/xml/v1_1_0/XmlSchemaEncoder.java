@@ -22,6 +22,7 @@
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.WFSDescribeFeatureTypeOutputFormat;
 import org.geoserver.wfs.request.DescribeFeatureTypeRequest;
+import org.geoserver.wfs.xml.DescribeFeatureTypeCache;
 import org.geoserver.wfs.xml.FeatureTypeSchemaBuilder;
 
 public class XmlSchemaEncoder extends WFSDescribeFeatureTypeOutputFormat {
@@ -94,11 +95,34 @@ protected void doWrite(
         Object request = describeFeatureType.getParameters()[0];
         DescribeFeatureTypeRequest req = DescribeFeatureTypeRequest.adapt(request);
 
+        final String encoding = gs.getSettings().getCharset();
+        DescribeFeatureTypeCache cache = DescribeFeatureTypeCache.get();
+        if (cache == null) {
+            encode(featureTypeInfos, req, encoding, output);
+            return;
+        }
+
+        // the same types are described over and over, reuse the documents built so far
+        String format = getClass().getName() + "/" + schemaBuilder.getClass().getName();
+        cache.writeSchema(
+                format,
+                featureTypeInfos,
+                req,
+                encoding,
+                output,
+                out -> encode(featureTypeInfos, req, encoding, out));
+    }
+
+    private void encode(
+            FeatureTypeInfo[] featureTypeInfos,
+            DescribeFeatureTypeRequest req,
+            String encoding,
+            OutputStream output)
+            throws IOException {
         XSDSchema schema = schemaBuilder.build(featureTypeInfos, req.getBaseURL());
 
         // serialize
         schema.updateElement();
-        final String encoding = gs.getSettings().getCharset();
         XSDResourceImpl.serialize(output, schema.getElement(), encoding);
     }
 
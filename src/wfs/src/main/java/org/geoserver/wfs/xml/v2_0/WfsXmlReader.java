@@ -15,6 +15,7 @@
 import org.geoserver.wfs.WFSException;
 import org.geoserver.wfs.WFSInfo;
 import org.geoserver.wfs.xml.FeatureTypeSchemaBuilder;
+import org.geoserver.wfs.xml.TransactionSpool;
 import org.geoserver.wfs.xml.WFSXmlUtils;
 import org.geotools.util.Version;
 import org.geotools.wfs.v2_0.WFS;
@@ -41,6 +42,14 @@ public Object read(Object request, Reader reader, Map kvp) throws Exception {
         WFSConfiguration config = new WFSConfiguration();
         WFSXmlUtils.initWfsConfiguration(config, gs, new FeatureTypeSchemaBuilder.GML32(gs));
 
+        if ("Transaction".equals(getElement().getLocalPart())) {
+            // large inserts are spooled and parsed while executing
+            return TransactionSpool.read(reader, r -> parse(config, r, kvp));
+        }
+        return parse(config, reader, kvp);
+    }
+
+    private Object parse(WFSConfiguration config, Reader reader, Map kvp) throws Exception {
         Parser parser = new Parser(config);
         parser.setEntityResolver(entityResolverProvider.getEntityResolver());
         // set entity expansion limit
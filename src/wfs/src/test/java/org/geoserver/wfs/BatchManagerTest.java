@@ -6,6 +6,7 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.same;
@@ -32,6 +33,7 @@
 import org.geoserver.wfs.request.Delete;
 import org.geoserver.wfs.request.Insert;
 import org.geoserver.wfs.request.Native;
+import org.geoserver.wfs.request.Property;
 import org.geoserver.wfs.request.Replace;
 import org.geoserver.wfs.request.TransactionElement;
 import org.geoserver.wfs.request.TransactionRequest;
@@ -274,6 +276,121 @@ private void testAggregationWithDeleteBatchSize(int pDeleteBatchSize) {
         }
     }
 
+    /**
+     * Verifies that Transaction:
+     *
+     * <pre>
+     * UPDATE-1 for TYPE-1 setting A=1
+     *      FILTER-1
+     * UPDATE-2 for TYPE-1 setting A=1
+     *      FILTER-2
+     * UPDATE-3 for TYPE-1 setting A=1
+     *      FILTER-3
+     * UPDATE-4 for TYPE-1 setting A=2
+     *      FILTER-1
+     * UPDATE-5 for TYPE-2 setting A=2
+     *      FILTER-2
+     * </pre>
+     *
+     * with update batch size 100 gets aggregated as
+     *
+     * <pre>
+     * UPDATE-1 for TYPE-1 setting A=1
+     *      FILTER-1
+     *      FILTER-2
+     *      FILTER-3
+     * UPDATE-4 for TYPE-1 setting A=2
+     *      FILTER-1
+     * UPDATE-5 for TYPE-2 setting A=2
+     *      FILTER-2
+     * </pre>
+     */
+    @Test
+    public void testUpdateAggregation() throws Exception {
+        Update update1 = newUpdate(type1Name, filter1, 1);
+        Update update2 = newUpdate(type1Name, filter2, 1);
+        Update update3 = newUpdate(type1Name, filter3, 1);
+        Update update4 = newUpdate(type1Name, filter1, 2);
+        Update update5 = newUpdate(type2Name, filter2, 2);
+        TransactionElementHandler handler = mock(TransactionElementHandler.class);
+
+        Map<TransactionElement, TransactionElementHandler> element2Handlers =
+                asMap( //
+                        keyValue(update1, handler), //
+                        keyValue(update2, handler), //
+                        keyValue(update3, handler), //
+                        keyValue(update4, handler), //
+                        keyValue(update5, handler));
+        TransactionRequest lTransaction = transactionRequest(element2Handlers.keySet());
+
+        BatchManager sut =
+                new BatchManager(
+                        lTransaction,
+                        transactionListener,
+                        stores,
+                        transactionResponse,
+                        element2Handlers,
+                        100,
+                        100);
+        sut.run();
+
+        assertTrue("First 3 UPDATEs have been merged", update1.getFilter() instanceof Or);
+        assertEquals(
+                Arrays.asList(filter1, filter2, filter3), ((Or) update1.getFilter()).getChildren());
+        assertSame(filter1, update4.getFilter());
+        assertSame(filter2, update5.getFilter());
+
+        verify(handler, times(1)).execute(same(update1), any(), any(), any(), any());
+        verify(handler, times(0)).execute(same(update2), any(), any(), any(), any());
+        verify(handler, times(0)).execute(same(update3), any(), any(), any(), any());
+        verify(handler, times(1)).execute(same(update4), any(), any(), any(), any());
+        verify(handler, times(1)).execute(same(update5), any(), any(), any(), any());
+        assertEquals(3, lTransaction.getElements().size());
+        assertEquals(5, sut.getElementCount());
+        assertEquals(3, sut.getBatchCount());
+    }
+
+    @Test
+    public void testUpdateBatchSize() throws Exception {
+        Update update1 = newUpdate(type1Name, filter1, 1);
+        Update update2 = newUpdate(type1Name, filter2, 1);
+        Update update3 = newUpdate(type1Name, filter3, 1);
+        TransactionElementHandler handler = mock(TransactionElementHandler.class);
+
+        Map<TransactionElement, TransactionElementHandler> element2Handlers =
+                asMap( //
+                        keyValue(update1, handler), //
+                        keyValue(update2, handler), //
+                        keyValue(update3, handler));
+        TransactionRequest lTransaction = transactionRequest(element2Handlers.keySet());
+
+        new BatchManager(
+                        lTransaction,
+                        transactionListener,
+                        stores,
+                        transactionResponse,
+                        element2Handlers,
+                        100,
+                        2)
+                .run();
+
+        assertEquals(2, ((Or) update1.getFilter()).getChildren().size());
+        assertSame(filter3, update3.getFilter());
+        verify(handler, times(1)).execute(same(update1), any(), any(), any(), any());
+        verify(handler, times(1)).execute(same(update3), any(), any(), any(), any());
+    }
+
+    private Update newUpdate(QName pTypeName, Filter pFilter, Object pValue) {
+        Update lUpdate = newUpdate();
+        lUpdate.setTypeName(pTypeName);
+        lUpdate.setFilter(pFilter);
+        Property lProperty = lUpdate.createProperty();
+        lProperty.setName(new QName("A"));
+        lProperty.setValue(pValue);
+        lUpdate.setUpdateProperties(Arrays.asList(lProperty));
+        return lUpdate;
+    }
+
     private TransactionRequest transactionRequest(Set<TransactionElement> pElems) {
         TransactionType lTransactionType = Wfs20Factory.eINSTANCE.createTransactionType();
         TransactionRequest lTransactionRequest = TransactionRequest.adapt(lTransactionType);
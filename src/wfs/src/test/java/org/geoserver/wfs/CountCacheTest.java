@@ -0,0 +1,136 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.json.JSONObject;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.wfs.v2_0.WFS20TestSupport;
+import org.geotools.data.Query;
+import org.geotools.filter.text.ecql.ECQL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class CountCacheTest extends WFS20TestSupport {
+
+    static final long TIME_TO_LIVE = CountCache.TIME_TO_LIVE;
+
+    static final long ASYNC_COUNT_TIMEOUT = GetFeature.ASYNC_COUNT_TIMEOUT;
+
+    AtomicInteger calls = new AtomicInteger();
+
+    Callable<Integer> counter =
+            () -> {
+                calls.incrementAndGet();
+                return 10;
+            };
+
+    @Before
+    public void enableCache() {
+        CountCache.TIME_TO_LIVE = 60;
+        CountCache.get().clear();
+    }
+
+    @After
+    public void resetCache() {
+        CountCache.TIME_TO_LIVE = TIME_TO_LIVE;
+        GetFeature.ASYNC_COUNT_TIMEOUT = ASYNC_COUNT_TIMEOUT;
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        CountCache cache = CountCache.get();
+        FeatureTypeInfo roads =
+                getCatalog().getFeatureTypeByName(getLayerId(MockData.ROAD_SEGMENTS));
+        FeatureTypeInfo fifteen = getCatalog().getFeatureTypeByName(getLayerId(MockData.FIFTEEN));
+
+        assertEquals(10, cache.getCount(roads, query("FID = '102'"), counter));
+        assertEquals(10, cache.getCount(roads, query("FID = '102'"), counter));
+        assertEquals(1, calls.get());
+
+        // different filter, different layer
+        cache.getCount(roads, query("FID = '103'"), counter);
+        cache.getCount(fifteen, query("FID = '102'"), counter);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        CountCache.TIME_TO_LIVE = 0;
+        CountCache cache = CountCache.get();
+        FeatureTypeInfo roads =
+                getCatalog().getFeatureTypeByName(getLayerId(MockData.ROAD_SEGMENTS));
+
+        cache.getCount(roads, query("FID = '102'"), counter);
+        cache.getCount(roads, query("FID = '102'"), counter);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testEnvNotCached() throws Exception {
+        CountCache cache = CountCache.get();
+        FeatureTypeInfo roads =
+                getCatalog().getFeatureTypeByName(getLayerId(MockData.ROAD_SEGMENTS));
+
+        cache.getCount(roads, query("FID = env('fid', '102')"), counter);
+        cache.getCount(roads, query("FID = env('fid', '102')"), counter);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testTransactionInvalidates() throws Exception {
+        CountCache cache = CountCache.get();
+        FeatureTypeInfo roads =
+                getCatalog().getFeatureTypeByName(getLayerId(MockData.ROAD_SEGMENTS));
+        FeatureTypeInfo fifteen = getCatalog().getFeatureTypeByName(getLayerId(MockData.FIFTEEN));
+        cache.getCount(roads, query("FID = '102'"), counter);
+        cache.getCount(fifteen, query("FID = '102'"), counter);
+        assertEquals(2, calls.get());
+
+        postAsDOM("wfs", TransactionCallbackWFS20Test.DELETE_ROAD_102);
+
+        // the modified store has been invalidated, the other one did not
+        cache.getCount(roads, query("FID = '102'"), counter);
+        cache.getCount(fifteen, query("FID = '102'"), counter);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testPaging() throws Exception {
+        String request =
+                "wfs?service=WFS&version=2.0.0&request=GetFeature&typeNames=cdf:Fifteen&count=5";
+        for (String page : new String[] {"0", "5", "10"}) {
+            Document dom = getAsDOM(request + "&startIndex=" + page);
+            assertXpathEvaluatesTo("5", "/wfs:FeatureCollection/@numberReturned", dom);
+            assertXpathEvaluatesTo("15", "/wfs:FeatureCollection/@numberMatched", dom);
+        }
+    }
+
+    @Test
+    public void testAsyncCount() throws Exception {
+        GetFeature.ASYNC_COUNT_TIMEOUT = 10000;
+        String request =
+                "wfs?service=WFS&version=2.0.0&request=GetFeature&typeNames=cdf:Fifteen&count=5";
+        Document dom = getAsDOM(request);
+        assertXpathEvaluatesTo("15", "/wfs:FeatureCollection/@numberMatched", dom);
+
+        JSONObject json = (JSONObject) getAsJSON(request + "&outputFormat=application/json");
+        assertEquals(5, json.getInt("numberReturned"));
+        assertEquals(15, json.getInt("numberMatched"));
+    }
+
+    private Query query(String cql) throws Exception {
+        Query query = new Query();
+        query.setFilter(ECQL.toFilter(cql));
+        return query;
+    }
+}
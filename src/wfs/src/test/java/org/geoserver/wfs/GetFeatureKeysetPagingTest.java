@@ -0,0 +1,176 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+import org.geoserver.wfs.v2_0.WFS20TestSupport;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class GetFeatureKeysetPagingTest extends WFS20TestSupport {
+
+    static final boolean KEYSET_PAGING = GetFeature.KEYSET_PAGING;
+
+    @Before
+    public void enableKeysetPaging() {
+        GetFeature.KEYSET_PAGING = true;
+    }
+
+    @After
+    public void resetKeysetPaging() {
+        GetFeature.KEYSET_PAGING = KEYSET_PAGING;
+    }
+
+    @Test
+    public void testAscending() throws Exception {
+        // the three "Route 5" roads share the same key, and are split across two pages
+        List<String> fids = walk("wfs?" + request("NAME ASC"));
+        assertEquals(Arrays.asList("106", "105", "102", "103", "104"), fids);
+    }
+
+    @Test
+    public void testDescending() throws Exception {
+        List<String> fids = walk("wfs?" + request("NAME DESC"));
+        assertEquals(Arrays.asList("102", "103", "104", "105", "106"), fids);
+    }
+
+    @Test
+    public void testMultipleKeys() throws Exception {
+        List<String> fids = walk("wfs?" + request("NAME DESC,FID DESC"));
+        assertEquals(Arrays.asList("104", "103", "102", "105", "106"), fids);
+    }
+
+    @Test
+    public void testSingleFeaturePages() throws Exception {
+        // every page is made of features sharing the same key
+        List<String> fids = walk("wfs?" + request("NAME ASC", 1));
+        assertEquals(Arrays.asList("106", "105", "102", "103", "104"), fids);
+    }
+
+    @Test
+    public void testSameKeyAfterOffset() throws Exception {
+        // the page is all "Route 5", but the offset does not tell how many came before
+        Document dom = getAsDOM("wfs?" + request("NAME ASC") + "&startIndex=2");
+        String next = dom.getDocumentElement().getAttribute("next");
+        assertThat(next, Matchers.containsString("startIndex=4"));
+        assertFalse(next, next.contains("cursor"));
+    }
+
+    @Test
+    public void testNullKeys() throws Exception {
+        // one feature has no name, four have no timestamp, they must all be returned once
+        for (String sortBy :
+                Arrays.asList(
+                        "name ASC",
+                        "name DESC",
+                        "dateTimeProperty ASC",
+                        "dateTimeProperty DESC,intProperty ASC")) {
+            List<String> ids =
+                    walk(
+                            "wfs?service=WFS&version=2.0.0&request=GetFeature"
+                                    + "&typeNames=sf:PrimitiveGeoFeature&count=2&sortBy="
+                                    + sortBy,
+                            this::getPrimitiveIds);
+            assertEquals(sortBy + ": " + ids, 5, new HashSet<>(ids).size());
+            assertEquals(sortBy + ": " + ids, 5, ids.size());
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        GetFeature.KEYSET_PAGING = false;
+        Document dom = getAsDOM("wfs?" + request("NAME ASC") + "&startIndex=0");
+        String next = dom.getDocumentElement().getAttribute("next");
+        assertThat(next, Matchers.containsString("startIndex=2"));
+        assertFalse(next.contains("cursor"));
+    }
+
+    @Test
+    public void testInvalidCursor() throws Exception {
+        Document dom = getAsDOM("wfs?" + request("NAME ASC") + "&cursor=abcd");
+        checkOws11Exception(dom, "2.0.0", "InvalidParameterValue", "cursor");
+
+        // a cursor built for a different sort
+        dom = getAsDOM("wfs?" + request("NAME ASC"));
+        String next = dom.getDocumentElement().getAttribute("next");
+        String cursor = next.replaceAll(".*cursor=([^&]+).*", "$1");
+        dom = getAsDOM("wfs?" + request("NAME DESC") + "&cursor=" + cursor);
+        checkOws11Exception(dom, "2.0.0", "InvalidParameterValue", "cursor");
+
+        // cursors locate the page on their own
+        dom = getAsDOM("wfs?" + request("NAME ASC") + "&startIndex=2&cursor=" + cursor);
+        checkOws11Exception(dom, "2.0.0", "InvalidParameterValue", "cursor");
+    }
+
+    /** Follows the next links collecting the road FIDs */
+    private List<String> walk(String request) throws Exception {
+        return walk(request, this::getRoadFids);
+    }
+
+    /** Follows the next links collecting the feature identifiers */
+    private List<String> walk(String request, Function<Document, List<String>> identifiers)
+            throws Exception {
+        List<String> fids = new ArrayList<>();
+        while (request != null) {
+            Document dom = getAsDOM(request);
+            assertXpathEvaluatesTo("5", "/wfs:FeatureCollection/@numberMatched", dom);
+            fids.addAll(identifiers.apply(dom));
+            String next = dom.getDocumentElement().getAttribute("next");
+            if (next.isEmpty()) {
+                request = null;
+            } else {
+                assertTrue(next, next.contains("cursor="));
+                assertFalse(next, next.contains("startIndex"));
+                request = next.substring(next.indexOf("wfs?"));
+            }
+            assertTrue("Too many pages: " + fids, fids.size() <= 5);
+        }
+        return fids;
+    }
+
+    private List<String> getRoadFids(Document dom) {
+        List<String> fids = new ArrayList<>();
+        NodeList nodes = dom.getElementsByTagName("cite:FID");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            fids.add(nodes.item(i).getTextContent());
+        }
+        return fids;
+    }
+
+    private List<String> getPrimitiveIds(Document dom) {
+        List<String> ids = new ArrayList<>();
+        NodeList nodes = dom.getElementsByTagName("sf:PrimitiveGeoFeature");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            ids.add(((Element) nodes.item(i)).getAttribute("gml:id"));
+        }
+        return ids;
+    }
+
+    private String request(String sortBy) {
+        return request(sortBy, 2);
+    }
+
+    private String request(String sortBy, int count) {
+        return "service=WFS&version=2.0.0&request=GetFeature&typeNames=cite:RoadSegments&count="
+                + count
+                + "&sortBy="
+                + sortBy;
+    }
+}
@@ -0,0 +1,68 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+
+import org.geoserver.wfs.v2_0.WFS20TestSupport;
+import org.junit.After;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class GetFeatureParallelTest extends WFS20TestSupport {
+
+    static final int PARALLELISM = ParallelCounter.PARALLELISM;
+
+    @After
+    public void resetParallelism() {
+        ParallelCounter.PARALLELISM = PARALLELISM;
+    }
+
+    @Test
+    public void testMultipleQueries() throws Exception {
+        for (int parallelism : new int[] {1, 4}) {
+            ParallelCounter.PARALLELISM = parallelism;
+            Document dom = getAsDOM(request(""));
+            assertXpathEvaluatesTo("22", "/wfs:FeatureCollection/@numberReturned", dom);
+            assertXpathEvaluatesTo("22", "/wfs:FeatureCollection/@numberMatched", dom);
+            assertXpathEvaluatesTo("15", "count(//cdf:Fifteen)", dom);
+            assertXpathEvaluatesTo("7", "count(//cdf:Seven)", dom);
+        }
+    }
+
+    @Test
+    public void testMultipleQueriesCount() throws Exception {
+        for (int parallelism : new int[] {1, 4}) {
+            ParallelCounter.PARALLELISM = parallelism;
+            // the second query gets the leftovers of the first one
+            Document dom = getAsDOM(request("&count=17"));
+            assertXpathEvaluatesTo("17", "/wfs:FeatureCollection/@numberReturned", dom);
+            assertXpathEvaluatesTo("22", "/wfs:FeatureCollection/@numberMatched", dom);
+            assertXpathEvaluatesTo("15", "count(//cdf:Fifteen)", dom);
+            assertXpathEvaluatesTo("2", "count(//cdf:Seven)", dom);
+
+            // the second query is not run at all
+            dom = getAsDOM(request("&count=10"));
+            assertXpathEvaluatesTo("10", "/wfs:FeatureCollection/@numberReturned", dom);
+            assertXpathEvaluatesTo("10", "count(//cdf:Fifteen)", dom);
+            assertXpathEvaluatesTo("0", "count(//cdf:Seven)", dom);
+        }
+    }
+
+    @Test
+    public void testMultipleQueriesHits() throws Exception {
+        for (int parallelism : new int[] {1, 4}) {
+            ParallelCounter.PARALLELISM = parallelism;
+            Document dom = getAsDOM(request("&resultType=hits"));
+            assertXpathEvaluatesTo("22", "/wfs:FeatureCollection/@numberMatched", dom);
+        }
+    }
+
+    private String request(String parameters) {
+        return "wfs?request=GetFeature&typenames=(cdf:Fifteen)(cdf:Seven)&version=2.0.0"
+                + "&service=wfs"
+                + parameters;
+    }
+}
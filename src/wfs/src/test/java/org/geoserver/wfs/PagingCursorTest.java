@@ -0,0 +1,171 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+public class PagingCursorTest {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    static final List<SortBy> SORT =
+            Arrays.asList(
+                    FF.sort("name", SortOrder.ASCENDING), FF.sort("id", SortOrder.DESCENDING));
+
+    @Test
+    public void testEncodeDecode() {
+        PagingCursor cursor =
+                PagingCursor.offset(SORT, 0).next(Arrays.asList("Main Street", 10), 1, 5);
+        PagingCursor decoded = PagingCursor.decode(cursor.encode());
+        assertEquals(cursor, decoded);
+        assertTrue(decoded.hasKey());
+        assertTrue(decoded.matches(SORT));
+        assertFalse(decoded.matches(SORT.subList(0, 1)));
+        assertEquals(1, decoded.getSkip());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeInvalid() {
+        PagingCursor.decode("abcd");
+    }
+
+    @Test
+    public void testFilter() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("roads");
+        tb.add("name", String.class);
+        tb.add("id", Integer.class);
+        SimpleFeatureType schema = tb.buildFeatureType();
+
+        PagingCursor cursor =
+                PagingCursor.offset(SORT, 0).next(Arrays.asList("Main Street", 10), 1, 5);
+        Filter filter = cursor.toFilter(SORT, schema, FF);
+        assertTrue(filter.evaluate(feature(schema, "Route 5", 20)));
+        assertTrue(filter.evaluate(feature(schema, "Main Street", 10)));
+        assertTrue(filter.evaluate(feature(schema, "Main Street", 9)));
+        assertFalse(filter.evaluate(feature(schema, "Main Street", 11)));
+        assertFalse(filter.evaluate(feature(schema, "Dirt Road", 1)));
+    }
+
+    @Test
+    public void testFilterNullsLast() {
+        SimpleFeatureType schema = roadsSchema();
+
+        // nulls come after the key, at any level
+        PagingCursor cursor =
+                PagingCursor.offset(SORT, 0).next(Arrays.asList("Main Street", 10), 1, 5);
+        Filter filter = cursor.toFilter(SORT, schema, FF);
+        assertTrue(filter.evaluate(feature(schema, null, 20)));
+        assertTrue(filter.evaluate(feature(schema, "Main Street", null)));
+
+        // a null key is followed by other nulls only
+        cursor = PagingCursor.offset(SORT, 0).next(Arrays.asList(null, 10), 1, 5);
+        filter = cursor.toFilter(SORT, schema, FF);
+        assertTrue(filter.evaluate(feature(schema, null, 10)));
+        assertTrue(filter.evaluate(feature(schema, null, 9)));
+        assertTrue(filter.evaluate(feature(schema, null, null)));
+        assertFalse(filter.evaluate(feature(schema, null, 11)));
+        assertFalse(filter.evaluate(feature(schema, "Route 5", 1)));
+    }
+
+    @Test
+    public void testFilterNullsFirst() {
+        SimpleFeatureType schema = roadsSchema();
+
+        // nulls come before the key, at any level
+        PagingCursor cursor =
+                PagingCursor.offset(SORT, 0)
+                        .withNullsFirst(3)
+                        .next(Arrays.asList("Main Street", 10), 1, 5);
+        assertTrue(PagingCursor.decode(cursor.encode()).isNullsFirst(1));
+        Filter filter = cursor.toFilter(SORT, schema, FF);
+        assertFalse(filter.evaluate(feature(schema, null, 20)));
+        assertFalse(filter.evaluate(feature(schema, "Main Street", null)));
+        assertTrue(filter.evaluate(feature(schema, "Route 5", null)));
+
+        // a null key is followed by all the values
+        cursor = PagingCursor.offset(SORT, 0).withNullsFirst(3).next(Arrays.asList(null, 10), 1, 5);
+        filter = cursor.toFilter(SORT, schema, FF);
+        assertTrue(filter.evaluate(feature(schema, null, 10)));
+        assertTrue(filter.evaluate(feature(schema, "Dirt Road", 1)));
+        assertFalse(filter.evaluate(feature(schema, null, 11)));
+        assertFalse(filter.evaluate(feature(schema, null, null)));
+    }
+
+    @Test
+    public void testTimestampPrecision() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("events");
+        tb.add("time", Timestamp.class);
+        SimpleFeatureType schema = tb.buildFeatureType();
+        List<SortBy> sort = Collections.singletonList(FF.sort("time", SortOrder.ASCENDING));
+
+        Timestamp time = Timestamp.valueOf("2022-03-01 10:15:30.123456789");
+        Timestamp before = Timestamp.valueOf("2022-03-01 10:15:30.123456788");
+        PagingCursor cursor =
+                PagingCursor.decode(
+                        PagingCursor.offset(sort, 0)
+                                .next(Collections.singletonList(time), 1, 5)
+                                .encode());
+        Filter filter = cursor.toFilter(sort, schema, FF);
+        assertTrue(filter.evaluate(SimpleFeatureBuilder.build(schema, new Object[] {time}, null)));
+        assertFalse(
+                filter.evaluate(SimpleFeatureBuilder.build(schema, new Object[] {before}, null)));
+    }
+
+    private SimpleFeatureType roadsSchema() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("roads");
+        tb.add("name", String.class);
+        tb.add("id", Integer.class);
+        return tb.buildFeatureType();
+    }
+
+    private SimpleFeature feature(SimpleFeatureType schema, String name, Integer id) {
+        return SimpleFeatureBuilder.build(schema, new Object[] {name, id}, null);
+    }
+
+    @Test
+    public void testNextSkip() {
+        PagingCursor first = PagingCursor.offset(SORT, 0);
+        List<Object> key = Arrays.asList("Route 5", 3);
+
+        // ties at the end of the page are skipped
+        PagingCursor second = first.next(key, 2, 5);
+        assertEquals(2, second.getSkip());
+
+        // a whole page with the same key adds to the ones skipped so far
+        assertEquals(7, second.next(key, 5, 5).getSkip());
+
+        // cannot tell how many ties are before a page located by offset, use offsets
+        assertNull(PagingCursor.offset(SORT, 10).next(key, 5, 5));
+
+        // null values are part of the key
+        PagingCursor withNull = first.next(Arrays.asList("Route 5", null), 1, 5);
+        assertEquals(withNull, PagingCursor.decode(withNull.encode()));
+
+        // when the keys are not known, the whole page is skipped
+        assertEquals(7, second.advance(5).getSkip());
+        assertNull(first.advance(5));
+    }
+}
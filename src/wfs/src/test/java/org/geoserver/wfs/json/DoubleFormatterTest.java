@@ -0,0 +1,91 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.Random;
+import net.sf.json.util.JSONUtils;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+public class DoubleFormatterTest {
+
+    char[] buffer = new char[DoubleFormatter.MAX_LENGTH + 2];
+
+    @Test
+    public void testSpecialValues() {
+        DoubleFormatter formatter = new DoubleFormatter(3);
+        assertEquals("0", format(formatter, 0));
+        assertEquals("0", format(formatter, -0d));
+        assertEquals("0", format(formatter, -0.0001));
+        assertEquals("-1.5", format(formatter, -1.5));
+        assertEquals("10", format(formatter, 9.9996));
+        assertEquals("0.001", format(formatter, 0.001));
+        assertEquals("5.0E-4", format(new DoubleFormatter(4), 0.0005));
+        assertEquals("1.0E7", format(formatter, 1e7));
+        assertEquals("1.2345678E7", format(formatter, 12345678));
+        assertEquals(-1, formatter.format(Double.NaN, buffer, 0));
+        assertEquals(-1, formatter.format(Double.POSITIVE_INFINITY, buffer, 0));
+        // too many digits, or not rounded at all
+        assertEquals(-1, formatter.format(1e15, buffer, 0));
+        assertEquals(-1, new DoubleFormatter(8).format(2e7 + 0.1, buffer, 0));
+        assertEquals(-1, new DoubleFormatter(16).format(1, buffer, 0));
+    }
+
+    @Test
+    public void testSameAsRounding() {
+        Random random = new Random(42);
+        for (int numDecimals = 0; numDecimals <= 10; numDecimals++) {
+            DoubleFormatter formatter = new DoubleFormatter(numDecimals);
+            for (int i = 0; i < 10000; i++) {
+                double value;
+                switch (i % 3) {
+                    case 0:
+                        value = (random.nextDouble() - 0.5) * 360;
+                        break;
+                    case 1:
+                        value = (random.nextDouble() - 0.5) * 4e7;
+                        break;
+                    default:
+                        value = random.nextDouble() * Math.pow(10, random.nextInt(20) - 10);
+                }
+                int end = formatter.format(value, buffer, 1);
+                if (end >= 0) {
+                    String expected =
+                            JSONUtils.numberToString(RoundingUtil.round(value, numDecimals));
+                    assertEquals(
+                            "Formatting " + value + " with " + numDecimals + " decimals",
+                            expected,
+                            new String(buffer, 1, end - 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBuilderFallback() throws Exception {
+        // the first ordinate goes through the formatter, the second one is not rounded
+        StringWriter writer = new StringWriter();
+        GeoJSONBuilder builder = new GeoJSONBuilder(writer);
+        builder.setNumberOfDecimals(8);
+        GeometryFactory gf = new GeometryFactory();
+        builder.array();
+        builder.writeGeom(gf.createPoint(new Coordinate(1.5, 2e7 + 0.1)));
+        builder.writeGeom(gf.createPoint(new Coordinate(1.5, 2)));
+        builder.endArray();
+        assertEquals(
+                "[{\"type\":\"Point\",\"coordinates\":[1.5,2.00000001E7]},"
+                        + "{\"type\":\"Point\",\"coordinates\":[1.5,2]}]",
+                writer.toString());
+    }
+
+    private String format(DoubleFormatter formatter, double value) {
+        int end = formatter.format(value, buffer, 0);
+        return new String(buffer, 0, end);
+    }
+}
@@ -0,0 +1,44 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.request;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.opengis.wfs20.FeatureCollectionType;
+import net.opengis.wfs20.Wfs20Factory;
+import org.junit.Test;
+
+public class FeatureCollectionResponseTest {
+
+    @Test
+    public void testLazyTotalNumberOfFeatures() {
+        FeatureCollectionResponse response =
+                FeatureCollectionResponse.adapt(
+                        Wfs20Factory.eINSTANCE.createFeatureCollectionType());
+        AtomicInteger counts = new AtomicInteger();
+        response.setLazyTotalNumberOfFeatures(
+                () -> BigInteger.valueOf(10 + counts.incrementAndGet()));
+        assertEquals(0, counts.get());
+
+        // computed once, on first access
+        assertEquals(BigInteger.valueOf(11), response.getTotalNumberOfFeatures());
+        assertEquals(BigInteger.valueOf(11), response.getTotalNumberOfFeatures());
+        assertEquals(1, counts.get());
+    }
+
+    @Test
+    public void testLazyTotalNumberOfFeaturesAdaptee() {
+        FeatureCollectionResponse response =
+                FeatureCollectionResponse.adapt(
+                        Wfs20Factory.eINSTANCE.createFeatureCollectionType());
+        response.setLazyTotalNumberOfFeatures(() -> BigInteger.TEN);
+
+        // encoders working off the EMF object see the total too
+        FeatureCollectionType fc = (FeatureCollectionType) response.getAdaptee();
+        assertEquals(BigInteger.TEN, fc.getNumberMatched());
+    }
+}
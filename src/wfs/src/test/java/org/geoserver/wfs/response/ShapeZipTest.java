@@ -23,6 +23,7 @@
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -30,6 +31,7 @@
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 import javax.xml.namespace.QName;
 import net.opengis.wfs.GetFeatureType;
 import net.opengis.wfs.WfsFactory;
@@ -222,6 +224,77 @@ public void testSplitSize() throws Exception {
         checkShapefileIntegrity(expectedTypes, new ByteArrayInputStream(zip));
     }
 
+    @Test
+    public void testParallelDump() throws Exception {
+        SimpleFeatureCollection polygons = getFeatures(SystemTestData.BASIC_POLYGONS);
+        SimpleFeatureCollection allTypes = getFeatures(ALL_TYPES);
+        SimpleFeatureCollection lines = getFeatures(SystemTestData.LINES);
+        final String[] expectedTypes = {
+            "BasicPolygons",
+            "AllTypesPoint",
+            "AllTypesMPoint",
+            "AllTypesPolygon",
+            "AllTypesLine",
+            "Lines"
+        };
+
+        byte[] parallel = writeOut(4, polygons, allTypes, lines);
+        checkShapefileIntegrity(expectedTypes, new ByteArrayInputStream(parallel));
+
+        byte[] sequential = writeOut(1, polygons, allTypes, lines);
+        checkShapefileIntegrity(expectedTypes, new ByteArrayInputStream(sequential));
+    }
+
+    @Test
+    public void testParallelDumpSameType() throws Exception {
+        // same type twice, falls back on sequential dumping, the last one wins
+        SimpleFeatureCollection polygons = getFeatures(SystemTestData.BASIC_POLYGONS);
+        byte[] zip = writeOut(4, polygons, polygons);
+        checkShapefileIntegrity(new String[] {"BasicPolygons"}, new ByteArrayInputStream(zip));
+    }
+
+    @Test
+    public void testSameTypeLastWins() throws Exception {
+        SimpleFeatureCollection polygons = getFeatures(SystemTestData.BASIC_POLYGONS);
+        SimpleFeatureCollection first;
+        try (SimpleFeatureIterator it = polygons.features()) {
+            first = DataUtilities.collection(it.next());
+        }
+        byte[] expected = getShpOnlyBytes(writeOut(1, first));
+
+        // the later collection replaces the earlier one, as a single set of entries
+        byte[] zip = writeOut(1, polygons, first);
+        checkShapefileIntegrity(new String[] {"BasicPolygons"}, new ByteArrayInputStream(zip));
+        assertArrayEquals(expected, getShpOnlyBytes(zip));
+        assertFalse(Arrays.equals(expected, getShpOnlyBytes(writeOut(1, first, polygons))));
+    }
+
+    @Test
+    public void testZipperAbort() throws Exception {
+        File dir = createTempFolder("shpzipabort");
+        try {
+            FileUtils.writeStringToFile(new File(dir, "a.shp"), "a", StandardCharsets.UTF_8);
+            FileUtils.writeStringToFile(new File(dir, "b.shp"), "b", StandardCharsets.UTF_8);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ShapeZipOutputFormat.ShapefileZipper zipper =
+                    new ShapeZipOutputFormat.ShapefileZipper(new ZipOutputStream(bos));
+            zipper.addShapefile(dir, "a");
+            int streamed = bos.size();
+            assertTrue(streamed > 0);
+
+            // once aborted, the dumps still running cannot append entries anymore
+            zipper.abort();
+            try {
+                zipper.addShapefile(dir, "b");
+                fail("Expected the zipper to be aborted");
+            } catch (IOException e) {
+                assertEquals(streamed, bos.size());
+            }
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
     @Test
     public void testMultiTypeDots() throws Exception {
         byte[] zip = writeOut(getFeatureSource(ALL_DOTS).getFeatures());
@@ -632,6 +705,23 @@ byte[] writeOut(FeatureCollection fc) throws IOException {
         return bos.toByteArray();
     }
 
+    private SimpleFeatureCollection getFeatures(QName typeName) throws IOException {
+        return (SimpleFeatureCollection) getFeatureSource(typeName).getFeatures();
+    }
+
+    /** Saves multiple collections in the same zip, using the given parallelism */
+    byte[] writeOut(int parallelism, SimpleFeatureCollection... collections) throws IOException {
+        ShapeZipOutputFormat zip =
+                new ShapeZipOutputFormat(
+                        GeoServerExtensions.bean(GeoServer.class),
+                        (Catalog) GeoServerExtensions.bean("catalog"),
+                        (GeoServerResourceLoader) GeoServerExtensions.bean("resourceLoader"));
+        zip.setParallelism(parallelism);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        zip.write(Arrays.asList(collections), StandardCharsets.ISO_8859_1, bos, null);
+        return bos.toByteArray();
+    }
+
     private File createTempFolder(String prefix) throws IOException {
         File temp = File.createTempFile(prefix, null);
 
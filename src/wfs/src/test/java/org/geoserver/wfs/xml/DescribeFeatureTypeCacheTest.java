@@ -0,0 +1,128 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.config.GeoServerInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.wfs.WFSTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class DescribeFeatureTypeCacheTest extends WFSTestSupport {
+
+    static final long TIME_TO_LIVE = DescribeFeatureTypeCache.TIME_TO_LIVE;
+
+    static final String BUILDINGS_DFT =
+            "wfs?service=WFS&version=1.1.0&request=DescribeFeatureType&typeName=cite:Buildings";
+
+    static final String GML_IMPORT =
+            "//xsd:import[@namespace='http://www.opengis.net/gml']/@schemaLocation";
+
+    @Before
+    public void enableCache() {
+        DescribeFeatureTypeCache.TIME_TO_LIVE = 60;
+        DescribeFeatureTypeCache.get().clear();
+    }
+
+    @After
+    public void resetCache() {
+        DescribeFeatureTypeCache.TIME_TO_LIVE = TIME_TO_LIVE;
+        DescribeFeatureTypeCache.get().clear();
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        String first = getAsString(BUILDINGS_DFT);
+        assertEquals(1, cacheSize());
+        assertEquals(first, getAsString(BUILDINGS_DFT));
+        assertEquals(1, cacheSize());
+
+        // a different version is a different document
+        getAsString(BUILDINGS_DFT.replace("1.1.0", "1.0.0"));
+        assertEquals(2, cacheSize());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        DescribeFeatureTypeCache.TIME_TO_LIVE = 0;
+        getAsString(BUILDINGS_DFT);
+        assertEquals(0, cacheSize());
+    }
+
+    @Test
+    public void testDisabledStreams() throws Exception {
+        DescribeFeatureTypeCache.TIME_TO_LIVE = 0;
+        // the document is not buffered, the encoder gets the actual output
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DescribeFeatureTypeCache.get()
+                .writeSchema(
+                        "format",
+                        new FeatureTypeInfo[0],
+                        null,
+                        "UTF-8",
+                        output,
+                        out -> assertSame(output, out));
+    }
+
+    @Test
+    public void testCatalogChange() throws Exception {
+        getAsString(BUILDINGS_DFT);
+        assertEquals(1, cacheSize());
+
+        Catalog catalog = getCatalog();
+        FeatureTypeInfo info = catalog.getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        String title = info.getTitle();
+        try {
+            info.setTitle("Modified");
+            catalog.save(info);
+            assertEquals(0, cacheSize());
+        } finally {
+            info = catalog.getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+            info.setTitle(title);
+            catalog.save(info);
+        }
+    }
+
+    @Test
+    public void testProxyBaseURL() throws Exception {
+        GeoServerInfo global = getGeoServer().getGlobal();
+        String proxyBaseUrl = global.getSettings().getProxyBaseUrl();
+        try {
+            global.getSettings().setProxyBaseUrl("http://proxy.example.com/geoserver");
+            getGeoServer().save(global);
+
+            // the schema location of the imports follows the proxy
+            Document dom = getAsDOM(BUILDINGS_DFT);
+            assertXpathEvaluatesTo(
+                    "http://proxy.example.com/geoserver/schemas/gml/3.1.1/base/gml.xsd",
+                    GML_IMPORT,
+                    dom);
+            assertEquals(1, cacheSize());
+        } finally {
+            global = getGeoServer().getGlobal();
+            global.getSettings().setProxyBaseUrl(proxyBaseUrl);
+            getGeoServer().save(global);
+        }
+        assertEquals(0, cacheSize());
+
+        Document dom = getAsDOM(BUILDINGS_DFT);
+        assertXpathEvaluatesTo(
+                "http://localhost:8080/geoserver/schemas/gml/3.1.1/base/gml.xsd", GML_IMPORT, dom);
+    }
+
+    private long cacheSize() {
+        DescribeFeatureTypeCache cache = DescribeFeatureTypeCache.get();
+        return cache.isEnabled() ? cache.getCache().size() : 0;
+    }
+}
@@ -0,0 +1,141 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathExists;
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathNotExists;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.xml.namespace.QName;
+import org.custommonkey.xmlunit.XMLUnit;
+import org.geoserver.data.test.MockData;
+import org.geoserver.wfs.WFSInfo;
+import org.geoserver.wfs.v2_0.WFS20TestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class GML32SimpleFeatureEncoderTest extends WFS20TestSupport {
+
+    @Before
+    public void enableEncoder() {
+        GML32OutputFormat.SIMPLE_FEATURE_ENCODING = true;
+    }
+
+    @After
+    public void disableEncoder() {
+        GML32OutputFormat.SIMPLE_FEATURE_ENCODING = false;
+        WFSInfo wfs = getWFS();
+        wfs.setFeatureBounding(true);
+        getGeoServer().save(wfs);
+    }
+
+    @Test
+    public void testPoints() throws Exception {
+        String request = request(MockData.POINTS);
+        Document dom = getAsDOM(request);
+        assertGML32(dom);
+        assertXpathEvaluatesTo("1", "/wfs:FeatureCollection/@numberReturned", dom);
+        assertXpathEvaluatesTo("1", "/wfs:FeatureCollection/@numberMatched", dom);
+        assertXpathEvaluatesTo("1", "count(//wfs:member/cgf:Points)", dom);
+        assertXpathExists("/wfs:FeatureCollection/wfs:boundedBy/gml:Envelope", dom);
+        assertXpathExists("//cgf:Points[@gml:id='Points.0']/gml:boundedBy/gml:Envelope", dom);
+        assertXpathEvaluatesTo("t0000", "//cgf:Points/cgf:id", dom);
+        assertXpathEvaluatesTo("500", "//cgf:Points/cgf:altitude", dom);
+        assertSameAsEncoder(request, "Points.0", "pointProperty", "Point/gml:pos");
+    }
+
+    @Test
+    public void testLines() throws Exception {
+        String request = request(MockData.ROAD_SEGMENTS);
+        Document dom = getAsDOM(request);
+        assertXpathEvaluatesTo("5", "count(//wfs:member/cite:RoadSegments)", dom);
+        assertXpathEvaluatesTo(
+                "Route 5",
+                "//cite:RoadSegments[@gml:id='RoadSegments.1107532045088']/cite:NAME",
+                dom);
+        assertSameAsEncoder(
+                request,
+                "RoadSegments.1107532045088",
+                "the_geom",
+                "MultiCurve/gml:curveMember/gml:LineString/gml:posList");
+    }
+
+    @Test
+    public void testPolygons() throws Exception {
+        String request = request(MockData.BASIC_POLYGONS);
+        Document dom = getAsDOM(request);
+        assertXpathEvaluatesTo("3", "count(//wfs:member/cite:BasicPolygons)", dom);
+        assertSameAsEncoder(
+                request,
+                "BasicPolygons.1107531493630",
+                "the_geom",
+                "MultiSurface/gml:surfaceMember/gml:Polygon/gml:exterior/gml:LinearRing/gml:posList");
+    }
+
+    @Test
+    public void testNoFeatureBounding() throws Exception {
+        WFSInfo wfs = getWFS();
+        wfs.setFeatureBounding(false);
+        getGeoServer().save(wfs);
+
+        Document dom = getAsDOM(request(MockData.ROAD_SEGMENTS));
+        assertXpathNotExists("//wfs:boundedBy", dom);
+        assertXpathNotExists("//gml:boundedBy", dom);
+        assertXpathEvaluatesTo("5", "count(//wfs:member/cite:RoadSegments)", dom);
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        // feature by id, encoded without the collection wrapper
+        Document dom =
+                getAsDOM(
+                        "wfs?service=WFS&version=2.0.0&request=GetFeature"
+                                + "&resourceId=RoadSegments.1107532045088");
+        assertEquals("cite:RoadSegments", dom.getDocumentElement().getNodeName());
+
+        // the boundedBy attribute maps to gml:boundedBy
+        dom = getAsDOM(request(MockData.FIFTEEN));
+        assertXpathEvaluatesTo("15", "count(//wfs:member/cdf:Fifteen)", dom);
+        assertXpathNotExists("//cdf:boundedBy", dom);
+    }
+
+    private String request(QName typeName) {
+        return "wfs?service=WFS&version=2.0.0&request=GetFeature&typeNames=" + getLayerId(typeName);
+    }
+
+    /** Checks the streamed output has the same values as the one of the standard encoder */
+    private void assertSameAsEncoder(String request, String fid, String geometry, String path)
+            throws Exception {
+        String prefix = request.substring(request.lastIndexOf('=') + 1).split(":")[0];
+        String base =
+                "//" + prefix + ":*[@gml:id='" + fid + "']/" + prefix + ":" + geometry + "/gml:";
+        Document streamed = getAsDOM(request);
+        GML32OutputFormat.SIMPLE_FEATURE_ENCODING = false;
+        Document encoded = getAsDOM(request);
+
+        assertEquals(
+                xpath(encoded, "/wfs:FeatureCollection/@numberReturned"),
+                xpath(streamed, "/wfs:FeatureCollection/@numberReturned"));
+        assertEquals(schemaLocations(encoded), schemaLocations(streamed));
+        assertEquals(xpath(encoded, base + path), xpath(streamed, base + path));
+        String srsName = base + path.substring(0, path.indexOf('/')) + "/@srsName";
+        assertEquals(xpath(encoded, srsName), xpath(streamed, srsName));
+    }
+
+    private Set<String> schemaLocations(Document dom) throws Exception {
+        String locations = xpath(dom, "/wfs:FeatureCollection/@xsi:schemaLocation");
+        return new HashSet<>(Arrays.asList(locations.trim().split("\\s+")));
+    }
+
+    private String xpath(Document dom, String xpath) throws Exception {
+        return XMLUnit.newXpathEngine().evaluate(xpath, dom);
+    }
+}
@@ -0,0 +1,163 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.junit.Assert.assertEquals;
+
+import org.geoserver.wfs.v2_0.WFS20TestSupport;
+import org.geotools.gml3.v3_2.GML;
+import org.geotools.wfs.v2_0.WFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class TransactionSpoolTest extends WFS20TestSupport {
+
+    static final int THRESHOLD = TransactionSpool.THRESHOLD;
+
+    static final int BATCH_SIZE = TransactionSpool.BATCH_SIZE;
+
+    static final String POINTS_HITS =
+            "wfs?service=WFS&version=2.0.0&request=GetFeature&typeNames=cgf:Points"
+                    + "&resultType=hits";
+
+    @Before
+    public void enableSpool() {
+        TransactionSpool.THRESHOLD = 100;
+        TransactionSpool.BATCH_SIZE = 2;
+    }
+
+    @After
+    public void resetSpool() {
+        TransactionSpool.THRESHOLD = THRESHOLD;
+        TransactionSpool.BATCH_SIZE = BATCH_SIZE;
+    }
+
+    @Test
+    public void testStreamingInsert() throws Exception {
+        int points = countPoints();
+
+        // three features, split over two inserts, parsed two at a time
+        String xml =
+                "<wfs:Transaction service='WFS' version='2.0.0' "
+                        + "xmlns:cgf='http://www.opengis.net/cite/geometry' "
+                        + "xmlns:wfs='"
+                        + WFS.NAMESPACE
+                        + "' xmlns:gml='"
+                        + GML.NAMESPACE
+                        + "'>"
+                        + "<wfs:Insert handle='insert-1'>"
+                        + point("t0010", "10 20")
+                        + point("t0011", "11 21")
+                        + point("t0012", "12 22")
+                        + "</wfs:Insert>"
+                        + "<wfs:Insert handle='insert-2'>"
+                        + point("t0013", "13 23")
+                        + "</wfs:Insert>"
+                        + "</wfs:Transaction>";
+        Document dom = postAsDOM("wfs", xml);
+        assertXpathEvaluatesTo("4", "//wfs:totalInserted", dom);
+        assertXpathEvaluatesTo("4", "count(//wfs:InsertResults/wfs:Feature)", dom);
+        assertEquals(points + 4, countPoints());
+
+        dom =
+                getAsDOM(
+                        "wfs?service=WFS&version=2.0.0&request=GetFeature&typeNames=cgf:Points"
+                                + "&cql_filter=id%3D't0012'");
+        assertXpathEvaluatesTo("12 22", "//cgf:Points/cgf:pointProperty/gml:Point/gml:pos", dom);
+    }
+
+    @Test
+    public void testStreamingInsertInvalidFeature() throws Exception {
+        int points = countPoints();
+
+        // the second batch cannot be parsed, the whole transaction is rolled back
+        String xml =
+                "<wfs:Transaction service='WFS' version='2.0.0' "
+                        + "xmlns:cgf='http://www.opengis.net/cite/geometry' "
+                        + "xmlns:wfs='"
+                        + WFS.NAMESPACE
+                        + "' xmlns:gml='"
+                        + GML.NAMESPACE
+                        + "'>"
+                        + "<wfs:Insert>"
+                        + point("t0020", "10 20")
+                        + point("t0021", "11 21")
+                        + point("t0022", "abc")
+                        + "</wfs:Insert>"
+                        + "</wfs:Transaction>";
+        Document dom = postAsDOM("wfs", xml);
+        assertEquals("ows:ExceptionReport", dom.getDocumentElement().getNodeName());
+        assertEquals(points, countPoints());
+    }
+
+    @Test
+    public void testNotStreamed() throws Exception {
+        int points = countPoints();
+
+        // not made of inserts only, parsed as a whole
+        String xml =
+                "<wfs:Transaction service='WFS' version='2.0.0' "
+                        + "xmlns:cgf='http://www.opengis.net/cite/geometry' "
+                        + "xmlns:fes='http://www.opengis.net/fes/2.0' "
+                        + "xmlns:wfs='"
+                        + WFS.NAMESPACE
+                        + "' xmlns:gml='"
+                        + GML.NAMESPACE
+                        + "'>"
+                        + "<wfs:Insert>"
+                        + point("t0030", "10 20")
+                        + "</wfs:Insert>"
+                        + "<wfs:Delete typeName='cgf:Points'>"
+                        + "<fes:Filter><fes:PropertyIsEqualTo>"
+                        + "<fes:ValueReference>cgf:id</fes:ValueReference>"
+                        + "<fes:Literal>t0030</fes:Literal>"
+                        + "</fes:PropertyIsEqualTo></fes:Filter>"
+                        + "</wfs:Delete>"
+                        + "</wfs:Transaction>";
+        Document dom = postAsDOM("wfs", xml);
+        assertXpathEvaluatesTo("1", "//wfs:totalInserted", dom);
+        assertXpathEvaluatesTo("1", "//wfs:totalDeleted", dom);
+        assertEquals(points, countPoints());
+    }
+
+    @Test
+    public void testStreamingInsertWFS11() throws Exception {
+        int points = countPoints();
+
+        String xml =
+                "<wfs:Transaction service='WFS' version='1.1.0' "
+                        + "xmlns:cgf='http://www.opengis.net/cite/geometry' "
+                        + "xmlns:wfs='http://www.opengis.net/wfs' "
+                        + "xmlns:gml='http://www.opengis.net/gml'>"
+                        + "<wfs:Insert>"
+                        + point("t0040", "10 20")
+                        + point("t0041", "11 21")
+                        + point("t0042", "12 22")
+                        + "</wfs:Insert>"
+                        + "</wfs:Transaction>";
+        Document dom = postAsDOM("wfs", xml);
+        assertXpathEvaluatesTo("3", "//*[local-name() = 'totalInserted']", dom);
+        assertEquals(points + 3, countPoints());
+    }
+
+    private String point(String id, String pos) {
+        return "<cgf:Points>"
+                + "<cgf:pointProperty><gml:Point><gml:pos>"
+                + pos
+                + "</gml:pos></gml:Point></cgf:pointProperty>"
+                + "<cgf:id>"
+                + id
+                + "</cgf:id>"
+                + "</cgf:Points>";
+    }
+
+    private int countPoints() throws Exception {
+        Document dom = getAsDOM(POINTS_HITS);
+        return Integer.parseInt(dom.getDocumentElement().getAttribute("numberMatched"));
+    }
+}
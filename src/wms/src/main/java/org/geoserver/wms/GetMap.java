@@ -23,6 +23,7 @@
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.wms.map.GetMapMetrics;
 import org.geoserver.wms.map.MetatileMapOutputFormat;
 import org.geoserver.wms.map.RenderedImageMapOutputFormat;
 import org.geotools.coverage.grid.io.GridCoverage2DReader;
@@ -284,6 +285,7 @@ WebMap executeInternal(
             final Filter layerFilter = SimplifyingFilterVisitor.simplify(filters[i]);
             final SortBy[] layerSort = sorts != null ? sorts.get(i) : null;
 
+            int added = mapContent.layers().size();
             int layerType = mapLayerInfo.getType();
             if (layerType == MapLayerInfo.TYPE_REMOTE_VECTOR) {
                 addRemoteVectorLayer(
@@ -325,6 +327,14 @@ WebMap executeInternal(
             } else {
                 throw new IllegalArgumentException("Unknown layer type " + layerType);
             }
+            // label the metrics of the layers added with the requested layer name
+            List<org.geotools.map.Layer> contentLayers = mapContent.layers();
+            for (int j = added; j < contentLayers.size(); j++) {
+                contentLayers
+                        .get(j)
+                        .getUserData()
+                        .put(GetMapMetrics.LAYER_NAME, mapLayerInfo.getName());
+            }
         }
 
         RenderingVariables.setupEnvironmentVariables(mapContent);
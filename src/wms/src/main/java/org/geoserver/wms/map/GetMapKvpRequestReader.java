@@ -310,6 +310,7 @@ protected boolean skipResource(Object theResource) {
     @Override
     public GetMapRequest read(Object request, Map<String, Object> kvp, Map<String, Object> rawKvp)
             throws Exception {
+        long start = System.nanoTime();
         GetMapRequest getMap = (GetMapRequest) super.read(request, kvp, rawKvp);
         // set the raw params used to create the request
         getMap.setRawKvp(KvpUtils.toStringKVP(rawKvp));
@@ -448,6 +449,7 @@ public GetMapRequest read(Object request, Map<String, Object> kvp, Map<String, O
 
         // styles
         // process SLD_BODY, SLD, then STYLES parameter
+        long stylesStart = System.nanoTime();
         if (getMap.getSldBody() != null) {
             processSLDBody(getMap, requestedLayerInfos, styleNameList, filters, sortBy);
         } else if (getMap.getSld() != null) {
@@ -455,6 +457,7 @@ public GetMapRequest read(Object request, Map<String, Object> kvp, Map<String, O
         } else {
             processLayersStyles(getMap, requestedLayerInfos, styleNameList, filters, sortBy);
         }
+        long stylesTime = System.nanoTime() - stylesStart;
 
         // check the view params
         List<Map<String, String>> viewParams = getMap.getViewParams();
@@ -518,6 +521,10 @@ public GetMapRequest read(Object request, Map<String, Object> kvp, Map<String, O
             getMap.setClip(getClipGeometry(getMap));
         }
 
+        GetMapMetrics metrics = GetMapMetrics.get();
+        metrics.record(GetMapMetrics.Phase.STYLES, getMap, stylesTime);
+        metrics.record(GetMapMetrics.Phase.PARSE, getMap, System.nanoTime() - start);
+
         return getMap;
     }
 
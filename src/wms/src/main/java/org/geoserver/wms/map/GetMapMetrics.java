@@ -0,0 +1,307 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.MapLayerInfo;
+import org.geoserver.wms.WMSMapContent;
+import org.geotools.map.Layer;
+import org.geotools.renderer.RenderListener;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Collects latency histograms for the phases of GetMap requests, tagged by layer and output format,
+ * and writes them out in the Prometheus text exposition format.
+ *
+ * <p>The phases that are about the whole request ({@link Phase#PARSE}, {@link Phase#STYLES}, {@link
+ * Phase#RENDER} and {@link Phase#ENCODE}) are recorded once for each requested layer, so that the
+ * layer label takes one value per published layer, rather than one per combination of layers.
+ * {@link Phase#QUERY} and {@link Phase#LAYER} are recorded for each layer separately.
+ *
+ * <p>The number of distinct series is limited by the {@code org.geoserver.wms.metrics.maxSeries}
+ * system variable (1000 by default), past that new combinations of layer and format are recorded as
+ * "other". The collection can be disabled altogether setting the {@code
+ * org.geoserver.wms.metrics.disabled} system variable to true.
+ */
+public class GetMapMetrics {
+
+    static final boolean DISABLED = Boolean.getBoolean("org.geoserver.wms.metrics.disabled");
+
+    static int MAX_SERIES = Integer.getInteger("org.geoserver.wms.metrics.maxSeries", 1000);
+
+    static final String OTHER = "other";
+
+    static final String METRIC = "geoserver_wms_getmap_phase_seconds";
+
+    static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    static final GetMapMetrics INSTANCE = new GetMapMetrics();
+
+    /**
+     * User data key of the map content layers holding the name of the requested layer they come
+     * from, used to label the per layer phases like the request wide ones
+     */
+    public static final String LAYER_NAME = "org.geoserver.wms.metrics.layerName";
+
+    /** The GetMap phases being timed */
+    public enum Phase {
+        /** KVP parsing, including the styles processing */
+        PARSE,
+        /** Style lookup and parsing, including SLD and SLD_BODY */
+        STYLES,
+        /**
+         * Time to the first feature for vector layers, or the raster read for layers going through
+         * the direct raster path
+         */
+        QUERY,
+        /** Query and painting of a single layer */
+        LAYER,
+        /**
+         * Rendering of the map, for the direct raster path the actual raster processing is deferred
+         * to the encoding
+         */
+        RENDER,
+        /** Encoding of the rendered image */
+        ENCODE;
+
+        String label() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    Map<Key, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public static GetMapMetrics get() {
+        return INSTANCE;
+    }
+
+    /** Returns true if the request is an actual GetMap, and not another request reusing it */
+    public static boolean isGetMap(GetMapRequest request) {
+        return !DISABLED
+                && request != null
+                && (request.getRequest() == null
+                        || "GetMap".equalsIgnoreCase(request.getRequest()));
+    }
+
+    /** Records the duration of a phase for a whole GetMap request, under each requested layer */
+    public void record(Phase phase, GetMapRequest request, long nanos) {
+        if (isGetMap(request)) {
+            for (String layer : layers(request)) {
+                record(phase, layer, request.getFormat(), nanos);
+            }
+        }
+    }
+
+    /** Records the duration of a phase for a whole GetMap request */
+    public void record(Phase phase, WMSMapContent mapContent, long nanos) {
+        if (mapContent != null) {
+            record(phase, mapContent.getRequest(), nanos);
+        }
+    }
+
+    /** Records the duration of a phase for a single map content layer */
+    public void record(Phase phase, Layer layer, String format, long nanos) {
+        record(phase, layerName(layer), format, nanos);
+    }
+
+    /** Records the duration of a phase */
+    public void record(Phase phase, String layer, String format, long nanos) {
+        if (DISABLED) {
+            return;
+        }
+        Key key = new Key(phase, layer, format);
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            if (histograms.size() >= MAX_SERIES) {
+                key = new Key(phase, OTHER, OTHER);
+            }
+            histogram = histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    /** Returns the histogram for the given phase, layer and format, or null if not found */
+    public LatencyHistogram getHistogram(Phase phase, String layer, String format) {
+        return histograms.get(new Key(phase, layer, format));
+    }
+
+    /** Drops all the collected histograms */
+    public void reset() {
+        histograms.clear();
+    }
+
+    /** Writes out the histograms as Prometheus summaries */
+    public void write(Writer writer) throws IOException {
+        writer.write("# HELP " + METRIC + " Time spent in each phase of WMS GetMap requests\n");
+        writer.write("# TYPE " + METRIC + " summary\n");
+        List<Map.Entry<Key, LatencyHistogram>> entries = new ArrayList<>(histograms.entrySet());
+        entries.sort(Comparator.comparing(e -> e.getKey().toString()));
+        for (Map.Entry<Key, LatencyHistogram> entry : entries) {
+            String labels = entry.getKey().toString();
+            LatencyHistogram histogram = entry.getValue();
+            for (double quantile : QUANTILES) {
+                writer.write(METRIC + "{" + labels + ",quantile=\"" + quantile + "\"} ");
+                writer.write(seconds(histogram.getQuantile(quantile)) + "\n");
+            }
+            writer.write(METRIC + "_sum{" + labels + "} " + seconds(histogram.getSum()) + "\n");
+            writer.write(METRIC + "_count{" + labels + "} " + histogram.getCount() + "\n");
+        }
+
+        String max = "geoserver_wms_getmap_phase_max_seconds";
+        writer.write(
+                "# HELP " + max + " Longest time spent in each phase of WMS GetMap requests\n");
+        writer.write("# TYPE " + max + " gauge\n");
+        for (Map.Entry<Key, LatencyHistogram> entry : entries) {
+            writer.write(max + "{" + entry.getKey() + "} ");
+            writer.write(seconds(entry.getValue().getMax()) + "\n");
+        }
+    }
+
+    static String seconds(long micros) {
+        return String.valueOf(micros / 1e6);
+    }
+
+    /** The distinct names of the requested layers, or a single empty name if there are none */
+    static Set<String> layers(GetMapRequest request) {
+        List<MapLayerInfo> layers = request.getLayers();
+        if (layers == null || layers.isEmpty()) {
+            return Collections.singleton("");
+        }
+        return layers.stream()
+                .map(l -> l.getName())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * The name of the requested layer a map content layer comes from, falling back on its title for
+     * layers not set up by GetMap
+     */
+    static String layerName(Layer layer) {
+        Object name = layer.getUserData().get(LAYER_NAME);
+        if (name instanceof String) {
+            return (String) name;
+        }
+        return layer.getTitle() != null ? layer.getTitle() : "";
+    }
+
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    static class Key {
+        final Phase phase;
+        final String layer;
+        final String format;
+
+        Key(Phase phase, String layer, String format) {
+            this.phase = phase;
+            this.layer = layer;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return phase == key.phase
+                    && Objects.equals(layer, key.layer)
+                    && Objects.equals(format, key.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(phase, layer, format);
+        }
+
+        @Override
+        public String toString() {
+            return "phase=\""
+                    + phase.label()
+                    + "\",layer=\""
+                    + escape(layer)
+                    + "\",format=\""
+                    + escape(format)
+                    + "\"";
+        }
+    }
+
+    /**
+     * Records the {@link Phase#QUERY} and {@link Phase#LAYER} times of each layer painted by a
+     * renderer. The query time is taken as the time to the first feature being painted, which
+     * includes opening the data source and running the query, but not reading all the results.
+     */
+    static class LayerTimer implements RenderListener {
+
+        final String format;
+
+        volatile Layer current;
+
+        volatile long start;
+
+        volatile boolean queried;
+
+        LayerTimer(String format) {
+            this.format = format;
+        }
+
+        @Override
+        public void layerStart(Layer layer) {
+            current = layer;
+            start = System.nanoTime();
+            queried = false;
+        }
+
+        @Override
+        public void featureRenderer(SimpleFeature feature) {
+            if (!queried && current != null) {
+                queried = true;
+                record(Phase.QUERY, current);
+            }
+        }
+
+        @Override
+        public void layerEnd(Layer layer) {
+            if (!queried) {
+                // no features, the query took the whole time
+                record(Phase.QUERY, layer);
+            }
+            record(Phase.LAYER, layer);
+            current = null;
+        }
+
+        private void record(Phase phase, Layer layer) {
+            get().record(phase, layer, format, System.nanoTime() - start);
+        }
+
+        @Override
+        public void errorOccurred(Exception e) {}
+
+        @Override
+        public void labellingStart() {}
+
+        @Override
+        public void labellingEnd() {}
+
+        @Override
+        public void renderingComplete() {}
+    }
+}
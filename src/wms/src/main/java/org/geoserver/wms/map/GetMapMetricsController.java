@@ -0,0 +1,51 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.geoserver.security.GeoServerSecurityManager;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.AbstractController;
+
+/**
+ * Exposes the {@link GetMapMetrics} histograms, along with the {@link QuickTileCache} statistics,
+ * in the Prometheus text format, for scraping. Since the output lists the layers being requested,
+ * it's available to administrators only.
+ */
+public class GetMapMetricsController extends AbstractController {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final GeoServerSecurityManager securityManager;
+
+    private final QuickTileCache tileCache;
+
+    public GetMapMetricsController(
+            GeoServerSecurityManager securityManager, QuickTileCache tileCache) {
+        this.securityManager = securityManager;
+        this.tileCache = tileCache;
+    }
+
+    @Override
+    protected ModelAndView handleRequestInternal(
+            HttpServletRequest request, HttpServletResponse response) throws Exception {
+        if (!securityManager.checkAuthenticationForAdminRole()) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Administrator role required");
+            return null;
+        }
+
+        response.setContentType(CONTENT_TYPE);
+        try (Writer writer =
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8)) {
+            GetMapMetrics.get().write(writer);
+            tileCache.write(writer);
+        }
+        return null;
+    }
+}
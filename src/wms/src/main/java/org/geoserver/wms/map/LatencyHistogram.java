@@ -0,0 +1,117 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free latency histogram, in the spirit of HdrHistogram: values are recorded in
+ * microseconds, in buckets whose width doubles at each power of two, each split in {@link
+ * #SUB_BUCKETS} linear sub-buckets, so that the quantiles it reports are within about 6% of the
+ * actual value, whatever the magnitude, with a small and fixed memory footprint.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BITS = 4;
+
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** Values above 2^36 microseconds (about 19 hours) are recorded in the last bucket */
+    static final int MAX_EXPONENT = 36;
+
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    final LongAdder count = new LongAdder();
+
+    final LongAdder sum = new LongAdder();
+
+    final AtomicLong max = new AtomicLong();
+
+    /** Records a duration, in nanoseconds */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucket(micros));
+        count.increment();
+        sum.add(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /** Number of recorded values */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** Sum of the recorded values, in microseconds */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /** Largest recorded value, in microseconds */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value, in microseconds, below which the given fraction of the recorded values
+     * falls.
+     *
+     * @param quantile a value between 0 and 1
+     */
+    public long getQuantile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // middle of the bucket, never above the actual maximum
+                long low = lowerBound(i);
+                return Math.min(low + (bucketWidth(i) - 1) / 2, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BITS;
+        int sub = (int) (micros >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << shift;
+    }
+
+    static long bucketWidth(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return 1;
+        }
+        return 1L << ((bucket - SUB_BUCKETS) / SUB_BUCKETS);
+    }
+}
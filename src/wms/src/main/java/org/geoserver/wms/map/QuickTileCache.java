@@ -5,16 +5,24 @@
  */
 package org.geoserver.wms.map;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.awt.image.DataBuffer;
 import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.geoserver.config.ConfigurationListenerAdapter;
@@ -22,6 +30,7 @@
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.ServiceInfo;
 import org.geoserver.config.impl.GeoServerLifecycleHandler;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.TransactionEvent;
 import org.geoserver.wfs.TransactionListener;
@@ -31,9 +40,26 @@
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.CRS.AxisOrder;
 import org.geotools.util.CanonicalSet;
+import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Envelope;
 
+/**
+ * In memory cache of the tiles generated by {@link MetatileMapOutputFormat}. The cache is bounded
+ * by an estimate of the memory used by the cached tiles, which can be configured via the {@link
+ * #MAX_MEMORY_KEY} system/environment variable or servlet context parameter (in bytes, defaults to
+ * {@link #DEFAULT_MAX_MEMORY}), and evicts the least recently used meta-tiles when the limit is
+ * reached.
+ */
 public class QuickTileCache implements TransactionListener, GeoServerLifecycleHandler {
+
+    static final Logger LOGGER = Logging.getLogger(QuickTileCache.class);
+
+    /** Key used to configure the maximum amount of memory used by the cache, in bytes */
+    public static final String MAX_MEMORY_KEY = "QUICK_TILE_CACHE_MAX_MEMORY";
+
+    /** Default maximum amount of memory used by the cache, 64MB */
+    public static final long DEFAULT_MAX_MEMORY = 64 * 1024 * 1024;
+
     /**
      * Set of parameters that we can ignore, since they do not define a map, are either unrelated,
      * or define the tiling instead
@@ -55,9 +81,10 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     /** Canonicalizer used to return the same object when two threads ask for the same meta-tile */
     private CanonicalSet<MetaTileKey> metaTileKeys = CanonicalSet.newInstance(MetaTileKey.class);
 
-    private WeakHashMap<MetaTileKey, CacheElement> tileCache = new WeakHashMap<>();
+    private final Cache<MetaTileKey, CacheElement> tileCache;
 
     public QuickTileCache(GeoServer geoServer) {
+        this(getMaxMemory());
         geoServer.addListener(
                 new ConfigurationListenerAdapter() {
                     @Override
@@ -66,7 +93,7 @@ public void handleGlobalChange(
                             List<String> propertyNames,
                             List<Object> oldValues,
                             List<Object> newValues) {
-                        tileCache.clear();
+                        tileCache.invalidateAll();
                     }
 
                     @Override
@@ -75,18 +102,52 @@ public void handleServiceChange(
                             List<String> propertyNames,
                             List<Object> oldValues,
                             List<Object> newValues) {
-                        tileCache.clear();
+                        tileCache.invalidateAll();
                     }
 
                     @Override
                     public void reloaded() {
-                        tileCache.clear();
+                        tileCache.invalidateAll();
                     }
                 });
     }
 
     /** For testing only */
-    QuickTileCache() {}
+    QuickTileCache() {
+        this(DEFAULT_MAX_MEMORY);
+    }
+
+    QuickTileCache(long maxMemory) {
+        // the cache is concurrent, no need to synchronize access, and bounded by memory
+        // usage, so that it does not get emptied at each GC like the old weak hash map did
+        this.tileCache =
+                CacheBuilder.newBuilder()
+                        .maximumWeight(maxMemory)
+                        .weigher((MetaTileKey k, CacheElement v) -> v.getWeight())
+                        .recordStats()
+                        .build();
+    }
+
+    private static long getMaxMemory() {
+        String value = GeoServerExtensions.getProperty(MAX_MEMORY_KEY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "Invalid value for "
+                                + MAX_MEMORY_KEY
+                                + ": "
+                                + value
+                                + ", using the default of "
+                                + DEFAULT_MAX_MEMORY
+                                + " bytes instead",
+                        e);
+            }
+        }
+        return DEFAULT_MAX_MEMORY;
+    }
 
     /**
      * Given a tiled request, builds a key that can be used to access the cache looking for a
@@ -328,8 +389,8 @@ public String toString() {
     }
 
     /** Gathers a tile from the cache, if available */
-    public synchronized RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
-        CacheElement ce = tileCache.get(key);
+    public RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
+        CacheElement ce = tileCache.getIfPresent(key);
 
         if (ce == null) {
             return null;
@@ -353,16 +414,91 @@ public RenderedImage getTile(MetaTileKey key, GetMapRequest request, RenderedIma
     /**
      * Puts the specified tile array in the cache, and returns the tile the request was looking for
      */
-    public synchronized void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
+    public void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
         tileCache.put(key, new CacheElement(tiles));
     }
 
-    class CacheElement {
+    /**
+     * Returns a snapshot of the cache statistics (hits, misses, evictions), for monitoring purposes
+     */
+    public CacheStats getStatistics() {
+        return tileCache.stats();
+    }
+
+    /** Returns the number of meta-tiles currently held in the cache */
+    public long size() {
+        return tileCache.size();
+    }
+
+    /** Writes out the cache statistics in the Prometheus text exposition format */
+    public void write(Writer writer) throws IOException {
+        CacheStats stats = getStatistics();
+        writeMetric(
+                writer,
+                "geoserver_wms_metatile_cache_hits_total",
+                "counter",
+                "Meta-tile cache hits",
+                stats.hitCount());
+        writeMetric(
+                writer,
+                "geoserver_wms_metatile_cache_misses_total",
+                "counter",
+                "Meta-tile cache misses",
+                stats.missCount());
+        writeMetric(
+                writer,
+                "geoserver_wms_metatile_cache_evictions_total",
+                "counter",
+                "Meta-tiles evicted to stay within the memory limit",
+                stats.evictionCount());
+        writeMetric(
+                writer,
+                "geoserver_wms_metatile_cache_entries",
+                "gauge",
+                "Meta-tiles held in the cache",
+                size());
+    }
+
+    private static void writeMetric(
+            Writer writer, String name, String type, String help, long value) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+        writer.write(name + " " + value + "\n");
+    }
+
+    static class CacheElement {
         RenderedImage[] tiles;
 
+        int weight;
+
         public CacheElement(RenderedImage[] tiles) {
             this.tiles = tiles;
+            long total = 0;
+            for (RenderedImage tile : tiles) {
+                total += getSizeInBytes(tile);
+            }
+            this.weight = (int) Math.min(Integer.MAX_VALUE, total);
+        }
+
+        int getWeight() {
+            return weight;
+        }
+    }
+
+    /** Estimates the memory used by the image raster, based on its sample model */
+    static long getSizeInBytes(RenderedImage image) {
+        if (image == null) {
+            return 0;
+        }
+        SampleModel sm = image.getSampleModel();
+        long bitsPerPixel = 0;
+        for (int size : sm.getSampleSize()) {
+            bitsPerPixel += size;
+        }
+        if (bitsPerPixel == 0) {
+            bitsPerPixel = (long) sm.getNumBands() * DataBuffer.getDataTypeSize(sm.getDataType());
         }
+        return (long) image.getWidth() * image.getHeight() * bitsPerPixel / 8;
     }
 
     @Override
@@ -371,18 +507,18 @@ public void dataStoreChange(TransactionEvent event) throws WFSException {
         // contains a string with part of the map request where the layer
         // name is included, but we would have to parse it and consider
         // also that the namespace may be missing in the getmap request
-        tileCache.clear();
+        tileCache.invalidateAll();
     }
 
     @Override
     public void onReset() {
         // data might have changed in the meantime
-        tileCache.clear();
+        tileCache.invalidateAll();
     }
 
     @Override
     public void onDispose() {
-        tileCache.clear();
+        tileCache.invalidateAll();
     }
 
     @Override
@@ -392,6 +528,6 @@ public void beforeReload() {
 
     @Override
     public void onReload() {
-        tileCache.clear();
+        tileCache.invalidateAll();
     }
 }
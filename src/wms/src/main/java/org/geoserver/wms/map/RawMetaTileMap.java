@@ -0,0 +1,107 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.geoserver.platform.ServiceException;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.WMSMapContent;
+
+/**
+ * A metatile made of separately encoded tiles, produced by the formats that cannot be split after
+ * encoding, such as vector tiles, when the {@link #METATILE_FORMAT_OPTION} is used. The tiles are
+ * meant to be extracted and stored one by one by the tile cache, the metatile as a whole cannot be
+ * written out.
+ */
+public class RawMetaTileMap extends RawMap {
+
+    /**
+     * Format option asking for a metatile split in {@code <columns>x<rows>} tiles, each one having
+     * the size of the request divided by the number of columns and rows
+     */
+    public static final String METATILE_FORMAT_OPTION = "metatile";
+
+    /** The tiles, by column and row, with the first row being the southernmost one */
+    private final RawMap[][] tiles;
+
+    public RawMetaTileMap(WMSMapContent mapContent, RawMap[][] tiles, String mimeType) {
+        super(mapContent, (byte[]) null, mimeType);
+        this.tiles = tiles;
+    }
+
+    /**
+     * Returns the number of columns and rows requested with the {@link #METATILE_FORMAT_OPTION}, or
+     * null if the option is missing
+     *
+     * @throws ServiceException if the option is invalid, or does not divide the map size evenly
+     */
+    public static int[] getMetaTiling(GetMapRequest request) {
+        Object value =
+                request != null ? request.getFormatOptions().get(METATILE_FORMAT_OPTION) : null;
+        if (value == null) {
+            return null;
+        }
+        String[] factors = value.toString().toLowerCase().split("x");
+        try {
+            if (factors.length == 2) {
+                int columns = Integer.parseInt(factors[0].trim());
+                int rows = Integer.parseInt(factors[1].trim());
+                if (columns > 0
+                        && rows > 0
+                        && request.getWidth() % columns == 0
+                        && request.getHeight() % rows == 0) {
+                    return new int[] {columns, rows};
+                }
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new ServiceException(
+                "Invalid metatile format option "
+                        + value
+                        + ", should be <columns>x<rows> and divide the map size evenly",
+                ServiceException.INVALID_PARAMETER_VALUE,
+                "format_options");
+    }
+
+    public int getColumns() {
+        return tiles.length;
+    }
+
+    public int getRows() {
+        return tiles.length == 0 ? 0 : tiles[0].length;
+    }
+
+    /**
+     * Returns a tile of the metatile
+     *
+     * @param column the column, starting from the west
+     * @param row the row, starting from the south
+     */
+    public RawMap getTile(int column, int row) {
+        return tiles[column][row];
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        throw new ServiceException(
+                "A metatile cannot be written as a whole, its tiles must be extracted one by one",
+                ServiceException.INVALID_PARAMETER_VALUE,
+                "format_options");
+    }
+
+    @Override
+    public void disposeInternal() {
+        // the map content is shared, only the tiles own resources need to be released
+        for (RawMap[] column : tiles) {
+            for (RawMap tile : column) {
+                if (tile != null) {
+                    tile.disposeInternal();
+                }
+            }
+        }
+    }
+}
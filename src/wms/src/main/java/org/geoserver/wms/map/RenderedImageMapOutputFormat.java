@@ -43,6 +43,7 @@
 import org.geoserver.wms.WMSPartialMapException;
 import org.geoserver.wms.WMSServiceExceptionHandler;
 import org.geoserver.wms.decoration.MapDecorationLayout;
+import org.geoserver.wms.map.GetMapMetrics.Phase;
 import org.geotools.image.ImageWorker;
 import org.geotools.map.Layer;
 import org.geotools.map.StyleLayer;
@@ -212,6 +213,15 @@ public final RenderedImageMap produceMap(WMSMapContent mapContent) throws Servic
      */
     public RenderedImageMap produceMap(final WMSMapContent mapContent, final boolean tiled)
             throws ServiceException {
+        // timed here, as both the plain and the tiled requests go through this method
+        long start = System.nanoTime();
+        RenderedImageMap map = render(mapContent, tiled);
+        GetMapMetrics.get().record(Phase.RENDER, mapContent, System.nanoTime() - start);
+        return map;
+    }
+
+    private RenderedImageMap render(final WMSMapContent mapContent, final boolean tiled)
+            throws ServiceException {
         Rectangle paintArea =
                 new Rectangle(0, 0, mapContent.getMapWidth(), mapContent.getMapHeight());
 
@@ -295,10 +305,19 @@ public RenderedImageMap produceMap(final WMSMapContent mapContent, final boolean
                     interpolation = request.getInterpolations().get(0);
                 }
 
+                long start = System.nanoTime();
                 image =
                         new DirectRasterRenderer(
                                         wms, mapContent, 0, interpolation, transparencySupported)
                                 .render();
+                if (GetMapMetrics.isGetMap(request)) {
+                    GetMapMetrics.get()
+                            .record(
+                                    Phase.QUERY,
+                                    mapContent.layers().get(0),
+                                    request.getFormat(),
+                                    System.nanoTime() - start);
+                }
             } catch (Exception e) {
                 throw new ServiceException("Error rendering coverage on the fast path", e);
             }
@@ -521,6 +540,9 @@ public RenderedImageMap produceMap(final WMSMapContent mapContent, final boolean
             statistics = new RenderTimeStatistics();
             renderer.addRenderListener(statistics);
         }
+        if (GetMapMetrics.isGetMap(request)) {
+            renderer.addRenderListener(new GetMapMetrics.LayerTimer(request.getFormat()));
+        }
         onBeforeRender(renderer);
 
         int maxRenderingTime = wms.getMaxRenderingTime(request);
@@ -25,6 +25,7 @@
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.kvp.PaletteManager;
+import org.geoserver.wms.map.GetMapMetrics.Phase;
 import org.geoserver.wms.map.PNGMapResponse.QuantizeMethod;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.image.ImageWorker;
@@ -107,8 +108,10 @@ public final void write(
             final List<GridCoverage2D> renderedCoverages = imageMap.getRenderedCoverages();
             final WMSMapContent mapContent = imageMap.getMapContext();
             try {
+                long start = System.nanoTime();
                 formatImageOutputStream(image, output, mapContent);
                 output.flush();
+                GetMapMetrics.get().record(Phase.ENCODE, mapContent, System.nanoTime() - start);
             } finally {
                 if (image instanceof RenderedImageTimeDecorator) {
                     ((RenderedImageTimeDecorator) image).getStatistics().renderingComplete();
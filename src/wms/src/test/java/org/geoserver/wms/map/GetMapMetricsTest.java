@@ -0,0 +1,196 @@
+/* (c) 2022 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.data.test.MockData;
+import org.geoserver.wms.WMSTestSupport;
+import org.geoserver.wms.map.GetMapMetrics.Phase;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.Layer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class GetMapMetricsTest extends WMSTestSupport {
+
+    static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Before
+    public void resetMetrics() {
+        GetMapMetrics.get().reset();
+    }
+
+    @After
+    public void cleanup() {
+        GetMapMetrics.get().reset();
+        logout();
+    }
+
+    @Test
+    public void testHistogramQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * MS);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000 * 1000, histogram.getMax());
+        assertWithin(500_000, histogram.getQuantile(0.5));
+        assertWithin(990_000, histogram.getQuantile(0.99));
+        assertWithin(1000 * 1000, histogram.getQuantile(1));
+        assertEquals(0, new LatencyHistogram().getQuantile(0.5));
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        // buckets are contiguous, and the lower bound maps back to the same bucket
+        long previous = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            long low = LatencyHistogram.lowerBound(i);
+            assertEquals(i, LatencyHistogram.bucket(low));
+            assertEquals(i, LatencyHistogram.bucket(low + LatencyHistogram.bucketWidth(i) - 1));
+            assertThat(low, greaterThan(previous));
+            previous = low;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testSeriesLimit() {
+        int limit = GetMapMetrics.MAX_SERIES;
+        GetMapMetrics.MAX_SERIES = 2;
+        try {
+            GetMapMetrics metrics = GetMapMetrics.get();
+            metrics.record(Phase.RENDER, "a", "image/png", MS);
+            metrics.record(Phase.RENDER, "b", "image/png", MS);
+            metrics.record(Phase.RENDER, "c", "image/png", MS);
+            metrics.record(Phase.RENDER, "d", "image/png", MS);
+            assertNull(metrics.getHistogram(Phase.RENDER, "c", "image/png"));
+            assertEquals(2, metrics.getHistogram(Phase.RENDER, "other", "other").getCount());
+        } finally {
+            GetMapMetrics.MAX_SERIES = limit;
+        }
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        GetMapMetrics metrics = GetMapMetrics.get();
+        metrics.record(Phase.ENCODE, "topp:\"states\"", "image/png", 2 * MS);
+        StringWriter writer = new StringWriter();
+        metrics.write(writer);
+        String output = writer.toString();
+        assertThat(output, containsString("# TYPE geoserver_wms_getmap_phase_seconds summary"));
+        assertThat(
+                output,
+                containsString(
+                        "geoserver_wms_getmap_phase_seconds_count{phase=\"encode\","
+                                + "layer=\"topp:\\\"states\\\"\",format=\"image/png\"} 1"));
+        assertThat(
+                output,
+                containsString(
+                        "geoserver_wms_getmap_phase_max_seconds{phase=\"encode\","
+                                + "layer=\"topp:\\\"states\\\"\",format=\"image/png\"} 0.002"));
+    }
+
+    @Test
+    public void testGetMapPhases() throws Exception {
+        String layer = getLayerId(MockData.BASIC_POLYGONS);
+        getAsImage(
+                "wms?service=WMS&version=1.1.1&request=GetMap&layers="
+                        + layer
+                        + "&styles=&bbox=-180,-90,180,90&width=256&height=256"
+                        + "&srs=EPSG:4326&format=image/png",
+                "image/png");
+
+        GetMapMetrics metrics = GetMapMetrics.get();
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = metrics.getHistogram(phase, layer, "image/png");
+            assertNotNull("Missing histogram for " + phase, histogram);
+            assertEquals(1, histogram.getCount());
+        }
+    }
+
+    @Test
+    public void testMultipleLayersTiled() throws Exception {
+        String polygons = getLayerId(MockData.BASIC_POLYGONS);
+        String lakes = getLayerId(MockData.LAKES);
+        getAsImage(
+                "wms?service=WMS&version=1.1.1&request=GetMap&layers="
+                        + polygons
+                        + ","
+                        + lakes
+                        + "&styles=&bbox=-180,-90,0,90&width=256&height=256"
+                        + "&srs=EPSG:4326&format=image/png&tiled=true&tilesorigin=-180,-90",
+                "image/png");
+
+        // the whole request phases are recorded under each layer, not under the combination
+        GetMapMetrics metrics = GetMapMetrics.get();
+        for (String layer : new String[] {polygons, lakes}) {
+            LatencyHistogram render = metrics.getHistogram(Phase.RENDER, layer, "image/png");
+            assertNotNull("Missing render histogram for " + layer, render);
+            assertEquals(1, render.getCount());
+        }
+        assertNull(metrics.getHistogram(Phase.RENDER, polygons + "," + lakes, "image/png"));
+    }
+
+    @Test
+    public void testLayerName() {
+        Layer layer =
+                new Layer() {
+                    @Override
+                    public ReferencedEnvelope getBounds() {
+                        return null;
+                    }
+                };
+        // untitled layers do not get a null label
+        assertEquals("", GetMapMetrics.layerName(layer));
+        layer.setTitle("The states");
+        assertEquals("The states", GetMapMetrics.layerName(layer));
+        // the name set by GetMap wins, so that all phases share the same label
+        layer.getUserData().put(GetMapMetrics.LAYER_NAME, "topp:states");
+        assertEquals("topp:states", GetMapMetrics.layerName(layer));
+    }
+
+    @Test
+    public void testScrapeRequiresAdmin() throws Exception {
+        MockHttpServletResponse response = getAsServletResponse("wms/metrics");
+        assertEquals(403, response.getStatus());
+
+        login("admin", "geoserver", "ROLE_ADMINISTRATOR");
+        GetMapMetrics.get().record(Phase.RENDER, "topp:states", "image/png", MS);
+        response = getAsServletResponse("wms/metrics");
+        assertEquals(200, response.getStatus());
+        assertThat(response.getContentType(), containsString("text/plain"));
+        assertThat(
+                response.getContentAsString(),
+                containsString("geoserver_wms_getmap_phase_seconds_count{phase=\"render\""));
+    }
+
+    @Test
+    public void testScrapeTileCacheStatistics() throws Exception {
+        login("admin", "geoserver", "ROLE_ADMINISTRATOR");
+        String metrics = getAsServletResponse("wms/metrics").getContentAsString();
+        assertThat(
+                metrics, containsString("# TYPE geoserver_wms_metatile_cache_hits_total counter"));
+        assertThat(metrics, containsString("geoserver_wms_metatile_cache_misses_total "));
+        assertThat(metrics, containsString("geoserver_wms_metatile_cache_evictions_total "));
+        assertThat(metrics, containsString("geoserver_wms_metatile_cache_entries "));
+    }
+
+    private void assertWithin(long expected, long actual) {
+        // the histogram has 16 sub-buckets per power of two, so a precision of about 6%
+        assertThat(Math.abs(expected - actual), lessThanOrEqualTo(expected / 16));
+    }
+}
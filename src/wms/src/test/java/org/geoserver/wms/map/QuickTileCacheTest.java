@@ -6,9 +6,16 @@
 package org.geoserver.wms.map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.StringWriter;
+import org.geoserver.wms.map.QuickTileCache.MapKey;
+import org.geoserver.wms.map.QuickTileCache.MetaTileKey;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.junit.Test;
 import org.locationtech.jts.geom.Envelope;
 
@@ -68,4 +75,52 @@ public void testInnerTileOffsets() {
         assertEquals(new Point(0, 2), cache.getTileOffsetsInMeta(box1, meta));
         assertEquals(new Point(1, 2), cache.getTileOffsetsInMeta(box2, meta));
     }
+
+    @Test
+    public void testSizeEstimate() {
+        BufferedImage rgba = new BufferedImage(256, 256, BufferedImage.TYPE_4BYTE_ABGR);
+        assertEquals(256 * 256 * 4, QuickTileCache.getSizeInBytes(rgba));
+        BufferedImage indexed = new BufferedImage(256, 256, BufferedImage.TYPE_BYTE_INDEXED);
+        assertEquals(256 * 256, QuickTileCache.getSizeInBytes(indexed));
+    }
+
+    @Test
+    public void testMemoryBound() {
+        // room for just eight meta tiles
+        long metaTileSize = 9 * 256 * 256 * 4;
+        QuickTileCache bounded = new QuickTileCache(metaTileSize * 8);
+        for (int i = 0; i < 100; i++) {
+            bounded.storeTiles(buildKey(i), buildTiles());
+        }
+        long size = bounded.size();
+        assertTrue(size > 0 && size <= 8);
+        assertEquals(100 - size, bounded.getStatistics().evictionCount());
+    }
+
+    @Test
+    public void testWriteStatistics() throws Exception {
+        cache.storeTiles(buildKey(0), buildTiles());
+        cache.storeTiles(buildKey(1), buildTiles());
+
+        StringWriter writer = new StringWriter();
+        cache.write(writer);
+        String metrics = writer.toString();
+        assertTrue(metrics.contains("geoserver_wms_metatile_cache_entries 2\n"));
+        assertTrue(metrics.contains("geoserver_wms_metatile_cache_evictions_total 0\n"));
+        assertTrue(metrics.contains("geoserver_wms_metatile_cache_hits_total 0\n"));
+    }
+
+    private MetaTileKey buildKey(int x) {
+        MapKey mapKey = new MapKey("layers=test", 1, new Point2D.Double(0, 0));
+        ReferencedEnvelope envelope = new ReferencedEnvelope(x, x + 768, 0, 768, null);
+        return new MetaTileKey(mapKey, new Point(x, 0), envelope);
+    }
+
+    private RenderedImage[] buildTiles() {
+        RenderedImage[] tiles = new RenderedImage[9];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new BufferedImage(256, 256, BufferedImage.TYPE_4BYTE_ABGR);
+        }
+        return tiles;
+    }
 }